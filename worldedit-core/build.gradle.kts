@@ -66,6 +66,9 @@
     testRuntimeOnly(libs.log4jCore)
     testImplementation(libs.adventureNbt)
     testImplementation(libs.parallelgzip)
+    testImplementation(libs.lz4Java)
+    testImplementation(libs.lz4JavaStream)
+    testRuntimeOnly(libs.sqliteJdbc)
 }
 
 tasks.named<Test>("test") {
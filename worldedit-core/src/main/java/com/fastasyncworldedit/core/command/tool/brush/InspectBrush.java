@@ -17,6 +17,8 @@
 import com.sk89q.worldedit.internal.util.LogManagerCompat;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.math.Vector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.util.Location;
 import com.sk89q.worldedit.util.formatting.text.TextComponent;
 import com.sk89q.worldedit.util.formatting.text.TranslatableComponent;
@@ -88,6 +90,7 @@ public boolean perform(final Player player, LocalSession session, boolean rightC
             for (Supplier<RollbackOptimizedHistory> supplier : db.getEdits(target, false)) {
                 count++;
                 RollbackOptimizedHistory edit = supplier.get();
+                edit.setReadRegions(new Region[]{new CuboidRegion(target, target)});
                 Iterator<MutableFullBlockChange> iter = edit.getFullBlockIterator(null, 0, false);
                 while (iter.hasNext()) {
                     MutableFullBlockChange change = iter.next();
@@ -101,6 +101,11 @@ public static final class PATHS {
                 " - Use a shared directory or NFS/Samba"
         })
         public String CLIPBOARD = "clipboard";
+        @Comment({
+                "Trained history compression dictionaries",
+                " - Keep these as long as the history compressed with them"
+        })
+        public String HISTORY_DICTIONARIES = "history-dictionaries";
         @Comment("Each player has his or her own sub directory for schematics")
         public boolean PER_PLAYER_SCHEMATICS = true;
 
@@ -236,6 +241,24 @@ public static class HISTORY {
                 " - Must be in the range [64, 33554432]",
         })
         public int BUFFER_SIZE = 531441;
+        @Comment({
+                "Compress history with a zstd dictionary trained on history records (if compression-level > 0):",
+                " - Much smaller history files, which also makes undo from slow disks faster",
+                " - A default dictionary is trained in the background the first time it's needed",
+                " - History written with a dictionary can't be read without it (see paths.history-dictionaries)"
+        })
+        public boolean COMPRESSION_DICTIONARY = false;
+        @Comment({
+                "Retrain the history dictionary from this server's history after a number of days",
+                " - 0 = Never retrain"
+        })
+        public int COMPRESSION_DICTIONARY_RETRAIN_DAYS = 7;
+        @Comment({
+                "Store block changes on disk grouped by chunk, with an index:",
+                " - Undoing or inspecting part of a large edit only reads the affected chunks",
+                " - History written this way can't be read by older versions of FAWE"
+        })
+        public boolean CHUNK_INDEX = false;
 
 
         @Comment({
@@ -298,12 +321,17 @@ public static class QUEUE {
         })
         public int TARGET_SIZE = 64;
         @Comment({
-                "Force FAWE to start placing chunks regardless of whether an edit is finished processing",
-                " - A larger value will use slightly less CPU time",
-                " - A smaller value will reduce memory usage",
-                " - A value too small may break some operations (deform?)"
+                "Adjust the target-size while editing based on free memory and how fast chunks are placed",
+                " - The target-size is used as the starting point and grows up to 8 times larger",
+                " - Shrinks when memory is low, to avoid edits being cancelled",
+        })
+        public boolean ADAPTIVE_TARGET_SIZE = false;
+        @Comment({
+                "The longest time (ms) a queue may take to place its chunks when adaptive-target-size is enabled",
+                " - The target-size only grows while the queue can still be placed within this time",
+                " - The target-size shrinks when placing the queue takes longer",
+                " - Has no effect when adaptive-target-size is disabled",
         })
-        //TODO Find out where this was used and why the usage was removed
         public int MAX_WAIT_MS = 1000;
 
         @Comment({
@@ -329,6 +357,13 @@ public static class QUEUE {
         })
         public boolean POOL = true;
 
+        @Comment({
+                "If queued chunk sections should be palette compressed",
+                " - Sections with few distinct blocks use a fraction of the memory",
+                " - Allows a larger target-size without running out of memory",
+        })
+        public boolean PALETTE_SECTIONS = false;
+
         @Comment({
                 "Discard edits which have been idle for a certain amount of time (ms)",
                 " - E.g. A plugin creates an EditSession but never does anything with it",
@@ -515,6 +550,7 @@ public static class LIGHTING {
                 " - 0 = None (Do no relighting)",
                 " - 1 = Optimal (Relight changed light sources and changed blocks)",
                 " - 2 = All (Slowly relight every blocks)",
+                " - 3 = Changed (Relight only the sections where blocks blocking or emitting light changed)",
         })
         public int MODE = 1;
         @Comment({"If existing lighting should be removed before relighting"})
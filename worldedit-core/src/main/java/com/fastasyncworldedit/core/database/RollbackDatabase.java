@@ -22,6 +22,7 @@
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
@@ -40,11 +41,18 @@ public class RollbackDatabase extends AsyncNotifyQueue {
     private Connection connection;
 
     @Language("SQLite")
-    private String createTable = "CREATE TABLE IF NOT EXISTS `{0}edits` (`player` BLOB(16) NOT NULL,`id` INT NOT NULL, `time` INT NOT NULL,`x1` INT NOT NULL,`x2` INT NOT NULL,`z1` INT NOT NULL,`z2` INT NOT NULL,`y1` INT NOT NULL, `y2` INT NOT NULL, `size` INT NOT NULL, `command` VARCHAR, PRIMARY KEY (player, id))";
+    private String createTable = "CREATE TABLE IF NOT EXISTS `{0}edits` (`row_id` INTEGER PRIMARY KEY, `player` BLOB(16) NOT NULL,`id` INT NOT NULL, `time` INT NOT NULL,`x1` INT NOT NULL,`x2` INT NOT NULL,`z1` INT NOT NULL,`z2` INT NOT NULL,`y1` INT NOT NULL, `y2` INT NOT NULL, `size` INT NOT NULL, `command` VARCHAR, UNIQUE (player, id))";
     @Language("SQLite")
     private String updateTable1 = "ALTER TABLE `{0}edits` ADD COLUMN `command` VARCHAR";
     @Language("SQLite")
     private String updateTable2 = "alter table `{0}edits` add size int default 0 not null";
+    // Tables created before the explicit row id are rebuilt, VACUUM may renumber the implicit rowid the rtree refers to
+    @Language("SQLite")
+    private String renameOldTable = "ALTER TABLE `{0}edits` RENAME TO `{0}edits_old`";
+    @Language("SQLite")
+    private String copyOldTable = "INSERT INTO `{0}edits` (`player`,`id`,`time`,`x1`,`x2`,`z1`,`z2`,`y1`,`y2`,`size`,`command`) SELECT `player`,`id`,`time`,`x1`,`x2`,`z1`,`z2`,`y1`,`y2`,`size`,`command` FROM `{0}edits_old`";
+    @Language("SQLite")
+    private String dropOldTable = "DROP TABLE `{0}edits_old`";
     @Language("SQLite")
     private String insertEdit = "INSERT OR REPLACE INTO `{0}edits` (`player`,`id`,`time`,`x1`,`x2`,`z1`,`z2`,`y1`,`y2`,`command`,`size`) VALUES(?,?,?,?,?,?,?,?,?,?,?)";
     @Language("SQLite")
@@ -60,27 +68,67 @@ public class RollbackDatabase extends AsyncNotifyQueue {
     @Language("SQLite")
     private String getEditUser = "SELECT * FROM `{0}edits` WHERE `player`=? AND `id`=?";
 
+    @Language("SQLite")
+    private String createIndexTime = "CREATE INDEX IF NOT EXISTS `{0}edits_time` ON `{0}edits` (`time`)";
+    @Language("SQLite")
+    private String createRtree = "CREATE VIRTUAL TABLE IF NOT EXISTS `{0}edits_rtree` USING rtree_i32(`id`, `x1`, `x2`, `y1`, `y2`, `z1`, `z2`)";
+    // REPLACE only fires the delete trigger with recursive triggers enabled (see openConnection)
+    @Language("SQLite")
+    private String createRtreeInsert = "CREATE TRIGGER IF NOT EXISTS `{0}edits_rtree_insert` AFTER INSERT ON `{0}edits` BEGIN INSERT OR REPLACE INTO `{0}edits_rtree` VALUES (new.`row_id`, new.`x1`, new.`x2`, new.`y1`, new.`y2`, new.`z1`, new.`z2`); END";
+    @Language("SQLite")
+    private String createRtreeUpdate = "CREATE TRIGGER IF NOT EXISTS `{0}edits_rtree_update` AFTER UPDATE ON `{0}edits` BEGIN DELETE FROM `{0}edits_rtree` WHERE `id`=old.`row_id`; INSERT OR REPLACE INTO `{0}edits_rtree` VALUES (new.`row_id`, new.`x1`, new.`x2`, new.`y1`, new.`y2`, new.`z1`, new.`z2`); END";
+    @Language("SQLite")
+    private String createRtreeDelete = "CREATE TRIGGER IF NOT EXISTS `{0}edits_rtree_delete` AFTER DELETE ON `{0}edits` BEGIN DELETE FROM `{0}edits_rtree` WHERE `id`=old.`row_id`; END";
+    @Language("SQLite")
+    private String clearRtree = "DELETE FROM `{0}edits_rtree`";
+    @Language("SQLite")
+    private String fillRtree = "INSERT OR REPLACE INTO `{0}edits_rtree` SELECT `row_id`, `x1`, `x2`, `y1`, `y2`, `z1`, `z2` FROM `{0}edits`";
+    @Language("SQLite")
+    private String getEditsRtreeUser = "SELECT e.* FROM `{0}edits_rtree` r JOIN `{0}edits` e ON e.`row_id`=r.`id` WHERE e.`time`>? AND r.`x2`>=? AND r.`x1`<=? AND r.`z2`>=? AND r.`z1`<=? AND r.`y2`>=? AND r.`y1`<=? AND e.`player`=? ORDER BY e.`time` DESC, e.`id` DESC";
+    @Language("SQLite")
+    private String getEditsRtreeUserAsc = "SELECT e.* FROM `{0}edits_rtree` r JOIN `{0}edits` e ON e.`row_id`=r.`id` WHERE e.`time`>? AND r.`x2`>=? AND r.`x1`<=? AND r.`z2`>=? AND r.`z1`<=? AND r.`y2`>=? AND r.`y1`<=? AND e.`player`=? ORDER BY e.`time` ASC, e.`id` ASC";
+    @Language("SQLite")
+    private String getEditsRtree = "SELECT e.* FROM `{0}edits_rtree` r JOIN `{0}edits` e ON e.`row_id`=r.`id` WHERE e.`time`>? AND r.`x2`>=? AND r.`x1`<=? AND r.`z2`>=? AND r.`z1`<=? AND r.`y2`>=? AND r.`y1`<=? ORDER BY e.`time` DESC, e.`id` DESC";
+    @Language("SQLite")
+    private String getEditsRtreeAsc = "SELECT e.* FROM `{0}edits_rtree` r JOIN `{0}edits` e ON e.`row_id`=r.`id` WHERE e.`time`>? AND r.`x2`>=? AND r.`x1`<=? AND r.`z2`>=? AND r.`z1`<=? AND r.`y2`>=? AND r.`y1`<=? ORDER BY e.`time` ASC, e.`id` ASC";
+
     @Language("SQLite")
     private String deleteEditsUser = "DELETE FROM `{0}edits` WHERE `player`=? AND `time`>? AND `x2`>=? AND `x1`<=? AND `y2`>=? AND `y1`<=? AND `z2`>=? AND `z1`<=?";
     @Language("SQLite")
     private String deleteEditUser = "DELETE FROM `{0}edits` WHERE `player`=? AND `id`=?";
 
+    /**
+     * The schema version stored in {@code PRAGMA user_version}. Version 1 added the time index and the rtree, version 2
+     * keys the rtree on the explicit {@code row_id} instead of the implicit rowid.
+     */
+    private static final int SCHEMA_VERSION = 2;
+    private static final int BATCH_SIZE = 1024;
+
     private final ConcurrentLinkedQueue<RollbackOptimizedHistory> historyChanges = new ConcurrentLinkedQueue<>();
+    // If the spatial index is available (the sqlite driver may be built without the rtree module)
+    private volatile boolean rtree;
 
     RollbackDatabase(World world) throws SQLException, ClassNotFoundException {
+        this(world, MainUtil.getFile(
+                Fawe.imp().getDirectory(),
+                Settings.IMP.PATHS.HISTORY + File.separator + world.getName() + File.separator + "summary.db"
+        ));
+    }
+
+    RollbackDatabase(World world, File dbLocation) throws SQLException, ClassNotFoundException {
         super((t, e) -> e.printStackTrace());
         this.prefix = "";
         this.world = world;
-        this.dbLocation = MainUtil.getFile(
-                Fawe.imp().getDirectory(),
-                Settings.IMP.PATHS.HISTORY + File.separator + world.getName() + File.separator + "summary.db"
-        );
+        this.dbLocation = dbLocation;
         connection = openConnection();
 
         // update vars
         createTable = createTable.replace("{0}", prefix);
         updateTable1 = updateTable1.replace("{0}", prefix);
         updateTable2 = updateTable2.replace("{0}", prefix);
+        renameOldTable = renameOldTable.replace("{0}", prefix);
+        copyOldTable = copyOldTable.replace("{0}", prefix);
+        dropOldTable = dropOldTable.replace("{0}", prefix);
         insertEdit = insertEdit.replace("{0}", prefix);
         purge = purge.replace("{0}", prefix);
         getEditsUser = getEditsUser.replace("{0}", prefix);
@@ -90,6 +138,17 @@ public class RollbackDatabase extends AsyncNotifyQueue {
         getEditUser = getEditUser.replace("{0}", prefix);
         deleteEditsUser = deleteEditsUser.replace("{0}", prefix);
         deleteEditUser = deleteEditUser.replace("{0}", prefix);
+        createIndexTime = createIndexTime.replace("{0}", prefix);
+        createRtree = createRtree.replace("{0}", prefix);
+        createRtreeInsert = createRtreeInsert.replace("{0}", prefix);
+        createRtreeUpdate = createRtreeUpdate.replace("{0}", prefix);
+        createRtreeDelete = createRtreeDelete.replace("{0}", prefix);
+        clearRtree = clearRtree.replace("{0}", prefix);
+        fillRtree = fillRtree.replace("{0}", prefix);
+        getEditsRtreeUser = getEditsRtreeUser.replace("{0}", prefix);
+        getEditsRtreeUserAsc = getEditsRtreeUserAsc.replace("{0}", prefix);
+        getEditsRtree = getEditsRtree.replace("{0}", prefix);
+        getEditsRtreeAsc = getEditsRtreeAsc.replace("{0}", prefix);
 
         try {
             init().get();
@@ -116,10 +175,94 @@ public Future<Boolean> init() {
                 stmt.executeUpdate();
             } catch (SQLException ignored) {
             } // Already updated
+            if (!hasRowId()) {
+                rebuildTable();
+            }
+            try (Statement stmt = connection.createStatement()) {
+                stmt.executeUpdate(createIndexTime);
+            }
+            rtree = initRtree();
             return true;
         });
     }
 
+    private boolean hasRowId() throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet result = stmt.executeQuery("PRAGMA table_info(`" + prefix + "edits`)")) {
+            while (result.next()) {
+                if ("row_id".equals(result.getString("name"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Copy the edits of a table created before the explicit {@code row_id} into a new table. The old table's rtree
+     * triggers and time index are dropped along with it, and recreated afterwards.
+     */
+    private void rebuildTable() throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate(renameOldTable);
+            stmt.executeUpdate(createTable);
+            int copied = stmt.executeUpdate(copyOldTable);
+            stmt.executeUpdate(dropOldTable);
+            connection.commit();
+            LOGGER.info("Migrated {} edits in {}", copied, dbLocation);
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Create the spatial index over the edit bounds, filling it from the existing edits if the database predates it.
+     *
+     * @return false if the rtree module is not available
+     */
+    private boolean initRtree() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate(createRtree);
+        } catch (SQLException e) {
+            LOGGER.warn("The sqlite driver doesn't support rtree indexes, rollback queries by area will be slower: {}",
+                    e.getMessage()
+            );
+            return false;
+        }
+        int version;
+        try (Statement stmt = connection.createStatement(); ResultSet result = stmt.executeQuery("PRAGMA user_version")) {
+            version = result.next() ? result.getInt(1) : 0;
+        }
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate(createRtreeInsert);
+            stmt.executeUpdate(createRtreeUpdate);
+            stmt.executeUpdate(createRtreeDelete);
+            if (version < SCHEMA_VERSION) {
+                // Entries of an older version may refer to the implicit rowid
+                stmt.executeUpdate(clearRtree);
+                int migrated = stmt.executeUpdate(fillRtree);
+                stmt.executeUpdate("PRAGMA user_version = " + SCHEMA_VERSION);
+                if (migrated > 0) {
+                    LOGGER.info("Indexed {} edits in {}", migrated, dbLocation);
+                }
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        return true;
+    }
+
     public Future<Integer> delete(UUID uuid, int id) {
         return call(() -> {
             try (PreparedStatement stmt = connection.prepareStatement(deleteEditUser)) {
@@ -144,7 +287,7 @@ public Future<RollbackOptimizedHistory> getEdit(@Nonnull UUID uuid, int id) {
         });
     }
 
-    private Supplier<RollbackOptimizedHistory> create(ResultSet result) throws SQLException {
+    Supplier<RollbackOptimizedHistory> create(ResultSet result) throws SQLException {
         byte[] uuidBytes = result.getBytes("player");
         int index = result.getInt("id");
         int x1 = result.getInt("x1");
@@ -196,8 +339,14 @@ public Iterable<Supplier<RollbackOptimizedHistory>> getEdits(
         Future<Integer> future = call(() -> {
             try {
                 int count = 0;
-                String stmtStr = ascending ? uuid == null ? getEditsAsc : getEditsUserAsc :
-                        uuid == null ? getEdits : getEditsUser;
+                String stmtStr;
+                if (rtree) {
+                    stmtStr = ascending ? uuid == null ? getEditsRtreeAsc : getEditsRtreeUserAsc :
+                            uuid == null ? getEditsRtree : getEditsRtreeUser;
+                } else {
+                    stmtStr = ascending ? uuid == null ? getEditsAsc : getEditsUserAsc :
+                            uuid == null ? getEdits : getEditsUser;
+                }
                 try (PreparedStatement stmt = connection.prepareStatement(stmtStr)) {
                     stmt.setInt(1, (int) (minTime / 1000));
                     stmt.setInt(2, pos1.getBlockX());
@@ -268,6 +417,7 @@ private boolean sendBatch() throws SQLException {
                 .mapToObj(i -> historyChanges.poll()).toArray(RollbackOptimizedHistory[]::new);
 
         try (PreparedStatement stmt = connection.prepareStatement(insertEdit)) {
+            int batched = 0;
             // `player`,`id`,`time`,`x1`,`x2`,`z1`,`z2`,`y1`,`y2`,`command`,`size`) VALUES(?,?,?,?,?,?,?,?,?,?,?)"
             for (RollbackOptimizedHistory change : copy) {
                 UUID uuid = change.getUUID();
@@ -287,8 +437,14 @@ private boolean sendBatch() throws SQLException {
                 stmt.setByte(9, (byte) (pos2.getY() - 128));
                 stmt.setString(10, change.getCommand());
                 stmt.setInt(11, change.size());
-                stmt.executeUpdate();
-                stmt.clearParameters();
+                stmt.addBatch();
+                if (++batched == BATCH_SIZE) {
+                    stmt.executeBatch();
+                    batched = 0;
+                }
+            }
+            if (batched > 0) {
+                stmt.executeBatch();
             }
         } finally {
             commit();
@@ -314,9 +470,6 @@ private Connection openConnection() throws SQLException, ClassNotFoundException
         if (checkConnection()) {
             return connection;
         }
-        if (!Fawe.imp().getDirectory().exists()) {
-            Fawe.imp().getDirectory().mkdirs();
-        }
         if (!dbLocation.exists()) {
             try {
                 dbLocation.getParentFile().mkdirs();
@@ -326,14 +479,19 @@ private Connection openConnection() throws SQLException, ClassNotFoundException
                 LOGGER.error("Unable to create the database!");
             }
         }
-        Class.forName("org.sqlite.JDBC");
-        connection = DriverManager.getConnection("jdbc:sqlite:" + dbLocation);
-        return connection;
+        return forceConnection();
     }
 
     private Connection forceConnection() throws SQLException, ClassNotFoundException {
         Class.forName("org.sqlite.JDBC");
         connection = DriverManager.getConnection("jdbc:sqlite:" + dbLocation);
+        try (Statement stmt = connection.createStatement()) {
+            // Readers (e.g. inspect) no longer block on the writer, and commits don't fsync the whole database
+            stmt.execute("PRAGMA journal_mode=WAL");
+            stmt.execute("PRAGMA synchronous=NORMAL");
+            // Needed for INSERT OR REPLACE to remove the replaced edit from the rtree
+            stmt.execute("PRAGMA recursive_triggers=ON");
+        }
         return connection;
     }
 
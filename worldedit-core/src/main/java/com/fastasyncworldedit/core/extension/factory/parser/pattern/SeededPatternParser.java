@@ -0,0 +1,58 @@
+package com.fastasyncworldedit.core.extension.factory.parser.pattern;
+
+import com.fastasyncworldedit.core.configuration.Caption;
+import com.fastasyncworldedit.core.extension.factory.parser.RichParser;
+import com.fastasyncworldedit.core.math.random.SeededRandom;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.command.util.SuggestionHelper;
+import com.sk89q.worldedit.extension.input.InputParseException;
+import com.sk89q.worldedit.extension.input.ParserContext;
+import com.sk89q.worldedit.function.pattern.Pattern;
+import com.sk89q.worldedit.function.pattern.RandomPattern;
+import com.sk89q.worldedit.util.formatting.text.TextComponent;
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+
+import javax.annotation.Nonnull;
+import java.util.stream.Stream;
+
+/**
+ * Parses {@code #seeded[seed][pattern]}, a random pattern which always picks the same pattern at a position for the
+ * same seed, e.g. to repeat a random edit.
+ */
+public class SeededPatternParser extends RichParser<Pattern> {
+
+    public SeededPatternParser(WorldEdit worldEdit) {
+        super(worldEdit, "#seeded");
+    }
+
+    @Override
+    protected Stream<String> getSuggestions(String argumentInput, int index) {
+        if (index == 0) {
+            return SuggestionHelper.suggestPositiveIntegers(argumentInput);
+        }
+        if (index == 1) {
+            return worldEdit.getPatternFactory().getSuggestions(argumentInput).stream();
+        }
+        return Stream.empty();
+    }
+
+    @Override
+    protected Pattern parseFromInput(@Nonnull String[] arguments, ParserContext context) throws InputParseException {
+        if (arguments.length != 2) {
+            throw new InputParseException(Caption.of(
+                    "fawe.error.command.syntax",
+                    TextComponent.of(getPrefix() + "[seed][pattern] (e.g. " + getPrefix() + "[42][dirt,stone])")
+            ));
+        }
+        long seed = Long.parseLong(arguments[0]);
+        Pattern inner = worldEdit.getPatternFactory().parseFromInput(arguments[1], context);
+        if (inner instanceof RandomPattern) {
+            return new RandomPattern(new SeededRandom(seed), (RandomPattern) inner);
+        } else if (inner instanceof BlockStateHolder) {
+            return inner;
+        }
+        throw new InputParseException(TextComponent.of("Pattern " + inner.getClass().getSimpleName()
+                + " cannot be used with " + getPrefix()));
+    }
+
+}
@@ -2,6 +2,8 @@
 
 import com.fastasyncworldedit.core.extent.filter.block.FilterBlock;
 
+import java.util.function.Supplier;
+
 public class CountFilter extends ForkedFilter<CountFilter> {
 
     private int total;
@@ -29,6 +31,22 @@ public final void applyBlock(FilterBlock block) {
         total++;
     }
 
+    @Override
+    public boolean applySection(
+            char[] get, Supplier<char[]> set, int blockX, int blockY, int blockZ,
+            int minX, int minY, int minZ, int maxX, int maxY, int maxZ
+    ) {
+        total += (maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1);
+        return true;
+    }
+
+    /**
+     * Add to the total, for filters counting blocks on behalf of this one.
+     */
+    public void add(int amount) {
+        total += amount;
+    }
+
     public int getTotal() {
         return total;
     }
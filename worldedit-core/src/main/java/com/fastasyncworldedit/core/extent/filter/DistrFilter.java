@@ -13,6 +13,7 @@
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Supplier;
 
 public class DistrFilter extends ForkedFilter<DistrFilter> {
 
@@ -47,6 +48,25 @@ public final void applyBlock(FilterBlock block) {
         counter[ordinal]++;
     }
 
+    @Override
+    public boolean applySection(
+            char[] get, Supplier<char[]> set, int blockX, int blockY, int blockZ,
+            int minX, int minY, int minZ, int maxX, int maxY, int maxZ
+    ) {
+        final int[] counter = this.counter;
+        for (int y = minY; y <= maxY; y++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                for (int index = y << 8 | z << 4 | minX, end = index + maxX - minX; index <= end; index++) {
+                    counter[get[index]]++;
+                }
+            }
+        }
+        // As in applyBlock, unset blocks (0) are counted as air (1)
+        counter[1] += counter[0];
+        counter[0] = 0;
+        return true;
+    }
+
     public int getTotal(ABlockMask mask) {
         int total = 0;
         for (int i = 0; i < counter.length; i++) {
@@ -4,6 +4,8 @@
 import com.fastasyncworldedit.core.extent.filter.block.FilterBlock;
 import com.fastasyncworldedit.core.queue.Filter;
 
+import java.util.function.Supplier;
+
 /**
  * Filter which links two Filters together for single-filter-input operations.
  *
@@ -29,6 +31,32 @@ public void applyBlock(FilterBlock block) {
         this.getChild().applyBlock(block);
     }
 
+    /**
+     * Filters the section at once if the parent can, and the child is a {@link CountFilter}, which always can.
+     */
+    @Override
+    public boolean applySection(
+            char[] get, Supplier<char[]> set, int blockX, int blockY, int blockZ,
+            int minX, int minY, int minZ, int maxX, int maxY, int maxZ
+    ) {
+        return this.getChild() instanceof CountFilter
+                && this.getParent().applySection(get, set, blockX, blockY, blockZ, minX, minY, minZ, maxX, maxY, maxZ)
+                && this.getChild().applySection(get, set, blockX, blockY, blockZ, minX, minY, minZ, maxX, maxY, maxZ);
+    }
+
+    /**
+     * Fork both filters, {@link #newInstance(Filter)} would keep applying the filters of this one.
+     */
+    @Override
+    public Filter fork() {
+        Filter parent = this.getParent().fork();
+        Filter child = this.getChild().fork();
+        if (parent == this.getParent() && child == this.getChild()) {
+            return this;
+        }
+        return new LinkedFilter<>(parent, child);
+    }
+
     @Override
     public LinkedFilter<LinkedFilter<T, S>, Filter> newInstance(Filter other) {
         return new LinkedFilter<>(this, other);
@@ -5,7 +5,9 @@
 import com.fastasyncworldedit.core.queue.Filter;
 import com.sk89q.worldedit.function.mask.AbstractExtentMask;
 import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.function.pattern.Pattern;
 
+import javax.annotation.Nullable;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 
@@ -19,6 +21,8 @@
     private final Supplier<Mask> supplier;
     private final Mask mask;
     private final AtomicInteger changes;
+    private final LazyTables tables;
+    private boolean[] tested;
 
     public MaskFilter(T other, Mask mask) {
         this(other, () -> mask);
@@ -33,10 +37,15 @@ public MaskFilter(T other, Supplier<Mask> supplier, Mask root) {
     }
 
     public MaskFilter(T other, Supplier<Mask> supplier, Mask root, AtomicInteger changes) {
+        this(other, supplier, root, changes, new LazyTables());
+    }
+
+    private MaskFilter(T other, Supplier<Mask> supplier, Mask root, AtomicInteger changes, LazyTables tables) {
         super(other);
         this.supplier = supplier;
         this.mask = root;
         this.changes = changes;
+        this.tables = tables;
     }
 
     @Override
@@ -52,6 +61,58 @@ public void applyBlock(FilterBlock block) {
         }
     }
 
+    /**
+     * Filters whole sections with lookup tables if the parent only depends on the block state, see
+     * {@link Pattern#toOrdinalTable()}, and the mask either does too, see {@link Mask#toOrdinalTable()}, or can test
+     * the section at once, see {@link Mask#testSection}. A {@link CountFilter} parent counts the blocks passing the
+     * mask.
+     */
+    @Override
+    public boolean applySection(
+            char[] get, Supplier<char[]> set, int blockX, int blockY, int blockZ,
+            int minX, int minY, int minZ, int maxX, int maxY, int maxZ
+    ) {
+        final Tables tables = this.tables.compile(mask, getParent());
+        if (tables == null) {
+            return false;
+        }
+        final boolean[] maskTable = tables.mask;
+        final char[] patternTable = tables.pattern;
+        boolean[] tested = null;
+        if (maskTable == null) {
+            if (this.tested == null) {
+                this.tested = new boolean[4096];
+            }
+            tested = this.tested;
+            if (!mask.testSection(blockX, blockY, blockZ, minX, minY, minZ, maxX, maxY, maxZ, tested)) {
+                return false;
+            }
+        }
+        char[] setArr = null;
+        int applied = 0;
+        for (int y = minY; y <= maxY; y++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                for (int index = y << 8 | z << 4 | minX, end = index + maxX - minX; index <= end; index++) {
+                    final char ordinal = get[index];
+                    if (maskTable != null ? maskTable[ordinal] : tested[index]) {
+                        if (patternTable != null) {
+                            if (setArr == null) {
+                                setArr = set.get();
+                            }
+                            setArr[index] = patternTable[ordinal];
+                        }
+                        applied++;
+                    }
+                }
+            }
+        }
+        if (patternTable == null) {
+            ((CountFilter) getParent()).add(applied);
+        }
+        this.changes.addAndGet(applied);
+        return true;
+    }
+
     /**
      * Get the number of blocks which passed the Mask test and were applied to
      *
@@ -68,7 +129,59 @@ public MaskFilter<?> newInstance(Filter other) {
 
     @Override
     public Filter fork() {
-        return new MaskFilter<>(getParent().fork(), mask::copy, mask.copy(), changes);
+        return new MaskFilter<>(getParent().fork(), mask::copy, mask.copy(), changes, tables);
+    }
+
+    /**
+     * The lookup tables of a mask and its parent, compiled once and shared by the forks of a filter.
+     */
+    private static final class LazyTables {
+
+        private volatile boolean compiled;
+        private Tables tables;
+
+        /**
+         * @return the tables, or null if the parent can't be compiled
+         */
+        @Nullable
+        Tables compile(Mask mask, Filter parent) {
+            if (!compiled) {
+                synchronized (this) {
+                    if (!compiled) {
+                        tables = Tables.of(mask, parent);
+                        compiled = true;
+                    }
+                }
+            }
+            return tables;
+        }
+
+    }
+
+    private static final class Tables {
+
+        @Nullable
+        private final boolean[] mask;
+        @Nullable
+        private final char[] pattern;
+
+        private Tables(@Nullable boolean[] mask, @Nullable char[] pattern) {
+            this.mask = mask;
+            this.pattern = pattern;
+        }
+
+        @Nullable
+        static Tables of(Mask mask, Filter parent) {
+            char[] pattern = null;
+            if (!(parent instanceof CountFilter)) {
+                if (!(parent instanceof Pattern) || (pattern = ((Pattern) parent).toOrdinalTable()) == null) {
+                    return null;
+                }
+            }
+            // Without a mask table, the mask may still test whole sections
+            return new Tables(mask.toOrdinalTable(), pattern);
+        }
+
     }
 
 }
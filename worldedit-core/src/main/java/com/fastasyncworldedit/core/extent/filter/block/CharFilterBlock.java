@@ -23,6 +23,8 @@
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.function.Supplier;
 
 import static com.sk89q.worldedit.world.block.BlockTypesCache.states;
 
@@ -31,6 +33,10 @@ public class CharFilterBlock extends ChunkFilterBlock {
     private static final SetDelegate FULL = (block, value) -> block.setArr[block.index] = value;
     private static final SetDelegate NULL = (block, value) -> block.initSet().set(block, value);
 
+    private static final int HALO_SIZE = 18;
+
+    private final Supplier<char[]> setSupplier = this::loadSet;
+
     private CharGetBlocks get;
     private IChunkSet set;
     private char[] getArr;
@@ -48,6 +54,8 @@ public class CharFilterBlock extends ChunkFilterBlock {
     private int zz;
     private int chunkX;
     private int chunkZ;
+    private char[] halo;
+    private boolean haloUsed;
 
     public CharFilterBlock(Extent extent) {
         super(extent);
@@ -80,6 +88,10 @@ public final ChunkFilterBlock initLayer(IBlocks iget, IChunkSet iset, int layer)
             setArr = null;
         }
         this.yy = layer << 4;
+        if (haloUsed) {
+            Arrays.fill(halo, (char) 0);
+            haloUsed = false;
+        }
         return this;
     }
 
@@ -120,6 +132,9 @@ public void filter(Filter filter, int x, int y, int z) {
 
     @Override
     public void filter(Filter filter, int startY, int endY) {
+        if (filter.applySection(getArr, setSupplier, xx, yy, zz, 0, startY, 0, 15, endY, 15)) {
+            return;
+        }
         for (y = startY, index = startY << 8; y <= endY; y++) {
             for (z = 0; z < 16; z++) {
                 for (x = 0; x < 16; x++, index++) {
@@ -131,6 +146,9 @@ public void filter(Filter filter, int startY, int endY) {
 
     @Override
     public void filter(Filter filter, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        if (filter.applySection(getArr, setSupplier, xx, yy, zz, minX, minY, minZ, maxX, maxY, maxZ)) {
+            return;
+        }
         int yis = minY << 8;
         int zis = minZ << 4;
         int zie = (15 - maxZ) << 4;
@@ -164,8 +182,53 @@ public final void filter(Filter filter, Region region) {
         }
     }
 
+    @Override
+    public final void filter(Filter filter, int[] spans) {
+        final int minY = yy;
+        final int maxY = yy + 15;
+        boolean inside = true;
+        boolean outside = true;
+        for (int i = 0; i < 512; i += 2) {
+            final int low = spans[i];
+            final int high = spans[i + 1];
+            if (low <= minY && high >= maxY) {
+                outside = false;
+            } else {
+                inside = false;
+                if (low <= maxY && high >= minY && low <= high) {
+                    outside = false;
+                }
+            }
+        }
+        if (inside) {
+            filter(filter);
+            return;
+        }
+        if (outside) {
+            return;
+        }
+        // Run each column over the part of its span within this section
+        for (int column = 0; column < 256; column++) {
+            final int low = spans[column << 1];
+            final int high = spans[(column << 1) + 1];
+            if (low > maxY || high < minY || low > high) {
+                continue;
+            }
+            final int startY = Math.max(low, minY) - minY;
+            final int endY = Math.min(high, maxY) - minY;
+            x = column & 15;
+            z = column >> 4;
+            for (y = startY, index = startY << 8 | column; y <= endY; y++, index += 256) {
+                filter.applyBlock(this);
+            }
+        }
+    }
+
     @Override
     public final void filter(Filter filter) {
+        if (filter.applySection(getArr, setSupplier, xx, yy, zz, 0, 0, 0, 15, 15, 15)) {
+            return;
+        }
         for (y = 0, index = 0; y < 16; y++) {
             for (z = 0; z < 16; z++) {
                 for (x = 0; x < 16; x++, index++) {
@@ -348,6 +411,32 @@ public final BlockState getBlockAbove() {
         return BlockTypes.__RESERVED__.getDefaultState();
     }
 
+    /**
+     * Neighbours within the section are read from it. The blocks around the section (the halo) are looked up once,
+     * then cached until the next section, as up to three blocks of the section share each of them.
+     */
+    @Override
+    public final char getNeighbourOrdinal(int dx, int dy, int dz) {
+        final int x = this.x + dx;
+        final int y = this.y + dy;
+        final int z = this.z + dz;
+        if (((x | y | z) & ~15) == 0) {
+            return getArr[x | z << 4 | y << 8];
+        }
+        if (halo == null) {
+            halo = new char[HALO_SIZE * HALO_SIZE * HALO_SIZE];
+        }
+        final int haloIndex = (x + 1) + (z + 1) * HALO_SIZE + (y + 1) * HALO_SIZE * HALO_SIZE;
+        char ordinal = halo[haloIndex];
+        // 0 is never a loaded block, (re)load it
+        if (ordinal == 0) {
+            ordinal = getExtent().getBlock(xx + x, yy + y, zz + z).getOrdinalChar();
+            halo[haloIndex] = ordinal;
+            haloUsed = true;
+        }
+        return ordinal;
+    }
+
     @Override
     public final BlockState getBlockRelativeY(int y) {
         final int newY = this.y + y;
@@ -416,6 +505,13 @@ private SetDelegate initSet() {
         return delegate = FULL;
     }
 
+    private char[] loadSet() {
+        if (setArr == null) {
+            initSet();
+        }
+        return setArr;
+    }
+
     @Override
     public BiomeType getBiomeType(int x, int y, int z) {
         if (x >> 4 == chunkX && z >> 4 == chunkZ) {
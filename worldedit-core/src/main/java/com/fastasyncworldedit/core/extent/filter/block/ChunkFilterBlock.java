@@ -66,6 +66,11 @@ public abstract void filter(
      */
     public abstract void filter(Filter filter, Region region);
 
+    /**
+     * Filter the blocks of the layer within the given column spans, see {@link Region#getColumnSpans(int, int, int[])}.
+     */
+    public abstract void filter(Filter filter, int[] spans);
+
     /**
      * Filter with a chunk object.
      */
@@ -100,6 +100,19 @@ public BlockState getBlockRelativeY(int y) {
         return getBlock(getX(), getY() + y, getZ());
     }
 
+    /**
+     * Get the ordinal of a neighbouring block, at most one block away on each axis. Filter blocks iterating a chunk
+     * section read it from the section, and cache the blocks around the section.
+     *
+     * @param dx the offset on the x axis, between -1 and 1
+     * @param dy the offset on the y axis, between -1 and 1
+     * @param dz the offset on the z axis, between -1 and 1
+     * @return the ordinal of the block
+     */
+    public char getNeighbourOrdinal(int dx, int dy, int dz) {
+        return getBlock(getX() + dx, getY() + dy, getZ() + dz).getOrdinalChar();
+    }
+
     @Override
     public abstract int getX();
 
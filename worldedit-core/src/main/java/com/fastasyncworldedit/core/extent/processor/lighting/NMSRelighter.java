@@ -3,7 +3,6 @@
 import com.fastasyncworldedit.core.Fawe;
 import com.fastasyncworldedit.core.configuration.Settings;
 import com.fastasyncworldedit.core.math.BlockVectorSet;
-import com.fastasyncworldedit.core.math.MutableBlockVector3;
 import com.fastasyncworldedit.core.queue.IQueueChunk;
 import com.fastasyncworldedit.core.queue.IQueueExtent;
 import com.fastasyncworldedit.core.queue.implementation.chunk.ChunkHolder;
@@ -15,28 +14,47 @@
 import com.sk89q.worldedit.registry.state.Property;
 import com.sk89q.worldedit.util.Direction;
 import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockType;
 import com.sk89q.worldedit.world.block.BlockTypes;
+import com.sk89q.worldedit.world.block.BlockTypesCache;
 import com.sk89q.worldedit.world.registry.BlockMaterial;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayFIFOQueue;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 public class NMSRelighter implements Relighter {
 
     private static final int DISPATCH_SIZE = 64;
+    /**
+     * Chunks are relit in parallel in square tiles of {@code 1 << TILE_SHIFT} chunks
+     */
+    private static final int TILE_SHIFT = 3;
+    /**
+     * Light levels are queued with the position packed by {@link MathMan#tripleWorldCoord(int, int, int)}, which leaves
+     * the top four bits free
+     */
+    private static final int LEVEL_SHIFT = 60;
+    /**
+     * Buffers kept for the block light updates of each thread, so they are not allocated for every update
+     */
+    private static final ThreadLocal<LightBuffers> LIGHT_BUFFERS = ThreadLocal.withInitial(LightBuffers::new);
     private static final DirectionalProperty stairDirection;
     private static final EnumProperty stairHalf;
     private static final EnumProperty stairShape;
@@ -49,13 +67,14 @@ public class NMSRelighter implements Relighter {
         slabHalf = (EnumProperty) (Property<?>) BlockTypes.SANDSTONE_SLAB.getProperty("type");
     }
 
-    public final MutableBlockVector3 mutableBlockPos = new MutableBlockVector3(0, 0, 0);
+    private static final boolean[] slabs = typesContaining("slab");
+    private static final boolean[] stairs = typesContaining("stair");
+
     private final IQueueExtent<IQueueChunk> queue;
     private final Map<Long, RelightSkyEntry> skyToRelight;
-    private final Object present = new Object();
     private final Map<Long, Integer> chunksToSend;
     private final ConcurrentLinkedQueue<RelightSkyEntry> extendSkyToRelight = new ConcurrentLinkedQueue<>();
-    private final Map<Long, long[][][] /* z y x */> lightQueue;
+    private final Long2ObjectOpenHashMap<long[][][] /* z y x */> lightQueue;
     private final AtomicBoolean lightLock = new AtomicBoolean(false);
     private final ConcurrentHashMap<Long, long[][][]> concurrentLightQueue;
     private final RelightMode relightMode;
@@ -137,12 +156,10 @@ public void addLightUpdate(int x, int y, int z) {
                 }
             }
         } else {
-            long[][][] currentMap = concurrentLightQueue.get(index);
-            if (currentMap == null) {
-                currentMap = new long[16][][];
-                this.concurrentLightQueue.put(index, currentMap);
+            long[][][] currentMap = concurrentLightQueue.computeIfAbsent(index, k -> new long[16][][]);
+            synchronized (currentMap) {
+                set(x & 15, y, z & 15, currentMap);
             }
-            set(x & 15, y, z & 15, currentMap);
         }
     }
 
@@ -200,57 +217,63 @@ public void updateBlockLight(Map<Long, long[][][]> map) {
         if (size == 0) {
             return;
         }
-        Queue<MutableBlockVector3> lightPropagationQueue = new ArrayDeque<>(32);
-        Queue<Object[]> lightRemovalQueue = new ArrayDeque<>(32);
-        Map<MutableBlockVector3, Object> visited = new HashMap<>(32);
-        Map<MutableBlockVector3, Object> removalVisited = new HashMap<>(32);
-
-        // Make sure BlockTypes is initialised so we can check block characteristics later if needed
-        BlockTypes.STONE.getMaterial();
-
-        Iterator<Map.Entry<Long, long[][][]>> iter = map.entrySet().iterator();
-        while (iter.hasNext() && size-- > 0) {
-            Map.Entry<Long, long[][][]> entry = iter.next();
-            long index = entry.getKey();
-            long[][][] blocks = entry.getValue();
-            int chunkX = MathMan.unpairIntX(index);
-            int chunkZ = MathMan.unpairIntY(index);
-            int bx = chunkX << 4;
-            int bz = chunkZ << 4;
-            ChunkHolder<?> iChunk = (ChunkHolder<?>) queue.getOrCreateChunk(chunkX, chunkZ);
-            if (!iChunk.isInit()) {
-                iChunk.init(queue, chunkX, chunkZ);
-            }
-            for (int lz = 0; lz < blocks.length; lz++) {
-                long[][] m1 = blocks[lz];
-                if (m1 == null) {
-                    continue;
+        LightBuffers buffers = LIGHT_BUFFERS.get();
+        LongArrayFIFOQueue lightPropagationQueue = buffers.propagation;
+        LongArrayFIFOQueue lightRemovalQueue = buffers.removal;
+        LongSet visited = buffers.visited;
+        LongSet removalVisited = buffers.removalVisited;
+
+        try {
+            // Make sure BlockTypes is initialised so we can check block characteristics later if needed
+            BlockTypes.STONE.getMaterial();
+
+            Iterator<Map.Entry<Long, long[][][]>> iter = map.entrySet().iterator();
+            while (iter.hasNext() && size-- > 0) {
+                Map.Entry<Long, long[][][]> entry = iter.next();
+                long index = entry.getKey();
+                long[][][] blocks = entry.getValue();
+                int chunkX = MathMan.unpairIntX(index);
+                int chunkZ = MathMan.unpairIntY(index);
+                int bx = chunkX << 4;
+                int bz = chunkZ << 4;
+                ChunkHolder<?> iChunk = (ChunkHolder<?>) queue.getOrCreateChunk(chunkX, chunkZ);
+                if (!iChunk.isInit()) {
+                    iChunk.init(queue, chunkX, chunkZ);
                 }
-                for (int lx = 0; lx < m1.length; lx++) {
-                    long[] m2 = m1[lx];
-                    if (m2 == null) {
+                for (int lz = 0; lz < blocks.length; lz++) {
+                    long[][] m1 = blocks[lz];
+                    if (m1 == null) {
                         continue;
                     }
-                    for (int i = 0; i < m2.length; i++) {
-                        int yStart = i << 6;
-                        long value = m2[i];
-                        if (value != 0) {
-                            for (int j = 0; j < 64; j++) {
-                                if (((value >> j) & 1) == 1) {
-                                    int x = lx + bx;
-                                    int y = yStart + j;
-                                    int z = lz + bz;
-                                    int oldLevel = iChunk.getEmittedLight(lx, y, lz);
-                                    int newLevel = iChunk.getBrightness(lx, y, lz);
-                                    if (oldLevel != newLevel) {
-                                        iChunk.setBlockLight(lx, y, lz, newLevel);
-                                        MutableBlockVector3 node = new MutableBlockVector3(x, y, z);
-                                        if (newLevel < oldLevel) {
-                                            removalVisited.put(node, present);
-                                            lightRemovalQueue.add(new Object[]{node, oldLevel});
+                    for (int lx = 0; lx < m1.length; lx++) {
+                        long[] m2 = m1[lx];
+                        if (m2 == null) {
+                            continue;
+                        }
+                        for (int i = 0; i < m2.length; i++) {
+                            int yStart = i << 6;
+                            long value = m2[i];
+                            if (value != 0) {
+                                for (int j = 0; j < 64; j++) {
+                                    if (((value >> j) & 1) == 1) {
+                                        int x = lx + bx;
+                                        int y = yStart + j;
+                                        int z = lz + bz;
+                                        int oldLevel = iChunk.getEmittedLight(lx, y, lz);
+                                        int newLevel = iChunk.getBrightness(lx, y, lz);
+                                        if (oldLevel != newLevel) {
+                                            iChunk.setBlockLight(lx, y, lz, newLevel);
+                                            long node = MathMan.tripleWorldCoord(x, y, z);
+                                            if (newLevel < oldLevel) {
+                                                removalVisited.add(node);
+                                                lightRemovalQueue.enqueue(node | (long) oldLevel << LEVEL_SHIFT);
+                                            } else {
+                                                visited.add(node);
+                                                lightPropagationQueue.enqueue(node);
+                                            }
                                         } else {
-                                            visited.put(node, present);
-                                            lightPropagationQueue.add(node);
+                                            // The block may let more light through now, so spread the light around it
+                                            enqueueNeighbours(x, y, z, lightPropagationQueue, visited);
                                         }
                                     }
                                 }
@@ -258,114 +281,56 @@ public void updateBlockLight(Map<Long, long[][][]> map) {
                         }
                     }
                 }
+                iter.remove();
             }
-            iter.remove();
-        }
 
-        while (!lightRemovalQueue.isEmpty()) {
-            Object[] val = lightRemovalQueue.poll();
-            MutableBlockVector3 node = (MutableBlockVector3) val[0];
-            int lightLevel = (int) val[1];
-
-            this.computeRemoveBlockLight(
-                    node.getX() - 1,
-                    node.getY(),
-                    node.getZ(),
-                    lightLevel,
-                    lightRemovalQueue,
-                    lightPropagationQueue,
-                    removalVisited,
-                    visited
-            );
-            this.computeRemoveBlockLight(
-                    node.getX() + 1,
-                    node.getY(),
-                    node.getZ(),
-                    lightLevel,
-                    lightRemovalQueue,
-                    lightPropagationQueue,
-                    removalVisited,
-                    visited
-            );
-            if (node.getY() > 0) {
-                this.computeRemoveBlockLight(
-                        node.getX(),
-                        node.getY() - 1,
-                        node.getZ(),
-                        lightLevel,
-                        lightRemovalQueue,
-                        lightPropagationQueue,
-                        removalVisited,
-                        visited
-                );
-            }
-            if (node.getY() < 255) {
-                this.computeRemoveBlockLight(
-                        node.getX(),
-                        node.getY() + 1,
-                        node.getZ(),
-                        lightLevel,
-                        lightRemovalQueue,
-                        lightPropagationQueue,
-                        removalVisited,
-                        visited
-                );
-            }
-            this.computeRemoveBlockLight(
-                    node.getX(),
-                    node.getY(),
-                    node.getZ() - 1,
-                    lightLevel,
-                    lightRemovalQueue,
-                    lightPropagationQueue,
-                    removalVisited,
-                    visited
-            );
-            this.computeRemoveBlockLight(
-                    node.getX(),
-                    node.getY(),
-                    node.getZ() + 1,
-                    lightLevel,
-                    lightRemovalQueue,
-                    lightPropagationQueue,
-                    removalVisited,
-                    visited
-            );
-        }
-
-        while (!lightPropagationQueue.isEmpty()) {
-            MutableBlockVector3 node = lightPropagationQueue.poll();
-            ChunkHolder<?> iChunk = (ChunkHolder<?>) queue.getOrCreateChunk(node.getX() >> 4, node.getZ() >> 4);
-            if (!iChunk.isInit()) {
-                iChunk.init(queue, node.getX() >> 4, node.getZ() >> 4);
-            }
-            int lightLevel = iChunk.getEmittedLight(node.getX() & 15, node.getY(), node.getZ() & 15);
-            BlockState state = this.queue.getBlock(node.getX(), node.getY(), node.getZ());
-            String id = state.getBlockType().getId().toLowerCase(Locale.ROOT);
-            if (lightLevel <= 1) {
-                continue;
+            while (!lightRemovalQueue.isEmpty()) {
+                long entry = lightRemovalQueue.dequeueLong();
+                int lightLevel = (int) (entry >>> LEVEL_SHIFT);
+                int x = (int) MathMan.untripleWorldCoordX(entry);
+                int y = (int) MathMan.untripleWorldCoordY(entry);
+                int z = (int) MathMan.untripleWorldCoordZ(entry);
+
+                this.computeRemoveBlockLight(x - 1, y, z, lightLevel, buffers);
+                this.computeRemoveBlockLight(x + 1, y, z, lightLevel, buffers);
+                if (y > 0) {
+                    this.computeRemoveBlockLight(x, y - 1, z, lightLevel, buffers);
+                }
+                if (y < 255) {
+                    this.computeRemoveBlockLight(x, y + 1, z, lightLevel, buffers);
+                }
+                this.computeRemoveBlockLight(x, y, z - 1, lightLevel, buffers);
+                this.computeRemoveBlockLight(x, y, z + 1, lightLevel, buffers);
             }
-            if (id.contains("slab")) {
-                boolean top = state.getState(slabHalf).equalsIgnoreCase("top");
-                computeSlab(node.getX(), node.getY(), node.getZ(), lightLevel, lightPropagationQueue, visited, top);
-            } else if (id.contains("stair")) {
-                boolean top = state.getState(stairHalf).equalsIgnoreCase("top");
-                Direction direction = getStairDir(state);
-                String shape = getStairShape(state);
-                computeStair(
-                        node.getX(),
-                        node.getY(),
-                        node.getZ(),
-                        lightLevel,
-                        lightPropagationQueue,
-                        visited,
-                        top,
-                        direction,
-                        shape
-                );
-            } else {
-                computeNormal(node.getX(), node.getY(), node.getZ(), lightLevel, lightPropagationQueue, visited);
+
+            while (!lightPropagationQueue.isEmpty()) {
+                long node = lightPropagationQueue.dequeueLong();
+                int x = (int) MathMan.untripleWorldCoordX(node);
+                int y = (int) MathMan.untripleWorldCoordY(node);
+                int z = (int) MathMan.untripleWorldCoordZ(node);
+                ChunkHolder<?> iChunk = (ChunkHolder<?>) queue.getOrCreateChunk(x >> 4, z >> 4);
+                if (!iChunk.isInit()) {
+                    iChunk.init(queue, x >> 4, z >> 4);
+                }
+                int lightLevel = iChunk.getEmittedLight(x & 15, y, z & 15);
+                if (lightLevel <= 1) {
+                    continue;
+                }
+                BlockState state = this.queue.getBlock(x, y, z);
+                if (isSlab(state)) {
+                    boolean top = state.getState(slabHalf).equalsIgnoreCase("top");
+                    computeSlab(x, y, z, lightLevel, lightPropagationQueue, visited, top);
+                } else if (isStair(state)) {
+                    boolean top = state.getState(stairHalf).equalsIgnoreCase("top");
+                    Direction direction = getStairDir(state);
+                    String shape = getStairShape(state);
+                    computeStair(x, y, z, lightLevel, lightPropagationQueue, visited, top, direction, shape);
+                } else {
+                    computeNormal(x, y, z, lightLevel, lightPropagationQueue, visited);
+                }
             }
+        } finally {
+            buffers.clear();
         }
     }
 
@@ -374,8 +339,8 @@ private void computeStair(
             int y,
             int z,
             int currentLight,
-            Queue<MutableBlockVector3> queue,
-            Map<MutableBlockVector3, Object> visited,
+            LongArrayFIFOQueue queue,
+            LongSet visited,
             boolean top,
             Direction direction,
             String shape
@@ -391,7 +356,7 @@ private void computeStair(
             if (!(checkStairEast(state) && isStairOrTrueTop(state, top) && isSlabOrTrueValue(state, top ? "top" : "bottom"))) {
                 break east;
             }
-            if (!state.getBlockType().getId().toLowerCase(Locale.ROOT).contains("stair")) {
+            if (!isStair(state)) {
                 this.computeSpreadBlockLight(x + 1, y, z, currentLight, queue, visited);
                 break east;
             }
@@ -444,7 +409,7 @@ private void computeStair(
             if (!(checkStairWest(state) && isStairOrTrueTop(state, top) && isSlabOrTrueValue(state, top ? "top" : "bottom"))) {
                 break west;
             }
-            if (!state.getBlockType().getId().toLowerCase(Locale.ROOT).contains("stair")) {
+            if (!isStair(state)) {
                 this.computeSpreadBlockLight(x - 1, y, z, currentLight, queue, visited);
                 break west;
             }
@@ -497,7 +462,7 @@ private void computeStair(
             if (!(checkStairSouth(state) && isStairOrTrueTop(state, top) && isSlabOrTrueValue(state, top ? "top" : "bottom"))) {
                 break south;
             }
-            if (!state.getBlockType().getId().toLowerCase(Locale.ROOT).contains("stair")) {
+            if (!isStair(state)) {
                 this.computeSpreadBlockLight(x, y, z + 1, currentLight, queue, visited);
                 break south;
             }
@@ -550,7 +515,7 @@ private void computeStair(
             if (!(checkStairNorth(state) && isStairOrTrueTop(state, top) && isSlabOrTrueValue(state, top ? "top" : "bottom"))) {
                 break north;
             }
-            if (!state.getBlockType().getId().toLowerCase(Locale.ROOT).contains("stair")) {
+            if (!isStair(state)) {
                 this.computeSpreadBlockLight(x, y, z - 1, currentLight, queue, visited);
                 break north;
             }
@@ -601,8 +566,8 @@ private void computeSlab(
             int y,
             int z,
             int currentLight,
-            Queue<MutableBlockVector3> queue,
-            Map<MutableBlockVector3, Object> visited,
+            LongArrayFIFOQueue queue,
+            LongSet visited,
             boolean top
     ) {
         {
@@ -641,8 +606,8 @@ private void computeUpDown(
             int y,
             int z,
             int currentLight,
-            Queue<MutableBlockVector3> queue,
-            Map<MutableBlockVector3, Object> visited,
+            LongArrayFIFOQueue queue,
+            LongSet visited,
             boolean top
     ) {
         BlockState state = this.queue.getBlock(x, y - 1, z);
@@ -660,8 +625,8 @@ private void computeNormal(
             int y,
             int z,
             int currentLight,
-            Queue<MutableBlockVector3> queue,
-            Map<MutableBlockVector3, Object> visited
+            LongArrayFIFOQueue queue,
+            LongSet visited
     ) {
         {
             // Block East
@@ -701,8 +666,26 @@ private void computeNormal(
         }
     }
 
+    private static boolean[] typesContaining(String name) {
+        boolean[] types = new boolean[BlockTypesCache.values.length];
+        for (BlockType type : BlockTypesCache.values) {
+            if (type != null && type.getId().contains(name)) {
+                types[type.getInternalId()] = true;
+            }
+        }
+        return types;
+    }
+
+    private static boolean isSlab(BlockState state) {
+        return slabs[state.getBlockType().getInternalId()];
+    }
+
+    private static boolean isStair(BlockState state) {
+        return stairs[state.getBlockType().getInternalId()];
+    }
+
     private boolean checkStairNorth(BlockState state) {
-        if (!state.getBlockType().getId().toLowerCase(Locale.ROOT).contains("stair")) {
+        if (!isStair(state)) {
             return true;
         }
         Direction direction = getStairDir(state);
@@ -720,7 +703,7 @@ private boolean checkStairNorth(BlockState state) {
     }
 
     private boolean checkStairSouth(BlockState state) {
-        if (!state.getBlockType().getId().toLowerCase(Locale.ROOT).contains("stair")) {
+        if (!isStair(state)) {
             return true;
         }
         Direction direction = getStairDir(state);
@@ -738,7 +721,7 @@ private boolean checkStairSouth(BlockState state) {
     }
 
     private boolean checkStairEast(BlockState state) {
-        if (!state.getBlockType().getId().toLowerCase(Locale.ROOT).contains("stair")) {
+        if (!isStair(state)) {
             return true;
         }
         Direction direction = getStairDir(state);
@@ -756,7 +739,7 @@ private boolean checkStairEast(BlockState state) {
     }
 
     private boolean checkStairWest(BlockState state) {
-        if (!state.getBlockType().getId().toLowerCase(Locale.ROOT).contains("stair")) {
+        if (!isStair(state)) {
             return true;
         }
         Direction direction = getStairDir(state);
@@ -782,44 +765,48 @@ private String getStairShape(BlockState state) {
     }
 
     private boolean isStairOrTrueTop(BlockState state, boolean top) {
-        return !state.getBlockType().getId().contains("stair") || state.getState(stairHalf).equals("top") == top;
+        return !isStair(state) || state.getState(stairHalf).equals("top") == top;
     }
 
     private boolean isSlabOrTrueValue(BlockState state, String value) {
-        return !state.getBlockType().getId().contains("slab") || state.getState(slabHalf).equals(value);
+        return !isSlab(state) || state.getState(slabHalf).equals(value);
     }
 
-    private void computeRemoveBlockLight(
-            int x,
-            int y,
-            int z,
-            int currentLight,
-            Queue<Object[]> queue,
-            Queue<MutableBlockVector3> spreadQueue,
-            Map<MutableBlockVector3, Object> visited,
-            Map<MutableBlockVector3, Object> spreadVisited
-    ) {
+    private static void enqueueNeighbours(int x, int y, int z, LongArrayFIFOQueue queue, LongSet visited) {
+        enqueue(x - 1, y, z, queue, visited);
+        enqueue(x + 1, y, z, queue, visited);
+        if (y > 0) {
+            enqueue(x, y - 1, z, queue, visited);
+        }
+        if (y < 255) {
+            enqueue(x, y + 1, z, queue, visited);
+        }
+        enqueue(x, y, z - 1, queue, visited);
+        enqueue(x, y, z + 1, queue, visited);
+    }
+
+    private static void enqueue(int x, int y, int z, LongArrayFIFOQueue queue, LongSet visited) {
+        long node = MathMan.tripleWorldCoord(x, y, z);
+        if (visited.add(node)) {
+            queue.enqueue(node);
+        }
+    }
+
+    private void computeRemoveBlockLight(int x, int y, int z, int currentLight, LightBuffers buffers) {
         ChunkHolder<?> iChunk = (ChunkHolder<?>) this.queue.getOrCreateChunk(x >> 4, z >> 4);
         if (!iChunk.isInit()) {
             iChunk.init(this.queue, x >> 4, z >> 4);
         }
         int current = iChunk.getEmittedLight(x & 15, y, z & 15);
+        long node = MathMan.tripleWorldCoord(x, y, z);
         if (current != 0 && current < currentLight) {
             iChunk.setBlockLight(x, y, z, 0);
-            if (current > 1) {
-                mutableBlockPos.setComponents(x, y, z);
-                if (!visited.containsKey(mutableBlockPos)) {
-                    MutableBlockVector3 index = new MutableBlockVector3(x, y, z);
-                    visited.put(index, present);
-                    queue.add(new Object[]{index, current});
-                }
+            if (current > 1 && buffers.removalVisited.add(node)) {
+                buffers.removal.enqueue(node | (long) current << LEVEL_SHIFT);
             }
         } else if (current >= currentLight) {
-            mutableBlockPos.setComponents(x, y, z);
-            if (!spreadVisited.containsKey(mutableBlockPos)) {
-                MutableBlockVector3 index = new MutableBlockVector3(x, y, z);
-                spreadVisited.put(index, present);
-                spreadQueue.add(index);
+            if (buffers.visited.add(node)) {
+                buffers.propagation.enqueue(node);
             }
         }
     }
@@ -829,8 +816,8 @@ private void computeSpreadBlockLight(
             int y,
             int z,
             int currentLight,
-            Queue<MutableBlockVector3> queue,
-            Map<MutableBlockVector3, Object> visited
+            LongArrayFIFOQueue queue,
+            LongSet visited
     ) {
         BlockMaterial material = this.queue.getBlock(x, y, z).getMaterial();
         boolean solidNeedsLight = (!material.isSolid() || !material.isFullCube()) && material.getLightOpacity() > 0 && material.getLightValue() == 0;
@@ -843,12 +830,12 @@ private void computeSpreadBlockLight(
             int current = iChunk.getEmittedLight(x & 15, y, z & 15);
             if (currentLight > current) {
                 iChunk.setBlockLight(x & 15, y, z & 15, currentLight);
-                mutableBlockPos.setComponents(x, y, z);
-                if (!visited.containsKey(mutableBlockPos)) {
-                    visited.put(new MutableBlockVector3(x, y, z), present);
-                    if (currentLight > 1) {
-                        queue.add(new MutableBlockVector3(x, y, z));
-                    }
+                // Spread again whenever the level goes up, even if the block was visited before (e.g. queued while still
+                // dark as the neighbour of a changed block)
+                long node = MathMan.tripleWorldCoord(x, y, z);
+                visited.add(node);
+                if (currentLight > 1) {
+                    queue.enqueue(node);
                 }
             }
         }
@@ -889,7 +876,21 @@ public void fixBlockLighting() {
                 }
             }
             try {
-                updateBlockLight(this.lightQueue);
+                // Updates added while the queue was locked, e.g. by sky lighting tiles relit in parallel
+                for (Map.Entry<Long, long[][][]> entry : concurrentLightQueue.entrySet()) {
+                    long[][][] blocks = entry.getValue();
+                    concurrentLightQueue.remove(entry.getKey());
+                    long[][][] currentMap = lightQueue.computeIfAbsent(entry.getKey(), k -> new long[16][][]);
+                    synchronized (blocks) {
+                        merge(blocks, currentMap);
+                    }
+                }
+                if (isParallel(lightQueue.size())) {
+                    relightTiles(lightQueue, this::updateBlockLight);
+                    lightQueue.clear();
+                } else {
+                    updateBlockLight(this.lightQueue);
+                }
             } finally {
                 lightLock.set(false);
             }
@@ -969,8 +970,20 @@ public synchronized void fixSkyLighting() {
             chunksList.add(entry.getValue());
             iter.remove();
         }
-        Collections.sort(chunksList);
         int size = chunksList.size();
+        if (isParallel(size)) {
+            Map<Long, RelightSkyEntry> chunks = new Long2ObjectOpenHashMap<>(size);
+            for (RelightSkyEntry chunk : chunksList) {
+                chunks.put(MathMan.pairInt(chunk.x, chunk.z), chunk);
+            }
+            relightTiles(chunks, tile -> {
+                List<RelightSkyEntry> sorted = new ArrayList<>(tile.values());
+                Collections.sort(sorted);
+                fixSkyLighting(sorted);
+            });
+            return;
+        }
+        Collections.sort(chunksList);
         if (size > DISPATCH_SIZE) {
             int amount = (size + DISPATCH_SIZE - 1) / DISPATCH_SIZE;
             for (int i = 0; i < amount; i++) {
@@ -984,6 +997,103 @@ public synchronized void fixSkyLighting() {
         }
     }
 
+    private static void merge(long[][][] from, long[][][] to) {
+        for (int z = 0; z < from.length; z++) {
+            long[][] m1 = from[z];
+            if (m1 == null) {
+                continue;
+            }
+            if (to[z] == null) {
+                to[z] = new long[16][];
+            }
+            for (int x = 0; x < m1.length; x++) {
+                long[] m2 = m1[x];
+                if (m2 == null) {
+                    continue;
+                }
+                if (to[z][x] == null) {
+                    to[z][x] = new long[4];
+                }
+                for (int i = 0; i < m2.length; i++) {
+                    to[z][x][i] |= m2[i];
+                }
+            }
+        }
+    }
+
+    private boolean isParallel(int chunks) {
+        return chunks > DISPATCH_SIZE && Settings.IMP.QUEUE.PARALLEL_THREADS > 1;
+    }
+
+    /**
+     * Relight chunks in parallel. The chunks are grouped into square tiles, and the tiles into four passes by the parity
+     * of their coordinates, so tiles relit at the same time are a whole tile apart. Light doesn't travel that far, so
+     * each tile only reads and writes its own chunks and the chunks right around it (its halo), which no other tile of
+     * the pass touches. Tiles of later passes see the light of the earlier ones at their borders, as batches relit one
+     * after another do.
+     * <p>
+     * The tiles of a pass are shared between at most {@code parallel-threads} tasks of the queue handler. If a tile
+     * fails, the remaining tiles are skipped, and the failure is thrown once the tiles being relit are done.
+     *
+     * @param chunks the chunks to relight, by chunk pair
+     * @param relight relights the chunks of a tile
+     */
+    private <T> void relightTiles(Map<Long, T> chunks, Consumer<Map<Long, T>> relight) {
+        List<Map<Long, Map<Long, T>>> passes = new ArrayList<>(4);
+        for (int i = 0; i < 4; i++) {
+            passes.add(new Long2ObjectOpenHashMap<>());
+        }
+        for (Map.Entry<Long, T> entry : chunks.entrySet()) {
+            long pair = entry.getKey();
+            int tileX = MathMan.unpairIntX(pair) >> TILE_SHIFT;
+            int tileZ = MathMan.unpairIntY(pair) >> TILE_SHIFT;
+            passes.get((tileX & 1) | (tileZ & 1) << 1)
+                    .computeIfAbsent(MathMan.pairInt(tileX, tileZ), k -> new Long2ObjectOpenHashMap<>())
+                    .put(pair, entry.getValue());
+        }
+        boolean queueEnabled = queue.isQueueEnabled();
+        // Chunks submitted by the queue while tiles are relit would lose the light written to them afterwards
+        queue.disableQueue();
+        try {
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            for (Map<Long, Map<Long, T>> pass : passes) {
+                ConcurrentLinkedQueue<Map<Long, T>> tiles = new ConcurrentLinkedQueue<>(pass.values());
+                int workers = Math.min(tiles.size(), Settings.IMP.QUEUE.PARALLEL_THREADS);
+                ForkJoinTask<?>[] tasks = new ForkJoinTask[workers];
+                for (int i = 0; i < workers; i++) {
+                    tasks[i] = submit(() -> {
+                        Map<Long, T> tile;
+                        // Stop taking tiles once one failed, the edit is aborted anyway
+                        while (failure.get() == null && (tile = tiles.poll()) != null) {
+                            try {
+                                relight.accept(tile);
+                            } catch (Throwable e) {
+                                failure.compareAndSet(null, e);
+                            }
+                        }
+                    });
+                }
+                // Every worker must be done before the queue is enabled again, even if a tile failed
+                for (ForkJoinTask<?> task : tasks) {
+                    task.quietlyJoin();
+                }
+                if (failure.get() != null) {
+                    throw new RuntimeException(failure.get());
+                }
+            }
+        } finally {
+            if (queueEnabled) {
+                queue.enableQueue();
+            }
+        }
+    }
+
+    private static ForkJoinTask<?> submit(Runnable task) {
+        Fawe fawe = Fawe.get();
+        // Outside of a platform (e.g. in tests) there is no queue handler
+        return fawe != null ? fawe.getQueueHandler().submit(task) : ForkJoinPool.commonPool().submit(task);
+    }
+
     public void fill(byte[] mask, int chunkX, int y, int chunkZ, byte reason) {
         if (y >= 16) {
             Arrays.fill(mask, (byte) 15);
@@ -1235,6 +1345,29 @@ public void smoothSkyLight(RelightSkyEntry chunk, int y, boolean direction) {
         }
     }
 
+    private static final class LightBuffers {
+
+        /**
+         * Larger sets are trimmed after use, rather than kept by the thread
+         */
+        private static final int MAX_RETAINED = 1 << 16;
+
+        private final LongArrayFIFOQueue propagation = new LongArrayFIFOQueue();
+        private final LongArrayFIFOQueue removal = new LongArrayFIFOQueue();
+        private final LongOpenHashSet visited = new LongOpenHashSet();
+        private final LongOpenHashSet removalVisited = new LongOpenHashSet();
+
+        private void clear() {
+            propagation.clear();
+            removal.clear();
+            visited.clear();
+            removalVisited.clear();
+            visited.trim(MAX_RETAINED);
+            removalVisited.trim(MAX_RETAINED);
+        }
+
+    }
+
     private class RelightSkyEntry implements Comparable<RelightSkyEntry> {
 
         public final int x;
@@ -1,14 +1,20 @@
 package com.fastasyncworldedit.core.extent.processor.lighting;
 
+import com.fastasyncworldedit.core.FaweCache;
 import com.fastasyncworldedit.core.configuration.Settings;
 import com.fastasyncworldedit.core.extent.processor.ProcessorScope;
 import com.fastasyncworldedit.core.queue.IBatchProcessor;
 import com.fastasyncworldedit.core.queue.IChunk;
 import com.fastasyncworldedit.core.queue.IChunkGet;
 import com.fastasyncworldedit.core.queue.IChunkSet;
+import com.fastasyncworldedit.core.world.block.BlockID;
 import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockTypesCache;
+import com.sk89q.worldedit.world.registry.BlockMaterial;
 
 import javax.annotation.Nullable;
+import java.util.Arrays;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
 
@@ -41,10 +47,137 @@ public IChunkSet processSet(IChunk chunk, IChunkGet get, IChunkSet set) {
             if (relight) {
                 relighter.addChunk(chunk.getX(), chunk.getZ(), fix, chunk.getBitMask());
             }
+        } else if (Settings.IMP.LIGHTING.MODE == 3) {
+            relightChanged(chunk, get, set);
         }
         return set;
     }
 
+    /**
+     * Relight only where the light can change: block light around every block which now blocks or emits a different
+     * amount of light, and sky light around the blocks which now block a different amount of light.
+     * <p>
+     * Sky light is relit from the highest section with such a change down to 15 blocks below the lowest point direct
+     * sky light can reach from a changed block, i.e. the first block below it which blocks any light. Light can't spread
+     * further than 15 blocks from there, so the sections below keep their light. For the same reason, the neighbouring
+     * chunks within 15 blocks of a change are relit over the same sections. Chunks without changes are not relit at
+     * all.
+     */
+    private void relightChanged(IChunk chunk, IChunkGet get, IChunkSet set) {
+        final char[] light = LightProperties.BY_ORDINAL;
+        final int bx = chunk.getX() << 4;
+        final int bz = chunk.getZ() << 4;
+        final char[][] before = new char[16][];
+        final char[][] after = new char[16][];
+        // Lowest opacity change of each column, or -1
+        final int[] lowestOpacityChange = new int[256];
+        Arrays.fill(lowestOpacityChange, -1);
+        int highestOpacityChange = -1;
+        int minX = 15;
+        int maxX = 0;
+        int minZ = 15;
+        int maxZ = 0;
+        boolean changed = false;
+        for (int layer = 15; layer >= 0; layer--) {
+            if (!set.hasSection(layer)) {
+                continue;
+            }
+            final char[] to = after[layer] = set.load(layer);
+            final char[] from = before[layer] = getSection(get, layer);
+            for (int i = 0; i < 4096; i++) {
+                final char ordinal = to[i];
+                // Unchanged blocks
+                if (ordinal == BlockID.__RESERVED__) {
+                    continue;
+                }
+                final char lightFrom = light[from[i]];
+                final char lightTo = light[ordinal];
+                if (lightFrom == lightTo) {
+                    continue;
+                }
+                changed = true;
+                final int x = i & 15;
+                final int y = layer << 4 | i >> 8;
+                final int z = i >> 4 & 15;
+                if ((lightFrom ^ lightTo) >> 4 != 0) {
+                    highestOpacityChange = Math.max(highestOpacityChange, layer);
+                    final int column = i & 255;
+                    if (lowestOpacityChange[column] == -1 || y < lowestOpacityChange[column]) {
+                        lowestOpacityChange[column] = y;
+                    }
+                    minX = Math.min(minX, x);
+                    maxX = Math.max(maxX, x);
+                    minZ = Math.min(minZ, z);
+                    maxZ = Math.max(maxZ, z);
+                }
+                relighter.addLightUpdate(bx + x, y, bz + z);
+            }
+        }
+        if (!changed) {
+            return;
+        }
+        if (highestOpacityChange == -1) {
+            // Only block light changed, sections which are skipped still get their chunk sent with the new block light
+            byte[] fix = new byte[16];
+            Arrays.fill(fix, Relighter.SkipReason.AIR);
+            relighter.addChunk(chunk.getX(), chunk.getZ(), fix, chunk.getBitMask());
+            return;
+        }
+        int lowestRelit = 255;
+        for (int column = 0; column < 256; column++) {
+            int y = lowestOpacityChange[column];
+            if (y == -1) {
+                continue;
+            }
+            // Follow direct sky light down to the first block blocking light
+            while (y > 0 && (light[getBlock(get, set, before, after, column, y - 1)] >> 4) == 0) {
+                y--;
+            }
+            lowestRelit = Math.min(lowestRelit, Math.max(0, y - 1 - 15));
+        }
+        byte[] fix = new byte[16];
+        Arrays.fill(fix, 0, lowestRelit >> 4, Relighter.SkipReason.AIR);
+        Arrays.fill(fix, highestOpacityChange + 1, fix.length, Relighter.SkipReason.AIR);
+        relighter.addChunk(chunk.getX(), chunk.getZ(), fix, chunk.getBitMask());
+
+        // Light spreads at most 14 blocks from a changed block, along x and z together
+        int relitSections = 0;
+        for (int layer = lowestRelit >> 4; layer <= highestOpacityChange; layer++) {
+            relitSections |= 1 << layer;
+        }
+        for (int dx = -1; dx <= 1; dx++) {
+            int distanceX = dx == 0 ? 0 : dx > 0 ? 16 - maxX : minX + 1;
+            for (int dz = -1; dz <= 1; dz++) {
+                int distanceZ = dz == 0 ? 0 : dz > 0 ? 16 - maxZ : minZ + 1;
+                if ((dx != 0 || dz != 0) && distanceX + distanceZ < 15) {
+                    relighter.addChunk(chunk.getX() + dx, chunk.getZ() + dz, fix.clone(), relitSections);
+                }
+            }
+        }
+    }
+
+    private static char[] getSection(IChunkGet get, int layer) {
+        return get.hasSection(layer) ? get.load(layer) : FaweCache.IMP.EMPTY_CHAR_4096;
+    }
+
+    /**
+     * Get the ordinal of a block after the edit, loading the sections of the chunk as they are needed.
+     */
+    private static char getBlock(IChunkGet get, IChunkSet set, char[][] before, char[][] after, int column, int y) {
+        final int layer = y >> 4;
+        final int index = (y & 15) << 8 | column;
+        if (after[layer] == null && set.hasSection(layer)) {
+            after[layer] = set.load(layer);
+        }
+        if (after[layer] != null && after[layer][index] != BlockID.__RESERVED__) {
+            return after[layer][index];
+        }
+        if (before[layer] == null) {
+            before[layer] = getSection(get, layer);
+        }
+        return before[layer][index];
+    }
+
     @Override
     public Future<IChunkSet> postProcessSet(IChunk chunk, IChunkGet get, IChunkSet set) {
         return CompletableFuture.completedFuture(set);
@@ -61,4 +194,29 @@ public ProcessorScope getScope() {
         return ProcessorScope.READING_SET_BLOCKS;
     }
 
+    /**
+     * The light blocked and emitted by each block state, as {@code opacity << 4 | emission}. Unknown blocks are treated
+     * as air.
+     */
+    private static final class LightProperties {
+
+        private static final char[] BY_ORDINAL;
+
+        static {
+            BlockState[] states = BlockTypesCache.states;
+            BY_ORDINAL = new char[states.length];
+            for (int ordinal = 0; ordinal < states.length; ordinal++) {
+                BlockState state = states[ordinal];
+                if (state == null || ordinal == BlockID.__RESERVED__) {
+                    continue;
+                }
+                BlockMaterial material = state.getMaterial();
+                int opacity = Math.min(15, Math.max(0, material.getLightOpacity()));
+                int emission = Math.min(15, Math.max(0, material.getLightValue()));
+                BY_ORDINAL[ordinal] = (char) (opacity << 4 | emission);
+            }
+        }
+
+    }
+
 }
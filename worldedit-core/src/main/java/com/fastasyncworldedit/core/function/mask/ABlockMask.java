@@ -1,5 +1,6 @@
 package com.fastasyncworldedit.core.function.mask;
 
+import com.fastasyncworldedit.core.util.OrdinalTables;
 import com.fastasyncworldedit.core.util.StringMan;
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.function.mask.AbstractExtentMask;
@@ -31,6 +32,11 @@ public boolean test(BlockVector3 vector) {
 
     public abstract boolean test(BlockState state);
 
+    @Override
+    public boolean[] toOrdinalTable() {
+        return OrdinalTables.of(this::test);
+    }
+
     @Override
     public String toString() {
         List<String> strings = new ArrayList<>();
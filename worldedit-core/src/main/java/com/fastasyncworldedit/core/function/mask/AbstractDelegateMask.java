@@ -35,4 +35,9 @@ public Mask copy() {
         return new AbstractDelegateMask(mask.copy());
     }
 
+    @Override
+    public boolean isOrderDependent() {
+        return mask.isOrderDependent();
+    }
+
 }
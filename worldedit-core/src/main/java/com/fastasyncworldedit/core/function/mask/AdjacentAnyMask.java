@@ -1,10 +1,13 @@
 package com.fastasyncworldedit.core.function.mask;
 
+import com.fastasyncworldedit.core.extent.filter.block.FilterBlock;
 import com.fastasyncworldedit.core.math.MutableBlockVector3;
 import com.sk89q.worldedit.function.mask.AbstractMask;
 import com.sk89q.worldedit.function.mask.Mask;
 import com.sk89q.worldedit.math.BlockVector3;
 
+import javax.annotation.Nullable;
+
 /**
  * Just an optimized version of the Adjacent Mask for single adjacency.
  */
@@ -12,10 +15,13 @@ public class AdjacentAnyMask extends AbstractMask implements ResettableMask {
 
     private final CachedMask mask;
     private final MutableBlockVector3 mutable;
+    @Nullable
+    private final boolean[] table;
 
     public AdjacentAnyMask(Mask mask) {
         this.mask = CachedMask.cache(mask);
         mutable = new MutableBlockVector3();
+        table = this.mask.getMask().toOrdinalTable();
     }
 
     @Override
@@ -27,11 +33,35 @@ public CachedMask getParentMask() {
         return mask;
     }
 
+    /**
+     * Get the result of the parent mask for every block state, see {@link Mask#toOrdinalTable()}.
+     */
+    @Nullable
+    protected boolean[] getParentTable() {
+        return table;
+    }
+
     @Override
     public boolean test(BlockVector3 v) {
+        if (table != null && v instanceof FilterBlock) {
+            return test((FilterBlock) v);
+        }
         return direction(v) != null;
     }
 
+    /**
+     * Test a block being filtered, reading the neighbours from its section rather than the world.
+     */
+    protected boolean test(FilterBlock block) {
+        int y = block.getBlockY();
+        return table[block.getNeighbourOrdinal(1, 0, 0)]
+                || table[block.getNeighbourOrdinal(-1, 0, 0)]
+                || table[block.getNeighbourOrdinal(0, 0, 1)]
+                || table[block.getNeighbourOrdinal(0, 0, -1)]
+                || y < 256 && table[block.getNeighbourOrdinal(0, 1, 0)]
+                || y > 0 && table[block.getNeighbourOrdinal(0, -1, 0)];
+    }
+
     public BlockVector3 direction(BlockVector3 v) {
         int x = v.getBlockX();
         int y = v.getBlockY();
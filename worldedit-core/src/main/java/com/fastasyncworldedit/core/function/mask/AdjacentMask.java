@@ -1,26 +1,35 @@
 package com.fastasyncworldedit.core.function.mask;
 
+import com.fastasyncworldedit.core.extent.filter.block.FilterBlock;
 import com.fastasyncworldedit.core.math.MutableBlockVector3;
 import com.sk89q.worldedit.function.mask.AbstractMask;
 import com.sk89q.worldedit.function.mask.Mask;
 import com.sk89q.worldedit.math.BlockVector3;
 
+import javax.annotation.Nullable;
+
 public class AdjacentMask extends AbstractMask {
 
     private final int min;
     private final int max;
     private final Mask mask;
     private final MutableBlockVector3 vector;
+    @Nullable
+    private final boolean[] table;
 
     public AdjacentMask(Mask mask, int requiredMin, int requiredMax) {
         this.mask = mask;
         this.min = requiredMin;
         this.max = requiredMax;
         this.vector = new MutableBlockVector3();
+        this.table = mask.toOrdinalTable();
     }
 
     @Override
     public boolean test(BlockVector3 bv) {
+        if (table != null && bv instanceof FilterBlock) {
+            return test((FilterBlock) bv);
+        }
         vector.setComponents(bv);
         double x = bv.getX();
         double y = bv.getY();
@@ -62,6 +71,32 @@ public boolean test(BlockVector3 bv) {
         return count >= min && count <= max;
     }
 
+    /**
+     * Test a block being filtered, reading the neighbours from its section rather than the world.
+     */
+    private boolean test(FilterBlock block) {
+        int count = 0;
+        if (table[block.getNeighbourOrdinal(1, 0, 0)] && ++count == min && max >= 8) {
+            return true;
+        }
+        if (table[block.getNeighbourOrdinal(-1, 0, 0)] && ++count == min && max >= 8) {
+            return true;
+        }
+        if (table[block.getNeighbourOrdinal(0, 1, 0)] && ++count == min && max >= 8) {
+            return true;
+        }
+        if (table[block.getNeighbourOrdinal(0, -1, 0)] && ++count == min && max >= 8) {
+            return true;
+        }
+        if (table[block.getNeighbourOrdinal(0, 0, 1)] && ++count == min && max >= 8) {
+            return true;
+        }
+        if (table[block.getNeighbourOrdinal(0, 0, -1)] && ++count == min && max >= 8) {
+            return true;
+        }
+        return count >= min && count <= max;
+    }
+
     @Override
     public Mask copy() {
         return new AdjacentMask(mask.copy(), min, max);
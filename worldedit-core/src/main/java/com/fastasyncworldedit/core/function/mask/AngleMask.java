@@ -1,10 +1,12 @@
 package com.fastasyncworldedit.core.function.mask;
 
+import com.fastasyncworldedit.core.extent.filter.block.FilterBlock;
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.function.mask.Mask;
 import com.sk89q.worldedit.function.mask.SolidBlockMask;
 import com.sk89q.worldedit.math.BlockVector3;
 
+import javax.annotation.Nullable;
 import java.util.Arrays;
 
 public class AngleMask extends SolidBlockMask implements ResettableMask {
@@ -13,6 +15,7 @@ public class AngleMask extends SolidBlockMask implements ResettableMask {
     public static double DIAGONAL_MOD = 1 / Math.sqrt(8);
 
     protected final CachedMask mask;
+    private final boolean[] solid;
     protected final double max;
     protected final double min;
     protected final boolean overlay;
@@ -22,7 +25,9 @@ public class AngleMask extends SolidBlockMask implements ResettableMask {
 
     public AngleMask(Extent extent, double min, double max, boolean overlay, int distance) {
         super(extent);
-        this.mask = new CachedMask(new SolidBlockMask(extent));
+        SolidBlockMask solidMask = new SolidBlockMask(extent);
+        this.mask = new CachedMask(solidMask);
+        this.solid = solidMask.toOrdinalTable();
         this.min = min;
         this.max = max;
         this.checkFirst = max >= (Math.tan(90 * (Math.PI / 180)));
@@ -126,6 +131,16 @@ protected boolean testSlope(Extent extent, int x, int y, int z) {
     }
 
     public boolean adjacentAir(BlockVector3 v) {
+        if (v instanceof FilterBlock) {
+            FilterBlock block = (FilterBlock) v;
+            int y = block.getBlockY();
+            return !solid[block.getNeighbourOrdinal(1, 0, 0)]
+                    || !solid[block.getNeighbourOrdinal(-1, 0, 0)]
+                    || !solid[block.getNeighbourOrdinal(0, 0, 1)]
+                    || !solid[block.getNeighbourOrdinal(0, 0, -1)]
+                    || y < 255 && !solid[block.getNeighbourOrdinal(0, 1, 0)]
+                    || y > 0 && !solid[block.getNeighbourOrdinal(0, -1, 0)];
+        }
         int x = v.getBlockX();
         int y = v.getBlockY();
         int z = v.getBlockZ();
@@ -160,7 +175,7 @@ public boolean test(BlockVector3 vector) {
             }
         }
 
-        if (!mask.test(x, y, z)) {
+        if (vector instanceof FilterBlock ? !solid[((FilterBlock) vector).getOrdinal()] : !mask.test(x, y, z)) {
             return false;
         }
         if (overlay) {
@@ -171,6 +186,15 @@ public boolean test(BlockVector3 vector) {
         return testSlope(getExtent(), x, y, z);
     }
 
+    /**
+     * The result depends on the surrounding terrain, not only on the block state.
+     */
+    @Nullable
+    @Override
+    public boolean[] toOrdinalTable() {
+        return null;
+    }
+
     @Override
     public Mask copy() {
         return new AngleMask(getExtent(), min, max, overlay, distance);
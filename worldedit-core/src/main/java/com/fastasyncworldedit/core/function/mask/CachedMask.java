@@ -71,6 +71,14 @@ public boolean test(int x, int y, int z) {
         }
     }
 
+    /**
+     * Results are cached when first tested, so testing positions earlier may return outdated results later.
+     */
+    @Override
+    public boolean isOrderDependent() {
+        return true;
+    }
+
     @Override
     public Mask copy() {
         return new CachedMask(getMask().copy());
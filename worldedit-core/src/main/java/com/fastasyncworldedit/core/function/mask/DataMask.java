@@ -43,4 +43,9 @@ public Mask copy() {
         return new DataMask(getExtent());
     }
 
+    @Override
+    public boolean isOrderDependent() {
+        return true;
+    }
+
 }
@@ -38,6 +38,11 @@ public Mask copy() {
         return new IdMask(getExtent());
     }
 
+    @Override
+    public boolean isOrderDependent() {
+        return true;
+    }
+
     @Override
     public boolean replacesAir() {
         return true;
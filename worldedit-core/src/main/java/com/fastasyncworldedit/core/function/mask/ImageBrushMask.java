@@ -118,4 +118,9 @@ public Mask copy() {
         );
     }
 
+    @Override
+    public boolean isOrderDependent() {
+        return true;
+    }
+
 }
@@ -47,4 +47,22 @@ public boolean replacesAir() {
         return mask.replacesAir();
     }
 
+    @Override
+    public boolean isOrderDependent() {
+        return mask.isOrderDependent();
+    }
+
+    @Nullable
+    @Override
+    public boolean[] toOrdinalTable() {
+        boolean[] table = mask.toOrdinalTable();
+        if (table == null) {
+            return null;
+        }
+        for (int i = 0; i < table.length; i++) {
+            table[i] = !table[i];
+        }
+        return table;
+    }
+
 }
@@ -72,6 +72,9 @@ public Function<Entry<Mask, Mask>, Mask> pairingFunction() {
 
     @Override
     public boolean test(BlockVector3 vector) {
+        if (isSampling()) {
+            return sample(vector, true);
+        }
         Mask[] masks = getMasksArray();
 
         for (Mask mask : masks) {
@@ -98,9 +101,29 @@ public Mask2D toMask2D() {
         return new MaskUnion2D(mask2dList);
     }
 
+    @Nullable
+    @Override
+    public boolean[] toOrdinalTable() {
+        boolean[] result = null;
+        for (Mask mask : getMasksArray()) {
+            boolean[] table = mask.toOrdinalTable();
+            if (table == null) {
+                return null;
+            }
+            if (result == null) {
+                result = table;
+            } else {
+                for (int i = 0; i < result.length; i++) {
+                    result[i] |= table[i];
+                }
+            }
+        }
+        return result;
+    }
+
     @Override
     public Mask copy() {
-        Set<Mask> masksCopy = masks.stream().map(Mask::copy).collect(Collectors.toSet());
+        Set<Mask> masksCopy = masks.stream().map(Mask::copy).collect(Collectors.toCollection(LinkedHashSet::new));
         return new MaskUnion(masksCopy);
     }
 
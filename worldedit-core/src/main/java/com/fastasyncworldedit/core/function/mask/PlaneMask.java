@@ -60,4 +60,9 @@ public Mask copy() {
         return new PlaneMask();
     }
 
+    @Override
+    public boolean isOrderDependent() {
+        return true;
+    }
+
 }
@@ -0,0 +1,81 @@
+package com.fastasyncworldedit.core.function.mask;
+
+import com.fastasyncworldedit.core.util.ParserProfile;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.function.mask.AbstractExtentMask;
+import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.function.mask.Mask2D;
+import com.sk89q.worldedit.math.BlockVector3;
+
+import javax.annotation.Nullable;
+
+/**
+ * A {@link ProfilingMask} for an {@link AbstractExtentMask}, so filters keep testing it against the extent they are
+ * applied to, see {@link AbstractExtentMask#test(Extent, BlockVector3)}. The wrapped mask shares the extent.
+ */
+public class ProfilingExtentMask extends AbstractExtentMask {
+
+    private final AbstractExtentMask mask;
+    private final ParserProfile profile;
+
+    public ProfilingExtentMask(AbstractExtentMask mask, ParserProfile profile) {
+        super(mask.getExtent());
+        this.mask = mask;
+        this.profile = profile;
+    }
+
+    public AbstractExtentMask getMask() {
+        return mask;
+    }
+
+    public ParserProfile getProfile() {
+        return profile;
+    }
+
+    @Override
+    public void setExtent(Extent extent) {
+        super.setExtent(extent);
+        // Called by the super constructor before the mask is set
+        if (mask != null) {
+            mask.setExtent(extent);
+        }
+    }
+
+    @Override
+    public boolean test(BlockVector3 vector) {
+        final long start = System.nanoTime();
+        final boolean result = mask.test(vector);
+        profile.add(System.nanoTime() - start, result);
+        return result;
+    }
+
+    @Override
+    public boolean test(Extent extent, BlockVector3 position) {
+        final long start = System.nanoTime();
+        final boolean result = mask.test(extent, position);
+        profile.add(System.nanoTime() - start, result);
+        return result;
+    }
+
+    @Override
+    public boolean replacesAir() {
+        return mask.replacesAir();
+    }
+
+    @Nullable
+    @Override
+    public Mask2D toMask2D() {
+        return mask.toMask2D();
+    }
+
+    @Override
+    public boolean isOrderDependent() {
+        return mask.isOrderDependent();
+    }
+
+    @Override
+    public Mask copy() {
+        return ProfilingMask.of(mask.copy(), profile);
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.fastasyncworldedit.core.function.mask;
+
+import com.fastasyncworldedit.core.util.ParserProfile;
+import com.sk89q.worldedit.function.mask.AbstractExtentMask;
+import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.math.BlockVector3;
+
+/**
+ * A mask recording its tests to a {@link ParserProfile}. Copies record to the same profile. Masks testing an extent
+ * are wrapped by a {@link ProfilingExtentMask} instead, see {@link #of(Mask, ParserProfile)}.
+ */
+public class ProfilingMask extends AbstractDelegateMask {
+
+    private final ParserProfile profile;
+
+    public ProfilingMask(Mask mask, ParserProfile profile) {
+        super(mask);
+        this.profile = profile;
+    }
+
+    /**
+     * Wrap a mask to record its tests, keeping the type of masks testing an extent.
+     *
+     * @param mask    the mask
+     * @param profile the profile to record to
+     * @return the wrapped mask
+     */
+    public static Mask of(Mask mask, ParserProfile profile) {
+        if (mask instanceof AbstractExtentMask) {
+            return new ProfilingExtentMask((AbstractExtentMask) mask, profile);
+        }
+        return new ProfilingMask(mask, profile);
+    }
+
+    public ParserProfile getProfile() {
+        return profile;
+    }
+
+    @Override
+    public boolean test(BlockVector3 vector) {
+        final long start = System.nanoTime();
+        final boolean result = getMask().test(vector);
+        profile.add(System.nanoTime() - start, result);
+        return result;
+    }
+
+    @Override
+    public boolean replacesAir() {
+        return getMask().replacesAir();
+    }
+
+    @Override
+    public Mask copy() {
+        return of(getMask().copy(), profile);
+    }
+
+}
@@ -50,4 +50,9 @@ public Mask copy() {
         return new RadiusMask(minSqr, maxSqr);
     }
 
+    @Override
+    public boolean isOrderDependent() {
+        return true;
+    }
+
 }
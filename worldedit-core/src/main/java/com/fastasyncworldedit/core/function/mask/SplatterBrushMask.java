@@ -53,4 +53,9 @@ public Mask copy() {
         return this;
     }
 
+    @Override
+    public boolean isOrderDependent() {
+        return true;
+    }
+
 }
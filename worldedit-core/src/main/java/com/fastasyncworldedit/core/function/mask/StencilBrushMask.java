@@ -107,4 +107,9 @@ public Mask copy() {
         );
     }
 
+    @Override
+    public boolean isOrderDependent() {
+        return true;
+    }
+
 }
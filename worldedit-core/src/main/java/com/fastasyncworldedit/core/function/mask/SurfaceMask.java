@@ -1,5 +1,6 @@
 package com.fastasyncworldedit.core.function.mask;
 
+import com.fastasyncworldedit.core.extent.filter.block.FilterBlock;
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.function.mask.AbstractExtentMask;
 import com.sk89q.worldedit.function.mask.Mask;
@@ -21,6 +22,11 @@ public static AbstractExtentMask getMask(Extent extent) {
 
     @Override
     public boolean test(BlockVector3 v) {
+        final boolean[] table = getParentTable();
+        if (table != null && v instanceof FilterBlock) {
+            FilterBlock block = (FilterBlock) v;
+            return !table[block.getOrdinal()] && test(block);
+        }
         return !getParentMask().test(v.getBlockX(), v.getBlockY(), v.getBlockZ()) && super.test(v);
     }
 
@@ -31,4 +31,9 @@ public Mask copy() {
         return new XAxisMask(null);
     }
 
+    @Override
+    public boolean isOrderDependent() {
+        return true;
+    }
+
 }
@@ -30,4 +30,9 @@ public Mask copy() {
         return new YAxisMask(null);
     }
 
+    @Override
+    public boolean isOrderDependent() {
+        return true;
+    }
+
 }
@@ -29,4 +29,9 @@ public Mask copy() {
         return new ZAxisMask();
     }
 
+    @Override
+    public boolean isOrderDependent() {
+        return true;
+    }
+
 }
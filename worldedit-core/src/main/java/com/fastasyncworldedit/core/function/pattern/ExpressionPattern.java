@@ -1,6 +1,9 @@
 package com.fastasyncworldedit.core.function.pattern;
 
+import com.fastasyncworldedit.core.util.SectionExpressions;
+import com.sk89q.worldedit.WorldEdit;
 import com.sk89q.worldedit.function.pattern.AbstractPattern;
+import com.sk89q.worldedit.function.pattern.Pattern;
 import com.sk89q.worldedit.internal.expression.EvaluationException;
 import com.sk89q.worldedit.internal.expression.Expression;
 import com.sk89q.worldedit.internal.expression.ExpressionException;
@@ -9,6 +12,9 @@
 import com.sk89q.worldedit.world.block.BaseBlock;
 import com.sk89q.worldedit.world.block.BlockState;
 import com.sk89q.worldedit.world.block.BlockTypes;
+import com.sk89q.worldedit.world.block.BlockTypesCache;
+
+import java.util.function.Supplier;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -31,6 +37,7 @@ public class ExpressionPattern extends AbstractPattern {
     public ExpressionPattern(String input) throws ExpressionException {
         checkNotNull(input);
         this.expression = Expression.compile(input, "x", "y", "z");
+        this.expression.optimize();
     }
 
     /**
@@ -60,4 +67,42 @@ public BaseBlock applyBlock(BlockVector3 vector) {
         }
     }
 
+    @Override
+    public Pattern fork() {
+        return new ExpressionPattern(expression.fork());
+    }
+
+    @Override
+    public boolean applySection(
+            char[] get, Supplier<char[]> set, int blockX, int blockY, int blockZ,
+            int minX, int minY, int minZ, int maxX, int maxY, int maxZ
+    ) {
+        if (!SectionExpressions.canEvaluate(expression)) {
+            return false;
+        }
+        final double[] values;
+        try {
+            values = SectionExpressions.evaluate(
+                    expression, blockX, blockY, blockZ, minX, minY, minZ, maxX, maxY, maxZ,
+                    WorldEdit.getInstance().getConfiguration().calculationTimeout
+            );
+        } catch (EvaluationException e) {
+            return false;
+        }
+        final BlockState[] states = BlockTypesCache.states;
+        final char[] setArr = set.get();
+        // Results which aren't block states (or are 0, which means no change) leave the block as it is
+        for (int y = minY; y <= maxY; y++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                for (int index = y << 8 | z << 4 | minX, end = index + maxX - minX; index <= end; index++) {
+                    final int ordinal = (int) values[index];
+                    if (ordinal > 0 && ordinal < states.length && states[ordinal] != null) {
+                        setArr[index] = (char) ordinal;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
 }
@@ -0,0 +1,54 @@
+package com.fastasyncworldedit.core.function.pattern;
+
+import com.fastasyncworldedit.core.util.ParserProfile;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.function.pattern.AbstractPattern;
+import com.sk89q.worldedit.function.pattern.Pattern;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BaseBlock;
+
+/**
+ * A pattern recording its applications to a {@link ParserProfile}. Forks record to the same profile.
+ */
+public class ProfilingPattern extends AbstractPattern {
+
+    private final Pattern pattern;
+    private final ParserProfile profile;
+
+    public ProfilingPattern(Pattern pattern, ParserProfile profile) {
+        this.pattern = pattern;
+        this.profile = profile;
+    }
+
+    public Pattern getPattern() {
+        return pattern;
+    }
+
+    public ParserProfile getProfile() {
+        return profile;
+    }
+
+    @Override
+    public BaseBlock applyBlock(BlockVector3 position) {
+        final long start = System.nanoTime();
+        final BaseBlock result = pattern.applyBlock(position);
+        profile.add(System.nanoTime() - start);
+        return result;
+    }
+
+    @Override
+    public boolean apply(Extent extent, BlockVector3 get, BlockVector3 set) throws WorldEditException {
+        final long start = System.nanoTime();
+        final boolean result = pattern.apply(extent, get, set);
+        profile.add(System.nanoTime() - start);
+        return result;
+    }
+
+    @Override
+    public Pattern fork() {
+        final Pattern fork = pattern.fork();
+        return fork == pattern ? this : new ProfilingPattern(fork, profile);
+    }
+
+}
@@ -0,0 +1,199 @@
+package com.fastasyncworldedit.core.history;
+
+import com.fastasyncworldedit.core.history.changeset.FaweStreamChangeSet;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.Region;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The index of a chunk indexed history file.
+ * <p>
+ * Such a file stores block changes as independently compressed parts which each hold the changes of a single chunk:
+ * <pre>
+ * [header]   byte FORMAT, byte mode, int origin x, int origin z
+ * [parts]... {int chunk x, int chunk z, int length, int count, int min x/y/z, int max x/y/z}
+ *            followed by the compressed changes (see PartCodec)
+ * </pre>
+ * so the changes within a region can be read without decompressing the whole history. Each part is indexed as it is
+ * written, so a file which wasn't closed (e.g. after a crash) is still readable up to its last complete part.
+ */
+public class ChunkIndex {
+
+    /**
+     * The first byte of a chunk indexed file. Regular history files start with a compression mode below this.
+     */
+    public static final int FORMAT = 101;
+
+    /**
+     * The offset of the first part.
+     */
+    public static final int DATA_OFFSET = 1 + FaweStreamChangeSet.HEADER_SIZE;
+
+    private static final int PART_HEADER_SIZE = 10 * Integer.BYTES;
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    public void add(Entry entry) {
+        entries.add(entry);
+    }
+
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Get the parts which may contain changes within any of the regions.
+     *
+     * @param regions the regions, or null for every part
+     */
+    public Iterator<Entry> select(@Nullable Region[] regions) {
+        if (regions == null) {
+            return entries.iterator();
+        }
+        List<Entry> selected = new ArrayList<>();
+        for (Entry entry : entries) {
+            for (Region region : regions) {
+                if (entry.intersects(region)) {
+                    selected.add(entry);
+                    break;
+                }
+            }
+        }
+        return selected.iterator();
+    }
+
+    /**
+     * Read the index of a chunk indexed file, from the headers of its parts. A trailing part which was only written in
+     * part is ignored.
+     */
+    public static ChunkIndex read(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            ChunkIndex index = new ChunkIndex();
+            long length = raf.length();
+            long offset = DATA_OFFSET;
+            byte[] header = new byte[PART_HEADER_SIZE];
+            while (offset + PART_HEADER_SIZE <= length) {
+                raf.seek(offset);
+                raf.readFully(header);
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(header));
+                Entry entry = new Entry(in.readInt(), in.readInt());
+                int partLength = in.readInt();
+                entry.count = in.readInt();
+                entry.minX = in.readInt();
+                entry.minY = in.readInt();
+                entry.minZ = in.readInt();
+                entry.maxX = in.readInt();
+                entry.maxY = in.readInt();
+                entry.maxZ = in.readInt();
+                offset += PART_HEADER_SIZE;
+                if (partLength < 0 || offset + partLength > length) {
+                    break;
+                }
+                entry.setLocation(offset, partLength);
+                index.add(entry);
+                offset += partLength;
+            }
+            return index;
+        }
+    }
+
+    /**
+     * A part of the file holding changes within one chunk.
+     */
+    public static final class Entry {
+
+        private final int chunkX;
+        private final int chunkZ;
+        private long offset;
+        private int length;
+        private int count;
+        private int minX = Integer.MAX_VALUE;
+        private int minY = Integer.MAX_VALUE;
+        private int minZ = Integer.MAX_VALUE;
+        private int maxX = Integer.MIN_VALUE;
+        private int maxY = Integer.MIN_VALUE;
+        private int maxZ = Integer.MIN_VALUE;
+
+        public Entry(int chunkX, int chunkZ) {
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+        }
+
+        /**
+         * Include a change in the bounds of this part.
+         */
+        public void add(int x, int y, int z) {
+            count++;
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            minZ = Math.min(minZ, z);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+            maxZ = Math.max(maxZ, z);
+        }
+
+        public void setLocation(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+
+        /**
+         * Write the header of this part, which precedes its compressed changes.
+         *
+         * @param length the length of the compressed changes
+         */
+        public void writeHeader(DataOutput out, int length) throws IOException {
+            out.writeInt(chunkX);
+            out.writeInt(chunkZ);
+            out.writeInt(length);
+            out.writeInt(count);
+            out.writeInt(minX);
+            out.writeInt(minY);
+            out.writeInt(minZ);
+            out.writeInt(maxX);
+            out.writeInt(maxY);
+            out.writeInt(maxZ);
+        }
+
+        public boolean intersects(Region region) {
+            BlockVector3 min = region.getMinimumPoint();
+            BlockVector3 max = region.getMaximumPoint();
+            return minX <= max.getBlockX() && maxX >= min.getBlockX()
+                    && minY <= max.getBlockY() && maxY >= min.getBlockY()
+                    && minZ <= max.getBlockZ() && maxZ >= min.getBlockZ();
+        }
+
+        public int getChunkX() {
+            return chunkX;
+        }
+
+        public int getChunkZ() {
+            return chunkZ;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+    }
+
+}
@@ -17,11 +17,16 @@
 import com.sk89q.worldedit.function.operation.ChangeSetExecutor;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.world.World;
+import it.unimi.dsi.fastutil.io.FastByteArrayOutputStream;
 
+import javax.annotation.Nullable;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
@@ -68,6 +73,18 @@ public class DiskStorageHistory extends FaweStreamChangeSet {
 
     private int index;
 
+    // Chunk indexed block data, see ChunkIndex
+    private static final int MAX_PART_BYTES = 1 << 20;
+    private final boolean writeIndexed = Settings.IMP.HISTORY.CHUNK_INDEX;
+    private Boolean indexed;
+    private ChunkIndex.Entry part;
+    private FastByteArrayOutputStream partBytes;
+    private FaweOutputStream partOS;
+    private FaweStreamPositionDelegate partPosDel;
+    // Compresses every part of this history, with the same buffers
+    private PartCodec partCodec;
+    private Region[] readRegions;
+
     public DiskStorageHistory(World world, UUID uuid) {
         super(world);
         init(uuid, world.getName());
@@ -141,7 +158,12 @@ public void undo(Player player, Region[] regions) {
             return;
         }
         EditSession session = toEditSession(player, regions);
-        session.setBlocks(this, ChangeSetExecutor.Type.UNDO);
+        setReadRegions(regions);
+        try {
+            session.setBlocks(this, ChangeSetExecutor.Type.UNDO);
+        } finally {
+            setReadRegions(null);
+        }
         deleteFiles();
     }
 
@@ -157,13 +179,46 @@ public void redo(Player player, Region[] regions) {
             return;
         }
         EditSession session = toEditSession(player, regions);
-        session.setBlocks(this, ChangeSetExecutor.Type.REDO);
+        setReadRegions(regions);
+        try {
+            session.setBlocks(this, ChangeSetExecutor.Type.REDO);
+        } finally {
+            setReadRegions(null);
+        }
     }
 
     public void redo(Player player) {
         redo(player, null);
     }
 
+    /**
+     * Only read the parts of chunk indexed history which may contain changes within the given regions. History
+     * stored as a single stream is always read in full.
+     *
+     * @param regions the regions to read, or null to read everything
+     */
+    public void setReadRegions(@Nullable Region[] regions) {
+        this.readRegions = regions;
+    }
+
+    /**
+     * If the block changes are stored in the chunk indexed format.
+     */
+    public boolean isChunkIndexed() {
+        if (indexed == null) {
+            if (!bdFile.exists()) {
+                return writeIndexed;
+            }
+            try (FileInputStream fis = new FileInputStream(bdFile)) {
+                indexed = fis.read() == ChunkIndex.FORMAT;
+            } catch (IOException e) {
+                e.printStackTrace();
+                return false;
+            }
+        }
+        return indexed;
+    }
+
     public UUID getUUID() {
         return uuid;
     }
@@ -231,6 +286,12 @@ public void close() throws IOException {
         synchronized (this) {
             try {
                 if (osBD != null) {
+                    if (writeIndexed) {
+                        finishPart();
+                        if (partCodec != null) {
+                            partCodec.close();
+                        }
+                    }
                     osBD.close();
                     osBD = null;
                 }
@@ -302,12 +363,72 @@ public FaweOutputStream getBlockOS(int x, int y, int z) throws IOException {
         synchronized (this) {
             bdFile.getParentFile().mkdirs();
             bdFile.createNewFile();
-            osBD = getCompressedOS(new FileOutputStream(bdFile));
-            writeHeader(osBD, x, y, z);
+            if (writeIndexed) {
+                // Only the parts are compressed, so they can be read independently
+                osBD = new FaweOutputStream(new BufferedOutputStream(
+                        new FileOutputStream(bdFile),
+                        Settings.IMP.HISTORY.BUFFER_SIZE
+                ));
+                osBD.write(ChunkIndex.FORMAT);
+                writeHeader(osBD, x, y, z);
+                indexed = true;
+            } else {
+                osBD = getCompressedOS(new FileOutputStream(bdFile));
+                writeHeader(osBD, x, y, z);
+            }
             return osBD;
         }
     }
 
+    @Override
+    public void add(int x, int y, int z, int combinedFrom, int combinedTo) {
+        if (!writeIndexed) {
+            super.add(x, y, z, combinedFrom, combinedTo);
+            return;
+        }
+        blockSize++;
+        try {
+            synchronized (this) {
+                getBlockOS(x, y, z);
+                int chunkX = x >> 4;
+                int chunkZ = z >> 4;
+                if (part == null || part.getChunkX() != chunkX || part.getChunkZ() != chunkZ
+                        || partBytes.length >= MAX_PART_BYTES) {
+                    finishPart();
+                    part = new ChunkIndex.Entry(chunkX, chunkZ);
+                    if (partBytes == null) {
+                        partBytes = new FastByteArrayOutputStream();
+                        partOS = new FaweOutputStream(partBytes);
+                        partCodec = new PartCodec(getCompressionLevel());
+                    }
+                    partPosDel = createPositionDelegate(getMode());
+                }
+                part.add(x, y, z);
+                partPosDel.write(partOS, x - getOriginX(), y, z - getOriginZ());
+                idDel.writeChange(partOS, combinedFrom, combinedTo);
+            }
+        } catch (Throwable e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Compress the changes of the current part and append them to the file, along with their index entry.
+     */
+    private void finishPart() throws IOException {
+        if (part == null) {
+            return;
+        }
+        partOS.flush();
+        int length = partCodec.compress(partBytes.array, partBytes.length);
+        part.writeHeader(osBD, length);
+        partCodec.writeTo(osBD);
+        // Complete parts stay readable if the history is never closed
+        osBD.flush();
+        partBytes.reset();
+        part = null;
+    }
+
     @Override
     public FaweOutputStream getBiomeOS() throws IOException {
         if (osBIO != null) {
@@ -370,11 +491,103 @@ public FaweInputStream getBlockIS() throws IOException {
         if (!bdFile.exists()) {
             return null;
         }
+        if (isChunkIndexed()) {
+            int mode;
+            try (FaweInputStream is = new FaweInputStream(new FileInputStream(bdFile))) {
+                is.skipFully(1);
+                // The stream delegates aren't set up here, every part gets its own
+                mode = is.read();
+                setOrigin(is.readInt(), is.readInt());
+            }
+            return new PartReader(ChunkIndex.read(bdFile).select(readRegions), mode).next();
+        }
         FaweInputStream is = MainUtil.getCompressedIS(new FileInputStream(bdFile));
         readHeader(is);
         return is;
     }
 
+    @Override
+    protected FaweInputStream getNextBlockIS(FaweInputStream previous) throws IOException {
+        if (previous instanceof PartInputStream) {
+            return ((PartInputStream) previous).reader.next();
+        }
+        return null;
+    }
+
+    @Override
+    protected FaweStreamPositionDelegate getPositionDelegate(FaweInputStream stream) {
+        if (stream instanceof PartInputStream) {
+            return ((PartInputStream) stream).posDel;
+        }
+        return super.getPositionDelegate(stream);
+    }
+
+    @Override
+    protected FaweStreamIdDelegate getIdDelegate(FaweInputStream stream) {
+        if (stream instanceof PartInputStream) {
+            return ((PartInputStream) stream).reader.idDel;
+        }
+        return super.getIdDelegate(stream);
+    }
+
+    /**
+     * Reads the selected parts of chunk indexed block data one after another. Each reader has its own delegates and
+     * buffers, so several readers of the same history (e.g. a rollback and an inspection) don't interfere.
+     */
+    private final class PartReader {
+
+        private final Iterator<ChunkIndex.Entry> parts;
+        private final int mode;
+        private final FaweStreamIdDelegate idDel;
+        private final PartCodec codec = new PartCodec(0);
+        private byte[] data = new byte[0];
+
+        private PartReader(Iterator<ChunkIndex.Entry> parts, int mode) {
+            this.parts = parts;
+            this.mode = mode;
+            this.idDel = createIdDelegate(mode);
+        }
+
+        /**
+         * Read the next of the selected parts.
+         *
+         * @return the part, or null if there are no more
+         */
+        @Nullable
+        private FaweInputStream next() throws IOException {
+            if (!parts.hasNext()) {
+                return null;
+            }
+            ChunkIndex.Entry entry = parts.next();
+            if (data.length < entry.getLength()) {
+                data = new byte[entry.getLength()];
+            }
+            try (RandomAccessFile raf = new RandomAccessFile(bdFile, "r")) {
+                raf.seek(entry.getOffset());
+                raf.readFully(data, 0, entry.getLength());
+            }
+            // Positions are delta encoded from the start of each part
+            return new PartInputStream(codec.decompress(data, entry.getLength()), this, createPositionDelegate(mode));
+        }
+
+    }
+
+    /**
+     * A part of chunk indexed block data, with the delegate to read its positions.
+     */
+    private static final class PartInputStream extends FaweInputStream {
+
+        private final PartReader reader;
+        private final FaweStreamPositionDelegate posDel;
+
+        private PartInputStream(FaweInputStream parent, PartReader reader, FaweStreamPositionDelegate posDel) {
+            super(parent);
+            this.reader = reader;
+            this.posDel = posDel;
+        }
+
+    }
+
     @Override
     public FaweInputStream getBiomeIS() throws IOException {
         if (!bioFile.exists()) {
@@ -418,7 +631,15 @@ public NBTInputStream getTileRemoveIS() throws IOException {
     @Override
     public SimpleChangeSetSummary summarize(Region region, boolean shallow) {
         if (bdFile.exists()) {
-            return super.summarize(region, shallow);
+            Region[] previous = readRegions;
+            if (region != null) {
+                readRegions = new Region[]{region};
+            }
+            try {
+                return super.summarize(region, shallow);
+            } finally {
+                readRegions = previous;
+            }
         }
         return null;
     }
@@ -426,7 +647,17 @@ public SimpleChangeSetSummary summarize(Region region, boolean shallow) {
     public IntPair readHeader() {
         int ox = getOriginX();
         int oz = getOriginZ();
-        if (ox == 0 && oz == 0 && bdFile.exists()) {
+        if (ox == 0 && oz == 0 && bdFile.exists() && isChunkIndexed()) {
+            // The header isn't compressed
+            try (FaweInputStream is = new FaweInputStream(new FileInputStream(bdFile))) {
+                is.skipFully(2);
+                ox = is.readInt();
+                oz = is.readInt();
+                setOrigin(ox, oz);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        } else if (ox == 0 && oz == 0 && bdFile.exists()) {
             try (FileInputStream fis = new FileInputStream(bdFile)) {
                 final FaweInputStream gis = MainUtil.getCompressedIS(fis);
                 // skip mode
@@ -0,0 +1,308 @@
+package com.fastasyncworldedit.core.history;
+
+import com.fastasyncworldedit.core.Fawe;
+import com.fastasyncworldedit.core.configuration.Settings;
+import com.fastasyncworldedit.core.internal.io.FaweInputStream;
+import com.fastasyncworldedit.core.internal.io.FaweOutputStream;
+import com.fastasyncworldedit.core.util.MainUtil;
+import com.fastasyncworldedit.core.util.MathMan;
+import com.fastasyncworldedit.core.util.TaskManager;
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictTrainer;
+import com.sk89q.worldedit.internal.util.LogManagerCompat;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Trained zstd dictionaries for history streams.
+ * <p>
+ * History records are small and very repetitive, so a dictionary trained on them compresses far better than a
+ * generic compressor. The first dictionary is trained from generated block records (the same on every server) and
+ * is retrained from the server's own history every {@link Settings.HISTORY#COMPRESSION_DICTIONARY_RETRAIN_DAYS}
+ * days. Every dictionary is kept, as compressed streams refer to the dictionary they were written with by its id.
+ */
+public final class HistoryDictionaries {
+
+    private static final Logger LOGGER = LogManagerCompat.getLogger();
+
+    private static final String EXTENSION = ".dict";
+    private static final int SAMPLE_SIZE = 4096;
+    private static final int DICTIONARY_SIZE = 112640;
+    // zstd recommends around 100 times the dictionary size of samples
+    private static final int MAX_SAMPLE_BYTES = DICTIONARY_SIZE * 100;
+    private static final int MIN_SAMPLE_BYTES = DICTIONARY_SIZE * 10;
+    private static final int MAX_BYTES_PER_FILE = SAMPLE_SIZE * 16;
+
+    private static final Map<Integer, byte[]> DICTIONARIES = new ConcurrentHashMap<>();
+    private static final AtomicBoolean TRAINING = new AtomicBoolean();
+    private static volatile boolean loaded;
+    private static volatile int currentId;
+    private static volatile long currentModified;
+
+    private HistoryDictionaries() {
+    }
+
+    public static File getFolder() {
+        return MainUtil.getFile(Fawe.imp().getDirectory(), Settings.IMP.PATHS.HISTORY_DICTIONARIES);
+    }
+
+    /**
+     * Get a dictionary by its id.
+     *
+     * @return the dictionary, or null if it doesn't exist
+     */
+    @Nullable
+    public static byte[] get(int id) {
+        if (!loaded) {
+            load();
+        }
+        return DICTIONARIES.get(id);
+    }
+
+    /**
+     * Get the id of the dictionary new streams should be written with. Starts training a dictionary in the
+     * background if there is none yet or the current one is due to be retrained.
+     *
+     * @return the dictionary id, or 0 if there is no dictionary yet
+     */
+    public static int getCurrentId() {
+        if (!loaded) {
+            load();
+        }
+        int id = currentId;
+        int retrainDays = Settings.IMP.HISTORY.COMPRESSION_DICTIONARY_RETRAIN_DAYS;
+        if (id == 0 || (retrainDays > 0
+                && System.currentTimeMillis() - currentModified > TimeUnit.DAYS.toMillis(retrainDays))) {
+            trainAsync();
+        }
+        return id;
+    }
+
+    /**
+     * (Re)load the dictionaries from disk. The most recently trained dictionary becomes the current one.
+     */
+    public static synchronized void load() {
+        File[] files = getFolder().listFiles((dir, name) -> name.endsWith(EXTENSION));
+        if (files != null) {
+            for (File file : files) {
+                try {
+                    byte[] dictionary = Files.readAllBytes(file.toPath());
+                    int id = (int) Zstd.getDictIdFromDict(dictionary);
+                    if (id == 0) {
+                        continue;
+                    }
+                    DICTIONARIES.put(id, dictionary);
+                    if (file.lastModified() >= currentModified) {
+                        currentId = id;
+                        currentModified = file.lastModified();
+                    }
+                } catch (IOException e) {
+                    LOGGER.error("Could not read history dictionary {}", file, e);
+                }
+            }
+        }
+        loaded = true;
+    }
+
+    /**
+     * Train a new dictionary in the background, unless one is already being trained.
+     */
+    public static void trainAsync() {
+        if (!TRAINING.compareAndSet(false, true)) {
+            return;
+        }
+        TaskManager.IMP.async(() -> {
+            try {
+                train();
+            } catch (Throwable e) {
+                LOGGER.error("Could not train a history dictionary", e);
+            } finally {
+                TRAINING.set(false);
+            }
+        });
+    }
+
+    /**
+     * Train a new dictionary from the existing history (topped up with generated records if there is too little)
+     * and make it the current one.
+     *
+     * @return the id of the new dictionary
+     */
+    public static synchronized int train() throws IOException {
+        ZstdDictTrainer trainer = new ZstdDictTrainer(MAX_SAMPLE_BYTES, DICTIONARY_SIZE);
+        int sampled = sampleHistory(trainer);
+        if (sampled < MIN_SAMPLE_BYTES) {
+            sampleGenerated(trainer, MIN_SAMPLE_BYTES - sampled);
+        }
+        byte[] dictionary = trainer.trainSamples();
+        int id = (int) Zstd.getDictIdFromDict(dictionary);
+        if (id == 0) {
+            throw new IOException("Trained dictionary has no id");
+        }
+        File folder = getFolder();
+        folder.mkdirs();
+        Path tmp = new File(folder, id + EXTENSION + ".tmp").toPath();
+        File file = new File(folder, id + EXTENSION);
+        Files.write(tmp, dictionary);
+        Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        DICTIONARIES.put(id, dictionary);
+        currentId = id;
+        currentModified = file.lastModified();
+        LOGGER.info("Trained history dictionary {} from {} bytes of history", id, sampled);
+        return id;
+    }
+
+    /**
+     * Add the decompressed block streams of the most recent history files as samples.
+     *
+     * @return the number of bytes sampled
+     */
+    private static int sampleHistory(ZstdDictTrainer trainer) {
+        File history = MainUtil.getFile(Fawe.imp().getDirectory(), Settings.IMP.PATHS.HISTORY);
+        if (!history.exists()) {
+            return 0;
+        }
+        List<File> files;
+        try (Stream<Path> paths = Files.walk(history.toPath())) {
+            files = paths
+                    .filter(path -> path.toString().endsWith(".bd"))
+                    .map(Path::toFile)
+                    .sorted(Comparator.comparingLong(File::lastModified).reversed())
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            LOGGER.error("Could not list history files", e);
+            return 0;
+        }
+        int sampled = 0;
+        byte[] buffer = new byte[MAX_BYTES_PER_FILE];
+        for (File file : files) {
+            int read = 0;
+            try {
+                if (isChunkIndexed(file)) {
+                    PartCodec codec = new PartCodec(0);
+                    try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                        for (ChunkIndex.Entry entry : ChunkIndex.read(file).getEntries()) {
+                            if (read >= buffer.length) {
+                                break;
+                            }
+                            byte[] data = new byte[entry.getLength()];
+                            raf.seek(entry.getOffset());
+                            raf.readFully(data);
+                            read = readFully(codec.decompress(data, data.length), buffer, read);
+                        }
+                    }
+                } else {
+                    try (FaweInputStream is = MainUtil.getCompressedIS(new FileInputStream(file))) {
+                        read = readFully(is, buffer, read);
+                    }
+                }
+            } catch (IOException e) {
+                // Unreadable (or still being written), try the next one
+                continue;
+            }
+            for (int i = 0; i < read; i += SAMPLE_SIZE) {
+                byte[] sample = Arrays.copyOfRange(buffer, i, Math.min(read, i + SAMPLE_SIZE));
+                if (!trainer.addSample(sample)) {
+                    return sampled;
+                }
+                sampled += sample.length;
+            }
+        }
+        return sampled;
+    }
+
+    private static boolean isChunkIndexed(File file) throws IOException {
+        try (FileInputStream fis = new FileInputStream(file)) {
+            return fis.read() == ChunkIndex.FORMAT;
+        }
+    }
+
+    private static int readFully(InputStream is, byte[] buffer, int offset) throws IOException {
+        int n;
+        while (offset < buffer.length && (n = is.read(buffer, offset, buffer.length - offset)) > 0) {
+            offset += n;
+        }
+        return offset;
+    }
+
+    /**
+     * Add generated block streams resembling typical edits (fills, brushes and sparse replaces) as samples.
+     */
+    private static void sampleGenerated(ZstdDictTrainer trainer, int bytes) throws IOException {
+        // Fixed seed, so servers without history share the same default dictionary
+        Random random = new Random(0x46415745L);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(SAMPLE_SIZE + 64);
+        for (int added = 0; added < bytes; ) {
+            baos.reset();
+            FaweOutputStream out = new FaweOutputStream(baos);
+            int[] palette = new int[1 + random.nextInt(6)];
+            for (int i = 0; i < palette.length; i++) {
+                palette[i] = random.nextInt(4) == 0 ? 1 : random.nextInt(16384);
+            }
+            int kind = random.nextInt(3);
+            boolean small = random.nextBoolean();
+            while (baos.size() < SAMPLE_SIZE) {
+                int dx;
+                int dy;
+                int dz;
+                switch (kind) {
+                    case 0: // Cuboid fill, mostly unit steps along one axis
+                        dx = 0;
+                        dy = random.nextInt(16) == 0 ? -random.nextInt(64) : 1;
+                        dz = dy < 0 ? 1 : 0;
+                        break;
+                    case 1: // Brush, short hops in every direction
+                        dx = random.nextInt(5) - 2;
+                        dy = random.nextInt(5) - 2;
+                        dz = random.nextInt(5) - 2;
+                        break;
+                    default: // Sparse replace
+                        dx = random.nextInt(32) - 16;
+                        dy = random.nextInt(32) - 16;
+                        dz = random.nextInt(32) - 16;
+                        break;
+                }
+                if (small) {
+                    out.write((byte) dy);
+                    out.write((byte) dx);
+                    out.write((byte) dz);
+                    out.write(MathMan.pair16((dx >> 8) & 0xF, (dz >> 8) & 0xF));
+                } else {
+                    out.write(dx & 0xFF);
+                    out.write((dx >> 8) & 0xFF);
+                    out.write(dz & 0xFF);
+                    out.write((dz >> 8) & 0xFF);
+                    out.write((byte) dy);
+                }
+                out.writeVarInt(palette[random.nextInt(palette.length)]);
+                out.writeVarInt(palette[random.nextInt(palette.length)]);
+            }
+            out.flush();
+            if (!trainer.addSample(baos.toByteArray())) {
+                return;
+            }
+            added += baos.size();
+        }
+    }
+
+}
@@ -0,0 +1,218 @@
+package com.fastasyncworldedit.core.history;
+
+import com.fastasyncworldedit.core.Fawe;
+import com.fastasyncworldedit.core.history.change.MutableBlockChange;
+import com.fastasyncworldedit.core.queue.implementation.ParallelQueueExtent;
+import com.fastasyncworldedit.core.util.ExtentTraverser;
+import com.fastasyncworldedit.core.util.MathMan;
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.entity.Player;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.function.operation.ChangeSetExecutor;
+import com.sk89q.worldedit.history.UndoContext;
+import com.sk89q.worldedit.history.change.Change;
+import com.sk89q.worldedit.internal.util.LogManagerCompat;
+import com.sk89q.worldedit.math.BlockVector2;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.world.block.BlockState;
+import it.unimi.dsi.fastutil.ints.Int2LongMap;
+import it.unimi.dsi.fastutil.ints.Int2LongOpenHashMap;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rolls back (or restores) many edits at once.
+ * <p>
+ * The history of the edits is read concurrently and the block changes are merged per chunk, keeping for every block
+ * the change that would have been applied last had the edits been undone one after another. The result is written
+ * chunk by chunk through a {@link ParallelQueueExtent}, so each chunk is loaded and sent once, however many of the
+ * edits touched it.
+ */
+public class ParallelRollback {
+
+    private static final Logger LOGGER = LogManagerCompat.getLogger();
+
+    private final boolean restore;
+    private final Region[] regions;
+    private final List<DiskStorageHistory> edits = new ArrayList<>();
+    private final Map<Long, ChunkChanges> chunks = new ConcurrentHashMap<>();
+
+    /**
+     * @param restore true to redo the edits, false to undo them
+     * @param regions the regions to restrict the rollback to, or null
+     */
+    public ParallelRollback(boolean restore, @Nullable Region[] regions) {
+        this.restore = restore;
+        this.regions = regions;
+    }
+
+    /**
+     * Add an edit. Edits are applied in the order they are added (i.e. newest first for a rollback).
+     */
+    public void add(DiskStorageHistory edit) {
+        edits.add(edit);
+    }
+
+    /**
+     * Apply the edits. Undone edits are deleted from disk afterwards.
+     * <p>
+     * If the history of any edit can't be read, nothing is changed and no edit is deleted.
+     *
+     * @return the number of blocks changed
+     * @throws RuntimeException if the history of an edit could not be read
+     */
+    public int apply(Player player) {
+        if (edits.isEmpty()) {
+            return 0;
+        }
+        read();
+
+        EditSession editSession = edits.get(0).toEditSession(player, regions);
+        Extent extent = editSession.getBypassAll();
+        ParallelQueueExtent parallel = new ExtentTraverser<>(extent).findAndGet(ParallelQueueExtent.class);
+        Set<BlockVector2> chunkSet = new HashSet<>(chunks.size());
+        for (long pair : chunks.keySet()) {
+            chunkSet.add(BlockVector2.at(MathMan.unpairIntX(pair), MathMan.unpairIntY(pair)));
+        }
+        LongAdder changed = new LongAdder();
+        if (parallel != null) {
+            parallel.forEachChunk(chunkSet, (queue, pair) -> changed.add(write(queue, pair)));
+        } else {
+            for (BlockVector2 chunk : chunkSet) {
+                changed.add(write(extent, MathMan.pairInt(chunk.getX(), chunk.getZ())));
+            }
+        }
+        chunks.clear();
+
+        // Tiles, entities and biomes are rare, so they are still replayed edit by edit
+        UndoContext context = new UndoContext();
+        context.setExtent(extent);
+        ChangeSetExecutor.Type type = restore ? ChangeSetExecutor.Type.REDO : ChangeSetExecutor.Type.UNDO;
+        for (DiskStorageHistory edit : edits) {
+            Iterator<Change> iterator = edit.getIterator(restore, false);
+            while (iterator.hasNext()) {
+                type.perform(iterator.next(), context);
+            }
+        }
+        editSession.flushQueue();
+
+        if (!restore) {
+            for (DiskStorageHistory edit : edits) {
+                edit.deleteFiles();
+            }
+        }
+        return changed.intValue();
+    }
+
+    /**
+     * Read the block changes of all edits concurrently.
+     *
+     * @throws RuntimeException if any edit could not be read, after all of them finished reading
+     */
+    private void read() {
+        List<ForkJoinTask> tasks = new ArrayList<>(edits.size());
+        ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < edits.size(); i++) {
+            final int sequence = i;
+            final DiskStorageHistory edit = edits.get(i);
+            tasks.add(Fawe.get().getQueueHandler().submit(() -> {
+                try {
+                    read(edit, sequence);
+                } catch (Throwable e) {
+                    LOGGER.error("Could not read the history of edit {}", edit.getBDFile(), e);
+                    failures.add(e);
+                }
+            }));
+        }
+        for (ForkJoinTask task : tasks) {
+            task.quietlyJoin();
+        }
+        if (!failures.isEmpty()) {
+            // Applying the rest would leave a partial rollback, and deleting the edits would lose their history
+            chunks.clear();
+            RuntimeException exception = new RuntimeException("Could not read the history of " + failures.size()
+                    + " of " + edits.size() + " edits", failures.poll());
+            failures.forEach(exception::addSuppressed);
+            throw exception;
+        }
+    }
+
+    private void read(DiskStorageHistory edit, int sequence) throws Exception {
+        // The last part of an edit which is still being written may only be buffered
+        if (!edit.isClosed()) {
+            edit.close();
+        }
+        edit.setReadRegions(regions);
+        try {
+            Iterator<MutableBlockChange> iterator = edit.getBlockIterator(restore);
+            long lastPair = Long.MAX_VALUE;
+            ChunkChanges last = null;
+            while (iterator.hasNext()) {
+                MutableBlockChange change = iterator.next();
+                long pair = MathMan.pairInt(change.x >> 4, change.z >> 4);
+                if (pair != lastPair) {
+                    lastPair = pair;
+                    last = chunks.computeIfAbsent(pair, key -> new ChunkChanges());
+                }
+                last.put(change.y << 8 | (change.x & 15) << 4 | (change.z & 15), sequence, change.ordinal);
+            }
+        } finally {
+            edit.setReadRegions(null);
+        }
+    }
+
+    private int write(Extent extent, long pair) {
+        ChunkChanges changes = chunks.get(pair);
+        if (changes == null) {
+            return 0;
+        }
+        int bx = MathMan.unpairIntX(pair) << 4;
+        int bz = MathMan.unpairIntY(pair) << 4;
+        int count = 0;
+        for (Int2LongMap.Entry entry : changes.changes.int2LongEntrySet()) {
+            int packed = entry.getIntKey();
+            BlockState state = BlockState.getFromOrdinal((int) entry.getLongValue());
+            if (extent.setBlock(bx + ((packed >> 4) & 15), packed >> 8, bz + (packed & 15), state)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The final state of every changed block within a chunk.
+     */
+    private static final class ChunkChanges {
+
+        // chunk local position (y << 8 | x << 4 | z) -> sequence << 32 | ordinal
+        private final Int2LongOpenHashMap changes = new Int2LongOpenHashMap();
+
+        private ChunkChanges() {
+            changes.defaultReturnValue(Long.MIN_VALUE);
+        }
+
+        /**
+         * Record a change, unless an edit applied later already changed the block. Changes of the same edit are
+         * read in order, so a later one replaces an earlier one.
+         */
+        synchronized void put(int position, int sequence, int ordinal) {
+            long previous = changes.get(position);
+            if (previous == Long.MIN_VALUE || (int) (previous >> 32) <= sequence) {
+                changes.put(position, (long) sequence << 32 | (ordinal & 0xFFFFFFFFL));
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,251 @@
+package com.fastasyncworldedit.core.history;
+
+import com.fastasyncworldedit.core.configuration.Settings;
+import com.fastasyncworldedit.core.internal.io.FaweInputStream;
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDecompressCtx;
+import com.github.luben.zstd.ZstdException;
+import it.unimi.dsi.fastutil.io.FastByteArrayInputStream;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Compresses the parts of chunk indexed history (see {@link ChunkIndex}) and decompresses them again. Parts are small
+ * and held in memory anyway, so each is compressed in one go, and a writer or reader keeps its compressor and buffers
+ * for all the parts it handles instead of setting up a compressed stream for every part:
+ * <pre>
+ * byte codec, [int dictionary id, only for ZSTD_DICTIONARY], int decompressed length, compressed changes
+ * </pre>
+ * Like the compressed streams, levels 1-6 use LZ4, levels 7-9 zstd, and a trained dictionary (see
+ * {@link HistoryDictionaries}) is used when enabled. Not thread safe, every writer and reader needs its own.
+ */
+public final class PartCodec implements Closeable {
+
+    private static final int STORED = 0;
+    private static final int LZ4 = 1;
+    private static final int ZSTD = 2;
+    private static final int ZSTD_DICTIONARY = 3;
+
+    /**
+     * Parts are around a megabyte at most, anything much larger is a corrupt length
+     */
+    private static final int MAX_LENGTH = 1 << 26;
+    private static final int HEADER_SIZE = 1 + 2 * Integer.BYTES;
+
+    private static final LZ4Factory LZ4_FACTORY = LZ4Factory.fastestInstance();
+    /**
+     * zstd decompression contexts are native, and readers may stop reading at any part without closing anything, so
+     * the contexts are kept per thread rather than per reader
+     */
+    private static final ThreadLocal<ZstdDecompressor> ZSTD_DECOMPRESSORS = ThreadLocal.withInitial(ZstdDecompressor::new);
+
+    private final int codec;
+    private final int zstdLevel;
+    private final int dictionaryId;
+    private LZ4Compressor lz4Compressor;
+    private LZ4SafeDecompressor lz4Decompressor;
+    private ZstdCompressCtx zstdCompressor;
+    private byte[] buffer = new byte[0];
+    private int size;
+
+    /**
+     * @param level the compression level (0-9) to compress with, it doesn't matter for decompressing
+     */
+    public PartCodec(int level) {
+        int dictionaryId = 0;
+        if (level > 0 && Settings.IMP.HISTORY.COMPRESSION_DICTIONARY) {
+            int id = HistoryDictionaries.getCurrentId();
+            if (id != 0 && HistoryDictionaries.get(id) != null) {
+                dictionaryId = id;
+            }
+        }
+        this.dictionaryId = dictionaryId;
+        this.zstdLevel = Math.min(19, 1 + level * 2);
+        if (level <= 0) {
+            codec = STORED;
+        } else if (dictionaryId != 0) {
+            codec = ZSTD_DICTIONARY;
+        } else if (level > 6) {
+            codec = ZSTD;
+        } else {
+            codec = LZ4;
+            lz4Compressor = level > 3 ? LZ4_FACTORY.highCompressor() : LZ4_FACTORY.fastCompressor();
+        }
+    }
+
+    /**
+     * Compress the changes of a part. The result is kept until the next part is compressed, see
+     * {@link #writeTo(OutputStream)}.
+     *
+     * @param data   the changes
+     * @param length the number of bytes of changes
+     * @return the size of the compressed part
+     */
+    public int compress(byte[] data, int length) {
+        int bound;
+        switch (codec) {
+            case LZ4:
+                bound = lz4Compressor.maxCompressedLength(length);
+                break;
+            case ZSTD:
+            case ZSTD_DICTIONARY:
+                bound = (int) Zstd.compressBound(length);
+                break;
+            default:
+                bound = length;
+        }
+        if (buffer.length < HEADER_SIZE + bound) {
+            buffer = new byte[HEADER_SIZE + bound];
+        }
+        int offset = 0;
+        buffer[offset++] = (byte) codec;
+        if (codec == ZSTD_DICTIONARY) {
+            offset = writeInt(buffer, offset, dictionaryId);
+        }
+        offset = writeInt(buffer, offset, length);
+        switch (codec) {
+            case LZ4:
+                offset += lz4Compressor.compress(data, 0, length, buffer, offset, bound);
+                break;
+            case ZSTD:
+            case ZSTD_DICTIONARY:
+                if (zstdCompressor == null) {
+                    zstdCompressor = new ZstdCompressCtx();
+                    zstdCompressor.setLevel(zstdLevel);
+                    if (codec == ZSTD_DICTIONARY) {
+                        zstdCompressor.loadDict(HistoryDictionaries.get(dictionaryId));
+                    }
+                }
+                offset += zstdCompressor.compressByteArray(buffer, offset, bound, data, 0, length);
+                break;
+            default:
+                System.arraycopy(data, 0, buffer, offset, length);
+                offset += length;
+        }
+        return size = offset;
+    }
+
+    /**
+     * Write the part compressed last.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buffer, 0, size);
+    }
+
+    /**
+     * Decompress a part. The returned stream reads from a buffer which is reused for the next part.
+     *
+     * @param part   the compressed part
+     * @param length the size of the compressed part
+     * @return the changes of the part
+     */
+    public FaweInputStream decompress(byte[] part, int length) throws IOException {
+        int partCodec = length > 0 ? part[0] : -1;
+        if (length < (partCodec == ZSTD_DICTIONARY ? HEADER_SIZE : HEADER_SIZE - Integer.BYTES)) {
+            throw new IOException("Truncated history part");
+        }
+        int offset = 1;
+        int id = 0;
+        if (partCodec == ZSTD_DICTIONARY) {
+            id = readInt(part, offset);
+            offset += Integer.BYTES;
+        }
+        int decompressed = readInt(part, offset);
+        offset += Integer.BYTES;
+        if (decompressed < 0 || decompressed > MAX_LENGTH) {
+            throw new IOException("Corrupt history part");
+        }
+        if (buffer.length < decompressed) {
+            buffer = new byte[decompressed];
+        }
+        try {
+            switch (partCodec) {
+                case STORED:
+                    if (length - offset != decompressed) {
+                        throw new IOException("Corrupt history part");
+                    }
+                    System.arraycopy(part, offset, buffer, 0, decompressed);
+                    break;
+                case LZ4:
+                    if (lz4Decompressor == null) {
+                        lz4Decompressor = LZ4_FACTORY.safeDecompressor();
+                    }
+                    if (lz4Decompressor.decompress(part, offset, length - offset, buffer, 0, decompressed) != decompressed) {
+                        throw new IOException("Corrupt history part");
+                    }
+                    break;
+                case ZSTD:
+                case ZSTD_DICTIONARY:
+                    ZstdDecompressCtx decompressor = getZstdDecompressor(id);
+                    if (decompressor.decompressByteArray(buffer, 0, decompressed, part, offset, length - offset)
+                            != decompressed) {
+                        throw new IOException("Corrupt history part");
+                    }
+                    break;
+                default:
+                    throw new IOException("Unknown history part codec " + partCodec);
+            }
+        } catch (LZ4Exception | ZstdException e) {
+            throw new IOException("Corrupt history part", e);
+        }
+        return new FaweInputStream(new FastByteArrayInputStream(buffer, 0, decompressed));
+    }
+
+    private static ZstdDecompressCtx getZstdDecompressor(int id) throws IOException {
+        ZstdDecompressor decompressor = ZSTD_DECOMPRESSORS.get();
+        if (decompressor.context == null || decompressor.dictionaryId != id) {
+            byte[] dictionary = id == 0 ? null : HistoryDictionaries.get(id);
+            if (id != 0 && dictionary == null) {
+                throw new IOException("Missing history compression dictionary " + id);
+            }
+            if (decompressor.context != null) {
+                decompressor.context.close();
+            }
+            decompressor.context = new ZstdDecompressCtx();
+            if (dictionary != null) {
+                decompressor.context.loadDict(dictionary);
+            }
+            decompressor.dictionaryId = id;
+        }
+        return decompressor.context;
+    }
+
+    /**
+     * Release the native zstd context of the compressor, if any. Not needed for decompressing.
+     */
+    @Override
+    public void close() {
+        if (zstdCompressor != null) {
+            zstdCompressor.close();
+            zstdCompressor = null;
+        }
+    }
+
+    private static int writeInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >> 24);
+        buffer[offset + 1] = (byte) (value >> 16);
+        buffer[offset + 2] = (byte) (value >> 8);
+        buffer[offset + 3] = (byte) value;
+        return offset + Integer.BYTES;
+    }
+
+    private static int readInt(byte[] buffer, int offset) {
+        return (buffer[offset] & 0xFF) << 24 | (buffer[offset + 1] & 0xFF) << 16 | (buffer[offset + 2] & 0xFF) << 8
+                | buffer[offset + 3] & 0xFF;
+    }
+
+    private static final class ZstdDecompressor {
+
+        private ZstdDecompressCtx context;
+        private int dictionaryId;
+
+    }
+
+}
@@ -102,6 +102,13 @@ public void close() throws IOException {
         }
     }
 
+    /**
+     * If the change set is closed, i.e. everything written to it has been flushed.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
     public abstract void add(int x, int y, int z, int combinedFrom, int combinedTo);
 
     @Override
@@ -1,6 +1,7 @@
 package com.fastasyncworldedit.core.history.changeset;
 
 import com.fastasyncworldedit.core.configuration.Settings;
+import com.fastasyncworldedit.core.history.HistoryDictionaries;
 import com.fastasyncworldedit.core.history.change.MutableBiomeChange;
 import com.fastasyncworldedit.core.history.change.MutableBlockChange;
 import com.fastasyncworldedit.core.history.change.MutableEntityChange;
@@ -85,8 +86,16 @@ public interface FaweStreamIdDelegate {
 
     protected void setupStreamDelegates(int mode) {
         this.mode = mode;
+        idDel = createIdDelegate(mode);
+        posDel = createPositionDelegate(mode);
+    }
+
+    /**
+     * Create a delegate to read and write the block ids of changes in the given mode.
+     */
+    protected FaweStreamIdDelegate createIdDelegate(int mode) {
         if (mode == 3 || mode == 4) {
-            idDel = new FaweStreamIdDelegate() {
+            return new FaweStreamIdDelegate() {
                 @Override
                 public void writeChange(FaweOutputStream stream, int combinedFrom, int combinedTo) throws IOException {
                     stream.writeVarInt(combinedFrom);
@@ -111,7 +120,7 @@ public void readCombined(FaweInputStream is, MutableFullBlockChange change) thro
                 }
             };
         } else {
-            idDel = new FaweStreamIdDelegate() {
+            return new FaweStreamIdDelegate() {
                 @Override
                 public void writeChange(FaweOutputStream stream, int combinedFrom, int to) throws IOException {
                     stream.writeVarInt(combinedFrom);
@@ -131,8 +140,15 @@ public void readCombined(FaweInputStream is, MutableFullBlockChange change) thro
                 }
             };
         }
+    }
+
+    /**
+     * Create a delegate to read and write the positions of changes in the given mode. Positions are delta encoded, so
+     * every independently readable part of a block stream needs its own delegate.
+     */
+    protected FaweStreamPositionDelegate createPositionDelegate(int mode) {
         if (mode == 1 || mode == 4) { // small
-            posDel = new FaweStreamPositionDelegate() {
+            return new FaweStreamPositionDelegate() {
                 int lx;
                 int ly;
                 int lz;
@@ -173,7 +189,7 @@ public int readZ(FaweInputStream in) throws IOException {
                 }
             };
         } else {
-            posDel = new FaweStreamPositionDelegate() {
+            return new FaweStreamPositionDelegate() {
                 final byte[] buffer = new byte[5];
                 int lx;
                 int ly;
@@ -224,6 +240,32 @@ public void writeHeader(OutputStream os, int x, int y, int z) throws IOException
         setupStreamDelegates(mode);
     }
 
+    public int getMode() {
+        return mode;
+    }
+
+    public int getCompressionLevel() {
+        return compression;
+    }
+
+    /**
+     * Get the delegate to read the positions of the given block stream with.
+     *
+     * @param stream a stream from {@link #getBlockIS()} or {@link #getNextBlockIS(FaweInputStream)}
+     */
+    protected FaweStreamPositionDelegate getPositionDelegate(FaweInputStream stream) {
+        return posDel;
+    }
+
+    /**
+     * Get the delegate to read the block ids of the given block stream with.
+     *
+     * @param stream a stream from {@link #getBlockIS()} or {@link #getNextBlockIS(FaweInputStream)}
+     */
+    protected FaweStreamIdDelegate getIdDelegate(FaweInputStream stream) {
+        return idDel;
+    }
+
     public void readHeader(InputStream is) throws IOException {
         // skip mode
         int mode = is.read();
@@ -235,6 +277,13 @@ public void readHeader(InputStream is) throws IOException {
     }
 
     public FaweOutputStream getCompressedOS(OutputStream os) throws IOException {
+        if (compression > 0 && Settings.IMP.HISTORY.COMPRESSION_DICTIONARY) {
+            int id = HistoryDictionaries.getCurrentId();
+            byte[] dictionary = id == 0 ? null : HistoryDictionaries.get(id);
+            if (dictionary != null) {
+                return MainUtil.getCompressedOS(os, compression, id, dictionary);
+            }
+        }
         return MainUtil.getCompressedOS(os, compression);
     }
 
@@ -289,6 +338,28 @@ public long getSizeOnDisk() {
 
     public abstract NBTInputStream getTileRemoveIS() throws IOException;
 
+    /**
+     * Get the next part of the block stream, for formats which store block changes in several independently
+     * compressed parts. Called once the previous part (initially the one from {@link #getBlockIS()}) is exhausted.
+     * Parts whose positions are encoded relative to each other need their own delegates, see
+     * {@link #getPositionDelegate(FaweInputStream)}.
+     *
+     * @param previous the exhausted part
+     * @return the next part, or null if there are no more
+     */
+    protected FaweInputStream getNextBlockIS(FaweInputStream previous) throws IOException {
+        return null;
+    }
+
+    private FaweInputStream nextBlockIS(FaweInputStream previous) {
+        try {
+            return getNextBlockIS(previous);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
     protected int blockSize;
     public int entityCreateSize;
     public int entityRemoveSize;
@@ -408,24 +479,29 @@ public Iterator<MutableBlockChange> getBlockIterator(final boolean dir) throws I
         }
         final MutableBlockChange change = new MutableBlockChange(0, 0, 0, BlockTypes.AIR.getInternalId());
         return new Iterator<MutableBlockChange>() {
+            private FaweInputStream stream = is;
             private MutableBlockChange last = read();
 
             public MutableBlockChange read() {
-                try {
-                    change.x = posDel.readX(is) + originX;
-                    change.y = posDel.readY(is);
-                    change.z = posDel.readZ(is) + originZ;
-                    idDel.readCombined(is, change, dir);
-                    return change;
-                } catch (EOFException ignored) {
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    e.printStackTrace();
-                }
-                try {
-                    is.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
+                while (stream != null) {
+                    try {
+                        FaweStreamPositionDelegate posDel = getPositionDelegate(stream);
+                        change.x = posDel.readX(stream) + originX;
+                        change.y = posDel.readY(stream);
+                        change.z = posDel.readZ(stream) + originZ;
+                        getIdDelegate(stream).readCombined(stream, change, dir);
+                        return change;
+                    } catch (EOFException ignored) {
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                        e.printStackTrace();
+                    }
+                    try {
+                        stream.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                    stream = nextBlockIS(stream);
                 }
                 return null;
             }
@@ -522,27 +598,35 @@ public Iterator<Change> getIterator(BlockBag blockBag, int mode, boolean redo) {
 
     public Iterator<MutableFullBlockChange> getFullBlockIterator(BlockBag blockBag, int inventory, final boolean dir) throws
             IOException {
-        final FaweInputStream is = new FaweInputStream(getBlockIS());
+        final FaweInputStream is = getBlockIS();
+        if (is == null) {
+            return Collections.emptyIterator();
+        }
         final MutableFullBlockChange change = new MutableFullBlockChange(blockBag, inventory, dir);
         return new Iterator<MutableFullBlockChange>() {
+            private FaweInputStream stream = is;
             private MutableFullBlockChange last = read();
 
             public MutableFullBlockChange read() {
-                try {
-                    change.x = posDel.readX(is) + originX;
-                    change.y = posDel.readY(is);
-                    change.z = posDel.readZ(is) + originZ;
-                    idDel.readCombined(is, change);
-                    return change;
-                } catch (EOFException ignored) {
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    e.printStackTrace();
-                }
-                try {
-                    is.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
+                while (stream != null) {
+                    try {
+                        FaweStreamPositionDelegate posDel = getPositionDelegate(stream);
+                        change.x = posDel.readX(stream) + originX;
+                        change.y = posDel.readY(stream);
+                        change.z = posDel.readZ(stream) + originZ;
+                        getIdDelegate(stream).readCombined(stream, change);
+                        return change;
+                    } catch (EOFException ignored) {
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                        e.printStackTrace();
+                    }
+                    try {
+                        stream.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                    stream = nextBlockIS(stream);
                 }
                 return null;
             }
@@ -669,6 +753,17 @@ public void remove() {
 
     @Override
     public Iterator<Change> getIterator(final boolean dir) {
+        return getIterator(dir, true);
+    }
+
+    /**
+     * Get an iterator over the changes.
+     *
+     * @param dir    true for the forward (redo) direction
+     * @param blocks if block changes are included, otherwise they can be read separately with
+     *               {@link #getBlockIterator(boolean)}
+     */
+    public Iterator<Change> getIterator(final boolean dir, final boolean blocks) {
         try {
             close();
             final Iterator<MutableTileChange> tileCreate = getTileIterator(getTileCreateIS(), true);
@@ -677,7 +772,7 @@ public Iterator<Change> getIterator(final boolean dir) {
             final Iterator<MutableEntityChange> entityCreate = getEntityIterator(getEntityCreateIS(), true);
             final Iterator<MutableEntityChange> entityRemove = getEntityIterator(getEntityRemoveIS(), false);
 
-            final Iterator<MutableBlockChange> blockChange = getBlockIterator(dir);
+            final Iterator<MutableBlockChange> blockChange = blocks ? getBlockIterator(dir) : Collections.emptyIterator();
 
             final Iterator<MutableBiomeChange> biomeChange = getBiomeIterator(dir);
 
@@ -744,21 +839,43 @@ public SimpleChangeSetSummary summarize(Region region, boolean shallow) {
         if (region != null && !region.contains(ox, oz)) {
             return summary;
         }
-        try (FaweInputStream fis = getBlockIS()) {
-            if (!shallow) {
+        FaweInputStream fis = null;
+        try {
+            fis = getBlockIS();
+            if (!shallow && fis != null) {
                 int amount = (Settings.IMP.HISTORY.BUFFER_SIZE - HEADER_SIZE) / 9;
                 MutableFullBlockChange change = new MutableFullBlockChange(null, 0, false);
                 for (int i = 0; i < amount; i++) {
-                    int x = posDel.readX(fis) + ox;
-                    int y = posDel.readY(fis);
-                    int z = posDel.readZ(fis) + ox;
-                    idDel.readCombined(fis, change);
+                    int x;
+                    int z;
+                    try {
+                        FaweStreamPositionDelegate posDel = getPositionDelegate(fis);
+                        x = posDel.readX(fis) + ox;
+                        int y = posDel.readY(fis);
+                        z = posDel.readZ(fis) + ox;
+                        getIdDelegate(fis).readCombined(fis, change);
+                    } catch (EOFException e) {
+                        // Continue with the next part, if the stream has several
+                        fis.close();
+                        if ((fis = getNextBlockIS(fis)) == null) {
+                            break;
+                        }
+                        i--;
+                        continue;
+                    }
                     summary.add(x, z, change.to);
                 }
             }
-        } catch (EOFException ignored) {
         } catch (IOException e) {
             e.printStackTrace();
+        } finally {
+            if (fis != null) {
+                try {
+                    fis.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
         }
         return summary;
     }
@@ -0,0 +1,53 @@
+package com.fastasyncworldedit.core.math.random;
+
+/**
+ * A random generating a value from a hash of the seed and the position, so the same seed always generates the same
+ * values regardless of the order (or the threads) the positions are visited in.
+ */
+public class SeededRandom implements SimpleRandom {
+
+    private static final long X_MULTIPLIER = 0x9E3779B97F4A7C15L;
+    private static final long Y_MULTIPLIER = 0xC2B2AE3D27D4EB4FL;
+    private static final long Z_MULTIPLIER = 0x165667B19E3779F9L;
+
+    private final long seed;
+
+    /**
+     * Create a new SeededRandom.
+     *
+     * @param seed the seed
+     */
+    public SeededRandom(long seed) {
+        this.seed = seed;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    @Override
+    public double nextDouble(int x, int y, int z) {
+        return (hash(x, y, z) >>> 11) * 0x1.0p-53;
+    }
+
+    @Override
+    public int nextInt(int x, int y, int z, int bound) {
+        return (int) (((hash(x, y, z) >>> 32) * bound) >>> 32);
+    }
+
+    @Override
+    public boolean isIndependent() {
+        return true;
+    }
+
+    /**
+     * The mixing function of {@link java.util.SplittableRandom} applied to the seed and the position.
+     */
+    private long hash(int x, int y, int z) {
+        long hash = seed + x * X_MULTIPLIER + y * Y_MULTIPLIER + z * Z_MULTIPLIER;
+        hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+        return hash ^ (hash >>> 31);
+    }
+
+}
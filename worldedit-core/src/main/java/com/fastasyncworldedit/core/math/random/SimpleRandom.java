@@ -28,4 +28,24 @@ default int nextInt(int x, int y, int z, int bound) {
         return (int) (val * bound);
     }
 
+    /**
+     * Whether the values generated for different positions are independent of each other, unlike e.g. noise, where
+     * neighbouring positions generate similar values. Collections may then map values to their entries in any order.
+     *
+     * @return true if the values of different positions are independent
+     */
+    default boolean isIndependent() {
+        return false;
+    }
+
+    /**
+     * Get a random for use by another thread. Randoms with state (i.e. streams) must return a new random with its own
+     * stream.
+     *
+     * @return a random for another thread, or this if it is thread safe
+     */
+    default SimpleRandom fork() {
+        return this;
+    }
+
 }
@@ -2,9 +2,21 @@
 
 import java.util.SplittableRandom;
 
+/**
+ * A random ignoring the position, generating a stream of values. The stream isn't thread safe, so each thread uses its
+ * own fork, see {@link #fork()}.
+ */
 public class TrueRandom implements SimpleRandom {
 
-    private final SplittableRandom random = new SplittableRandom();
+    private final SplittableRandom random;
+
+    public TrueRandom() {
+        this(new SplittableRandom());
+    }
+
+    private TrueRandom(SplittableRandom random) {
+        this.random = random;
+    }
 
     @Override
     public double nextDouble(int x, int y, int z) {
@@ -16,4 +28,14 @@ public int nextInt(int x, int y, int z, int len) {
         return random.nextInt(len);
     }
 
+    @Override
+    public boolean isIndependent() {
+        return true;
+    }
+
+    @Override
+    public synchronized SimpleRandom fork() {
+        return new TrueRandom(random.split());
+    }
+
 }
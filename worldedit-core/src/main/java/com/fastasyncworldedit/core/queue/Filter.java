@@ -5,6 +5,7 @@
 import org.jetbrains.annotations.Range;
 
 import javax.annotation.Nullable;
+import java.util.function.Supplier;
 
 /**
  * A filter is an interface used for setting blocks.
@@ -49,6 +50,26 @@ default boolean appliesLayer(IChunk chunk, int layer) {
     default void applyBlock(FilterBlock block) {
     }
 
+    /**
+     * Apply the filter to a cuboid within a chunk section at once, instead of calling
+     * {@link #applyBlock(FilterBlock)} for each block. Filters which only look at (and set) block ordinals can
+     * implement this to work on the section arrays directly.<br>
+     * The arrays are indexed by {@code x | z << 4 | y << 8} and the bounds are inclusive section coordinates.
+     *
+     * @param get    the ordinals of the section, must not be modified
+     * @param set    supplies the ordinals to set. Only get it when changing a block, as it creates the section
+     * @param blockX the x coordinate of the first block of the section
+     * @param blockY the y coordinate of the first block of the section
+     * @param blockZ the z coordinate of the first block of the section
+     * @return false if the section wasn't filtered, in which case {@link #applyBlock(FilterBlock)} is used
+     */
+    default boolean applySection(
+            char[] get, Supplier<char[]> set, int blockX, int blockY, int blockZ,
+            int minX, int minY, int minZ, int maxX, int maxY, int maxZ
+    ) {
+        return false;
+    }
+
     /**
      * Do something with the IChunk after block filtering.
      *
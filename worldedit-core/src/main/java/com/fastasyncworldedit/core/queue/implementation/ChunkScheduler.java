@@ -0,0 +1,191 @@
+package com.fastasyncworldedit.core.queue.implementation;
+
+import com.fastasyncworldedit.core.util.MathMan;
+import com.sk89q.worldedit.internal.util.LogManagerCompat;
+import com.sk89q.worldedit.math.BlockVector2;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out the chunks of an operation to a fixed number of workers.
+ * <p>
+ * The chunks are pre-partitioned into spatially coherent batches (at most one region file, 32x32 chunks, each) so that
+ * neighbouring chunks are processed by the same worker. Every worker owns a contiguous run of batches which it claims
+ * without locking, and steals batches from the other workers once its own run is exhausted.
+ */
+public class ChunkScheduler {
+
+    private static final Logger LOGGER = LogManagerCompat.getLogger();
+
+    /**
+     * Batches are at most 2^5 = 32 chunks wide, i.e. one region file
+     */
+    private static final int MAX_BATCH_SHIFT = 5;
+    /**
+     * Aim for at least this many batches per worker so there is something left to steal at the tail
+     */
+    private static final int BATCHES_PER_WORKER = 4;
+
+    private final long[][] batches;
+    private final AtomicInteger[] cursors;
+    private final int[] ends;
+    private final int workers;
+
+    // Per batch metrics, each slot is only written by the worker that claimed the batch
+    private final long[] batchNanos;
+    private final int[] batchWorker;
+    private final AtomicInteger stolen = new AtomicInteger();
+
+    /**
+     * Partition the given chunks between a number of workers.
+     *
+     * @param chunks  the chunk positions to schedule
+     * @param workers the number of workers that will call {@link #next(int)}
+     */
+    public ChunkScheduler(Collection<BlockVector2> chunks, int workers) {
+        this.workers = Math.max(1, workers);
+        this.batches = partition(chunks, this.workers);
+        this.batchNanos = new long[batches.length];
+        this.batchWorker = new int[batches.length];
+        this.cursors = new AtomicInteger[this.workers];
+        this.ends = new int[this.workers];
+        // Give each worker a contiguous (and thus spatially coherent) run of batches
+        for (int i = 0; i < this.workers; i++) {
+            int start = (int) ((long) batches.length * i / this.workers);
+            cursors[i] = new AtomicInteger(start);
+            ends[i] = (int) ((long) batches.length * (i + 1) / this.workers);
+        }
+    }
+
+    private static long[][] partition(Collection<BlockVector2> chunks, int workers) {
+        int shift = MAX_BATCH_SHIFT;
+        Long2ObjectOpenHashMap<LongArrayList> grouped;
+        while (true) {
+            grouped = new Long2ObjectOpenHashMap<>();
+            for (BlockVector2 chunk : chunks) {
+                long key = MathMan.pairInt(chunk.getX() >> shift, chunk.getZ() >> shift);
+                LongArrayList batch = grouped.get(key);
+                if (batch == null) {
+                    grouped.put(key, batch = new LongArrayList());
+                }
+                batch.add(MathMan.pairInt(chunk.getX(), chunk.getZ()));
+            }
+            // Smaller batches leave more room to balance the tail, but lose some locality
+            if (shift == 0 || grouped.size() >= workers * BATCHES_PER_WORKER) {
+                break;
+            }
+            shift--;
+        }
+        long[] keys = grouped.keySet().toLongArray();
+        // Sorting the packed keys orders batches by x, then z
+        LongArrays.parallelQuickSort(keys);
+        long[][] result = new long[keys.length][];
+        for (int i = 0; i < keys.length; i++) {
+            long[] batch = grouped.get(keys[i]).toLongArray();
+            LongArrays.quickSort(batch);
+            result[i] = batch;
+        }
+        return result;
+    }
+
+    /**
+     * Claim the next batch for a worker, stealing from other workers if its own batches are exhausted.
+     *
+     * @param worker the index of the worker [0, workers)
+     * @return the index of the claimed batch, or -1 if there is no work left
+     */
+    public int next(int worker) {
+        for (int i = 0; i < workers; i++) {
+            int victim = (worker + i) % workers;
+            AtomicInteger cursor = cursors[victim];
+            // Cheap check before the atomic increment so exhausted workers aren't hammered
+            if (cursor.get() >= ends[victim]) {
+                continue;
+            }
+            int index = cursor.getAndIncrement();
+            if (index < ends[victim]) {
+                if (victim != worker) {
+                    stolen.incrementAndGet();
+                }
+                batchWorker[index] = worker;
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get the packed chunk positions of a batch, see {@link MathMan#unpairIntX(long)} and
+     * {@link MathMan#unpairIntY(long)}.
+     */
+    public long[] getBatch(int index) {
+        return batches[index];
+    }
+
+    /**
+     * Record the time a worker spent processing a batch.
+     */
+    public void complete(int index, long nanos) {
+        batchNanos[index] = nanos;
+    }
+
+    public int getBatchCount() {
+        return batches.length;
+    }
+
+    public int getStolenCount() {
+        return stolen.get();
+    }
+
+    public long getBatchNanos(int index) {
+        return batchNanos[index];
+    }
+
+    public int getBatchWorker(int index) {
+        return batchWorker[index];
+    }
+
+    /**
+     * Log a summary of the batch metrics. Should only be called once all workers have finished.
+     */
+    public void debug() {
+        if (batches.length == 0) {
+            return;
+        }
+        long total = 0;
+        long max = 0;
+        int maxIndex = 0;
+        long[] workerNanos = new long[workers];
+        for (int i = 0; i < batches.length; i++) {
+            long nanos = batchNanos[i];
+            total += nanos;
+            workerNanos[batchWorker[i]] += nanos;
+            if (nanos > max) {
+                max = nanos;
+                maxIndex = i;
+            }
+        }
+        long busiest = 0;
+        for (long nanos : workerNanos) {
+            busiest = Math.max(busiest, nanos);
+        }
+        LOGGER.info(
+                "Processed {} batches on {} workers ({} stolen): avg {}ms, slowest {}ms ({} chunks), busiest worker {}ms, " +
+                        "total {}ms",
+                batches.length,
+                workers,
+                stolen.get(),
+                total / batches.length / 1_000_000d,
+                max / 1_000_000d,
+                batches[maxIndex].length,
+                busiest / 1_000_000d,
+                total / 1_000_000d
+        );
+    }
+
+}
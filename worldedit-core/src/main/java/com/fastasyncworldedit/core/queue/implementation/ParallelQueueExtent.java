@@ -11,11 +11,14 @@
 import com.fastasyncworldedit.core.extent.filter.block.ChunkFilterBlock;
 import com.fastasyncworldedit.core.extent.processor.BatchProcessorHolder;
 import com.fastasyncworldedit.core.function.mask.BlockMaskBuilder;
+import com.fastasyncworldedit.core.math.MutableBlockVector3;
 import com.fastasyncworldedit.core.queue.Filter;
 import com.fastasyncworldedit.core.queue.IQueueChunk;
 import com.fastasyncworldedit.core.queue.IQueueExtent;
 import com.fastasyncworldedit.core.queue.IQueueWrapper;
+import com.fastasyncworldedit.core.util.MathMan;
 import com.sk89q.worldedit.MaxChangedBlocksException;
+import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.extent.clipboard.Clipboard;
 import com.sk89q.worldedit.function.mask.BlockMask;
 import com.sk89q.worldedit.function.mask.ExistingBlockMask;
@@ -31,11 +34,17 @@
 import com.sk89q.worldedit.world.block.BlockState;
 import com.sk89q.worldedit.world.block.BlockStateHolder;
 import com.sk89q.worldedit.world.block.BlockType;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ObjLongConsumer;
 import java.util.stream.IntStream;
 
 public class ParallelQueueExtent extends PassthroughExtent implements IQueueWrapper {
@@ -95,6 +104,8 @@ public <T extends Filter> T apply(Region region, T filter, boolean full) {
             BlockVector2 pos = chunksIter.next();
             getExtent().apply(null, filter, region, pos.getX(), pos.getZ(), full);
         } else {
+            // Partition the chunks into batches which the workers claim and steal without locking
+            final ChunkScheduler scheduler = new ChunkScheduler(chunks, size);
             final ForkJoinTask[] tasks = IntStream.range(0, size).mapToObj(i -> handler.submit(() -> {
                 try {
                     final Filter newFilter = filter.fork();
@@ -104,19 +115,15 @@ public <T extends Filter> T apply(Region region, T filter, boolean full) {
                     synchronized (queue) {
                         ChunkFilterBlock block = null;
 
-                        while (true) {
-                            // Get the next chunk posWeakChunk
-                            final int chunkX;
-                            final int chunkZ;
-                            synchronized (chunksIter) {
-                                if (!chunksIter.hasNext()) {
-                                    break;
-                                }
-                                final BlockVector2 pos = chunksIter.next();
-                                chunkX = pos.getX();
-                                chunkZ = pos.getZ();
+                        int batch;
+                        while ((batch = scheduler.next(i)) != -1) {
+                            final long start = System.nanoTime();
+                            for (long pos : scheduler.getBatch(batch)) {
+                                block = queue.apply(block, newFilter, region, MathMan.unpairIntX(pos),
+                                        MathMan.unpairIntY(pos), full
+                                );
                             }
-                            block = queue.apply(block, newFilter, region, chunkX, chunkZ, full);
+                            scheduler.complete(batch, System.nanoTime() - start);
                         }
                         queue.flush();
                     }
@@ -131,6 +138,9 @@ public <T extends Filter> T apply(Region region, T filter, boolean full) {
                 }
             }
             filter.join();
+            if (Settings.IMP.ENABLED_COMPONENTS.DEBUG) {
+                scheduler.debug();
+            }
         }
         return filter;
     }
@@ -160,15 +170,122 @@ public int setBlocks(Region region, Pattern pattern) throws MaxChangedBlocksExce
     @Override
     public int setBlocks(Set<BlockVector3> vset, Pattern pattern) {
         if (vset instanceof Region) {
-            this.changes = setBlocks((Region) vset, pattern);
+            return this.changes = setBlocks((Region) vset, pattern);
+        }
+        // Group the positions by chunk so each chunk is only ever touched by one thread
+        final Long2ObjectOpenHashMap<IntArrayList> buckets = new Long2ObjectOpenHashMap<>();
+        final Set<BlockVector2> chunks = new HashSet<>();
+        long lastPair = Long.MAX_VALUE;
+        IntArrayList lastBucket = null;
+        for (BlockVector3 pos : vset) {
+            final int x = pos.getBlockX();
+            final int z = pos.getBlockZ();
+            final long pair = MathMan.pairInt(x >> 4, z >> 4);
+            if (pair != lastPair) {
+                lastPair = pair;
+                lastBucket = buckets.get(pair);
+                if (lastBucket == null) {
+                    buckets.put(pair, lastBucket = new IntArrayList());
+                    chunks.add(BlockVector2.at(x >> 4, z >> 4));
+                }
+            }
+            // y in the upper bits (sign preserved), chunk-local x/z in the lower byte
+            lastBucket.add(pos.getBlockY() << 8 | (x & 15) << 4 | (z & 15));
+        }
+
+        final int size = Math.min(chunks.size(), Settings.IMP.QUEUE.PARALLEL_THREADS);
+        if (size <= 1) {
+            for (Long2ObjectMap.Entry<IntArrayList> entry : buckets.long2ObjectEntrySet()) {
+                this.changes += setBucket(this, pattern, entry.getLongKey(), entry.getValue());
+            }
+            return this.changes;
+        }
+        final ChunkScheduler scheduler = new ChunkScheduler(chunks, size);
+        final LongAdder changed = new LongAdder();
+        final ForkJoinTask[] tasks = IntStream.range(0, size).mapToObj(i -> handler.submit(() -> {
+            try {
+                final Pattern newPattern = pattern.fork();
+                final IQueueExtent<IQueueChunk> queue = getNewQueue();
+                queue.setFastMode(fastmode);
+                synchronized (queue) {
+                    int batch;
+                    while ((batch = scheduler.next(i)) != -1) {
+                        final long start = System.nanoTime();
+                        for (long pair : scheduler.getBatch(batch)) {
+                            changed.add(setBucket(queue, newPattern, pair, buckets.get(pair)));
+                        }
+                        scheduler.complete(batch, System.nanoTime() - start);
+                    }
+                    queue.flush();
+                }
+            } catch (Throwable e) {
+                e.printStackTrace();
+            }
+        })).toArray(ForkJoinTask[]::new);
+        for (ForkJoinTask task : tasks) {
+            if (task != null) {
+                task.quietlyJoin();
+            }
+        }
+        pattern.join();
+        return this.changes += changed.intValue();
+    }
+
+    /**
+     * Run a task for each of the given chunks in parallel. A chunk is only visited by one thread, which writes to its
+     * own queue, so every chunk is loaded and submitted once.
+     *
+     * @param chunks the chunks to visit
+     * @param task   called with the extent to write to and the chunk, as {@link MathMan#pairInt(int, int)}
+     */
+    public void forEachChunk(Set<BlockVector2> chunks, ObjLongConsumer<Extent> task) {
+        final int size = Math.min(chunks.size(), Settings.IMP.QUEUE.PARALLEL_THREADS);
+        if (size <= 1) {
+            for (BlockVector2 chunk : chunks) {
+                task.accept(this, MathMan.pairInt(chunk.getX(), chunk.getZ()));
+            }
+            return;
         }
-        // TODO optimize parallel
-        for (BlockVector3 blockVector3 : vset) {
-            if (pattern.apply(this, blockVector3, blockVector3)) {
-                this.changes++;
+        final ChunkScheduler scheduler = new ChunkScheduler(chunks, size);
+        final ForkJoinTask[] tasks = IntStream.range(0, size).mapToObj(i -> handler.submit(() -> {
+            try {
+                final IQueueExtent<IQueueChunk> queue = getNewQueue();
+                queue.setFastMode(fastmode);
+                synchronized (queue) {
+                    int batch;
+                    while ((batch = scheduler.next(i)) != -1) {
+                        final long start = System.nanoTime();
+                        for (long pair : scheduler.getBatch(batch)) {
+                            task.accept(queue, pair);
+                        }
+                        scheduler.complete(batch, System.nanoTime() - start);
+                    }
+                    queue.flush();
+                }
+            } catch (Throwable e) {
+                e.printStackTrace();
+            }
+        })).toArray(ForkJoinTask[]::new);
+        for (ForkJoinTask forkJoinTask : tasks) {
+            if (forkJoinTask != null) {
+                forkJoinTask.quietlyJoin();
+            }
+        }
+    }
+
+    private static int setBucket(Extent extent, Pattern pattern, long pair, IntArrayList bucket) {
+        final int bx = MathMan.unpairIntX(pair) << 4;
+        final int bz = MathMan.unpairIntY(pair) << 4;
+        final MutableBlockVector3 mutable = new MutableBlockVector3();
+        int count = 0;
+        for (int i = 0, size = bucket.size(); i < size; i++) {
+            final int packed = bucket.getInt(i);
+            mutable.setComponents(bx + ((packed >> 4) & 15), packed >> 8, bz + (packed & 15));
+            if (pattern.apply(extent, mutable, mutable)) {
+                count++;
             }
         }
-        return this.changes;
+        return count;
     }
 
     @Override
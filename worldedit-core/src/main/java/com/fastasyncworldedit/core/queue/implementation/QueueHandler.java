@@ -18,18 +18,16 @@
 import com.google.common.util.concurrent.Futures;
 import com.sk89q.worldedit.world.World;
 
+import javax.annotation.Nullable;
 import java.lang.ref.WeakReference;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
-import java.util.Queue;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.Future;
-import java.util.concurrent.FutureTask;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.function.Supplier;
 
@@ -42,8 +40,13 @@ public abstract class QueueHandler implements Trimable, Runnable {
     private final ForkJoinPool forkJoinPoolPrimary = new ForkJoinPool();
     private final ForkJoinPool forkJoinPoolSecondary = new ForkJoinPool();
     private final ThreadPoolExecutor blockingExecutor = FaweCache.IMP.newBlockingExecutor();
-    private final ConcurrentLinkedQueue<FutureTask> syncTasks = new ConcurrentLinkedQueue<>();
-    private final ConcurrentLinkedQueue<FutureTask> syncWhenFree = new ConcurrentLinkedQueue<>();
+    private final SyncTaskScheduler syncTasks = new SyncTaskScheduler();
+    private final SyncTaskScheduler syncWhenFree = new SyncTaskScheduler();
+    /**
+     * The owner main thread time of tasks submitted from the current thread is accounted to
+     */
+    private final ThreadLocal<String> owner = new ThreadLocal<>();
+    private final TargetSizeController targetSizeController = new TargetSizeController();
 
     private final Map<World, WeakReference<IChunkCache<IChunkGet>>> chunkGetCache = new HashMap<>();
     private final CleanableThreadLocal<IQueueExtent<IQueueChunk>> queuePool = new CleanableThreadLocal<>(QueueHandler.this::create);
@@ -73,9 +76,9 @@ public void run() {
                 // Preloader trim
             }
 
-            operate(syncTasks, last, currentAllocate);
+            syncTasks.operate(currentAllocate);
         } else if (!syncWhenFree.isEmpty()) {
-            operate(syncWhenFree, last, getAllocate());
+            syncWhenFree.operate(getAllocate());
         } else {
             // trim??
         }
@@ -85,6 +88,19 @@ public boolean isUnderutilized() {
         return blockingExecutor.getActiveCount() < blockingExecutor.getMaximumPoolSize();
     }
 
+    /**
+     * Get the number of chunks a queue should hold before it starts submitting them.
+     *
+     * @return the target size, see {@link TargetSizeController}
+     */
+    public int getTargetSize() {
+        return targetSizeController.getTargetSize(!isUnderutilized());
+    }
+
+    public TargetSizeController getTargetSizeController() {
+        return targetSizeController;
+    }
+
     private long getAllocate() {
         long now = System.currentTimeMillis();
         targetTPS = 18 - Math.max(Settings.IMP.QUEUE.EXTRA_TIME_MS * 0.05, 0);
@@ -100,32 +116,6 @@ private long getAllocate() {
         return allocate - absDiff;
     }
 
-    private void operate(Queue<FutureTask> queue, long start, long currentAllocate) {
-        boolean wait = false;
-        do {
-            Runnable task = queue.poll();
-            if (task == null) {
-                if (wait) {
-                    synchronized (syncTasks) {
-                        try {
-                            queue.wait(1);
-                        } catch (InterruptedException e) {
-                            e.printStackTrace();
-                        }
-                    }
-                    task = queue.poll();
-                    wait = false;
-                } else {
-                    break;
-                }
-            }
-            if (task != null) {
-                task.run();
-                wait = true;
-            }
-        } while (System.currentTimeMillis() - start < currentAllocate);
-    }
-
     public <T extends Future<T>> void complete(Future<T> task) {
         try {
             while (task != null) {
@@ -136,26 +126,106 @@ public <T extends Future<T>> void complete(Future<T> task) {
         }
     }
 
+    /**
+     * Set the owner that main thread time of sync tasks submitted from the current thread (and from tasks it
+     * submits to this handler) is accounted to.
+     *
+     * @param owner the owner, e.g. a player name, or null
+     * @return the previous owner
+     */
+    @Nullable
+    public String setOwner(@Nullable String owner) {
+        String previous = this.owner.get();
+        if (owner == null) {
+            this.owner.remove();
+        } else {
+            this.owner.set(owner);
+        }
+        return previous;
+    }
+
+    @Nullable
+    public String getOwner() {
+        return owner.get();
+    }
+
+    /**
+     * Get the main thread usage of each owner of sync tasks.
+     */
+    public Map<String, SyncTaskScheduler.Usage> getSyncUsage() {
+        return syncTasks.getUsage();
+    }
+
+    private Runnable withOwner(Runnable run) {
+        final String current = owner.get();
+        if (current == null) {
+            return run;
+        }
+        return () -> {
+            String previous = setOwner(current);
+            try {
+                run.run();
+            } finally {
+                setOwner(previous);
+            }
+        };
+    }
+
+    private <T> Callable<T> withOwner(Callable<T> call) {
+        final String current = owner.get();
+        if (current == null) {
+            return call;
+        }
+        return () -> {
+            String previous = setOwner(current);
+            try {
+                return call.call();
+            } finally {
+                setOwner(previous);
+            }
+        };
+    }
+
     public <T> Future<T> async(Runnable run, T value) {
-        return forkJoinPoolSecondary.submit(run, value);
+        return forkJoinPoolSecondary.submit(withOwner(run), value);
     }
 
     public Future<?> async(Runnable run) {
-        return forkJoinPoolSecondary.submit(run);
+        return forkJoinPoolSecondary.submit(withOwner(run));
     }
 
     public <T> Future<T> async(Callable<T> call) {
-        return forkJoinPoolSecondary.submit(call);
+        return forkJoinPoolSecondary.submit(withOwner(call));
     }
 
     public ForkJoinTask submit(Runnable call) {
-        return forkJoinPoolPrimary.submit(call);
+        return forkJoinPoolPrimary.submit(withOwner(call));
     }
 
     public <T> Future<T> sync(Runnable run) {
         return sync(run, syncTasks);
     }
 
+    /**
+     * Run a task on the main thread, accounted to the current owner.
+     *
+     * @param run           the task
+     * @param estimateNanos the estimated main thread time the task takes, or 0 if unknown
+     */
+    public <T> Future<T> sync(Runnable run, T value, long estimateNanos) {
+        return sync(run, value, syncTasks, estimateNanos);
+    }
+
+    /**
+     * Run a task on the main thread, accounted to the current owner.
+     *
+     * @param call          the task
+     * @param estimateNanos the estimated main thread time the task takes, or 0 if unknown
+     */
+    public <T> Future<T> sync(Callable<T> call, long estimateNanos) throws Exception {
+        return sync(call, syncTasks, estimateNanos);
+    }
+
     public <T> Future<T> sync(Callable<T> call) throws Exception {
         return sync(call, syncTasks);
     }
@@ -166,7 +236,7 @@ public <T> Future<T> sync(Supplier<T> call) {
 
     // Lower priority sync task (runs only when there are no other tasks)
     public <T> Future<T> syncWhenFree(Runnable run, T value) {
-        return sync(run, value, syncWhenFree);
+        return sync(run, value, syncWhenFree, 0);
     }
 
     public <T> Future<T> syncWhenFree(Runnable run) {
@@ -181,59 +251,60 @@ public <T> Future<T> syncWhenFree(Supplier<T> call) {
         return sync(call, syncWhenFree);
     }
 
-    private <T> Future<T> sync(Runnable run, T value, Queue<FutureTask> queue) {
+    private <T> Future<T> sync(Runnable run, T value, SyncTaskScheduler queue, long estimateNanos) {
         if (Fawe.isMainThread()) {
             run.run();
             return Futures.immediateFuture(value);
         }
-        final FutureTask<T> result = new FutureTask<>(run, value);
+        final SyncTaskScheduler.Task<T> result = new SyncTaskScheduler.Task<>(run, value, owner.get(), estimateNanos);
         queue.add(result);
-        notifySync(queue);
         return result;
     }
 
-    private <T> Future<T> sync(Runnable run, Queue<FutureTask> queue) {
+    private <T> Future<T> sync(Runnable run, SyncTaskScheduler queue) {
         if (Fawe.isMainThread()) {
             run.run();
             return Futures.immediateCancelledFuture();
         }
-        final FutureTask<T> result = new FutureTask<>(run, null);
+        final SyncTaskScheduler.Task<T> result = new SyncTaskScheduler.Task<>(run, null, owner.get(), 0);
         queue.add(result);
-        notifySync(queue);
         return result;
     }
 
-    private <T> Future<T> sync(Callable<T> call, Queue<FutureTask> queue) throws Exception {
+    private <T> Future<T> sync(Callable<T> call, SyncTaskScheduler queue) throws Exception {
+        return sync(call, queue, 0);
+    }
+
+    private <T> Future<T> sync(Callable<T> call, SyncTaskScheduler queue, long estimateNanos) throws Exception {
         if (Fawe.isMainThread()) {
             return Futures.immediateFuture(call.call());
         }
-        final FutureTask<T> result = new FutureTask<>(call);
+        final SyncTaskScheduler.Task<T> result = new SyncTaskScheduler.Task<>(call, owner.get(), estimateNanos);
         queue.add(result);
-        notifySync(queue);
         return result;
     }
 
-    private <T> Future<T> sync(Supplier<T> call, Queue<FutureTask> queue) {
+    private <T> Future<T> sync(Supplier<T> call, SyncTaskScheduler queue) {
         if (Fawe.isMainThread()) {
             return Futures.immediateFuture(call.get());
         }
-        final FutureTask<T> result = new FutureTask<>(call::get);
+        final SyncTaskScheduler.Task<T> result = new SyncTaskScheduler.Task<>(call::get, owner.get(), 0);
         queue.add(result);
-        notifySync(queue);
         return result;
     }
 
-    private void notifySync(Object object) {
-        synchronized (object) {
-            object.notifyAll();
-        }
-    }
-
     public <T extends Future<T>> T submit(IQueueChunk<T> chunk) {
 //        if (MemUtil.isMemoryFree()) { TODO NOT IMPLEMENTED - optimize this
 //            return (T) forkJoinPoolSecondary.submit(chunk);
 //        }
-        return (T) blockingExecutor.submit(chunk);
+        return (T) blockingExecutor.submit(withOwner(() -> {
+            final long start = System.nanoTime();
+            try {
+                return chunk.call();
+            } finally {
+                targetSizeController.recordApply(System.nanoTime() - start);
+            }
+        }));
     }
 
     /**
@@ -299,6 +370,8 @@ public IQueueExtent<IQueueChunk> getQueue(World world, IBatchProcessor processor
 
     @Override
     public boolean trim(boolean aggressive) {
+        syncTasks.trim();
+        syncWhenFree.trim();
         boolean result = true;
         synchronized (chunkGetCache) {
             final Iterator<Map.Entry<World, WeakReference<IChunkCache<IChunkGet>>>> iter = chunkGetCache
@@ -15,6 +15,7 @@
 import com.fastasyncworldedit.core.queue.IQueueChunk;
 import com.fastasyncworldedit.core.queue.IQueueExtent;
 import com.fastasyncworldedit.core.queue.implementation.blocks.CharSetBlocks;
+import com.fastasyncworldedit.core.queue.implementation.blocks.PaletteCharSetBlocks;
 import com.fastasyncworldedit.core.queue.implementation.chunk.ChunkHolder;
 import com.fastasyncworldedit.core.queue.implementation.chunk.NullChunk;
 import com.fastasyncworldedit.core.util.MathMan;
@@ -72,6 +73,11 @@ private void checkThread() {
         }
     }
 
+    @Override
+    public boolean isQueueEnabled() {
+        return enabledQueue;
+    }
+
     @Override
     public void enableQueue() {
         enabledQueue = true;
@@ -139,7 +145,11 @@ public synchronized void init(Extent extent, IChunkCache<IChunkGet> get, IChunkC
             };
         }
         if (set == null) {
-            set = (x, z) -> CharSetBlocks.newInstance();
+            if (Settings.IMP.QUEUE.PALETTE_SECTIONS) {
+                set = (x, z) -> PaletteCharSetBlocks.newInstance();
+            } else {
+                set = (x, z) -> CharSetBlocks.newInstance();
+            }
         }
         this.cacheGet = get;
         this.cacheSet = set;
@@ -259,9 +269,9 @@ public final IQueueChunk getOrCreateChunk(int x, int z) {
             // If queueing is enabled AND either of the following
             //  - memory is low & queue size > num threads + 8
             //  - queue size > target size and primary queue has less than num threads submissions
-            if (enabledQueue && ((lowMem && size > Settings.IMP.QUEUE.PARALLEL_THREADS + 8) || (size > Settings.IMP.QUEUE.TARGET_SIZE && Fawe
-                    .get()
-                    .getQueueHandler()
+            final QueueHandler handler = Fawe.get().getQueueHandler();
+            final int target = handler.getTargetSize();
+            if (enabledQueue && ((lowMem && size > Settings.IMP.QUEUE.PARALLEL_THREADS + 8) || (size > target && handler
                     .isUnderutilized()))) {
                 chunk = chunks.removeFirst();
                 final Future future = submitUnchecked(chunk);
@@ -270,7 +280,7 @@ public final IQueueChunk getOrCreateChunk(int x, int z) {
                     if (lowMem) {
                         targetSize = Settings.IMP.QUEUE.PARALLEL_THREADS + 8;
                     } else {
-                        targetSize = Settings.IMP.QUEUE.TARGET_SIZE;
+                        targetSize = target;
                     }
                     pollSubmissions(targetSize, lowMem);
                     submissions.add(future);
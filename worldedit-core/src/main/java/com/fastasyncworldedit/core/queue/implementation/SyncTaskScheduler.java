@@ -0,0 +1,307 @@
+package com.fastasyncworldedit.core.queue.implementation;
+
+import com.fastasyncworldedit.core.configuration.Settings;
+import com.sk89q.worldedit.internal.util.LogManagerCompat;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs tasks on the main thread within a time budget, shared fairly between the owners (e.g. players) of the tasks.
+ * <p>
+ * Each owner has its own queue. Every tick the budget is split between the owners with queued tasks (deficit round
+ * robin): an owner may run its next task once its accumulated share covers the estimated cost of that task. The
+ * estimate is either given on submission or the average measured cost of the owner's previous tasks. The measured
+ * time is accounted to each owner and can be inspected with {@link #getUsage()}.
+ */
+public class SyncTaskScheduler {
+
+    private static final Logger LOGGER = LogManagerCompat.getLogger();
+
+    /**
+     * The owner of tasks that weren't submitted on behalf of anyone
+     */
+    public static final String UNOWNED = "(none)";
+
+    /**
+     * Smallest share an owner is given per round
+     */
+    private static final long MIN_QUANTUM_NANOS = 10_000L;
+    /**
+     * Weight of a new sample in the averages
+     */
+    private static final double ALPHA = 0.1;
+
+    private final Map<String, Owner> owners = new ConcurrentHashMap<>();
+    // The usage of owners which were trimmed, restored if they queue tasks again
+    private final Map<String, Usage> idle = new ConcurrentHashMap<>();
+    private final AtomicLong queued = new AtomicLong();
+
+    /**
+     * Queue a task.
+     */
+    public void add(Task<?> task) {
+        // Added within compute so a concurrent trim can't drop the owner in between
+        owners.compute(task.owner, (name, owner) -> {
+            if (owner == null) {
+                owner = new Owner(name, idle.remove(name));
+            }
+            owner.queue.add(task);
+            return owner;
+        });
+        queued.incrementAndGet();
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    public boolean isEmpty() {
+        return queued.get() <= 0;
+    }
+
+    /**
+     * Run queued tasks until the budget is used up or there are no tasks left. At least one task is run if any are
+     * queued.
+     *
+     * @param budgetMillis the time in milliseconds that may be spent
+     */
+    public void operate(long budgetMillis) {
+        final long start = System.nanoTime();
+        final long end = start + Math.max(0, budgetMillis) * 1_000_000L;
+        List<Owner> ready = new ArrayList<>();
+        for (Owner owner : owners.values()) {
+            if (!owner.queue.isEmpty()) {
+                ready.add(owner);
+            }
+            owner.tickNanos = 0;
+        }
+        boolean waited = false;
+        boolean ranAny = false;
+        // At least one task is run every tick, even if the budget is exhausted
+        while (!ranAny || System.nanoTime() < end) {
+            if (ready.isEmpty()) {
+                // Tasks are often submitted in quick succession, so wait a moment for the next one
+                if (waited || !ranAny) {
+                    break;
+                }
+                waited = true;
+                synchronized (this) {
+                    try {
+                        if (isEmpty()) {
+                            wait(1);
+                        }
+                    } catch (InterruptedException e) {
+                        e.printStackTrace();
+                    }
+                }
+                for (Owner owner : owners.values()) {
+                    if (!owner.queue.isEmpty()) {
+                        ready.add(owner);
+                    }
+                }
+                continue;
+            }
+            final long quantum = Math.max(MIN_QUANTUM_NANOS, (end - System.nanoTime()) / ready.size());
+            for (int i = 0; i < ready.size() && (!ranAny || System.nanoTime() < end); i++) {
+                Owner owner = ready.get(i);
+                owner.deficit += quantum;
+                Task<?> task;
+                while ((task = owner.queue.peek()) != null && (!ranAny || System.nanoTime() < end)) {
+                    if (owner.getEstimate(task) > owner.deficit) {
+                        break;
+                    }
+                    owner.queue.poll();
+                    queued.decrementAndGet();
+                    long taskStart = System.nanoTime();
+                    task.run();
+                    owner.record(System.nanoTime() - taskStart);
+                    ranAny = true;
+                }
+                if (owner.queue.isEmpty()) {
+                    // An idle owner doesn't keep its share
+                    owner.deficit = 0;
+                    ready.remove(i--);
+                }
+            }
+        }
+        for (Owner owner : owners.values()) {
+            owner.endTick();
+        }
+        if (Settings.IMP.ENABLED_COMPONENTS.DEBUG) {
+            long took = System.nanoTime() - start;
+            long budget = end - start;
+            if (took > budget + 5_000_000L) {
+                LOGGER.info("Sync tasks exceeded the tick budget ({}ms > {}ms): {}", took / 1_000_000d,
+                        budget / 1_000_000d, getUsage()
+                );
+            }
+        }
+    }
+
+    /**
+     * Get the main thread usage of each owner, ordered by the time used per tick. Owners which were trimmed are
+     * included with their usage as of when they were trimmed.
+     */
+    public Map<String, Usage> getUsage() {
+        List<Usage> sorted = new ArrayList<>(idle.values());
+        for (Owner owner : owners.values()) {
+            sorted.add(new Usage(owner));
+        }
+        sorted.sort(Comparator.comparingDouble(Usage::getAverageTickNanos).reversed());
+        Map<String, Usage> usage = new LinkedHashMap<>();
+        for (Usage ownerUsage : sorted) {
+            usage.putIfAbsent(ownerUsage.name, ownerUsage);
+        }
+        return usage;
+    }
+
+    /**
+     * Release the queues of owners that have no queued tasks. Their usage is kept, and carried on if they queue tasks
+     * again.
+     */
+    public void trim() {
+        for (String name : owners.keySet()) {
+            owners.computeIfPresent(name, (key, owner) -> {
+                if (!owner.queue.isEmpty()) {
+                    return owner;
+                }
+                idle.put(key, new Usage(owner));
+                return null;
+            });
+        }
+    }
+
+    private static final class Owner {
+
+        private final String name;
+        private final ConcurrentLinkedQueue<Task<?>> queue = new ConcurrentLinkedQueue<>();
+        // Only accessed from the main thread
+        private long deficit;
+        private long tickNanos;
+        private volatile double averageTaskNanos;
+        private volatile double averageTickNanos;
+        private volatile long totalNanos;
+        private volatile long tasks;
+
+        private Owner(String name, @Nullable Usage usage) {
+            this.name = name;
+            if (usage != null) {
+                this.averageTaskNanos = usage.averageTaskNanos;
+                this.averageTickNanos = usage.averageTickNanos;
+                this.totalNanos = usage.totalNanos;
+                this.tasks = usage.tasks;
+            }
+        }
+
+        private long getEstimate(Task<?> task) {
+            return task.estimateNanos > 0 ? task.estimateNanos : (long) averageTaskNanos;
+        }
+
+        private void record(long nanos) {
+            tickNanos += nanos;
+            totalNanos += nanos;
+            tasks++;
+            averageTaskNanos = tasks == 1 ? nanos : averageTaskNanos + ALPHA * (nanos - averageTaskNanos);
+        }
+
+        private void endTick() {
+            averageTickNanos = averageTickNanos + ALPHA * (tickNanos - averageTickNanos);
+        }
+
+    }
+
+    /**
+     * A snapshot of the main thread time used by an owner.
+     */
+    public static final class Usage {
+
+        private final String name;
+        private final double averageTickNanos;
+        private final double averageTaskNanos;
+        private final long totalNanos;
+        private final long tasks;
+        private final int queued;
+
+        private Usage(Owner owner) {
+            this.name = owner.name;
+            this.averageTickNanos = owner.averageTickNanos;
+            this.averageTaskNanos = owner.averageTaskNanos;
+            this.totalNanos = owner.totalNanos;
+            this.tasks = owner.tasks;
+            this.queued = owner.queue.size();
+        }
+
+        /**
+         * The moving average of the time used per tick, in nanoseconds.
+         */
+        public double getAverageTickNanos() {
+            return averageTickNanos;
+        }
+
+        /**
+         * The moving average of the time used per task, in nanoseconds.
+         */
+        public double getAverageTaskNanos() {
+            return averageTaskNanos;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getTasks() {
+            return tasks;
+        }
+
+        public int getQueued() {
+            return queued;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.2fms/tick, %d tasks, %d queued", averageTickNanos / 1_000_000d, tasks, queued);
+        }
+
+    }
+
+    /**
+     * A task to run on the main thread on behalf of an owner.
+     */
+    public static final class Task<T> extends FutureTask<T> {
+
+        private final String owner;
+        private final long estimateNanos;
+
+        /**
+         * @param owner         the owner the task is accounted to, or null
+         * @param estimateNanos the estimated cost of the task, or 0 to estimate from previous tasks of the owner
+         */
+        public Task(Callable<T> callable, @Nullable String owner, long estimateNanos) {
+            super(callable);
+            this.owner = owner == null ? UNOWNED : owner;
+            this.estimateNanos = estimateNanos;
+        }
+
+        public Task(Runnable runnable, T result, @Nullable String owner, long estimateNanos) {
+            super(runnable, result);
+            this.owner = owner == null ? UNOWNED : owner;
+            this.estimateNanos = estimateNanos;
+        }
+
+        public String getOwner() {
+            return owner;
+        }
+
+    }
+
+}
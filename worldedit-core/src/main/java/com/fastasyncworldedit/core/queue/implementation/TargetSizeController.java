@@ -0,0 +1,139 @@
+package com.fastasyncworldedit.core.queue.implementation;
+
+import com.fastasyncworldedit.core.configuration.Settings;
+import com.fastasyncworldedit.core.util.MemUtil;
+import com.sk89q.worldedit.internal.util.LogManagerCompat;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chooses how many chunks a queue may hold before it starts submitting them.
+ * <p>
+ * The target size grows additively while there is plenty of heap headroom and the queued chunks can still be placed
+ * within {@link Settings.QUEUE#MAX_WAIT_MS}, and is halved when the heap runs low. The bounds are
+ * {@code PARALLEL_THREADS + 8} (the size used when memory is limited) and {@code 8 * TARGET_SIZE}.
+ */
+public class TargetSizeController {
+
+    private static final Logger LOGGER = LogManagerCompat.getLogger();
+
+    /**
+     * How often the target size is re-evaluated
+     */
+    private static final long INTERVAL_NANOS = 50_000_000L;
+    /**
+     * Weight of a new sample in the average chunk apply time
+     */
+    private static final double ALPHA = 0.05;
+
+    private volatile int targetSize = Settings.IMP.QUEUE.TARGET_SIZE;
+    private volatile double averageNanos;
+    private final AtomicLong applied = new AtomicLong();
+    private final AtomicLong lastUpdate = new AtomicLong();
+
+    /**
+     * Record the time it took to apply a chunk to the world.
+     */
+    public void recordApply(long nanos) {
+        applied.incrementAndGet();
+        double avg = averageNanos;
+        // Racy, but a lost sample doesn't matter for an average
+        averageNanos = avg == 0 ? nanos : avg + ALPHA * (nanos - avg);
+    }
+
+    /**
+     * Get the number of chunks a queue should hold before submitting.
+     *
+     * @param saturated if the executor placing chunks is fully busy
+     */
+    public int getTargetSize(boolean saturated) {
+        if (!Settings.IMP.QUEUE.ADAPTIVE_TARGET_SIZE) {
+            return Settings.IMP.QUEUE.TARGET_SIZE;
+        }
+        long now = System.nanoTime();
+        long last = lastUpdate.get();
+        if (now - last > INTERVAL_NANOS && lastUpdate.compareAndSet(last, now)) {
+            update(saturated);
+        }
+        return targetSize;
+    }
+
+    private void update(boolean saturated) {
+        update(saturated, (double) MemUtil.getFreeBytes() / Runtime.getRuntime().maxMemory(), MemUtil.isMemoryLimited());
+    }
+
+    /**
+     * Choose the next target size.
+     *
+     * @param saturated     if the executor placing chunks is fully busy
+     * @param headroom      the fraction of the maximum heap which is free
+     * @param memoryLimited if memory is considered limited, see {@link MemUtil#isMemoryLimited()}
+     */
+    void update(boolean saturated, double headroom, boolean memoryLimited) {
+        final int min = Settings.IMP.QUEUE.PARALLEL_THREADS + 8;
+        final int max = Math.max(min, Settings.IMP.QUEUE.TARGET_SIZE * 8);
+        final int current = targetSize;
+        final int step = Math.max(1, current >> 3);
+
+        int next;
+        if (memoryLimited || headroom < 0.2) {
+            next = current >> 1;
+        } else if (headroom > 0.5 && !saturated && withinLatency(current + step)) {
+            // Only grow to a size which can still be placed in time, so it doesn't shrink straight back
+            next = current + step;
+        } else if (!withinLatency(current)) {
+            next = current - step;
+        } else {
+            next = current;
+        }
+        next = Math.max(min, Math.min(max, next));
+        if (next != current) {
+            targetSize = next;
+            if (Settings.IMP.ENABLED_COMPONENTS.DEBUG) {
+                LOGGER.info(
+                        "Queue target size {} -> {} (heap headroom {}%, avg chunk apply {}ms, saturated {})",
+                        current,
+                        next,
+                        (int) (headroom * 100),
+                        averageNanos / 1_000_000d,
+                        saturated
+                );
+            }
+        }
+    }
+
+    /**
+     * If the given amount of chunks can be placed within MAX_WAIT_MS by all threads.
+     */
+    private boolean withinLatency(int size) {
+        double avg = averageNanos;
+        if (avg == 0) {
+            return true;
+        }
+        double flushNanos = avg * size / Settings.IMP.QUEUE.PARALLEL_THREADS;
+        return flushNanos <= Settings.IMP.QUEUE.MAX_WAIT_MS * 1_000_000d;
+    }
+
+    /**
+     * The currently chosen target size.
+     */
+    public int getCurrentTargetSize() {
+        return targetSize;
+    }
+
+    /**
+     * The exponential moving average of the time taken to apply a chunk, in nanoseconds.
+     */
+    public double getAverageApplyNanos() {
+        return averageNanos;
+    }
+
+    /**
+     * The number of chunks that have been applied since startup.
+     */
+    public long getAppliedChunks() {
+        return applied.get();
+    }
+
+}
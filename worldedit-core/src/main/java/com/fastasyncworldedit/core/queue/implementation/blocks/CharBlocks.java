@@ -180,7 +180,7 @@ public abstract static class Section {
 
         public abstract boolean isFull();
 
-        public final char get(CharBlocks blocks, @Range(from = 0, to = 15) int layer, int index) {
+        public char get(CharBlocks blocks, @Range(from = 0, to = 15) int layer, int index) {
             char[] section = get(blocks, layer);
             if (section == null) {
                 blocks.reset(layer);
@@ -189,7 +189,7 @@ public final char get(CharBlocks blocks, @Range(from = 0, to = 15) int layer, in
             return section[index];
         }
 
-        public final void set(CharBlocks blocks, @Range(from = 0, to = 15) int layer, int index, char value) {
+        public void set(CharBlocks blocks, @Range(from = 0, to = 15) int layer, int index, char value) {
             get(blocks, layer)[index] = value;
         }
 
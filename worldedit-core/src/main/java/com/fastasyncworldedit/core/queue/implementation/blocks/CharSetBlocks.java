@@ -44,7 +44,7 @@ public static CharSetBlocks newInstance() {
     private boolean fastMode = false;
     private int bitMask = -1;
 
-    private CharSetBlocks() {
+    protected CharSetBlocks() {
     }
 
     @Override
@@ -0,0 +1,271 @@
+package com.fastasyncworldedit.core.queue.implementation.blocks;
+
+import com.fastasyncworldedit.core.FaweCache;
+import com.fastasyncworldedit.core.configuration.Settings;
+import com.fastasyncworldedit.core.math.BitArray;
+import com.fastasyncworldedit.core.queue.IChunkSet;
+import com.fastasyncworldedit.core.queue.Pool;
+import org.jetbrains.annotations.Range;
+
+import java.util.Arrays;
+
+/**
+ * A {@link CharSetBlocks} which stores written sections palette compressed.
+ * <p>
+ * A section starts out as a single value, is bit-packed with 1, 2, 4 or 8 bits per block as more distinct states are
+ * written and is only inflated to a {@code char[4096]} once it has more than 256 states or something requests the
+ * whole array (e.g. when the chunk is applied to the world).
+ */
+public class PaletteCharSetBlocks extends CharSetBlocks {
+
+    private static final Pool<PaletteCharSetBlocks> POOL = FaweCache.IMP.registerPool(
+            PaletteCharSetBlocks.class,
+            PaletteCharSetBlocks::new,
+            Settings.IMP.QUEUE.POOL
+    );
+
+    public static PaletteCharSetBlocks newInstance() {
+        return POOL.poll();
+    }
+
+    private final PackedSection[] packed = new PackedSection[16];
+
+    // Untouched section, the first write turns it into a packed section
+    private final Section lazy = new Section() {
+        @Override
+        public char[] get(CharBlocks blocks, @Range(from = 0, to = 15) int layer) {
+            return empty.get(blocks, layer);
+        }
+
+        @Override
+        public char[] get(CharBlocks blocks, @Range(from = 0, to = 15) int layer, boolean aggressive) {
+            return empty.get(blocks, layer, aggressive);
+        }
+
+        @Override
+        public boolean isFull() {
+            return false;
+        }
+
+        @Override
+        public char get(CharBlocks blocks, @Range(from = 0, to = 15) int layer, int index) {
+            return 0;
+        }
+
+        @Override
+        public void set(CharBlocks blocks, @Range(from = 0, to = 15) int layer, int index, char value) {
+            PackedSection section = packed[layer];
+            if (section == null) {
+                section = packed[layer] = new PackedSection();
+            }
+            section.reset();
+            sections[layer] = compressed;
+            compressed.set(blocks, layer, index, value);
+        }
+    };
+
+    private final Section compressed = new Section() {
+        @Override
+        public char[] get(CharBlocks blocks, @Range(from = 0, to = 15) int layer) {
+            return inflate(layer);
+        }
+
+        @Override
+        public char[] get(CharBlocks blocks, @Range(from = 0, to = 15) int layer, boolean aggressive) {
+            return inflate(layer);
+        }
+
+        @Override
+        public boolean isFull() {
+            return true;
+        }
+
+        @Override
+        public char get(CharBlocks blocks, @Range(from = 0, to = 15) int layer, int index) {
+            // Read without a lock, so the first write to the layer may not be visible yet
+            PackedSection section = packed[layer];
+            return section == null ? 0 : section.get(index);
+        }
+
+        @Override
+        public void set(CharBlocks blocks, @Range(from = 0, to = 15) int layer, int index, char value) {
+            if (!packed[layer].set(index, value)) {
+                // Too many distinct states to pack into a byte
+                inflate(layer)[index] = value;
+            }
+        }
+    };
+
+    private PaletteCharSetBlocks() {
+        for (int i = 0; i < 16; i++) {
+            sections[i] = lazy;
+        }
+    }
+
+    /**
+     * Unpack a section into the heap array for the layer.
+     */
+    private synchronized char[] inflate(int layer) {
+        if (sections[layer] != compressed) {
+            return sections[layer].get(this, layer);
+        }
+        char[] arr = blocks[layer];
+        if (arr == null) {
+            arr = blocks[layer] = new char[4096];
+        }
+        packed[layer].toRaw(arr);
+        sections[layer] = FULL;
+        return arr;
+    }
+
+    @Override
+    public synchronized void recycle() {
+        POOL.offer(this);
+    }
+
+    @Override
+    public void setBlocks(int layer, char[] data) {
+        super.setBlocks(layer, data);
+        if (data == null) {
+            sections[layer] = lazy;
+        }
+    }
+
+    @Override
+    public synchronized void reset(@Range(from = 0, to = 15) int layer) {
+        sections[layer] = lazy;
+    }
+
+    @Override
+    public synchronized IChunkSet reset() {
+        super.reset();
+        for (int i = 0; i < 16; i++) {
+            sections[i] = lazy;
+        }
+        return null;
+    }
+
+    /**
+     * A section of 4096 ordinals, stored as indices into a palette of at most 256 entries.
+     * <p>
+     * Writes are synchronized by the owning {@link CharBlocks}, but blocks are read without a lock. The palette and the
+     * indices are therefore replaced together, as an immutable {@link Layout} published through a volatile field, so a
+     * reader never combines the indices of one width with a palette or width of another.
+     */
+    private static final class PackedSection {
+
+        private static final int MAX_PALETTE_SIZE = 256;
+        // A single entry, the untouched state 0. Its palette is full, so the first new state grows it
+        private static final Layout EMPTY = new Layout(new char[1], 0, null);
+
+        private volatile Layout layout = EMPTY;
+        private int paletteSize = 1;
+
+        // Edits tend to write runs of the same state
+        private char lastValue;
+        private int lastIndex;
+
+        void reset() {
+            layout = EMPTY;
+            paletteSize = 1;
+            lastValue = 0;
+            lastIndex = 0;
+        }
+
+        char get(int index) {
+            return layout.get(index);
+        }
+
+        /**
+         * @return false if the value cannot be added to the palette
+         */
+        boolean set(int index, char value) {
+            Layout layout = this.layout;
+            int paletteIndex = indexOf(layout.palette, value);
+            if (paletteIndex == -1) {
+                if (paletteSize == MAX_PALETTE_SIZE) {
+                    return false;
+                }
+                if (paletteSize == layout.palette.length) {
+                    layout = grow(layout);
+                }
+                paletteIndex = paletteSize++;
+                // Written before any index refers to it
+                layout.palette[paletteIndex] = value;
+                lastValue = value;
+                lastIndex = paletteIndex;
+            }
+            if (layout.bitsPerEntry != 0) {
+                layout.indices.set(index, paletteIndex);
+            }
+            return true;
+        }
+
+        private int indexOf(char[] palette, char value) {
+            if (value == lastValue && lastIndex < paletteSize) {
+                return lastIndex;
+            }
+            for (int i = 0; i < paletteSize; i++) {
+                if (palette[i] == value) {
+                    lastValue = value;
+                    lastIndex = i;
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Double the bits per entry (0 -> 1 -> 2 -> 4 -> 8) so entries never straddle two longs, and publish the copy.
+         */
+        private Layout grow(Layout layout) {
+            int newBits = layout.bitsPerEntry == 0 ? 1 : layout.bitsPerEntry << 1;
+            BitArray newIndices = new BitArray(newBits, 4096);
+            if (layout.bitsPerEntry != 0) {
+                for (int i = 0; i < 4096; i++) {
+                    newIndices.set(i, layout.indices.get(i));
+                }
+            }
+            return this.layout = new Layout(Arrays.copyOf(layout.palette, 1 << newBits), newBits, newIndices);
+        }
+
+        void toRaw(char[] arr) {
+            Layout layout = this.layout;
+            if (layout.bitsPerEntry == 0) {
+                Arrays.fill(arr, layout.palette[0]);
+                return;
+            }
+            layout.indices.toRaw(arr);
+            for (int i = 0; i < 4096; i++) {
+                arr[i] = layout.palette[arr[i]];
+            }
+        }
+
+    }
+
+    /**
+     * The palette of a packed section along with its indices. Only palette entries past the palette size of the section
+     * are written after the layout is published.
+     */
+    private static final class Layout {
+
+        private final char[] palette;
+        private final int bitsPerEntry;
+        private final BitArray indices;
+
+        private Layout(char[] palette, int bitsPerEntry, BitArray indices) {
+            this.palette = palette;
+            this.bitsPerEntry = bitsPerEntry;
+            this.indices = indices;
+        }
+
+        char get(int index) {
+            if (bitsPerEntry == 0) {
+                return palette[0];
+            }
+            return palette[indices.get(index)];
+        }
+
+    }
+
+}
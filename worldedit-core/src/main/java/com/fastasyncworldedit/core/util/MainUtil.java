@@ -3,6 +3,7 @@
 import com.fastasyncworldedit.core.Fawe;
 import com.fastasyncworldedit.core.configuration.Caption;
 import com.fastasyncworldedit.core.configuration.Settings;
+import com.fastasyncworldedit.core.history.HistoryDictionaries;
 import com.fastasyncworldedit.core.history.changeset.FaweStreamChangeSet;
 import com.fastasyncworldedit.core.internal.io.AbstractDelegateOutputStream;
 import com.fastasyncworldedit.core.internal.io.FaweInputStream;
@@ -350,12 +351,47 @@ public static FaweOutputStream getCompressedOS(OutputStream os, int amount, int
         return new FaweOutputStream(os);
     }
 
+    /**
+     * Mode byte of streams compressed with a trained zstd dictionary. It is followed by the id of the dictionary.
+     */
+    public static final int ZSTD_DICTIONARY_MODE = 100;
+
+    /**
+     * Get a stream compressed with a trained zstd dictionary (see {@link HistoryDictionaries}).
+     *
+     * @param amount       the compression level (1-9)
+     * @param dictionaryId the id of the dictionary, written uncompressed so it can be looked up before decompressing
+     * @param dictionary   the dictionary
+     */
+    public static FaweOutputStream getCompressedOS(OutputStream os, int amount, int dictionaryId, byte[] dictionary)
+            throws IOException {
+        os.write(ZSTD_DICTIONARY_MODE);
+        os.write((byte) (dictionaryId >> 24));
+        os.write((byte) (dictionaryId >> 16));
+        os.write((byte) (dictionaryId >> 8));
+        os.write((byte) (dictionaryId));
+        int buffer = Settings.IMP.HISTORY.BUFFER_SIZE;
+        ZstdOutputStream zos = new ZstdOutputStream(new BufferedOutputStream(os, buffer), Math.min(19, 1 + amount * 2));
+        zos.setDict(dictionary);
+        return new FaweOutputStream(new BufferedOutputStream(zos, buffer));
+    }
+
     public static FaweInputStream getCompressedIS(InputStream is) throws IOException {
         return getCompressedIS(is, Settings.IMP.HISTORY.BUFFER_SIZE);
     }
 
     public static FaweInputStream getCompressedIS(InputStream is, int buffer) throws IOException {
         int mode = (byte) is.read();
+        if (mode == ZSTD_DICTIONARY_MODE) {
+            int id = (is.read() << 24) + (is.read() << 16) + (is.read() << 8) + is.read();
+            byte[] dictionary = HistoryDictionaries.get(id);
+            if (dictionary == null) {
+                throw new IOException("Missing history compression dictionary " + id);
+            }
+            ZstdInputStream zis = new ZstdInputStream(new FastBufferedInputStream(is, buffer));
+            zis.setDict(dictionary);
+            return new FaweInputStream(new FastBufferedInputStream(zis));
+        }
         is = new FastBufferedInputStream(is, buffer);
         if (mode == 0) {
             return new FaweInputStream(is);
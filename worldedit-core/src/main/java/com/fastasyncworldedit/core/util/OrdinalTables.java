@@ -0,0 +1,66 @@
+package com.fastasyncworldedit.core.util;
+
+import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.function.pattern.Pattern;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockTypesCache;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Lookup tables indexed by block ordinal, for masks and patterns which only depend on the block state.
+ *
+ * @see Mask#toOrdinalTable()
+ * @see Pattern#toOrdinalTable()
+ */
+public final class OrdinalTables {
+
+    private OrdinalTables() {
+    }
+
+    /**
+     * Test every block state.
+     *
+     * @return the result of the test for each ordinal
+     */
+    public static boolean[] of(Predicate<BlockState> test) {
+        final BlockState[] states = BlockTypesCache.states;
+        final boolean[] table = new boolean[states.length];
+        for (int i = 0; i < states.length; i++) {
+            final BlockState state = states[i];
+            if (state != null) {
+                table[i] = test.test(state);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Map every block state.
+     *
+     * @return the ordinal of the mapped state for each ordinal, or 0 (no change) where the state doesn't exist
+     */
+    public static char[] map(UnaryOperator<BlockState> function) {
+        final BlockState[] states = BlockTypesCache.states;
+        final char[] table = new char[states.length];
+        for (int i = 0; i < states.length; i++) {
+            final BlockState state = states[i];
+            if (state != null) {
+                table[i] = function.apply(state).getOrdinalChar();
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Map every block state to the same state.
+     */
+    public static char[] fill(BlockState state) {
+        final char[] table = new char[BlockTypesCache.states.length];
+        Arrays.fill(table, state.getOrdinalChar());
+        return table;
+    }
+
+}
@@ -0,0 +1,213 @@
+package com.fastasyncworldedit.core.util;
+
+import com.fastasyncworldedit.core.configuration.Caption;
+import com.fastasyncworldedit.core.function.mask.ProfilingExtentMask;
+import com.fastasyncworldedit.core.function.mask.ProfilingMask;
+import com.fastasyncworldedit.core.function.pattern.ProfilingPattern;
+import com.sk89q.worldedit.LocalSession;
+import com.sk89q.worldedit.extension.input.ParserContext;
+import com.sk89q.worldedit.extension.platform.Actor;
+import com.sk89q.worldedit.session.request.Request;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The statistics of a mask or pattern parsed from input while its session is profiling, see
+ * {@link LocalSession#isProfiling()}. The profiles of inputs parsed within another input (e.g. the mask of
+ * {@code !#existing}) are its children, so the statistics are reported as the tree of the input.
+ * <p>
+ * Profiled masks and patterns are wrapped by a {@link ProfilingMask} or {@link ProfilingPattern}. These don't
+ * provide ordinal tables or section level paths, so blocks are filtered one at a time while profiling.
+ */
+public final class ParserProfile {
+
+    private static final ThreadLocal<ParserProfile> PARSING = new ThreadLocal<>();
+
+    @Nullable
+    private final ParserProfile parent;
+    private final String input;
+    private final boolean mask;
+    private final List<ParserProfile> children = new ArrayList<>();
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder passes = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+
+    private ParserProfile(@Nullable ParserProfile parent, String input, boolean mask) {
+        this.parent = parent;
+        this.input = input;
+        this.mask = mask;
+    }
+
+    /**
+     * Start parsing an input, if the session of the context is profiling. Must be followed by {@link #end()}.
+     * <p>
+     * Patterns parsed within patterns aren't profiled on their own, as their parsers inspect the type of the inner
+     * pattern (e.g. {@code #simplex[5][stone,dirt]} needs a random pattern).
+     *
+     * @param mask if a mask (or a pattern) is parsed
+     * @return the profile, or null if the input isn't profiled
+     */
+    @Nullable
+    public static ParserProfile begin(String input, ParserContext context, boolean mask) {
+        final LocalSession session = context.getSession();
+        if (session == null || !session.isProfiling()) {
+            return null;
+        }
+        final ParserProfile parent = PARSING.get();
+        if (!mask && parent != null && !parent.mask) {
+            return null;
+        }
+        final ParserProfile profile = new ParserProfile(parent, input, mask);
+        PARSING.set(profile);
+        return profile;
+    }
+
+    /**
+     * Add the parsed input to the input it was parsed within, or to the current request if it is the outermost.
+     * Inputs which failed to parse are left out.
+     */
+    public void attach() {
+        if (parent != null) {
+            parent.children.add(this);
+        } else {
+            Request.request().addProfile(this);
+        }
+    }
+
+    /**
+     * Finish parsing the input.
+     */
+    public void end() {
+        PARSING.set(parent);
+    }
+
+    /**
+     * Record a test of a mask.
+     */
+    public void add(long nanos, boolean passed) {
+        this.calls.increment();
+        if (passed) {
+            this.passes.increment();
+        }
+        this.nanos.add(nanos);
+    }
+
+    /**
+     * Record an application of a pattern.
+     */
+    public void add(long nanos) {
+        this.calls.increment();
+        this.nanos.add(nanos);
+    }
+
+    public String getInput() {
+        return input;
+    }
+
+    public List<ParserProfile> getChildren() {
+        return children;
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    /**
+     * Get the number of tests which passed, if this is the profile of a mask.
+     */
+    public long getPasses() {
+        return passes.sum();
+    }
+
+    /**
+     * Get the time spent in the mask or pattern, including the time of its children.
+     */
+    public long getNanos() {
+        return nanos.sum();
+    }
+
+    /**
+     * Get the time spent in the mask or pattern itself, excluding the time of its children.
+     */
+    public long getSelfNanos() {
+        long self = getNanos();
+        for (ParserProfile child : children) {
+            self -= child.getNanos();
+        }
+        return Math.max(self, 0);
+    }
+
+    /**
+     * Get the profiles parsed masks and patterns record to.
+     *
+     * @param inputs the masks and patterns, which may be null
+     * @return the profiles of the inputs which are profiled
+     */
+    public static List<ParserProfile> of(Object... inputs) {
+        final List<ParserProfile> profiles = new ArrayList<>();
+        for (Object input : inputs) {
+            if (input instanceof ProfilingMask) {
+                profiles.add(((ProfilingMask) input).getProfile());
+            } else if (input instanceof ProfilingExtentMask) {
+                profiles.add(((ProfilingExtentMask) input).getProfile());
+            } else if (input instanceof ProfilingPattern) {
+                profiles.add(((ProfilingPattern) input).getProfile());
+            }
+        }
+        return profiles;
+    }
+
+    /**
+     * Print the statistics of the profiles which were used, and start recording anew. The inputs of a brush are parsed
+     * when it is bound, so they are reported each time it is used instead.
+     */
+    public static void report(Actor actor, List<ParserProfile> profiles) {
+        boolean header = false;
+        for (ParserProfile profile : profiles) {
+            if (profile.getCalls() == 0) {
+                continue;
+            }
+            if (!header) {
+                actor.print(Caption.of("fawe.info.profile.header"));
+                header = true;
+            }
+            profile.report(actor);
+            profile.reset();
+        }
+    }
+
+    private void reset() {
+        calls.reset();
+        passes.reset();
+        nanos.reset();
+        for (ParserProfile child : children) {
+            child.reset();
+        }
+    }
+
+    /**
+     * Print the statistics of this profile and its children.
+     */
+    public void report(Actor actor) {
+        report(actor, "");
+    }
+
+    private void report(Actor actor, String indent) {
+        final long calls = getCalls();
+        final String total = String.format("%.2f", getNanos() / 1e6);
+        final String self = String.format("%.2f", getSelfNanos() / 1e6);
+        if (mask) {
+            final String passed = String.format("%.1f", calls == 0 ? 0 : 100.0 * getPasses() / calls);
+            actor.print(Caption.of("fawe.info.profile.mask", indent, input, calls, passed, total, self));
+        } else {
+            actor.print(Caption.of("fawe.info.profile.pattern", indent, input, calls, total, self));
+        }
+        for (ParserProfile child : children) {
+            child.report(actor, indent + "  ");
+        }
+    }
+
+}
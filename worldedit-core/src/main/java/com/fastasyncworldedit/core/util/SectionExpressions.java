@@ -0,0 +1,79 @@
+package com.fastasyncworldedit.core.util;
+
+import com.sk89q.worldedit.internal.expression.EvaluationException;
+import com.sk89q.worldedit.internal.expression.Expression;
+import com.sk89q.worldedit.regions.shape.WorldEditExpressionEnvironment;
+
+/**
+ * Evaluates expressions over {@code x, y, z} for a cuboid within a chunk section at once, see
+ * {@link Expression#evaluate(double[][], double[], int, int)}.
+ */
+public final class SectionExpressions {
+
+    private static final int SECTION_SIZE = 4096;
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+    private SectionExpressions() {
+    }
+
+    /**
+     * Check if an expression can be evaluated for a whole section. Expressions querying the world through a
+     * {@link WorldEditExpressionEnvironment} need it to be moved to each block, so they are evaluated block by block.
+     */
+    public static boolean canEvaluate(Expression expression) {
+        return expression.isCompiledToClass()
+                || !(expression.getEnvironment() instanceof WorldEditExpressionEnvironment);
+    }
+
+    /**
+     * Evaluate an expression for each block of a cuboid within a section.
+     *
+     * @param blockX the x coordinate of the first block of the section
+     * @param blockY the y coordinate of the first block of the section
+     * @param blockZ the z coordinate of the first block of the section
+     * @param timeout the timeout of the whole cuboid, in milliseconds
+     * @return the results indexed by {@code x | z << 4 | y << 8}. The array belongs to the thread and is reused by the
+     *         next call, and indices outside the cuboid are undefined
+     */
+    public static double[] evaluate(
+            Expression expression, int blockX, int blockY, int blockZ,
+            int minX, int minY, int minZ, int maxX, int maxY, int maxZ, int timeout
+    ) throws EvaluationException {
+        final Buffers buffers = BUFFERS.get();
+        final double[] xs = buffers.coordinates[0];
+        final double[] ys = buffers.coordinates[1];
+        final double[] zs = buffers.coordinates[2];
+        int count = 0;
+        for (int y = minY; y <= maxY; y++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                for (int x = minX; x <= maxX; x++, count++) {
+                    xs[count] = blockX + x;
+                    ys[count] = blockY + y;
+                    zs[count] = blockZ + z;
+                }
+            }
+        }
+        expression.evaluate(buffers.coordinates, buffers.values, count, timeout);
+
+        final double[] values = buffers.values;
+        final double[] results = buffers.results;
+        count = 0;
+        for (int y = minY; y <= maxY; y++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                for (int index = y << 8 | z << 4 | minX, end = index + maxX - minX; index <= end; index++) {
+                    results[index] = values[count++];
+                }
+            }
+        }
+        return results;
+    }
+
+    private static final class Buffers {
+
+        private final double[][] coordinates = new double[3][SECTION_SIZE];
+        private final double[] values = new double[SECTION_SIZE];
+        private final double[] results = new double[SECTION_SIZE];
+
+    }
+
+}
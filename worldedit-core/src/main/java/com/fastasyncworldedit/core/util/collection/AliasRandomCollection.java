@@ -0,0 +1,132 @@
+package com.fastasyncworldedit.core.util.collection;
+
+import com.fastasyncworldedit.core.math.random.SimpleRandom;
+
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A {@link RandomCollection} picking values of arbitrary weights in constant time, using Vose's alias method. Each
+ * value gets a column of the same width, which is split between the value and an alias of another value to make up
+ * the weights.
+ * <p>
+ * Random values which are close to each other may pick unrelated values, so this is only used for independent
+ * randoms, see {@link SimpleRandom#isIndependent()}.
+ *
+ * @param <T> the value type.
+ */
+public class AliasRandomCollection<T> extends RandomCollection<T> {
+
+    private final T[] values;
+    private final double[] thresholds;
+    private final int[] aliases;
+
+    /**
+     * Create a {@link RandomCollection} from a weighted map and a RNG.
+     * It is recommended to use {@link RandomCollection#of(Map, SimpleRandom)}
+     * instead of this constructor.
+     *
+     * @param weights the weighted map, values with weights of 0 or less are ignored.
+     * @param random  the random number generator.
+     * @throws IllegalArgumentException if no value has a weight above 0.
+     */
+    @SuppressWarnings("unchecked")
+    public AliasRandomCollection(Map<T, Double> weights, SimpleRandom random) {
+        super(random);
+        int size = 0;
+        double total = 0;
+        for (double weight : weights.values()) {
+            if (weight > 0) {
+                size++;
+                total += weight;
+            }
+        }
+        checkArgument(size > 0, "At least one value must have a weight above 0");
+        this.values = (T[]) new Object[size];
+        this.thresholds = new double[size];
+        this.aliases = new int[size];
+
+        // The weights scaled to an average of 1, the width of a column
+        final double[] scaled = new double[size];
+        int index = 0;
+        for (Map.Entry<T, Double> entry : weights.entrySet()) {
+            if (entry.getValue() > 0) {
+                values[index] = entry.getKey();
+                scaled[index++] = entry.getValue() * size / total;
+            }
+        }
+        final int[] small = new int[size];
+        final int[] large = new int[size];
+        int smallSize = 0;
+        int largeSize = 0;
+        for (int i = 0; i < size; i++) {
+            if (scaled[i] < 1) {
+                small[smallSize++] = i;
+            } else {
+                large[largeSize++] = i;
+            }
+        }
+        // Fill up each column which is too small with the rest of one which is too large
+        while (smallSize > 0 && largeSize > 0) {
+            final int less = small[--smallSize];
+            final int more = large[--largeSize];
+            thresholds[less] = scaled[less];
+            aliases[less] = more;
+            scaled[more] += scaled[less] - 1;
+            if (scaled[more] < 1) {
+                small[smallSize++] = more;
+            } else {
+                large[largeSize++] = more;
+            }
+        }
+        // The remaining columns are full, apart from rounding errors
+        while (largeSize > 0) {
+            final int full = large[--largeSize];
+            thresholds[full] = 1;
+            aliases[full] = full;
+        }
+        while (smallSize > 0) {
+            final int full = small[--smallSize];
+            thresholds[full] = 1;
+            aliases[full] = full;
+        }
+    }
+
+    /**
+     * Get the number of values, the bound of {@link #nextIndex(int, int, int)}.
+     *
+     * @return the number of values
+     */
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * Get a value by its index.
+     *
+     * @param index the index, between 0 (inclusive) and {@link #size()} (exclusive)
+     * @return the value
+     */
+    public T get(int index) {
+        return values[index];
+    }
+
+    /**
+     * Get the index of the next value, so callers can look up data of their own for the values.
+     *
+     * @return an index between 0 (inclusive) and {@link #size()} (exclusive)
+     */
+    public int nextIndex(int x, int y, int z) {
+        final double column = getRandom().nextDouble(x, y, z) * values.length;
+        // The product may round up to the length
+        final int index = Math.min((int) column, values.length - 1);
+        return column - index < thresholds[index] ? index : aliases[index];
+    }
+
+    @Override
+    public T next(int x, int y, int z) {
+        return values[nextIndex(x, y, z)];
+    }
+
+}
@@ -23,7 +23,8 @@ protected RandomCollection(SimpleRandom random) {
 
     /**
      * Return a new RandomCollection. The implementation may differ depending on the
-     * given arguments but there is no need to differ.
+     * given arguments but there is no need to differ. Independent randoms (see
+     * {@link SimpleRandom#isIndependent()}) get an {@link AliasRandomCollection}.
      *
      * @param weights the weighted map.
      * @param random  the random number generator.
@@ -32,6 +33,9 @@ protected RandomCollection(SimpleRandom random) {
      */
     public static <T> RandomCollection<T> of(Map<T, Double> weights, SimpleRandom random) {
         checkNotNull(random);
+        if (random.isIndependent()) {
+            return new AliasRandomCollection<>(weights, random);
+        }
         return FastRandomCollection.create(weights, random)
                 .orElse(new SimpleRandomCollection<>(weights, random));
     }
@@ -0,0 +1,176 @@
+package com.fastasyncworldedit.core.util.collection;
+
+import com.fastasyncworldedit.core.util.MathMan;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unbounded set of block positions, storing a bitmap per chunk section with the layout of {@link MemBlockSet.RowY}
+ * ({@code x | z << 4 | y << 8}), so positions can be tested and moved a word at a time.
+ * - Sections are only created when a bit is added, so a set without sections is empty
+ * - Cleared sections are kept to be reused
+ */
+public final class SectionBitSet {
+
+    public static final int WORDS = MemBlockSet.WORDS;
+
+    private static final long MIN_X = 0x0001000100010001L;
+    private static final long MAX_X = 0x8000800080008000L;
+
+    private final Long2ObjectOpenHashMap<long[]> sections = new Long2ObjectOpenHashMap<>();
+    private final List<long[]> free = new ArrayList<>();
+
+    public static long getKey(int sectionX, int sectionY, int sectionZ) {
+        return MathMan.tripleWorldCoord(sectionX, sectionY & 0xFF, sectionZ);
+    }
+
+    public static int getSectionX(long key) {
+        return (int) MathMan.untripleWorldCoordX(key);
+    }
+
+    public static int getSectionY(long key) {
+        return (byte) MathMan.untripleWorldCoordY(key);
+    }
+
+    public static int getSectionZ(long key) {
+        return (int) MathMan.untripleWorldCoordZ(key);
+    }
+
+    /**
+     * Get the bits of a section.
+     *
+     * @return the bits, or null if the section has none
+     */
+    public long[] get(long key) {
+        return sections.get(key);
+    }
+
+    /**
+     * Get the bits of a section, creating it if absent. Bits set in the returned array are part of the set.
+     */
+    public long[] getOrCreate(long key) {
+        long[] bits = sections.get(key);
+        if (bits == null) {
+            bits = free.isEmpty() ? new long[WORDS] : free.remove(free.size() - 1);
+            sections.put(key, bits);
+        }
+        return bits;
+    }
+
+    public ObjectSet<Long2ObjectMap.Entry<long[]>> getSections() {
+        return sections.long2ObjectEntrySet();
+    }
+
+    public boolean contains(int x, int y, int z) {
+        long[] bits = sections.get(getKey(x >> 4, y >> 4, z >> 4));
+        if (bits == null) {
+            return false;
+        }
+        int i = ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+        return (bits[i >> 6] & (1L << (i & 0x3F))) != 0;
+    }
+
+    public boolean add(int x, int y, int z) {
+        long[] bits = getOrCreate(getKey(x >> 4, y >> 4, z >> 4));
+        int i = ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+        int offset = i >> 6;
+        long value = bits[offset];
+        long mask = (1L << (i & 0x3F));
+        if ((value & mask) == 0) {
+            bits[offset] = value | mask;
+            return true;
+        }
+        return false;
+    }
+
+    public boolean isEmpty() {
+        return sections.isEmpty();
+    }
+
+    public long size() {
+        long total = 0;
+        for (long[] bits : sections.values()) {
+            for (long word : bits) {
+                total += Long.bitCount(word);
+            }
+        }
+        return total;
+    }
+
+    public void clear() {
+        for (long[] bits : sections.values()) {
+            Arrays.fill(bits, 0);
+            free.add(bits);
+        }
+        sections.clear();
+    }
+
+    public void forEach(MemBlockSet.BlockIterator iterator) {
+        for (Long2ObjectMap.Entry<long[]> entry : sections.long2ObjectEntrySet()) {
+            long key = entry.getLongKey();
+            int bx = getSectionX(key) << 4;
+            int by = getSectionY(key) << 4;
+            int bz = getSectionZ(key) << 4;
+            long[] bits = entry.getValue();
+            for (int w = 0; w < WORDS; w++) {
+                long word = bits[w];
+                while (word != 0) {
+                    int i = w << 6 | Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                    iterator.apply(bx + (i & 15), by + (i >> 8), bz + ((i >> 4) & 15));
+                }
+            }
+        }
+    }
+
+    /**
+     * Move the bits of a section one block along an axis.
+     *
+     * @param bits   the bits of the section
+     * @param dx     the x component of the axis, -1, 0 or 1
+     * @param dy     the y component of the axis, -1, 0 or 1
+     * @param dz     the z component of the axis, -1, 0 or 1
+     * @param inside receives the moved bits which stay within the section
+     * @param across receives the moved bits which enter the next section along the axis
+     * @return if any bits entered the next section
+     */
+    public static boolean shift(long[] bits, int dx, int dy, int dz, long[] inside, long[] across) {
+        long crossed = 0;
+        for (int w = 0; w < WORDS; w++) {
+            long word = bits[w];
+            long in;
+            long out;
+            if (dx > 0) {
+                in = (word & ~MAX_X) << 1;
+                out = (word & MAX_X) >>> 15;
+            } else if (dx < 0) {
+                in = (word & ~MIN_X) >>> 1;
+                out = (word & MIN_X) << 15;
+            } else if (dz > 0) {
+                // Each word holds 4 rows of a layer, the last row moves into the next word of the layer
+                in = word << 16 | ((w & 3) != 0 ? bits[w - 1] >>> 48 : 0);
+                out = (w & 3) == 0 ? bits[w + 3] >>> 48 : 0;
+            } else if (dz < 0) {
+                in = word >>> 16 | ((w & 3) != 3 ? bits[w + 1] << 48 : 0);
+                out = (w & 3) == 3 ? bits[w - 3] << 48 : 0;
+            } else if (dy > 0) {
+                // Each layer is 4 words
+                in = w >= 4 ? bits[w - 4] : 0;
+                out = w < 4 ? bits[w + WORDS - 4] : 0;
+            } else {
+                in = w < WORDS - 4 ? bits[w + 4] : 0;
+                out = w >= WORDS - 4 ? bits[w - WORDS + 4] : 0;
+            }
+            inside[w] = in;
+            across[w] = out;
+            crossed |= out;
+        }
+        return crossed != 0;
+    }
+
+}
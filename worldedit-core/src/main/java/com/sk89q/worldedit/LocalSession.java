@@ -145,6 +145,7 @@ public Object remove(int index) {
     private transient TextureUtil texture;
     private transient ResettableExtent transform = null;
     private transient World currentWorld;
+    private transient boolean profiling;
     //FAWE end
     private transient ClipboardHolder clipboard;
     private transient final Object clipboardLock = new Object();
@@ -1601,6 +1602,28 @@ public void setSideEffectSet(SideEffectSet sideEffectSet) {
         this.sideEffectSet = sideEffectSet;
     }
 
+    //FAWE start
+
+    /**
+     * Checks if the masks and patterns parsed for this session are profiled.
+     *
+     * @return true if profiling
+     * @see com.fastasyncworldedit.core.util.ParserProfile
+     */
+    public boolean isProfiling() {
+        return profiling;
+    }
+
+    /**
+     * Set if the masks and patterns parsed for this session are profiled. The statistics are reported after each command.
+     *
+     * @param profiling true to profile
+     */
+    public void setProfiling(boolean profiling) {
+        this.profiling = profiling;
+    }
+    //FAWE end
+
     /**
      * Checks if the session has fast mode enabled.
      *
@@ -623,6 +623,20 @@ public void tips(Player player, LocalSession session) throws WorldEditException
         }
     }
 
+    @Command(
+            name = "/profile",
+            desc = "Toggle profiling the masks and patterns of your commands"
+    )
+    @CommandPermissions("fawe.profile")
+    public void profile(Actor actor, LocalSession session) {
+        session.setProfiling(!session.isProfiling());
+        if (session.isProfiling()) {
+            actor.print(Caption.of("fawe.info.worldedit.toggle.profile.on"));
+        } else {
+            actor.print(Caption.of("fawe.info.worldedit.toggle.profile.off"));
+        }
+    }
+
     @Command(
             name = "/fast",
             desc = "Toggle fast mode"
@@ -6,6 +6,7 @@
 import com.fastasyncworldedit.core.configuration.Settings;
 import com.fastasyncworldedit.core.database.DBHandler;
 import com.fastasyncworldedit.core.database.RollbackDatabase;
+import com.fastasyncworldedit.core.history.ParallelRollback;
 import com.fastasyncworldedit.core.history.RollbackOptimizedHistory;
 import com.fastasyncworldedit.core.history.changeset.SimpleChangeSetSummary;
 import com.fastasyncworldedit.core.regions.RegionWrapper;
@@ -145,17 +146,16 @@ public synchronized void rollback(
         int count = 0;
         UUID finalOther = other;
         long minTime = System.currentTimeMillis() - timeDiff;
+        // The edits are merged and applied at once, so every chunk is only changed once
+        ParallelRollback rollback = new ParallelRollback(restore, allowedRegions);
         for (Supplier<RollbackOptimizedHistory> supplier : database.getEdits(other, minTime, bot, top, !restore, restore)) {
             count++;
             RollbackOptimizedHistory edit = supplier.get();
-            if (restore) {
-                edit.redo(player, allowedRegions);
-            } else {
-                edit.undo(player, allowedRegions);
-            }
+            rollback.add(edit);
             String path = edit.getWorld().getName() + "/" + finalOther + "-" + edit.getIndex();
             player.print(Caption.of("fawe.worldedit.rollback.rollback.element", path));
         }
+        rollback.apply(player);
         player.print(Caption.of("fawe.worldedit.tool.tool.inspect.info.footer", count));
     }
 
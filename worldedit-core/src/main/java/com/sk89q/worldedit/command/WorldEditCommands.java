@@ -23,6 +23,9 @@
 import com.fastasyncworldedit.core.FaweVersion;
 import com.fastasyncworldedit.core.configuration.Caption;
 import com.fastasyncworldedit.core.configuration.Settings;
+import com.fastasyncworldedit.core.queue.implementation.QueueHandler;
+import com.fastasyncworldedit.core.queue.implementation.SyncTaskScheduler;
+import com.fastasyncworldedit.core.queue.implementation.TargetSizeController;
 import com.intellectualsites.paster.IncendoPaster;
 import com.sk89q.worldedit.LocalSession;
 import com.sk89q.worldedit.WorldEdit;
@@ -180,6 +183,36 @@ public void threads(Actor actor) throws WorldEditException {
             }
         }
     }
+
+    @Command(
+            name = "queue",
+            desc = "Print the queue target size and the main thread time used per owner"
+    )
+    @CommandPermissions(value = "worldedit.queue", queued = false)
+    public void queue(Actor actor) throws WorldEditException {
+        QueueHandler queueHandler = Fawe.get().getQueueHandler();
+        TargetSizeController controller = queueHandler.getTargetSizeController();
+        boolean adaptive = Settings.IMP.QUEUE.ADAPTIVE_TARGET_SIZE;
+        actor.printDebug(String.format(
+                "Target size: %d chunks (adaptive: %s) | Avg chunk apply: %.2fms | Chunks applied: %d",
+                adaptive ? controller.getCurrentTargetSize() : Settings.IMP.QUEUE.TARGET_SIZE,
+                adaptive,
+                controller.getAverageApplyNanos() / 1_000_000d,
+                controller.getAppliedChunks()
+        ));
+        for (Map.Entry<String, SyncTaskScheduler.Usage> entry : queueHandler.getSyncUsage().entrySet()) {
+            SyncTaskScheduler.Usage usage = entry.getValue();
+            actor.printDebug(String.format(
+                    "%s: %.2fms/tick | %.2fms/task | %d tasks | %dms total | %d queued",
+                    entry.getKey(),
+                    usage.getAverageTickNanos() / 1_000_000d,
+                    usage.getAverageTaskNanos() / 1_000_000d,
+                    usage.getTasks(),
+                    usage.getTotalNanos() / 1_000_000L,
+                    usage.getQueued()
+            ));
+        }
+    }
     //FAWE end
 
     @Command(
@@ -31,6 +31,7 @@
 import com.fastasyncworldedit.core.function.pattern.PatternTraverser;
 import com.fastasyncworldedit.core.util.BrushCache;
 import com.fastasyncworldedit.core.util.MaskTraverser;
+import com.fastasyncworldedit.core.util.ParserProfile;
 import com.fastasyncworldedit.core.util.StringMan;
 import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.LocalConfiguration;
@@ -488,6 +489,11 @@ public boolean act(BrushAction action, Player player, LocalSession session) {
                 }
             }
         } finally {
+            //FAWE start - the masks and patterns of a brush are parsed when it is bound, report them on each use
+            if (session.isProfiling()) {
+                ParserProfile.report(player, ParserProfile.of(current.getMask(), current.getSourceMask(), current.getMaterial()));
+            }
+            //FAWE end
             Request.reset();
         }
 
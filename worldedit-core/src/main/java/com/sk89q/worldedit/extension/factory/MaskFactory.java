@@ -35,6 +35,8 @@
 import com.fastasyncworldedit.core.extension.factory.parser.mask.XAxisMaskParser;
 import com.fastasyncworldedit.core.extension.factory.parser.mask.YAxisMaskParser;
 import com.fastasyncworldedit.core.extension.factory.parser.mask.ZAxisMaskParser;
+import com.fastasyncworldedit.core.function.mask.ProfilingMask;
+import com.fastasyncworldedit.core.util.ParserProfile;
 import com.sk89q.worldedit.WorldEdit;
 import com.sk89q.worldedit.extension.factory.parser.mask.AirMaskParser;
 import com.sk89q.worldedit.extension.factory.parser.mask.BiomeMaskParser;
@@ -124,14 +126,37 @@ public List<String> getSuggestions(String input) {
         return super.getSuggestions(input);
     }
 
+    //FAWE start - profile the parsed masks
     @Override
     public Mask parseFromInput(String input, ParserContext context) throws InputParseException {
+        ParserProfile profile = ParserProfile.begin(input, context, true);
+        if (profile == null) {
+            return parse(input, context, false);
+        }
+        try {
+            Mask mask = parse(input, context, true);
+            profile.attach();
+            return ProfilingMask.of(mask, profile);
+        } finally {
+            profile.end();
+        }
+    }
+
+    private Mask parse(String input, ParserContext context, boolean profiling) throws InputParseException {
+    //FAWE end
         List<Mask> masks = new ArrayList<>();
 
-        for (String component : input.split(" ")) {
+        //FAWE start - profile the components of an intersection on their own
+        String[] components = input.split(" ");
+        for (String component : components) {
             if (component.isEmpty()) {
                 continue;
             }
+            if (profiling && components.length > 1) {
+                masks.add(parseFromInput(component, context));
+                continue;
+            }
+            //FAWE end
 
             Mask match = null;
             for (InputParser<Mask> parser : getParsers()) {
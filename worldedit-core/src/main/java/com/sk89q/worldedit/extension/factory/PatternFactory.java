@@ -27,9 +27,14 @@
 import com.fastasyncworldedit.core.extension.factory.parser.pattern.PerlinPatternParser;
 import com.fastasyncworldedit.core.extension.factory.parser.pattern.RandomPatternParser;
 import com.fastasyncworldedit.core.extension.factory.parser.pattern.RidgedMultiFractalPatternParser;
+import com.fastasyncworldedit.core.extension.factory.parser.pattern.SeededPatternParser;
 import com.fastasyncworldedit.core.extension.factory.parser.pattern.SimplexPatternParser;
 import com.fastasyncworldedit.core.extension.factory.parser.pattern.VoronoiPatternParser;
+import com.fastasyncworldedit.core.function.pattern.ProfilingPattern;
+import com.fastasyncworldedit.core.util.ParserProfile;
 import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.extension.input.InputParseException;
+import com.sk89q.worldedit.extension.input.ParserContext;
 import com.sk89q.worldedit.extension.factory.parser.pattern.BlockCategoryPatternParser;
 import com.sk89q.worldedit.extension.factory.parser.pattern.ClipboardPatternParser;
 import com.sk89q.worldedit.extension.factory.parser.pattern.RandomStatePatternParser;
@@ -74,7 +79,25 @@ public PatternFactory(WorldEdit worldEdit) {
         register(new Linear3DPatternParser(worldEdit));
         register(new BufferedPatternParser(worldEdit));
         register(new ExistingPatternParser(worldEdit));
+        register(new SeededPatternParser(worldEdit));
         //FAWE end
     }
 
+    //FAWE start - profile the parsed patterns
+    @Override
+    public Pattern parseFromInput(String input, ParserContext context) throws InputParseException {
+        ParserProfile profile = ParserProfile.begin(input, context, false);
+        if (profile == null) {
+            return super.parseFromInput(input, context);
+        }
+        try {
+            Pattern pattern = super.parseFromInput(input, context);
+            profile.attach();
+            return new ProfilingPattern(pattern, profile);
+        } finally {
+            profile.end();
+        }
+    }
+    //FAWE end
+
 }
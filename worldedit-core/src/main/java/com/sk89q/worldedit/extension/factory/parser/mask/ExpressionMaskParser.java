@@ -58,6 +58,9 @@ public Mask parseFromInput(String input, ParserContext context) throws InputPars
 
         try {
             Expression exp = Expression.compile(input.substring(1), "x", "y", "z");
+            //FAWE start
+            exp.optimize();
+            //FAWE end
             WorldEditExpressionEnvironment env = new WorldEditExpressionEnvironment(
                     context.requireExtent(), Vector3.ONE, Vector3.ZERO);
             exp.setEnvironment(env);
@@ -28,6 +28,8 @@
 import com.fastasyncworldedit.core.extension.platform.binding.ProvideBindings;
 import com.fastasyncworldedit.core.internal.command.MethodInjector;
 import com.fastasyncworldedit.core.internal.exception.FaweException;
+import com.fastasyncworldedit.core.queue.implementation.QueueHandler;
+import com.fastasyncworldedit.core.util.ParserProfile;
 import com.fastasyncworldedit.core.util.StringMan;
 import com.fastasyncworldedit.core.util.TaskManager;
 import com.fastasyncworldedit.core.util.task.ThrowableSupplier;
@@ -719,7 +721,15 @@ public void handleCommandOnCurrentThread(CommandEvent event) {
 
         ThrowableSupplier<Throwable> task = () -> commandManager.execute(context, ImmutableList.copyOf(split));
 
-        handleCommandTask(task, context, session, event);
+        //FAWE start - account main thread time used by the command to the actor
+        QueueHandler queueHandler = Fawe.get().getQueueHandler();
+        String previousOwner = queueHandler.setOwner(actor.getName());
+        try {
+            handleCommandTask(task, context, session, event);
+        } finally {
+            queueHandler.setOwner(previousOwner);
+        }
+        //FAWE end
     }
 
     public void handleCommandTask(
@@ -812,6 +822,9 @@ public void handleCommandTask(
 
                 worldEdit.flushBlockBag(actor, editSession);
             }
+            //FAWE start - report the profiles of the masks and patterns parsed for the command
+            ParserProfile.report(actor, Request.request().getProfiles());
+            //FAWE end
             // TODO: Ping @MattBDev to reimplement 2020-02-04
 //            CFICommands.CFISettings cfi = actor.getMeta("CFISettings");
 //            if (cfi != null) {
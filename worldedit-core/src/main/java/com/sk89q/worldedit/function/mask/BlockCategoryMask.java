@@ -19,6 +19,7 @@
 
 package com.sk89q.worldedit.function.mask;
 
+import com.fastasyncworldedit.core.util.OrdinalTables;
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.world.block.BlockCategory;
@@ -72,5 +73,10 @@ public Mask copy() {
     public boolean replacesAir() {
         return category.contains(BlockTypes.AIR);
     }
+
+    @Override
+    public boolean[] toOrdinalTable() {
+        return OrdinalTables.of(state -> category.contains(state));
+    }
     //FAWE end
 }
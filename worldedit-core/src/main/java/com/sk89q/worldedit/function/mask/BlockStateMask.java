@@ -19,6 +19,7 @@
 
 package com.sk89q.worldedit.function.mask;
 
+import com.fastasyncworldedit.core.util.OrdinalTables;
 import com.google.common.collect.Maps;
 import com.sk89q.worldedit.blocks.Blocks;
 import com.sk89q.worldedit.extent.Extent;
@@ -91,5 +92,10 @@ public Mask copy() {
         states.forEach(statesClone::put);
         return new BlockStateMask(getExtent(), statesClone, strict);
     }
+
+    @Override
+    public boolean[] toOrdinalTable() {
+        return OrdinalTables.of(this::test);
+    }
     //FAWE end
 }
@@ -19,6 +19,7 @@
 
 package com.sk89q.worldedit.function.mask;
 
+import com.fastasyncworldedit.core.util.OrdinalTables;
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.world.block.BlockType;
@@ -140,6 +141,11 @@ public boolean replacesAir() {
     public boolean test(BlockType block) {
         return types[block.getInternalId()];
     }
+
+    @Override
+    public boolean[] toOrdinalTable() {
+        return OrdinalTables.of(state -> test(state.getBlockType()));
+    }
     //FAWE end
 
     @Nullable
@@ -19,6 +19,7 @@
 
 package com.sk89q.worldedit.function.mask;
 
+import com.fastasyncworldedit.core.util.OrdinalTables;
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.math.BlockVector3;
 
@@ -61,6 +62,11 @@ public Mask copy() {
         // The mask is not mutable. There is no need to clone it.
         return this;
     }
+
+    @Override
+    public boolean[] toOrdinalTable() {
+        return OrdinalTables.of(state -> !state.getBlockType().getMaterial().isAir());
+    }
     //FAWE end
 
 }
@@ -19,6 +19,8 @@
 
 package com.sk89q.worldedit.function.mask;
 
+import com.fastasyncworldedit.core.util.SectionExpressions;
+import com.sk89q.worldedit.WorldEdit;
 import com.sk89q.worldedit.internal.expression.EvaluationException;
 import com.sk89q.worldedit.internal.expression.Expression;
 import com.sk89q.worldedit.internal.expression.ExpressionException;
@@ -92,6 +94,43 @@ public Mask2D toMask2D() {
     }
 
     //FAWE start
+    @Override
+    public boolean testSection(
+            int blockX, int blockY, int blockZ,
+            int minX, int minY, int minZ, int maxX, int maxY, int maxZ,
+            boolean[] results
+    ) {
+        if (!SectionExpressions.canEvaluate(expression)) {
+            return false;
+        }
+        final double[] values;
+        try {
+            values = SectionExpressions.evaluate(
+                    expression, blockX, blockY, blockZ, minX, minY, minZ, maxX, maxY, maxZ,
+                    timeout == null ? WorldEdit.getInstance().getConfiguration().calculationTimeout : timeout.getAsInt()
+            );
+        } catch (EvaluationException e) {
+            return false;
+        }
+        for (int y = minY; y <= maxY; y++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                for (int index = y << 8 | z << 4 | minX, end = index + maxX - minX; index <= end; index++) {
+                    results[index] = values[index] > 0;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Expressions with side effects (e.g. writing to {@code megabuf}) must only be evaluated where they would be
+     * without reordering.
+     */
+    @Override
+    public boolean isOrderDependent() {
+        return !expression.isPure();
+    }
+
     @Override
     public Mask copy() {
         return new ExpressionMask(expression.clone(), timeout);
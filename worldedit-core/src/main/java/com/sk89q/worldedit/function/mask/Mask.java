@@ -105,6 +105,45 @@ default boolean replacesAir() {
         return false;
     }
 
+    /**
+     * Check if the result of this mask depends on the positions tested before (e.g. a mask remembering the first block
+     * it tests, or caching its results) or testing it has side effects, so combined masks must keep testing it in
+     * order, and only where the masks before it passed.
+     *
+     * @return true if the mask must be tested in order
+     */
+    default boolean isOrderDependent() {
+        return false;
+    }
+
+    /**
+     * Get the result of this mask for every block state, if it only depends on the block state (i.e. not on the
+     * position or the surrounding blocks), so it can be tested with a single lookup.
+     *
+     * @return the result indexed by ordinal, or null if the mask depends on more than the block state
+     */
+    @Nullable
+    default boolean[] toOrdinalTable() {
+        return null;
+    }
+
+    /**
+     * Test a cuboid within a chunk section at once, for masks which are faster that way than block by block.
+     *
+     * @param blockX  the x coordinate of the first block of the section
+     * @param blockY  the y coordinate of the first block of the section
+     * @param blockZ  the z coordinate of the first block of the section
+     * @param results receives the results of the cuboid, indexed by {@code x | z << 4 | y << 8}
+     * @return false if the section wasn't tested, in which case the blocks must be tested one by one
+     */
+    default boolean testSection(
+            int blockX, int blockY, int blockZ,
+            int minX, int minY, int minZ, int maxX, int maxY, int maxZ,
+            boolean[] results
+    ) {
+        return false;
+    }
+
     /**
      * Returns a copy of the mask. Usually for multi-threaded operation
      *
@@ -29,12 +29,14 @@
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -48,11 +50,23 @@
 public class MaskIntersection extends AbstractMask {
 
     private static final Logger LOGGER = LogManagerCompat.getLogger();
+    //FAWE start
+    /**
+     * The number of tests which test and time all masks, before they are sorted, see {@link #sample(BlockVector3, boolean)}
+     */
+    private static final int SAMPLES = 4096;
+    private static final AtomicIntegerFieldUpdater<MaskIntersection> SAMPLES_LEFT =
+            AtomicIntegerFieldUpdater.newUpdater(MaskIntersection.class, "samples");
+    //FAWE end
 
     protected final Set<Mask> masks;
     //FAWE start
-    protected Mask[] masksArray;
+    // Volatile, as sampling replaces it while other threads may test a shared mask
+    protected volatile Mask[] masksArray;
     protected boolean defaultReturn;
+    private volatile int samples;
+    private long[] sampleNanos;
+    private int[] sampleDecisions;
     //FAWE end
 
     /**
@@ -111,6 +125,67 @@ private void formArray() {
             masksArray = masks.toArray(new Mask[0]);
         }
         this.defaultReturn = masksArray.length != 0;
+        if (masksArray.length > 1 && !isOrderDependent()) {
+            this.sampleNanos = new long[masksArray.length];
+            this.sampleDecisions = new int[masksArray.length];
+            this.samples = SAMPLES;
+        } else {
+            this.samples = 0;
+        }
+    }
+
+    /**
+     * Check if the masks are being sampled to sort them, in which case tests should use
+     * {@link #sample(BlockVector3, boolean)}.
+     */
+    protected final boolean isSampling() {
+        return samples > 0;
+    }
+
+    /**
+     * Test all masks, timing them and counting how often they decide the result. After enough tests, the masks are
+     * sorted by their time per decision, so masks which are cheap and likely to decide the result are tested first.
+     *
+     * @param decision the result of a mask which decides the result, e.g. false for an intersection
+     * @return the result
+     */
+    protected final boolean sample(BlockVector3 vector, boolean decision) {
+        // Copies are used by one thread, but a shared mask must stay consistent. The times and decisions are only
+        // statistics, so updates lost to other threads don't matter
+        final Mask[] masks = masksArray;
+        final long[] nanos = sampleNanos;
+        final int[] decisions = sampleDecisions;
+        boolean decided = false;
+        for (int i = 0; i < masks.length; i++) {
+            final long start = System.nanoTime();
+            final boolean result = masks[i].test(vector);
+            nanos[i] += System.nanoTime() - start;
+            if (result == decision) {
+                decisions[i]++;
+                decided = true;
+            }
+        }
+        // Exactly one thread counts down to 0 and sorts the masks
+        if (SAMPLES_LEFT.decrementAndGet(this) == 0) {
+            sortMasks(masks, nanos, decisions);
+        }
+        return decided == decision;
+    }
+
+    private void sortMasks(Mask[] masks, long[] nanos, int[] decisions) {
+        final Integer[] order = new Integer[masks.length];
+        final double[] costs = new double[masks.length];
+        for (int i = 0; i < masks.length; i++) {
+            order[i] = i;
+            // The expected time until the result is decided, if the masks were independent
+            costs[i] = (nanos[i] + 1.0) / (decisions[i] + 1.0);
+        }
+        Arrays.sort(order, Comparator.comparingDouble(i -> costs[i]));
+        final Mask[] sorted = new Mask[masks.length];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = masks[order[i]];
+        }
+        this.masksArray = sorted;
     }
 
     public Function<Entry<Mask, Mask>, Mask> pairingFunction() {
@@ -259,6 +334,9 @@ public final Mask[] getMasksArray() {
 
     @Override
     public boolean test(BlockVector3 vector) {
+        if (isSampling()) {
+            return sample(vector, false);
+        }
         for (Mask mask : masksArray) {
             if (!mask.test(vector)) {
                 return false;
@@ -287,10 +365,20 @@ public Mask2D toMask2D() {
     //FAWE start
     @Override
     public Mask copy() {
-        Set<Mask> masks = this.masks.stream().map(Mask::copy).collect(Collectors.toSet());
+        Set<Mask> masks = this.masks.stream().map(Mask::copy).collect(Collectors.toCollection(LinkedHashSet::new));
         return new MaskIntersection(masks);
     }
 
+    @Override
+    public boolean isOrderDependent() {
+        for (Mask mask : masks) {
+            if (mask.isOrderDependent()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public boolean replacesAir() {
         for (Mask mask : masksArray) {
@@ -300,6 +388,26 @@ public boolean replacesAir() {
         }
         return false;
     }
+
+    @Nullable
+    @Override
+    public boolean[] toOrdinalTable() {
+        boolean[] result = null;
+        for (Mask mask : masksArray) {
+            boolean[] table = mask.toOrdinalTable();
+            if (table == null) {
+                return null;
+            }
+            if (result == null) {
+                result = table;
+            } else {
+                for (int i = 0; i < result.length; i++) {
+                    result[i] &= table[i];
+                }
+            }
+        }
+        return result;
+    }
     //FAWE end
 
 }
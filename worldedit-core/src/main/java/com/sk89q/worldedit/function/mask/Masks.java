@@ -21,8 +21,10 @@
 
 import com.sk89q.worldedit.math.BlockVector2;
 import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BlockTypesCache;
 
 import javax.annotation.Nullable;
+import java.util.Arrays;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -155,6 +157,13 @@ public Mask tryOr(Mask other) {
             return this;
         }
 
+        @Override
+        public boolean[] toOrdinalTable() {
+            boolean[] table = new boolean[BlockTypesCache.states.length];
+            Arrays.fill(table, true);
+            return table;
+        }
+
         // No need to properly clone an always true mask
         @Override
         public Mask copy() {
@@ -201,6 +210,11 @@ public Mask tryOr(Mask other) {
             return other;
         }
 
+        @Override
+        public boolean[] toOrdinalTable() {
+            return new boolean[BlockTypesCache.states.length];
+        }
+
         // No need to properly clone an always false mask
         @Override
         public Mask copy() {
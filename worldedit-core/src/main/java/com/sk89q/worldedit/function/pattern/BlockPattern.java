@@ -23,6 +23,8 @@
 import com.sk89q.worldedit.world.block.BaseBlock;
 import com.sk89q.worldedit.world.block.BlockStateHolder;
 
+import javax.annotation.Nullable;
+
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
@@ -68,4 +70,12 @@ public BaseBlock applyBlock(BlockVector3 position) {
         return block;
     }
 
+    //FAWE start
+    @Nullable
+    @Override
+    public char[] toOrdinalTable() {
+        return block.toOrdinalTable();
+    }
+    //FAWE end
+
 }
@@ -27,6 +27,8 @@
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.world.block.BaseBlock;
 
+import javax.annotation.Nullable;
+
 /**
  * Returns a {@link BaseBlock} for a given position.
  */
@@ -59,6 +61,23 @@ default void applyBlock(final FilterBlock block) {
         apply(block, block, block);
     }
 
+    /**
+     * Get the block state this pattern sets in place of every block state, if it only depends on the block state it
+     * replaces (i.e. not on the position, randomness or NBT), so it can be applied with a single lookup.
+     *
+     * @return the ordinal to set indexed by the current ordinal, or null if the pattern depends on more than the
+     *         current block state
+     */
+    @Nullable
+    default char[] toOrdinalTable() {
+        return null;
+    }
+
+    @Override
+    default Pattern fork() {
+        return this;
+    }
+
     //FAWE end
 
     /**
@@ -21,16 +21,21 @@
 
 import com.fastasyncworldedit.core.math.random.SimpleRandom;
 import com.fastasyncworldedit.core.math.random.TrueRandom;
+import com.fastasyncworldedit.core.util.collection.AliasRandomCollection;
 import com.fastasyncworldedit.core.util.collection.RandomCollection;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockState;
 
-import java.util.HashMap;
+import javax.annotation.Nullable;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Supplier;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -41,9 +46,11 @@ public class RandomPattern extends AbstractPattern {
 
     //FAWE start - SimpleRandom > Random, LHS<P> > List
     private final SimpleRandom random;
-    private Map<Pattern, Double> weights = new HashMap<>();
+    private Map<Pattern, Double> weights = new LinkedHashMap<>();
     private RandomCollection<Pattern> collection;
     private LinkedHashSet<Pattern> patterns = new LinkedHashSet<>();
+    @Nullable
+    private char[] ordinals;
     //FAWE end
 
     //FAWE start
@@ -64,8 +71,15 @@ public RandomPattern(SimpleRandom random) {
     public RandomPattern(SimpleRandom random, RandomPattern parent) {
         this.random = random;
         this.weights = parent.weights;
-        this.collection = RandomCollection.of(weights, random);
         this.patterns = parent.patterns;
+        update();
+    }
+
+    private RandomPattern(SimpleRandom random, Map<Pattern, Double> weights, LinkedHashSet<Pattern> patterns) {
+        this.random = random;
+        this.weights = weights;
+        this.patterns = patterns;
+        update();
     }
     //FAWE end
 
@@ -86,8 +100,41 @@ public void add(Pattern pattern, double chance) {
             chance += existingWeight;
         }
         weights.put(pattern, chance);
-        collection = RandomCollection.of(weights, random);
         this.patterns.add(pattern);
+        update();
+    }
+
+    private void update() {
+        collection = RandomCollection.of(weights, random);
+        ordinals = toOrdinals(collection);
+    }
+
+    /**
+     * Get the block state each value of an alias collection sets, if every value only sets a block state.
+     *
+     * @return the ordinals indexed like the collection, or null
+     */
+    @Nullable
+    private static char[] toOrdinals(RandomCollection<Pattern> collection) {
+        if (!(collection instanceof AliasRandomCollection)) {
+            return null;
+        }
+        final AliasRandomCollection<Pattern> alias = (AliasRandomCollection<Pattern>) collection;
+        final char[] ordinals = new char[alias.size()];
+        for (int i = 0; i < ordinals.length; i++) {
+            Pattern pattern = alias.get(i);
+            if (pattern instanceof BlockPattern) {
+                pattern = ((BlockPattern) pattern).getBlock();
+            }
+            if (pattern instanceof BlockState) {
+                ordinals[i] = ((BlockState) pattern).getOrdinalChar();
+            } else if (pattern instanceof BaseBlock && ((BaseBlock) pattern).getNbtReference() == null) {
+                ordinals[i] = ((BaseBlock) pattern).getOrdinalChar();
+            } else {
+                return null;
+            }
+        }
+        return ordinals;
     }
 
     public Set<Pattern> getPatterns() {
@@ -107,6 +154,57 @@ public BaseBlock applyBlock(BlockVector3 position) {
     public boolean apply(Extent extent, BlockVector3 get, BlockVector3 set) throws WorldEditException {
         return collection.next(get.getBlockX(), get.getBlockY(), get.getBlockZ()).apply(extent, get, set);
     }
+
+    /**
+     * Sets whole sections if every pattern only sets a block state, picking the ordinals by the index of the pattern.
+     */
+    @Override
+    public boolean applySection(
+            char[] get, Supplier<char[]> set, int blockX, int blockY, int blockZ,
+            int minX, int minY, int minZ, int maxX, int maxY, int maxZ
+    ) {
+        final char[] ordinals = this.ordinals;
+        if (ordinals == null) {
+            return false;
+        }
+        final AliasRandomCollection<Pattern> collection = (AliasRandomCollection<Pattern>) this.collection;
+        final char[] setArr = set.get();
+        for (int y = minY; y <= maxY; y++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                int index = y << 8 | z << 4 | minX;
+                for (int x = minX; x <= maxX; x++, index++) {
+                    setArr[index] = ordinals[collection.nextIndex(blockX + x, blockY + y, blockZ + z)];
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Fork the random (so each thread has its own stream) and the patterns. The patterns keep their order, so a
+     * seeded random picks the same patterns.
+     */
+    @Override
+    public Pattern fork() {
+        final SimpleRandom random = this.random.fork();
+        boolean forked = random != this.random;
+        final Map<Pattern, Pattern> forks = new IdentityHashMap<>();
+        final Map<Pattern, Double> weights = new LinkedHashMap<>();
+        for (Map.Entry<Pattern, Double> entry : this.weights.entrySet()) {
+            final Pattern pattern = entry.getKey().fork();
+            forked |= pattern != entry.getKey();
+            forks.put(entry.getKey(), pattern);
+            weights.put(pattern, entry.getValue());
+        }
+        if (!forked) {
+            return this;
+        }
+        final LinkedHashSet<Pattern> patterns = new LinkedHashSet<>();
+        for (Pattern pattern : this.patterns) {
+            patterns.add(forks.get(pattern));
+        }
+        return new RandomPattern(random, weights, patterns);
+    }
     //FAWE end
 
 }
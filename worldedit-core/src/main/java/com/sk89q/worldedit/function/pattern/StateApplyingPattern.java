@@ -19,6 +19,7 @@
 
 package com.sk89q.worldedit.function.pattern;
 
+import com.fastasyncworldedit.core.util.OrdinalTables;
 import com.google.common.collect.Maps;
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.math.BlockVector3;
@@ -44,7 +45,17 @@ public StateApplyingPattern(Extent extent, Map<String, String> statesToSet) {
 
     @Override
     public BaseBlock applyBlock(BlockVector3 position) {
-        BlockState block = getExtent().getBlock(position);
+        //FAWE start - split off applyState
+        return applyState(getExtent().getBlock(position)).toBaseBlock();
+    }
+
+    @Override
+    public char[] toOrdinalTable() {
+        return OrdinalTables.map(this::applyState);
+    }
+
+    private BlockState applyState(BlockState block) {
+        //FAWE end
         for (Entry<Property<Object>, Object> entry : cache
                 .computeIfAbsent(block.getBlockType(), (b -> resolveProperties(states, b))).entrySet()) {
             //FAWE start
@@ -53,7 +64,7 @@ public BaseBlock applyBlock(BlockVector3 position) {
             }
             //FAWE end
         }
-        return block.toBaseBlock();
+        return block;
     }
 
 }
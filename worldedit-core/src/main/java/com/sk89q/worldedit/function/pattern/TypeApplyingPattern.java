@@ -19,6 +19,7 @@
 
 package com.sk89q.worldedit.function.pattern;
 
+import com.fastasyncworldedit.core.util.OrdinalTables;
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.world.block.BaseBlock;
@@ -43,4 +44,11 @@ public BaseBlock applyBlock(BlockVector3 position) {
         return newBlock.toBaseBlock();
     }
 
+    //FAWE start
+    @Override
+    public char[] toOrdinalTable() {
+        return OrdinalTables.map(blockState::withProperties);
+    }
+    //FAWE end
+
 }
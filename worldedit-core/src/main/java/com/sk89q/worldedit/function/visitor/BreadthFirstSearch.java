@@ -22,6 +22,7 @@
 import com.fastasyncworldedit.core.configuration.Caption;
 import com.fastasyncworldedit.core.math.BlockVectorSet;
 import com.fastasyncworldedit.core.math.MutableBlockVector3;
+import com.fastasyncworldedit.core.util.collection.SectionBitSet;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Sets;
 import com.sk89q.worldedit.WorldEditException;
@@ -32,6 +33,7 @@
 import com.sk89q.worldedit.util.Direction;
 import com.sk89q.worldedit.util.formatting.text.Component;
 import com.sk89q.worldedit.util.formatting.text.TextComponent;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -84,9 +86,10 @@ public abstract class BreadthFirstSearch implements Operation {
     //FAWE end
 
     private final RegionFunction function;
-    //FAWE Start - BVS > Queue<BV3>, Set<BV3>, List<BV3>
-    private BlockVectorSet queue = new BlockVectorSet();
-    private BlockVectorSet visited = new BlockVectorSet();
+    //FAWE Start - SectionBitSet > Queue<BV3>, Set<BV3>, List<BV3>
+    private SectionBitSet queue = new SectionBitSet();
+    private SectionBitSet visited = new SectionBitSet();
+    private BlockVectorSet visitedSet;
     private BlockVector3[] directions;
     //FAWE end
     private int affected = 0;
@@ -185,10 +188,14 @@ public void addDiagonal() {
      * @param position the position
      */
     public void visit(BlockVector3 position) {
-        if (!visited.contains(position)) {
-            queue.add(position);
-            visited.add(position);
+        //FAWE start
+        int x = position.getBlockX();
+        int y = position.getBlockY();
+        int z = position.getBlockZ();
+        if (visited.add(x, y, z)) {
+            queue.add(x, y, z);
         }
+        //FAWE end
     }
 
     /**
@@ -198,25 +205,46 @@ public void visit(BlockVector3 position) {
      * @param to   the block under question
      */
     private void visit(BlockVector3 from, BlockVector3 to) {
-        if (!visited.contains(to)) {
-            visited.add(to);
+        //FAWE start
+        int x = to.getBlockX();
+        int y = to.getBlockY();
+        int z = to.getBlockZ();
+        if (visited.add(x, y, z)) {
             if (isVisitable(from, to)) {
-                queue.add(to);
+                queue.add(x, y, z);
             }
         }
+        //FAWE end
     }
 
     //FAWE start
+
+    /**
+     * Set the positions which are already visited. The set is filled with the positions visited by the search when it
+     * completes.
+     */
     public void setVisited(BlockVectorSet set) {
-        this.visited = set;
+        this.visitedSet = set;
+        this.visited.clear();
+        for (BlockVector3 pos : set) {
+            visited.add(pos.getBlockX(), pos.getBlockY(), pos.getBlockZ());
+        }
     }
 
+    /**
+     * Get the positions visited so far. The search keeps them in a {@link SectionBitSet}, so the returned set is
+     * filled from it on each call, and changes to it don't affect the search.
+     */
     public BlockVectorSet getVisited() {
-        return visited;
+        if (visitedSet == null) {
+            visitedSet = new BlockVectorSet();
+        }
+        visited.forEach(visitedSet::add);
+        return visitedSet;
     }
 
     public boolean isVisited(BlockVector3 pos) {
-        return visited.contains(pos);
+        return visited.contains(pos.getBlockX(), pos.getBlockY(), pos.getBlockZ());
     }
 
     public void setMaxBranch(int maxBranch) {
@@ -246,44 +274,132 @@ public int getAffected() {
     @Override
     public Operation resume(RunContext run) throws WorldEditException {
         //FAWE start - directions & visited
-        MutableBlockVector3 mutable = new MutableBlockVector3();
-        BlockVector3[] dirs = directions;
-        BlockVectorSet tempQueue = new BlockVectorSet();
+        MutableBlockVector3 from = new MutableBlockVector3();
+        MutableBlockVector3 to = new MutableBlockVector3();
+        // Unit axis directions are expanded a section word at a time, unless each position may only branch so often
+        List<BlockVector3> axes = new ArrayList<>();
+        List<BlockVector3> others = new ArrayList<>();
+        for (BlockVector3 direction : directions) {
+            boolean axis = Math.abs(direction.getX()) + Math.abs(direction.getY()) + Math.abs(direction.getZ()) == 1;
+            (axis && maxBranch == Integer.MAX_VALUE ? axes : others).add(direction);
+        }
+        BlockVector3[] dirs = others.toArray(new BlockVector3[0]);
+        long[] inside = new long[SectionBitSet.WORDS];
+        long[] across = new long[SectionBitSet.WORDS];
+        SectionBitSet tempQueue = new SectionBitSet();
         for (currentDepth = 0; !queue.isEmpty() && currentDepth <= maxDepth; currentDepth++) {
-            for (BlockVector3 from : queue) {
-                if (function.apply(from)) {
-                    affected++;
-                }
-                for (int i = 0, j = 0; i < dirs.length && j < maxBranch; i++) {
-                    BlockVector3 direction = dirs[i];
-                    int y = from.getBlockY() + direction.getY();
-                    if (y < 0 || y >= 256) {
-                        continue;
-                    }
-                    int x = from.getBlockX() + direction.getX();
-                    int z = from.getBlockZ() + direction.getZ();
-                    if (!visited.contains(x, y, z)) {
-                        if (isVisitable(from, mutable.setComponents(x, y, z))) {
-                            j++;
-                            visited.add(x, y, z);
-                            tempQueue.add(x, y, z);
+            for (Long2ObjectMap.Entry<long[]> section : queue.getSections()) {
+                long key = section.getLongKey();
+                long[] bits = section.getValue();
+                int sectionX = SectionBitSet.getSectionX(key);
+                int sectionY = SectionBitSet.getSectionY(key);
+                int sectionZ = SectionBitSet.getSectionZ(key);
+                int bx = sectionX << 4;
+                int by = sectionY << 4;
+                int bz = sectionZ << 4;
+                for (int w = 0; w < SectionBitSet.WORDS; w++) {
+                    long word = bits[w];
+                    while (word != 0) {
+                        int index = w << 6 | Long.numberOfTrailingZeros(word);
+                        word &= word - 1;
+                        from.setComponents(bx + (index & 15), by + (index >> 8), bz + ((index >> 4) & 15));
+                        if (function.apply(from)) {
+                            affected++;
+                        }
+                        for (int i = 0, j = 0; i < dirs.length && j < maxBranch; i++) {
+                            BlockVector3 direction = dirs[i];
+                            int y = from.getBlockY() + direction.getY();
+                            if (y < 0 || y >= 256) {
+                                continue;
+                            }
+                            int x = from.getBlockX() + direction.getX();
+                            int z = from.getBlockZ() + direction.getZ();
+                            if (!visited.contains(x, y, z)) {
+                                if (isVisitable(from, to.setComponents(x, y, z))) {
+                                    j++;
+                                    visited.add(x, y, z);
+                                    tempQueue.add(x, y, z);
+                                }
+                            }
                         }
                     }
                 }
+                for (BlockVector3 direction : axes) {
+                    int dx = direction.getX();
+                    int dy = direction.getY();
+                    int dz = direction.getZ();
+                    if (SectionBitSet.shift(bits, dx, dy, dz, inside, across)) {
+                        visitCandidates(sectionX + dx, sectionY + dy, sectionZ + dz, across, direction, tempQueue, from, to);
+                    }
+                    visitCandidates(sectionX, sectionY, sectionZ, inside, direction, tempQueue, from, to);
+                }
             }
             if (currentDepth == maxDepth) {
                 break;
             }
-            BlockVectorSet tmp = queue;
+            SectionBitSet tmp = queue;
             queue = tempQueue;
             tmp.clear();
             tempQueue = tmp;
         }
+        if (visitedSet != null) {
+            visited.forEach(visitedSet::add);
+        }
         //FAWE end
 
         return null;
     }
 
+    //FAWE start
+
+    /**
+     * Visit the candidates of a section which were reached along one direction, testing only those which aren't
+     * visited yet.
+     */
+    private void visitCandidates(
+            int sectionX, int sectionY, int sectionZ, long[] candidates, BlockVector3 direction,
+            SectionBitSet next, MutableBlockVector3 from, MutableBlockVector3 to
+    ) {
+        if (sectionY < 0 || sectionY >= 16) {
+            return;
+        }
+        long key = SectionBitSet.getKey(sectionX, sectionY, sectionZ);
+        long[] seen = visited.get(key);
+        long[] added = null;
+        int bx = sectionX << 4;
+        int by = sectionY << 4;
+        int bz = sectionZ << 4;
+        int dx = direction.getX();
+        int dy = direction.getY();
+        int dz = direction.getZ();
+        for (int w = 0; w < SectionBitSet.WORDS; w++) {
+            long word = seen == null ? candidates[w] : candidates[w] & ~seen[w];
+            long accepted = 0;
+            while (word != 0) {
+                long bit = word & -word;
+                int index = w << 6 | Long.numberOfTrailingZeros(word);
+                word ^= bit;
+                int x = bx + (index & 15);
+                int y = by + (index >> 8);
+                int z = bz + ((index >> 4) & 15);
+                if (isVisitable(from.setComponents(x - dx, y - dy, z - dz), to.setComponents(x, y, z))) {
+                    accepted |= bit;
+                }
+            }
+            if (accepted != 0) {
+                if (seen == null) {
+                    seen = visited.getOrCreate(key);
+                }
+                if (added == null) {
+                    added = next.getOrCreate(key);
+                }
+                seen[w] |= accepted;
+                added[w] |= accepted;
+            }
+        }
+    }
+    //FAWE end
+
     //FAWE start
     public int getDepth() {
         return currentDepth;
@@ -295,6 +411,9 @@ public void cancel() {
         //FAWE start
         queue.clear();
         visited.clear();
+        if (visitedSet != null) {
+            visitedSet.clear();
+        }
         affected = 0;
         //FAWE emd
     }
@@ -201,7 +201,7 @@ private void queueChunkLoad(int cx, int cz) {
         TaskManager.IMP.sync(() -> {
             boolean lowMem = MemUtil.isMemoryLimited();
             if (!singleQueue.isQueueEnabled() || (!(lowMem && singleQueue.size() > Settings.IMP.QUEUE.PARALLEL_THREADS + 8)
-                && singleQueue.size() < Settings.IMP.QUEUE.TARGET_SIZE && Fawe.get().getQueueHandler().isUnderutilized())) {
+                && singleQueue.size() < Fawe.get().getQueueHandler().getTargetSize() && Fawe.get().getQueueHandler().isUnderutilized())) {
                 //The GET chunk is what will take longest.
                 ((ChunkHolder)singleQueue.getOrCreateChunk(cx, cz)).getOrCreateGet();
             }
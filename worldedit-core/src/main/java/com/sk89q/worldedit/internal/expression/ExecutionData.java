@@ -19,7 +19,9 @@
 
 package com.sk89q.worldedit.internal.expression;
 
+import javax.annotation.Nullable;
 import java.time.Instant;
+import java.util.Arrays;
 
 import static java.util.Objects.requireNonNull;
 
@@ -34,6 +36,9 @@ public class ExecutionData {
     private final SlotTable slots;
     private final Functions functions;
     private final Instant deadline;
+    //FAWE start
+    private Double[] cache;
+    //FAWE end
 
     public ExecutionData(SlotTable slots, Functions functions, Instant deadline) {
         this.slots = slots;
@@ -59,4 +64,35 @@ public void checkDeadline() {
         }
     }
 
+    //FAWE start
+
+    /**
+     * Get the cached result of a common subexpression.
+     *
+     * @return the result, or null if it wasn't evaluated yet
+     */
+    @Nullable
+    public Double getCached(int index) {
+        return cache == null || index >= cache.length ? null : cache[index];
+    }
+
+    public void setCached(int index, Double value) {
+        if (cache == null) {
+            cache = new Double[Math.max(8, index + 1)];
+        } else if (index >= cache.length) {
+            cache = Arrays.copyOf(cache, Math.max(cache.length * 2, index + 1));
+        }
+        cache[index] = value;
+    }
+
+    /**
+     * Forget the cached results in {@code [from, to)}.
+     */
+    public void clearCached(int from, int to) {
+        if (cache != null && from < cache.length) {
+            Arrays.fill(cache, from, Math.min(to, cache.length), null);
+        }
+    }
+    //FAWE end
+
 }
@@ -23,18 +23,20 @@
 import com.sk89q.worldedit.WorldEdit;
 import com.sk89q.worldedit.antlr.ExpressionLexer;
 import com.sk89q.worldedit.antlr.ExpressionParser;
+import com.sk89q.worldedit.internal.expression.invoke.BytecodeCompiler;
+import com.sk89q.worldedit.internal.expression.invoke.BytecodeExpression;
 import com.sk89q.worldedit.internal.expression.invoke.ExpressionCompiler;
 import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CharStreams;
 import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.ParseTree;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
 
+import javax.annotation.Nullable;
 import java.time.Instant;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
-import java.util.Set;
 
 /**
  * Compiles and evaluates expressions.
@@ -70,9 +72,12 @@ public class Expression implements Cloneable {
     private final List<String> providedSlots;
     private final ExpressionParser.AllStatementsContext root;
     private final Functions functions = Functions.create();
-    private final CompiledExpression compiledExpression;
-    //FAWE start
+    //FAWE start - not final, optimize() recompiles
+    private CompiledExpression compiledExpression;
     private final String initialExpression;
+    private boolean optimized;
+    @Nullable
+    private BytecodeExpression bytecode;
     //FAWE end
 
     public static Expression compile(String expression, String... variableNames) throws ExpressionException {
@@ -116,41 +121,6 @@ private Expression(String expression, String... variableNames) throws Expression
         this.compiledExpression = new ExpressionCompiler().compileExpression(root, functions);
     }
 
-    private Expression(String expression, Set<String> variableNames) throws ExpressionException {
-        this.initialExpression = expression;
-
-        slots.putSlot("e", new LocalSlot.Constant(Math.E));
-        slots.putSlot("pi", new LocalSlot.Constant(Math.PI));
-        slots.putSlot("true", new LocalSlot.Constant(1));
-        slots.putSlot("false", new LocalSlot.Constant(0));
-
-        for (String variableName : variableNames) {
-            slots.initVariable(variableName)
-                    .orElseThrow(() -> new ExpressionException(
-                            -1,
-                            "Tried to overwrite identifier '" + variableName + "'"
-                    ));
-        }
-        this.providedSlots = ImmutableList.copyOf(variableNames);
-
-        CharStream cs = CharStreams.fromString(expression, "<input>");
-        ExpressionLexer lexer = new ExpressionLexer(cs);
-        lexer.removeErrorListeners();
-        lexer.addErrorListener(new LexerErrorListener());
-        CommonTokenStream tokens = new CommonTokenStream(lexer);
-        ExpressionParser parser = new ExpressionParser(tokens);
-        parser.removeErrorListeners();
-        parser.addErrorListener(new ParserErrorListener());
-        try {
-            root = parser.allStatements();
-            Objects.requireNonNull(root, "Unable to parse root, but no exceptions?");
-        } catch (ParseCancellationException e) {
-            throw new ParserException(parser.getState(), e);
-        }
-        ParseTreeWalker.DEFAULT.walk(new ExpressionValidator(slots.keySet(), functions), root);
-        this.compiledExpression = new ExpressionCompiler().compileExpression(root, functions);
-    }
-
     public double evaluate(double... values) throws EvaluationException {
         return evaluate(values, WorldEdit.getInstance().getConfiguration().calculationTimeout);
     }
@@ -167,6 +137,12 @@ public double evaluate(double[] values, int timeout) throws EvaluationException
             slot.setValue(values[i]);
         }
 
+        //FAWE start
+        if (bytecode != null) {
+            return bytecode.evaluate(values.length == providedSlots.size() ? values : getVariableValues());
+        }
+        //FAWE end
+
         Instant deadline = Instant.now().plusMillis(timeout);
         // evaluation exceptions are thrown out of this method
         Double result = compiledExpression.execute(new ExecutionData(slots, functions, deadline));
@@ -176,9 +152,130 @@ public double evaluate(double[] values, int timeout) throws EvaluationException
         return result;
     }
 
+    //FAWE start
+    /**
+     * Evaluate the expression for many values of the provided variables at once. The setup of an evaluation is only
+     * done once per call, and expressions compiled to a class don't touch the slots at all. The evaluations share their
+     * execution data and a single deadline, so the timeout bounds the whole batch like it would a single evaluation.
+     *
+     * @param values  the values of the variables, {@code values[i][n]} is the value of the i-th variable for the n-th
+     *                result
+     * @param results receives the results
+     * @param count   the number of results
+     * @param timeout the timeout of all evaluations together, in milliseconds
+     * @throws EvaluationException if an evaluation fails, the results before it are set
+     */
+    public void evaluate(double[][] values, double[] results, int count, int timeout) throws EvaluationException {
+        if (bytecode != null) {
+            final BytecodeExpression bytecode = this.bytecode;
+            final double[] arguments = values.length == providedSlots.size()
+                    ? new double[values.length]
+                    : getVariableValues();
+            for (int n = 0; n < count; n++) {
+                for (int i = 0; i < values.length; i++) {
+                    arguments[i] = values[i][n];
+                }
+                results[n] = bytecode.evaluate(arguments);
+            }
+            return;
+        }
+        final LocalSlot.Variable[] variables = new LocalSlot.Variable[values.length];
+        for (int i = 0; i < values.length; i++) {
+            String slotName = providedSlots.get(i);
+            variables[i] = slots.getVariable(slotName)
+                    .orElseThrow(() -> new EvaluationException(
+                            -1,
+                            "Tried to assign to non-variable " + slotName + "."
+                    ));
+        }
+        // Cached results are cleared when their scope is entered, so they don't carry over to the next evaluation
+        final ExecutionData data = new ExecutionData(slots, functions, Instant.now().plusMillis(timeout));
+        for (int n = 0; n < count; n++) {
+            for (int i = 0; i < variables.length; i++) {
+                variables[i].setValue(values[i][n]);
+            }
+            Double result = compiledExpression.execute(data);
+            if (result == null) {
+                throw new EvaluationException(-1, "Expression must result in a value");
+            }
+            results[n] = result;
+        }
+    }
+
+    /**
+     * Check if evaluating the expression has no side effects, so its result doesn't depend on the evaluations before:
+     * it doesn't call impure functions (e.g. {@code megabuf}, {@code random} or {@code query}) or assign variables
+     * (or loop counters) other than the provided ones, which keep their values between evaluations.
+     */
+    public boolean isPure() {
+        return isPure(root);
+    }
+
+    private boolean isPure(ParseTree node) {
+        if (node instanceof ExpressionParser.AssignmentContext) {
+            if (!providedSlots.contains(((ExpressionParser.AssignmentContext) node).target.getText())) {
+                return false;
+            }
+        } else if (node instanceof ExpressionParser.PreCrementExprContext) {
+            if (!providedSlots.contains(((ExpressionParser.PreCrementExprContext) node).target.getText())) {
+                return false;
+            }
+        } else if (node instanceof ExpressionParser.PostCrementExprContext) {
+            if (!providedSlots.contains(((ExpressionParser.PostCrementExprContext) node).target.getText())) {
+                return false;
+            }
+        } else if (node instanceof ExpressionParser.SimpleForStatementContext) {
+            if (!providedSlots.contains(((ExpressionParser.SimpleForStatementContext) node).counter.getText())) {
+                return false;
+            }
+        } else if (node instanceof ExpressionParser.FunctionCallContext) {
+            if (!Functions.isPure(((ExpressionParser.FunctionCallContext) node).name.getText())) {
+                return false;
+            }
+        }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            if (!isPure(node.getChild(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check if the expression was compiled to a class by {@link #optimize()}, in which case its result only depends
+     * on the values of the provided variables (not on the environment) and it can be evaluated by multiple threads.
+     */
+    public boolean isCompiledToClass() {
+        return bytecode != null;
+    }
+    //FAWE end
+
     public void optimize() {
-        // TODO optimizing
+        //FAWE start
+        if (optimized) {
+            return;
+        }
+        if (bytecode == null) {
+            bytecode = BytecodeCompiler.compile(root, slots, providedSlots);
+        }
+        if (bytecode == null) {
+            this.compiledExpression = new ExpressionCompiler().compileExpression(root, functions, slots);
+        }
+        this.optimized = true;
+        //FAWE end
+    }
+
+    //FAWE start
+    private double[] getVariableValues() {
+        double[] values = new double[providedSlots.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = slots.getVariable(providedSlots.get(i))
+                    .map(LocalSlot::getValue)
+                    .orElse(0d);
+        }
+        return values;
     }
+    //FAWE end
 
     @Override
     public String toString() {
@@ -199,7 +296,38 @@ public void setEnvironment(ExpressionEnvironment environment) {
 
     //FAWE start
     public Expression clone() {
-        return new Expression(initialExpression, new HashSet<>(providedSlots));
+        return fork();
+    }
+
+    /**
+     * Create a copy of this expression for use by another thread. The compiled code is shared, the copy only gets its
+     * own slots, buffers and environment, so it is cheap to create.
+     *
+     * @return the copy
+     */
+    public Expression fork() {
+        return new Expression(this);
+    }
+
+    private Expression(Expression other) {
+        this.initialExpression = other.initialExpression;
+        this.root = other.root;
+        this.providedSlots = other.providedSlots;
+        this.compiledExpression = other.compiledExpression;
+        this.bytecode = other.bytecode;
+        this.optimized = other.optimized;
+
+        slots.putSlot("e", new LocalSlot.Constant(Math.E));
+        slots.putSlot("pi", new LocalSlot.Constant(Math.PI));
+        slots.putSlot("true", new LocalSlot.Constant(1));
+        slots.putSlot("false", new LocalSlot.Constant(0));
+        for (String variableName : providedSlots) {
+            slots.initVariable(variableName);
+        }
+        ExpressionEnvironment environment = other.getEnvironment();
+        if (environment != null) {
+            functions.setEnvironment(environment.fork());
+        }
     }
     //FAWE end
 
@@ -36,4 +36,15 @@ public interface ExpressionEnvironment {
 
     int getBlockDataRel(double x, double y, double z);
 
+    //FAWE start
+    /**
+     * Get an environment for use by another thread, if this one has state (e.g. the current block).
+     *
+     * @return a copy, or this
+     */
+    default ExpressionEnvironment fork() {
+        return this;
+    }
+    //FAWE end
+
 }
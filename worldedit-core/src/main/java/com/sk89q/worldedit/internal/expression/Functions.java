@@ -21,6 +21,7 @@
 
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSetMultimap;
 import com.google.common.collect.Multimaps;
 import com.google.common.collect.SetMultimap;
@@ -33,8 +34,12 @@
 import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 
+import javax.annotation.Nullable;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ThreadLocalRandom;
 
 import static com.google.common.base.Preconditions.checkState;
@@ -50,6 +55,27 @@ static Functions create() {
         return new Functions();
     }
 
+    //FAWE start
+    /**
+     * Functions without side effects, whose result only depends on their arguments.
+     */
+    private static final Set<String> PURE_FUNCTIONS = ImmutableSet.of(
+            "sin", "cos", "tan", "asin", "acos", "atan",
+            "sinh", "cosh", "tanh", "sqrt", "cbrt", "abs",
+            "ceil", "floor", "rint", "exp", "log", "log10",
+            "ln", "round", "atan2", "min", "max",
+            "perlin", "voronoi", "ridgedmulti"
+    );
+
+    /**
+     * Check if a function has no side effects and its result only depends on its arguments, so calls with the same
+     * arguments may be evaluated once.
+     */
+    public static boolean isPure(String name) {
+        return PURE_FUNCTIONS.contains(name);
+    }
+    //FAWE end
+
     private static final MethodHandle DOUBLE_VALUE;
 
     static {
@@ -166,45 +192,41 @@ private static void addStaticFunctionHandles(
         ));
     }
 
+    //FAWE start - bind(), so the instance can be swapped
     private void addInstanceFunctionHandles(
             SetMultimap<String, MethodHandle> map,
             MethodHandles.Lookup lookup
     ) throws NoSuchMethodException, IllegalAccessException {
-        map.put("megabuf", lookup.findSpecial(Functions.class, "megabuf",
+        map.put("megabuf", bind(lookup.findSpecial(Functions.class, "megabuf",
                 methodType(double.class, double.class), Functions.class
-        )
-                .bindTo(this));
-        map.put("megabuf", lookup.findSpecial(Functions.class, "megabuf",
+        )));
+        map.put("megabuf", bind(lookup.findSpecial(Functions.class, "megabuf",
                 methodType(double.class, double.class, double.class), Functions.class
-        )
-                .bindTo(this));
-        map.put("closest", lookup.findSpecial(Functions.class, "closest",
+        )));
+        map.put("closest", bind(lookup.findSpecial(Functions.class, "closest",
                 methodType(double.class, double.class, double.class, double.class, double.class,
                         double.class, double.class
                 ), Functions.class
-        )
-                .bindTo(this));
+        )));
 
         // rely on expression field
-        map.put("query", lookup.findSpecial(Functions.class, "query",
+        map.put("query", bind(lookup.findSpecial(Functions.class, "query",
                 methodType(double.class, double.class, double.class, double.class, LocalSlot.class,
                         LocalSlot.class
                 ), Functions.class
-        )
-                .bindTo(this));
-        map.put("queryAbs", lookup.findSpecial(Functions.class, "queryAbs",
+        )));
+        map.put("queryAbs", bind(lookup.findSpecial(Functions.class, "queryAbs",
                 methodType(double.class, double.class, double.class, double.class, LocalSlot.class,
                         LocalSlot.class
                 ), Functions.class
-        )
-                .bindTo(this));
-        map.put("queryRel", lookup.findSpecial(Functions.class, "queryRel",
+        )));
+        map.put("queryRel", bind(lookup.findSpecial(Functions.class, "queryRel",
                 methodType(double.class, double.class, double.class, double.class, LocalSlot.class,
                         LocalSlot.class
                 ), Functions.class
-        )
-                .bindTo(this));
+        )));
     }
+    //FAWE end
 
     private static double rotate(Variable x, Variable y, double angle) {
         final double cosF = Math.cos(angle);
@@ -232,6 +254,9 @@ private static double swap(Variable x, Variable y) {
     private static final Int2ObjectMap<double[]> globalMegaBuffer = new Int2ObjectOpenHashMap<>();
     private final Int2ObjectMap<double[]> megaBuffer = new Int2ObjectOpenHashMap<>();
     private final SetMultimap<String, MethodHandle> map;
+    //FAWE start
+    private final Map<MethodHandle, MethodHandle> unboundHandles = new IdentityHashMap<>();
+    //FAWE end
     private ExpressionEnvironment environment;
 
     private Functions() {
@@ -253,6 +278,27 @@ public SetMultimap<String, MethodHandle> getMap() {
         return map;
     }
 
+    //FAWE start
+    private MethodHandle bind(MethodHandle unbound) {
+        unbound = clean(unbound);
+        MethodHandle bound = unbound.bindTo(this);
+        unboundHandles.put(bound, unbound);
+        return bound;
+    }
+
+    /**
+     * Get a function of {@link #getMap()} which depends on the instance (e.g. {@code megabuf}) with the instance as
+     * its first parameter instead, so compiled code can call it on the functions of the evaluation and be shared by
+     * copies of an expression.
+     *
+     * @return the unbound function, or null if the function doesn't depend on the instance
+     */
+    @Nullable
+    public MethodHandle getUnbound(MethodHandle function) {
+        return unboundHandles.get(function);
+    }
+    //FAWE end
+
     public ExpressionEnvironment getEnvironment() {
         return environment;
     }
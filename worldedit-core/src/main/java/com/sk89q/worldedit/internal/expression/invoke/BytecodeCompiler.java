@@ -0,0 +1,416 @@
+package com.sk89q.worldedit.internal.expression.invoke;
+
+import com.google.common.collect.ImmutableSet;
+import com.sk89q.worldedit.antlr.ExpressionParser;
+import com.sk89q.worldedit.internal.expression.LocalSlot;
+import com.sk89q.worldedit.internal.expression.SlotTable;
+import com.sk89q.worldedit.internal.util.LogManagerCompat;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nullable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.sk89q.worldedit.antlr.ExpressionLexer.EQUAL;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.GREATER_THAN;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.GREATER_THAN_OR_EQUAL;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.LEFT_SHIFT;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.LESS_THAN;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.LESS_THAN_OR_EQUAL;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.MINUS;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.MODULO;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.NOT_EQUAL;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.PLUS;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.TIMES;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileWriter.Code.ALOAD_1;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileWriter.Code.D2L;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileWriter.Code.DADD;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileWriter.Code.DALOAD;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileWriter.Code.DCMPG;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileWriter.Code.DCMPL;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileWriter.Code.DCONST_0;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileWriter.Code.DCONST_1;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileWriter.Code.DDIV;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileWriter.Code.DLOAD;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileWriter.Code.DMUL;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileWriter.Code.DNEG;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileWriter.Code.DREM;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileWriter.Code.DRETURN;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileWriter.Code.DSTORE;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileWriter.Code.DSUB;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileWriter.Code.DUP2;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileWriter.Code.GOTO;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileWriter.Code.IFEQ;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileWriter.Code.IFGE;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileWriter.Code.IFGT;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileWriter.Code.IFLE;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileWriter.Code.IFLT;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileWriter.Code.IFNE;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileWriter.Code.INVOKESTATIC;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileWriter.Code.L2D;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileWriter.Code.L2I;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileWriter.Code.LCONST_1;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileWriter.Code.LDC2_W;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileWriter.Code.LNEG;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileWriter.Code.LSHL;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileWriter.Code.LSHR;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileWriter.Code.LSUB;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileWriter.Code.POP2;
+
+/**
+ * Compiles expressions to a class of their own, instead of a chain of method handles.
+ * <p>
+ * Only side effect free expressions over the provided variables are supported: arithmetic, comparisons, logic and the
+ * {@link Math} functions, which covers most masks and patterns. These can't loop, so they don't need a timeout, and
+ * the provided variables are read into local doubles once. Each class is defined by its own class loader, so it is
+ * unloaded with the expression.
+ */
+public final class BytecodeCompiler {
+
+    private static final Logger LOGGER = LogManagerCompat.getLogger();
+
+    private static final String PACKAGE = "com/sk89q/worldedit/internal/expression/invoke/generated/";
+    private static final String INTERFACE = BytecodeExpression.class.getName().replace('.', '/');
+    private static final String MATH = "java/lang/Math";
+    private static final String D_D = "(D)D";
+    private static final String DD_D = "(DD)D";
+    private static final Set<String> UNARY_MATH = ImmutableSet.of(
+            "sin", "cos", "tan", "asin", "acos", "atan",
+            "sinh", "cosh", "tanh", "sqrt", "cbrt", "abs",
+            "ceil", "floor", "rint", "exp", "log", "log10"
+    );
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    private final SlotTable slots;
+    private final List<String> variables;
+    private final ClassFileWriter writer;
+    private final ClassFileWriter.Code code = new ClassFileWriter.Code();
+    // Provided variable -> local
+    private final Map<String, Integer> locals = new LinkedHashMap<>();
+
+    private BytecodeCompiler(SlotTable slots, List<String> variables, String name) {
+        this.slots = slots;
+        this.variables = variables;
+        this.writer = new ClassFileWriter(name, INTERFACE);
+    }
+
+    /**
+     * Compile an expression to a class.
+     *
+     * @param root      the expression
+     * @param slots     the slots of the expression, constant slots are inlined
+     * @param variables the provided variables, in the order they are passed to {@link BytecodeExpression#evaluate}
+     * @return the compiled expression, or null if the expression isn't supported
+     */
+    @Nullable
+    public static BytecodeExpression compile(
+            ExpressionParser.AllStatementsContext root,
+            SlotTable slots,
+            List<String> variables
+    ) {
+        ParseTree body = single(root);
+        if (body == null) {
+            return null;
+        }
+        String name = PACKAGE + "Expression" + COUNTER.incrementAndGet();
+        BytecodeCompiler compiler = new BytecodeCompiler(slots, variables, name);
+        byte[] bytes;
+        try {
+            bytes = compiler.compile(body);
+        } catch (UnsupportedOperationException | IllegalStateException e) {
+            return null;
+        }
+        try {
+            Class<?> clazz = new Loader().define(name.replace('/', '.'), bytes);
+            return (BytecodeExpression) clazz.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            LOGGER.debug("Could not load compiled expression, using method handles", e);
+            return null;
+        }
+    }
+
+    /**
+     * Get the expression of a program consisting of a single expression or return statement.
+     */
+    @Nullable
+    private static ParseTree single(ExpressionParser.AllStatementsContext root) {
+        List<ExpressionParser.StatementContext> statements = root.statements().statement();
+        if (statements.size() != 1) {
+            return null;
+        }
+        ExpressionParser.StatementContext statement = statements.get(0);
+        if (statement.expressionStatement() != null) {
+            return statement.expressionStatement().expression();
+        }
+        if (statement.returnStatement() != null) {
+            return statement.returnStatement().value;
+        }
+        return null;
+    }
+
+    private byte[] compile(ParseTree body) {
+        emit(body);
+        code.op(DRETURN, -2);
+
+        // Read the used variables into locals, after the receiver and the array
+        ClassFileWriter.Code prologue = new ClassFileWriter.Code();
+        for (Map.Entry<String, Integer> entry : locals.entrySet()) {
+            prologue.op(ALOAD_1, 1);
+            prologue.pushInt(variables.indexOf(entry.getKey()));
+            prologue.op(DALOAD, 0);
+            prologue.op(DSTORE, -2);
+            prologue.u1(entry.getValue());
+        }
+        prologue.useLocals(2 + locals.size() * 2);
+        prologue.append(code);
+        return writer.toByteArray("evaluate", "([D)D", prologue);
+    }
+
+    private static UnsupportedOperationException unsupported() {
+        return new UnsupportedOperationException();
+    }
+
+    /**
+     * Emit the code to push the value of an expression.
+     */
+    private void emit(ParseTree node) {
+        if (node instanceof ExpressionParser.WrappedExprContext) {
+            emit(((ExpressionParser.WrappedExprContext) node).expression());
+        } else if (node instanceof ExpressionParser.ConstantExpressionContext) {
+            constant(Double.parseDouble(node.getText()));
+        } else if (node instanceof ExpressionParser.IdExprContext) {
+            variable(((ExpressionParser.IdExprContext) node).source);
+        } else if (node instanceof ExpressionParser.FunctionCallContext) {
+            call((ExpressionParser.FunctionCallContext) node);
+        } else if (node instanceof ExpressionParser.TernaryExprContext) {
+            ExpressionParser.TernaryExprContext ctx = (ExpressionParser.TernaryExprContext) node;
+            condition(ctx.condition);
+            int otherwise = code.jump(IFEQ, -1);
+            emit(ctx.trueBranch);
+            // The other branch starts without this value
+            int end = code.jump(GOTO, -2);
+            code.bind(otherwise);
+            emit(ctx.falseBranch);
+            code.bind(end);
+        } else if (node instanceof ExpressionParser.ConditionalOrExprContext) {
+            ExpressionParser.ConditionalOrExprContext ctx = (ExpressionParser.ConditionalOrExprContext) node;
+            // left if it is true, otherwise right
+            emit(ctx.left);
+            code.op(DUP2, 2);
+            code.op(DCONST_0, 2);
+            code.op(DCMPL, -3);
+            int end = code.jump(IFNE, -1);
+            code.op(POP2, -2);
+            emit(ctx.right);
+            code.bind(end);
+        } else if (node instanceof ExpressionParser.ConditionalAndExprContext) {
+            ExpressionParser.ConditionalAndExprContext ctx = (ExpressionParser.ConditionalAndExprContext) node;
+            // right if left is true, otherwise false
+            condition(ctx.left);
+            int otherwise = code.jump(IFEQ, -1);
+            emit(ctx.right);
+            int end = code.jump(GOTO, -2);
+            code.bind(otherwise);
+            code.op(DCONST_0, 2);
+            code.bind(end);
+        } else if (node instanceof ExpressionParser.EqualityExprContext) {
+            ExpressionParser.EqualityExprContext ctx = (ExpressionParser.EqualityExprContext) node;
+            switch (ctx.op.getType()) {
+                case EQUAL:
+                    compare(ctx.left, ctx.right, DCMPL, IFEQ);
+                    break;
+                case NOT_EQUAL:
+                    compare(ctx.left, ctx.right, DCMPL, IFNE);
+                    break;
+                default:
+                    // ~=
+                    throw unsupported();
+            }
+        } else if (node instanceof ExpressionParser.RelationalExprContext) {
+            ExpressionParser.RelationalExprContext ctx = (ExpressionParser.RelationalExprContext) node;
+            // dcmpg and dcmpl push 1 and -1 for NaN respectively, so the comparison is false
+            switch (ctx.op.getType()) {
+                case LESS_THAN:
+                    compare(ctx.left, ctx.right, DCMPG, IFLT);
+                    break;
+                case LESS_THAN_OR_EQUAL:
+                    compare(ctx.left, ctx.right, DCMPG, IFLE);
+                    break;
+                case GREATER_THAN:
+                    compare(ctx.left, ctx.right, DCMPL, IFGT);
+                    break;
+                case GREATER_THAN_OR_EQUAL:
+                    compare(ctx.left, ctx.right, DCMPL, IFGE);
+                    break;
+                default:
+                    throw unsupported();
+            }
+        } else if (node instanceof ExpressionParser.ShiftExprContext) {
+            ExpressionParser.ShiftExprContext ctx = (ExpressionParser.ShiftExprContext) node;
+            emit(ctx.left);
+            code.op(D2L, 0);
+            emit(ctx.right);
+            code.op(D2L, 0);
+            code.op(L2I, -1);
+            code.op(ctx.op.getType() == LEFT_SHIFT ? LSHL : LSHR, -1);
+            code.op(L2D, 0);
+        } else if (node instanceof ExpressionParser.AddExprContext) {
+            ExpressionParser.AddExprContext ctx = (ExpressionParser.AddExprContext) node;
+            binary(ctx.left, ctx.right, ctx.op.getType() == PLUS ? DADD : DSUB);
+        } else if (node instanceof ExpressionParser.MultiplicativeExprContext) {
+            ExpressionParser.MultiplicativeExprContext ctx = (ExpressionParser.MultiplicativeExprContext) node;
+            int type = ctx.op.getType();
+            binary(ctx.left, ctx.right, type == TIMES ? DMUL : type == MODULO ? DREM : DDIV);
+        } else if (node instanceof ExpressionParser.PowerExprContext) {
+            ExpressionParser.PowerExprContext ctx = (ExpressionParser.PowerExprContext) node;
+            emit(ctx.left);
+            emit(ctx.right);
+            invokeMath("pow", DD_D, -2);
+        } else if (node instanceof ExpressionParser.PlusMinusExprContext) {
+            ExpressionParser.PlusMinusExprContext ctx = (ExpressionParser.PlusMinusExprContext) node;
+            emit(ctx.expr);
+            if (ctx.op.getType() == MINUS) {
+                code.op(DNEG, 0);
+            }
+        } else if (node instanceof ExpressionParser.ComplementExprContext) {
+            emit(((ExpressionParser.ComplementExprContext) node).expr);
+            // ~x == -x - 1
+            code.op(D2L, 0);
+            code.op(LNEG, 0);
+            code.op(LCONST_1, 2);
+            code.op(LSUB, -2);
+            code.op(L2D, 0);
+        } else if (node instanceof ExpressionParser.NotExprContext) {
+            condition(((ExpressionParser.NotExprContext) node).expr);
+            bool(IFEQ);
+        } else if (node instanceof ExpressionParser.FunctionCallExprContext
+                || node instanceof ExpressionParser.ConstantExprContext
+                || node instanceof ParserRuleContext && node.getChildCount() == 1
+                && node.getChild(0) instanceof ParserRuleContext) {
+            // Rules an expression falls through to reach its actual operation
+            emit(node.getChild(0));
+        } else {
+            // Assignments, increments, factorials
+            throw unsupported();
+        }
+    }
+
+    private void constant(double value) {
+        if (Double.doubleToRawLongBits(value) == 0L) {
+            code.op(DCONST_0, 2);
+        } else if (value == 1) {
+            code.op(DCONST_1, 2);
+        } else {
+            code.op(LDC2_W, 2);
+            code.u2(writer.constant(value));
+        }
+    }
+
+    private void variable(Token source) {
+        String name = source.getText();
+        Optional<LocalSlot> slot = slots.getSlot(name);
+        if (slot.isPresent() && slot.get() instanceof LocalSlot.Constant) {
+            constant(slot.get().getValue());
+            return;
+        }
+        if (!variables.contains(name)) {
+            // Variables assigned by a previous evaluation
+            throw unsupported();
+        }
+        int local = locals.computeIfAbsent(name, k -> 2 + locals.size() * 2);
+        if (local > 0xFF) {
+            throw unsupported();
+        }
+        code.op(DLOAD, 2);
+        code.u1(local);
+    }
+
+    private void call(ExpressionParser.FunctionCallContext ctx) {
+        String name = ctx.name.getText();
+        List<ExpressionParser.ExpressionContext> args = ctx.args;
+        if (args.size() == 1 && (UNARY_MATH.contains(name) || name.equals("ln"))) {
+            emit(args.get(0));
+            invokeMath(name.equals("ln") ? "log" : name, D_D, 0);
+        } else if (args.size() == 1 && name.equals("round")) {
+            emit(args.get(0));
+            invokeMath("round", "(D)J", 0);
+            code.op(L2D, 0);
+        } else if (args.size() == 2 && name.equals("atan2")) {
+            emit(args.get(0));
+            emit(args.get(1));
+            invokeMath("atan2", DD_D, -2);
+        } else if (!args.isEmpty() && (name.equals("min") || name.equals("max"))) {
+            // Doubles.min and max fold the arguments with Math.min and max
+            emit(args.get(0));
+            for (int i = 1; i < args.size(); i++) {
+                emit(args.get(i));
+                invokeMath(name, DD_D, -2);
+            }
+        } else {
+            throw unsupported();
+        }
+    }
+
+    private void invokeMath(String name, String descriptor, int stackChange) {
+        code.op(INVOKESTATIC, stackChange);
+        code.u2(writer.method(MATH, name, descriptor));
+    }
+
+    private void binary(ParseTree left, ParseTree right, int opcode) {
+        emit(left);
+        emit(right);
+        code.op(opcode, -2);
+    }
+
+    /**
+     * Emit the code to push an int which is 0 if the expression is false (0), like a boolean.
+     */
+    private void condition(ParseTree node) {
+        emit(node);
+        code.op(DCONST_0, 2);
+        // NaN is true, dcmpl pushes -1
+        code.op(DCMPL, -3);
+    }
+
+    private void compare(ParseTree left, ParseTree right, int compare, int jumpIfTrue) {
+        emit(left);
+        emit(right);
+        code.op(compare, -3);
+        bool(jumpIfTrue);
+    }
+
+    /**
+     * Replace the int on the stack with 1 or 0, depending on whether the jump would be taken.
+     */
+    private void bool(int jumpIfTrue) {
+        int whenTrue = code.jump(jumpIfTrue, -1);
+        code.op(DCONST_0, 2);
+        int end = code.jump(GOTO, -2);
+        code.bind(whenTrue);
+        code.op(DCONST_1, 2);
+        code.bind(end);
+    }
+
+    /**
+     * Defines a single class, so it can be unloaded as soon as the expression is no longer used.
+     */
+    private static final class Loader extends ClassLoader {
+
+        private Loader() {
+            super(BytecodeCompiler.class.getClassLoader());
+        }
+
+        private Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+
+    }
+
+}
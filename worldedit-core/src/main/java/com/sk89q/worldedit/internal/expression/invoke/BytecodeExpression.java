@@ -0,0 +1,17 @@
+package com.sk89q.worldedit.internal.expression.invoke;
+
+/**
+ * An expression compiled to a class by {@link BytecodeCompiler}. Implementations are stateless, so an instance can
+ * be shared between threads.
+ */
+public interface BytecodeExpression {
+
+    /**
+     * Evaluate the expression.
+     *
+     * @param variables the values of the provided variables, in the order they were declared
+     * @return the result
+     */
+    double evaluate(double[] variables);
+
+}
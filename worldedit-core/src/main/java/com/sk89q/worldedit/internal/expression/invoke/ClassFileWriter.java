@@ -0,0 +1,336 @@
+package com.sk89q.worldedit.internal.expression.invoke;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A minimal class file writer for {@link BytecodeCompiler}: a public final class with a default constructor,
+ * implementing one interface with one method.
+ * <p>
+ * Classes are written in the Java 5 format, which is still verified by type inference, so no stack map frames are
+ * needed for the branches.
+ */
+final class ClassFileWriter {
+
+    private static final int VERSION = 49;
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private static final int TAG_UTF8 = 1;
+    private static final int TAG_DOUBLE = 6;
+    private static final int TAG_CLASS = 7;
+    private static final int TAG_METHODREF = 10;
+    private static final int TAG_NAME_AND_TYPE = 12;
+
+    private final Bytes pool = new Bytes();
+    private final Map<String, Integer> poolIndices = new HashMap<>();
+    private int poolSize = 1;
+
+    private final String name;
+    private final String iface;
+
+    /**
+     * @param name  the internal name of the class, e.g. {@code a/b/C}
+     * @param iface the internal name of the implemented interface
+     */
+    ClassFileWriter(String name, String iface) {
+        this.name = name;
+        this.iface = iface;
+    }
+
+    int utf8(String value) {
+        return poolIndices.computeIfAbsent("U" + value, k -> {
+            pool.u1(TAG_UTF8);
+            pool.utf(value);
+            return poolSize++;
+        });
+    }
+
+    int type(String internalName) {
+        int nameIndex = utf8(internalName);
+        return poolIndices.computeIfAbsent("C" + internalName, k -> {
+            pool.u1(TAG_CLASS);
+            pool.u2(nameIndex);
+            return poolSize++;
+        });
+    }
+
+    int constant(double value) {
+        return poolIndices.computeIfAbsent("D" + Double.doubleToRawLongBits(value), k -> {
+            long bits = Double.doubleToRawLongBits(value);
+            pool.u1(TAG_DOUBLE);
+            pool.u4((int) (bits >>> 32));
+            pool.u4((int) bits);
+            int index = poolSize;
+            // Doubles take two entries
+            poolSize += 2;
+            return index;
+        });
+    }
+
+    int method(String owner, String methodName, String descriptor) {
+        int ownerIndex = type(owner);
+        int nameIndex = utf8(methodName);
+        int descriptorIndex = utf8(descriptor);
+        int nameAndType = poolIndices.computeIfAbsent("N" + methodName + descriptor, k -> {
+            pool.u1(TAG_NAME_AND_TYPE);
+            pool.u2(nameIndex);
+            pool.u2(descriptorIndex);
+            return poolSize++;
+        });
+        return poolIndices.computeIfAbsent("M" + owner + '.' + methodName + descriptor, k -> {
+            pool.u1(TAG_METHODREF);
+            pool.u2(ownerIndex);
+            pool.u2(nameAndType);
+            return poolSize++;
+        });
+    }
+
+    /**
+     * Write the class.
+     *
+     * @param methodName the name of the implemented method
+     * @param descriptor the descriptor of the implemented method
+     * @param code       the code of the implemented method
+     * @return the class file
+     * @throws IllegalStateException if the class exceeds the limits of the class file format
+     */
+    byte[] toByteArray(String methodName, String descriptor, Code code) {
+        int thisIndex = type(name);
+        int superIndex = type("java/lang/Object");
+        int ifaceIndex = type(iface);
+        int codeIndex = utf8("Code");
+        int initIndex = utf8("<init>");
+        int initDescriptorIndex = utf8("()V");
+        int superInit = method("java/lang/Object", "<init>", "()V");
+        int methodNameIndex = utf8(methodName);
+        int methodDescriptorIndex = utf8(descriptor);
+        if (poolSize > 0xFFFF) {
+            throw new IllegalStateException("Too many constants");
+        }
+
+        Bytes out = new Bytes();
+        out.u4(0xCAFEBABE);
+        out.u2(0);
+        out.u2(VERSION);
+        out.u2(poolSize);
+        out.bytes(pool);
+        out.u2(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+        out.u2(thisIndex);
+        out.u2(superIndex);
+        out.u2(1);
+        out.u2(ifaceIndex);
+        // Fields
+        out.u2(0);
+        // Methods
+        out.u2(2);
+
+        Code init = new Code();
+        init.op(Code.ALOAD_0, 1);
+        init.op(Code.INVOKESPECIAL, -1);
+        init.u2(superInit);
+        init.op(Code.RETURN, 0);
+        writeMethod(out, initIndex, initDescriptorIndex, codeIndex, init, 1);
+        writeMethod(out, methodNameIndex, methodDescriptorIndex, codeIndex, code, code.maxLocals);
+
+        // Attributes
+        out.u2(0);
+        return out.toByteArray();
+    }
+
+    private static void writeMethod(Bytes out, int nameIndex, int descriptorIndex, int codeIndex, Code code,
+                                    int maxLocals) {
+        if (code.bytes.length > Short.MAX_VALUE) {
+            throw new IllegalStateException("Method too large");
+        }
+        out.u2(ACC_PUBLIC);
+        out.u2(nameIndex);
+        out.u2(descriptorIndex);
+        out.u2(1);
+        out.u2(codeIndex);
+        out.u4(12 + code.bytes.length);
+        out.u2(code.maxStack);
+        out.u2(maxLocals);
+        out.u4(code.bytes.length);
+        out.bytes(code.bytes);
+        // Exception table
+        out.u2(0);
+        // Attributes
+        out.u2(0);
+    }
+
+    /**
+     * The code of a method, tracking the depth of the operand stack.
+     */
+    static final class Code {
+
+        static final int DCONST_0 = 0x0E;
+        static final int DCONST_1 = 0x0F;
+        static final int LCONST_1 = 0x0A;
+        static final int BIPUSH = 0x10;
+        static final int SIPUSH = 0x11;
+        static final int LDC2_W = 0x14;
+        static final int DLOAD = 0x18;
+        static final int ALOAD_0 = 0x2A;
+        static final int ALOAD_1 = 0x2B;
+        static final int DALOAD = 0x31;
+        static final int DSTORE = 0x39;
+        static final int POP2 = 0x58;
+        static final int DUP2 = 0x5C;
+        static final int DADD = 0x63;
+        static final int LSUB = 0x65;
+        static final int DSUB = 0x67;
+        static final int DMUL = 0x6B;
+        static final int DDIV = 0x6F;
+        static final int DREM = 0x73;
+        static final int LNEG = 0x75;
+        static final int DNEG = 0x77;
+        static final int LSHL = 0x79;
+        static final int LSHR = 0x7B;
+        static final int L2I = 0x88;
+        static final int L2D = 0x8A;
+        static final int D2L = 0x8F;
+        static final int DCMPL = 0x97;
+        static final int DCMPG = 0x98;
+        static final int IFEQ = 0x99;
+        static final int IFNE = 0x9A;
+        static final int IFLT = 0x9B;
+        static final int IFGE = 0x9C;
+        static final int IFGT = 0x9D;
+        static final int IFLE = 0x9E;
+        static final int GOTO = 0xA7;
+        static final int DRETURN = 0xAF;
+        static final int RETURN = 0xB1;
+        static final int INVOKESPECIAL = 0xB7;
+        static final int INVOKESTATIC = 0xB8;
+
+        private final Bytes bytes = new Bytes();
+        private int stack;
+        private int maxStack;
+        private int maxLocals;
+
+        /**
+         * Append an instruction.
+         *
+         * @param stackChange the change of the stack depth, in slots (doubles and longs take two)
+         */
+        void op(int opcode, int stackChange) {
+            bytes.u1(opcode);
+            stack += stackChange;
+            maxStack = Math.max(maxStack, stack);
+        }
+
+        void u1(int value) {
+            bytes.u1(value);
+        }
+
+        void u2(int value) {
+            bytes.u2(value);
+        }
+
+        /**
+         * Push an int constant.
+         */
+        void pushInt(int value) {
+            if (value >= -1 && value <= 5) {
+                op(0x03 + value, 1);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                op(BIPUSH, 1);
+                u1(value);
+            } else {
+                op(SIPUSH, 1);
+                u2(value);
+            }
+        }
+
+        /**
+         * Append a branch to a label which is bound later. For a {@code goto}, the stack change is that of the code
+         * following it, which is only reached by other jumps.
+         *
+         * @return the label
+         */
+        int jump(int opcode, int stackChange) {
+            int position = bytes.length;
+            op(opcode, stackChange);
+            u2(0);
+            return position;
+        }
+
+        /**
+         * Bind a label to the current position.
+         */
+        void bind(int label) {
+            int offset = bytes.length - label;
+            bytes.data[label + 1] = (byte) (offset >> 8);
+            bytes.data[label + 2] = (byte) offset;
+        }
+
+        void useLocals(int locals) {
+            maxLocals = Math.max(maxLocals, locals);
+        }
+
+        /**
+         * Append another block of code, which must not contain branches out of itself.
+         */
+        void append(Code code) {
+            maxStack = Math.max(maxStack, stack + code.maxStack);
+            maxLocals = Math.max(maxLocals, code.maxLocals);
+            stack += code.stack;
+            bytes.bytes(code.bytes);
+        }
+
+    }
+
+    /**
+     * A growable big-endian byte array.
+     */
+    private static final class Bytes {
+
+        private byte[] data = new byte[256];
+        private int length;
+
+        private void ensure(int extra) {
+            if (length + extra > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + extra));
+            }
+        }
+
+        void u1(int value) {
+            ensure(1);
+            data[length++] = (byte) value;
+        }
+
+        void u2(int value) {
+            ensure(2);
+            data[length++] = (byte) (value >> 8);
+            data[length++] = (byte) value;
+        }
+
+        void u4(int value) {
+            u2(value >>> 16);
+            u2(value);
+        }
+
+        void utf(String value) {
+            // Names and descriptors are ASCII, so the modified UTF-8 encoding is the string itself
+            u2(value.length());
+            for (int i = 0; i < value.length(); i++) {
+                u1(value.charAt(i));
+            }
+        }
+
+        void bytes(Bytes other) {
+            ensure(other.length);
+            System.arraycopy(other.data, 0, data, length, other.length);
+            length += other.length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(data, length);
+        }
+
+    }
+
+}
@@ -35,11 +35,13 @@
 import org.antlr.v4.runtime.tree.RuleNode;
 import org.antlr.v4.runtime.tree.TerminalNode;
 
+import javax.annotation.Nullable;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
 import java.util.List;
 import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
@@ -87,9 +89,20 @@ class CompilingVisitor extends ExpressionBaseVisitor<MethodHandle> {
      * value passed in. EVERY handle returned from an overridden method must be of the first type.
      */
     private final Functions functions;
+    //FAWE start
+    @Nullable
+    private final ExpressionOptimizer optimizer;
+    //FAWE end
 
     CompilingVisitor(Functions functions) {
+        //FAWE start
+        this(functions, null);
+    }
+
+    CompilingVisitor(Functions functions, @Nullable ExpressionOptimizer optimizer) {
         this.functions = functions;
+        this.optimizer = optimizer;
+        //FAWE end
     }
 
     private Token extractToken(ParserRuleContext ctx) {
@@ -102,13 +115,56 @@ private Token extractToken(ParserRuleContext ctx) {
     }
 
     private ExecNode evaluate(ParserRuleContext ctx) {
-        MethodHandle mh = ctx.accept(this);
+        //FAWE start - optimize
+        MethodHandle mh = compile(ctx);
+        //FAWE end
         if (ctx.parent instanceof ParserRuleContext) {
             checkHandle(mh, (ParserRuleContext) ctx.parent);
         }
         return new ExecNode(ctx, mh);
     }
 
+    //FAWE start
+    private MethodHandle compile(ParserRuleContext ctx) {
+        if (optimizer == null) {
+            return ctx.accept(this);
+        }
+        if (optimizer.isConstant(ctx)
+                && !(ExpressionOptimizer.unwrap(ctx) instanceof ExpressionParser.ConstantExpressionContext)) {
+            Double value = fold(ctx);
+            if (value != null) {
+                return ExpressionHandles.dropData(MethodHandles.constant(Double.class, value));
+            }
+        }
+        MethodHandle mh = ctx.accept(this);
+        // Every rule node is compiled through here (see visitChildren), the cache wrappers are keyed by the node itself
+        int[] scope = optimizer.getCacheScope(ctx);
+        if (scope != null) {
+            mh = ExpressionHandles.clearCached(mh, scope[0], scope[1]);
+        }
+        int cacheIndex = optimizer.getCacheIndex(ctx);
+        if (cacheIndex != -1) {
+            mh = ExpressionHandles.cached(mh, cacheIndex);
+        }
+        return mh;
+    }
+
+    /**
+     * Evaluate a constant expression at compile time.
+     *
+     * @return the value, or null if it failed, so the failure happens at run time as usual
+     */
+    @Nullable
+    private Double fold(ParserRuleContext ctx) {
+        try {
+            Object value = ExpressionHandles.constantInvoke(ctx.accept(this));
+            return value instanceof Double ? (Double) value : null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+    //FAWE end
+
     private void checkHandle(MethodHandle mh, ParserRuleContext ctx) {
         ExpressionHelper.check(mh.type().equals(ExpressionHandles.COMPILED_EXPRESSION_SIG), ctx,
                 "Incorrect type returned from handler for " + ctx.getClass()
@@ -398,9 +454,56 @@ private MethodHandle evaluateBinary(
 
     @Override
     public MethodHandle visitPowerExpr(ExpressionParser.PowerExprContext ctx) {
+        //FAWE start - strength reduction of constant exponents
+        if (optimizer != null && optimizer.isConstant(ctx.right)) {
+            Double exponent = fold(ctx.right);
+            if (exponent != null) {
+                MethodHandle reduced = reducePower(ctx.left, exponent);
+                if (reduced != null) {
+                    return reduced;
+                }
+            }
+        }
+        //FAWE end
         return evaluateBinary(ctx.left, ctx.right, Math::pow);
     }
 
+    //FAWE start
+    /**
+     * Replace {@link Math#pow(double, double)} with multiplication or {@link Math#sqrt(double)} for common exponents.
+     * The results only differ within floating point rounding.
+     *
+     * @return the handle, or null if there is no cheaper equivalent for the exponent
+     */
+    @Nullable
+    private MethodHandle reducePower(ParserRuleContext base, double exponent) {
+        DoubleUnaryOperator op;
+        if (exponent == 1) {
+            op = b -> b;
+        } else if (exponent == 2) {
+            op = b -> b * b;
+        } else if (exponent == 3) {
+            op = b -> b * b * b;
+        } else if (exponent == 4) {
+            op = b -> {
+                double square = b * b;
+                return square * square;
+            };
+        } else if (exponent == -1) {
+            op = b -> 1 / b;
+        } else if (exponent == 0.5) {
+            // pow is +0.0 for -0.0 and +infinity for -infinity, where sqrt is -0.0 and NaN
+            op = b -> b == Double.NEGATIVE_INFINITY ? Double.POSITIVE_INFINITY : Math.sqrt(b) + 0.0;
+        } else {
+            return null;
+        }
+        MethodHandle value = evaluateForValue(base);
+        return ExpressionHandles.call(data ->
+                op.applyAsDouble((double) ExpressionHandles.standardInvoke(value, data))
+        );
+    }
+    //FAWE end
+
     @Override
     public MethodHandle visitMultiplicativeExpr(ExpressionParser.MultiplicativeExprContext ctx) {
         return evaluateBinary(ctx.left, ctx.right, () -> {
@@ -593,6 +696,16 @@ public MethodHandle visitFunctionCall(ExpressionParser.FunctionCallContext ctx)
             }
             arguments[i] = transformed;
         }
+        //FAWE start - call instance functions on the functions of the evaluation, so forks can share the code
+        MethodHandle unbound = functions.getUnbound(handle);
+        if (unbound != null) {
+            MethodHandle[] withFunctions = new MethodHandle[arguments.length + 1];
+            withFunctions[0] = ExpressionHandles.GET_FUNCTIONS;
+            System.arraycopy(arguments, 0, withFunctions, 1, arguments.length);
+            handle = unbound;
+            arguments = withFunctions;
+        }
+        //FAWE end
         // Take each of our data accepting arguments, apply them over the source method
         MethodHandle manyData = MethodHandles.filterArguments(handle, 0, arguments);
         // Collapse every data into one argument
@@ -633,6 +746,14 @@ public MethodHandle visitConstantExpression(ExpressionParser.ConstantExpressionC
     @Override
     public MethodHandle visitIdExpr(ExpressionParser.IdExprContext ctx) {
         Token source = ctx.source;
+        //FAWE start - inline constants
+        if (optimizer != null) {
+            Double constant = optimizer.getConstantSlot(source.getText());
+            if (constant != null) {
+                return ExpressionHandles.dropData(MethodHandles.constant(Double.class, constant));
+            }
+        }
+        //FAWE end
         return ExpressionHandles.call(data -> ExpressionHandles.getSlotValue(data, source));
     }
 
@@ -657,10 +778,15 @@ public MethodHandle visitChildren(RuleNode node) {
                 break;
             }
 
-            MethodHandle childResult = c.accept(this);
+            //FAWE start - compile rule children so their cache wrappers are applied
+            MethodHandle childResult;
             if (c instanceof ParserRuleContext) {
+                childResult = compile((ParserRuleContext) c);
                 checkHandle(childResult, (ParserRuleContext) c);
+            } else {
+                childResult = c.accept(this);
             }
+            //FAWE end
 
             result = aggregateHandleResult(result, childResult);
         }
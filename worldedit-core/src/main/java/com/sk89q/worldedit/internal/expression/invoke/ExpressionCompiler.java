@@ -22,6 +22,7 @@
 import com.sk89q.worldedit.antlr.ExpressionParser;
 import com.sk89q.worldedit.internal.expression.CompiledExpression;
 import com.sk89q.worldedit.internal.expression.Functions;
+import com.sk89q.worldedit.internal.expression.SlotTable;
 
 import java.lang.invoke.LambdaConversionException;
 import java.lang.invoke.LambdaMetafactory;
@@ -67,7 +68,26 @@ public CompiledExpression compileExpression(
             ExpressionParser.AllStatementsContext root,
             Functions functions
     ) {
-        MethodHandle invokable = root.accept(new CompilingVisitor(functions));
+        //FAWE start
+        return compile(root, new CompilingVisitor(functions));
+    }
+
+    /**
+     * Compile an expression with constant folding, common subexpression elimination and strength reduction.
+     *
+     * @param slots the slots of the expression, constant slots are inlined
+     */
+    public CompiledExpression compileExpression(
+            ExpressionParser.AllStatementsContext root,
+            Functions functions,
+            SlotTable slots
+    ) {
+        return compile(root, new CompilingVisitor(functions, new ExpressionOptimizer(root, slots)));
+    }
+
+    private CompiledExpression compile(ExpressionParser.AllStatementsContext root, CompilingVisitor visitor) {
+        MethodHandle invokable = root.accept(visitor);
+        //FAWE end
         // catch ReturnExpression and substitute its result
         invokable = MethodHandles.catchException(
                 invokable,
@@ -24,6 +24,7 @@
 import com.sk89q.worldedit.internal.expression.EvaluationException;
 import com.sk89q.worldedit.internal.expression.ExecutionData;
 import com.sk89q.worldedit.internal.expression.ExpressionHelper;
+import com.sk89q.worldedit.internal.expression.Functions;
 import com.sk89q.worldedit.internal.expression.LocalSlot;
 import it.unimi.dsi.fastutil.doubles.Double2ObjectMap;
 import it.unimi.dsi.fastutil.doubles.Double2ObjectMaps;
@@ -73,6 +74,10 @@ class ExpressionHandles {
     static final MethodHandle NEW_RETURN_EXCEPTION;
     // (ReturnException)Double;
     static final MethodHandle RETURN_EXCEPTION_GET_RESULT;
+    //FAWE start
+    // (ExecutionData)Functions;
+    static final MethodHandle GET_FUNCTIONS;
+    //FAWE end
 
     static final MethodHandle NULL_DOUBLE = dropData(constant(Double.class, null));
 
@@ -130,6 +135,11 @@ class ExpressionHandles {
             RETURN_EXCEPTION_GET_RESULT = lookup.findVirtual(ReturnException.class,
                     "getResult", methodType(Double.class)
             );
+            //FAWE start
+            GET_FUNCTIONS = lookup.findVirtual(ExecutionData.class,
+                    "getFunctions", methodType(Functions.class)
+            );
+            //FAWE end
         } catch (NoSuchMethodException | IllegalAccessException e) {
             throw new IllegalStateException(e);
         }
@@ -272,6 +282,33 @@ static MethodHandle call(CompiledExpression runnable) {
         return CALL_EXPRESSION.bindTo(runnable).asType(COMPILED_EXPRESSION_SIG);
     }
 
+    //FAWE start
+
+    /**
+     * Wrap a common subexpression, so it is only evaluated once until its cache scope is cleared.
+     */
+    static MethodHandle cached(MethodHandle handle, int index) {
+        return call(data -> {
+            Double value = data.getCached(index);
+            if (value == null) {
+                value = (Double) standardInvoke(handle, data);
+                data.setCached(index, value);
+            }
+            return value;
+        });
+    }
+
+    /**
+     * Wrap a pure expression, clearing the cached results of its common subexpressions before evaluating it.
+     */
+    static MethodHandle clearCached(MethodHandle handle, int from, int to) {
+        return call(data -> {
+            data.clearCached(from, to);
+            return (Double) standardInvoke(handle, data);
+        });
+    }
+    //FAWE end
+
     static MethodHandle whileLoop(MethodHandle condition, ExecNode body) {
         return insertArguments(WHILE_FOR_LOOP_IMPL, 1,
                 null, condition, body, null
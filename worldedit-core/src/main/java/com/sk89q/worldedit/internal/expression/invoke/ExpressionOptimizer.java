@@ -0,0 +1,380 @@
+package com.sk89q.worldedit.internal.expression.invoke;
+
+import com.sk89q.worldedit.antlr.ExpressionParser;
+import com.sk89q.worldedit.internal.expression.Functions;
+import com.sk89q.worldedit.internal.expression.LocalSlot;
+import com.sk89q.worldedit.internal.expression.SlotTable;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Analyses an expression so {@link CompilingVisitor} can optimize it.
+ * <p>
+ * An expression is pure if evaluating it has no side effects (no assignments, increments or impure functions such as
+ * {@code random} or {@code megabuf}), and constant if it is pure and doesn't read any variables. Constant expressions
+ * are evaluated once at compile time. Results of other costly expressions are kept in the {@link
+ * com.sk89q.worldedit.internal.expression.ExecutionData} cache:
+ * - Pure expressions in a loop which don't read a variable assigned in the loop are evaluated once per run of the loop
+ * - Within a pure expression the values of the variables can't change, so repeated subexpressions are evaluated once
+ * per evaluation of the enclosing pure expression
+ * A cached expression is still evaluated lazily, so it is never evaluated where it wouldn't have been otherwise.
+ */
+class ExpressionOptimizer {
+
+    /**
+     * Cost of a function call relative to an operator
+     */
+    private static final int FUNCTION_COST = 4;
+    /**
+     * Minimum cost of a subexpression for its result to be cached, cheaper ones are faster to recompute
+     */
+    private static final int MIN_CACHE_COST = 4;
+
+    private final SlotTable slots;
+    private final Map<ParseTree, Info> infos = new IdentityHashMap<>();
+    private final Map<ParseTree, Integer> cacheIndices = new IdentityHashMap<>();
+    private final Map<ParseTree, int[]> cacheScopes = new IdentityHashMap<>();
+    private int cacheSize;
+
+    ExpressionOptimizer(ParseTree root, SlotTable slots) {
+        this.slots = slots;
+        analyse(root);
+        findLoops(root);
+        findScopes(root);
+    }
+
+    /**
+     * If the expression can be evaluated at compile time.
+     */
+    boolean isConstant(ParseTree node) {
+        Info info = infos.get(node);
+        return info != null && info.constant;
+    }
+
+    /**
+     * Get the value of a constant slot (e.g. {@code pi}).
+     */
+    @Nullable
+    Double getConstantSlot(String name) {
+        return slots.getSlot(name)
+                .filter(LocalSlot.Constant.class::isInstance)
+                .map(LocalSlot::getValue)
+                .orElse(null);
+    }
+
+    /**
+     * Get the index the result of an expression is cached at. Only the node of the actual operation is cached, not the
+     * rules it falls through.
+     *
+     * @return the index, or -1 if the expression isn't cached
+     */
+    int getCacheIndex(ParseTree node) {
+        return cacheIndices.getOrDefault(node, -1);
+    }
+
+    /**
+     * Get the range of cache indices which must be cleared before evaluating a loop or pure expression.
+     *
+     * @return the range {@code [from, to)}, or null if the node doesn't contain cached expressions
+     */
+    @Nullable
+    int[] getCacheScope(ParseTree node) {
+        return cacheScopes.get(node);
+    }
+
+    private Info analyse(ParseTree node) {
+        boolean pure = true;
+        boolean constant = true;
+        int cost = 0;
+        for (int i = 0; i < node.getChildCount(); i++) {
+            Info child = analyse(node.getChild(i));
+            pure &= child.pure;
+            constant &= child.constant;
+            cost += child.cost;
+        }
+        if (node instanceof ExpressionParser.IdExprContext) {
+            constant = getConstantSlot(((ExpressionParser.IdExprContext) node).source.getText()) != null;
+        } else if (node instanceof ExpressionParser.AssignmentContext
+                || node instanceof ExpressionParser.PreCrementExprContext
+                || node instanceof ExpressionParser.PostCrementExprContext) {
+            pure = false;
+        } else if (node instanceof ExpressionParser.FunctionCallContext) {
+            pure &= Functions.isPure(((ExpressionParser.FunctionCallContext) node).name.getText());
+            cost += FUNCTION_COST;
+        } else if (isOperator(node)) {
+            cost++;
+        } else if (!(node instanceof TerminalNode) && !isExpression(node)) {
+            // Statements
+            pure = false;
+        }
+        Info info = new Info(pure, pure && constant, cost);
+        infos.put(node, info);
+        return info;
+    }
+
+    /**
+     * Find the loop invariant expressions of each loop, the outermost loop first so an expression is hoisted as far as
+     * possible.
+     */
+    private void findLoops(ParseTree node) {
+        List<ParseTree> parts = getLoopParts(node);
+        if (parts != null) {
+            Set<String> assigned = new HashSet<>();
+            collectAssigned(node, assigned);
+            Map<String, Integer> invariants = new HashMap<>();
+            int from = cacheSize;
+            for (ParseTree part : parts) {
+                hoist(part, assigned, invariants);
+            }
+            if (cacheSize > from) {
+                cacheScopes.put(node, new int[]{from, cacheSize});
+            }
+        }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            findLoops(node.getChild(i));
+        }
+    }
+
+    /**
+     * Get the parts of a loop which are evaluated on every iteration.
+     *
+     * @return the parts, or null if the node isn't a loop
+     */
+    @Nullable
+    private static List<ParseTree> getLoopParts(ParseTree node) {
+        if (node instanceof ExpressionParser.WhileStatementContext) {
+            ExpressionParser.WhileStatementContext loop = (ExpressionParser.WhileStatementContext) node;
+            return List.of(loop.condition, loop.body);
+        } else if (node instanceof ExpressionParser.DoStatementContext) {
+            ExpressionParser.DoStatementContext loop = (ExpressionParser.DoStatementContext) node;
+            return List.of(loop.body, loop.condition);
+        } else if (node instanceof ExpressionParser.ForStatementContext) {
+            ExpressionParser.ForStatementContext loop = (ExpressionParser.ForStatementContext) node;
+            return List.of(loop.condition, loop.body, loop.update);
+        } else if (node instanceof ExpressionParser.SimpleForStatementContext) {
+            return List.of(((ExpressionParser.SimpleForStatementContext) node).body);
+        }
+        return null;
+    }
+
+    /**
+     * Collect the variables which may be assigned anywhere in a node. Impure functions may assign the variables passed
+     * to them (e.g. {@code closest}).
+     */
+    private static void collectAssigned(ParseTree node, Set<String> assigned) {
+        if (node instanceof ExpressionParser.AssignmentContext) {
+            assigned.add(((ExpressionParser.AssignmentContext) node).target.getText());
+        } else if (node instanceof ExpressionParser.PreCrementExprContext) {
+            assigned.add(((ExpressionParser.PreCrementExprContext) node).target.getText());
+        } else if (node instanceof ExpressionParser.PostCrementExprContext) {
+            assigned.add(((ExpressionParser.PostCrementExprContext) node).target.getText());
+        } else if (node instanceof ExpressionParser.SimpleForStatementContext) {
+            assigned.add(((ExpressionParser.SimpleForStatementContext) node).counter.getText());
+        } else if (node instanceof ExpressionParser.FunctionCallContext) {
+            ExpressionParser.FunctionCallContext call = (ExpressionParser.FunctionCallContext) node;
+            if (!Functions.isPure(call.name.getText())) {
+                for (ExpressionParser.ExpressionContext arg : call.args) {
+                    ParseTree value = unwrap(arg);
+                    if (value instanceof ExpressionParser.IdExprContext) {
+                        assigned.add(((ExpressionParser.IdExprContext) value).source.getText());
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            collectAssigned(node.getChild(i), assigned);
+        }
+    }
+
+    /**
+     * Cache the outermost pure expressions which don't read any of the assigned variables, equal ones share an index.
+     */
+    private void hoist(ParseTree node, Set<String> assigned, Map<String, Integer> invariants) {
+        if (cacheIndices.containsKey(node)) {
+            // Already hoisted out of an enclosing loop
+            return;
+        }
+        if (infos.get(node).pure && isCacheable(node) && !reads(node, assigned)) {
+            cacheIndices.put(node, invariants.computeIfAbsent(key(node), k -> cacheSize++));
+            return;
+        }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            hoist(node.getChild(i), assigned, invariants);
+        }
+    }
+
+    private static boolean reads(ParseTree node, Set<String> variables) {
+        if (node instanceof ExpressionParser.IdExprContext) {
+            return variables.contains(((ExpressionParser.IdExprContext) node).source.getText());
+        }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            if (reads(node.getChild(i), variables)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Find the outermost pure expressions and their common subexpressions. Expressions hoisted out of a loop are left
+     * alone, they are already evaluated at most once per run of the loop.
+     */
+    private void findScopes(ParseTree node) {
+        Info info = infos.get(node);
+        if (info.pure && !info.constant && isExpression(node)) {
+            Map<String, Integer> counts = new HashMap<>();
+            count(node, counts);
+            Map<String, List<ParseTree>> common = new HashMap<>();
+            collect(node, counts, common);
+            int from = cacheSize;
+            for (List<ParseTree> nodes : common.values()) {
+                if (nodes.size() > 1) {
+                    int index = cacheSize++;
+                    for (ParseTree subexpression : nodes) {
+                        cacheIndices.put(subexpression, index);
+                    }
+                }
+            }
+            if (cacheSize > from) {
+                cacheScopes.put(unwrap(node), new int[]{from, cacheSize});
+            }
+            return;
+        }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            findScopes(node.getChild(i));
+        }
+    }
+
+    private void count(ParseTree node, Map<String, Integer> counts) {
+        if (cacheIndices.containsKey(node)) {
+            return;
+        }
+        if (isCacheable(node)) {
+            counts.merge(key(node), 1, Integer::sum);
+        }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            count(node.getChild(i), counts);
+        }
+    }
+
+    private void collect(ParseTree node, Map<String, Integer> counts, Map<String, List<ParseTree>> common) {
+        if (cacheIndices.containsKey(node)) {
+            return;
+        }
+        if (isCacheable(node)) {
+            String key = key(node);
+            if (counts.get(key) > 1) {
+                // Repeats within this one are covered by caching it
+                common.computeIfAbsent(key, k -> new ArrayList<>()).add(node);
+                return;
+            }
+        }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            collect(node.getChild(i), counts, common);
+        }
+    }
+
+    private boolean isCacheable(ParseTree node) {
+        Info info = infos.get(node);
+        return unwrap(node) == node && !info.constant && info.cost >= MIN_CACHE_COST
+                && (isOperator(node) || node instanceof ExpressionParser.FunctionCallContext);
+    }
+
+    /**
+     * Get the tokens of an expression, separated so different expressions can't have the same key.
+     */
+    private static String key(ParseTree node) {
+        StringBuilder builder = new StringBuilder();
+        appendTokens(node, builder);
+        return builder.toString();
+    }
+
+    private static void appendTokens(ParseTree node, StringBuilder builder) {
+        if (node instanceof TerminalNode) {
+            builder.append(node.getText()).append(' ');
+            return;
+        }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            appendTokens(node.getChild(i), builder);
+        }
+    }
+
+    /**
+     * Skip the rules an expression falls through to reach its actual operation, e.g. an additive expression which is
+     * just a multiplicative expression.
+     */
+    static ParseTree unwrap(ParseTree node) {
+        while (true) {
+            if (node instanceof ExpressionParser.WrappedExprContext) {
+                node = ((ExpressionParser.WrappedExprContext) node).expression();
+            } else if (node instanceof ParserRuleContext && node.getChildCount() == 1
+                    && node.getChild(0) instanceof ParserRuleContext) {
+                node = node.getChild(0);
+            } else {
+                return node;
+            }
+        }
+    }
+
+    private static boolean isOperator(ParseTree node) {
+        return node instanceof ExpressionParser.TernaryExprContext
+                || node instanceof ExpressionParser.ConditionalOrExprContext
+                || node instanceof ExpressionParser.ConditionalAndExprContext
+                || node instanceof ExpressionParser.EqualityExprContext
+                || node instanceof ExpressionParser.RelationalExprContext
+                || node instanceof ExpressionParser.ShiftExprContext
+                || node instanceof ExpressionParser.AddExprContext
+                || node instanceof ExpressionParser.MultiplicativeExprContext
+                || node instanceof ExpressionParser.PowerExprContext
+                || node instanceof ExpressionParser.PlusMinusExprContext
+                || node instanceof ExpressionParser.ComplementExprContext
+                || node instanceof ExpressionParser.NotExprContext
+                || node instanceof ExpressionParser.PostfixExprContext;
+    }
+
+    private static boolean isExpression(ParseTree node) {
+        return node instanceof ExpressionParser.ExpressionContext
+                || node instanceof ExpressionParser.AssignmentExpressionContext
+                || node instanceof ExpressionParser.AssignmentContext
+                || node instanceof ExpressionParser.AssignmentOperatorContext
+                || node instanceof ExpressionParser.ConditionalExpressionContext
+                || node instanceof ExpressionParser.ConditionalOrExpressionContext
+                || node instanceof ExpressionParser.ConditionalAndExpressionContext
+                || node instanceof ExpressionParser.EqualityExpressionContext
+                || node instanceof ExpressionParser.RelationalExpressionContext
+                || node instanceof ExpressionParser.ShiftExpressionContext
+                || node instanceof ExpressionParser.AdditiveExpressionContext
+                || node instanceof ExpressionParser.MultiplicativeExpressionContext
+                || node instanceof ExpressionParser.PowerExpressionContext
+                || node instanceof ExpressionParser.UnaryExpressionContext
+                || node instanceof ExpressionParser.PostfixExpressionContext
+                || node instanceof ExpressionParser.UnprioritizedExpressionContext
+                || node instanceof ExpressionParser.ConstantExpressionContext
+                || node instanceof ExpressionParser.FunctionCallContext;
+    }
+
+    private static final class Info {
+
+        private final boolean pure;
+        private final boolean constant;
+        private final int cost;
+
+        private Info(boolean pure, boolean constant, int cost) {
+            this.pure = pure;
+            this.constant = constant;
+            this.cost = cost;
+        }
+
+    }
+
+}
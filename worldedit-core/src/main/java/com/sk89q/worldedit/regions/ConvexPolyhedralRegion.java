@@ -334,5 +334,59 @@ public AbstractRegion clone() {
     public boolean containsEntireCuboid(int bx, int tx, int by, int ty, int bz, int tz) {
         return false;
     }
+
+    @Override
+    public boolean hasColumnSpans() {
+        return true;
+    }
+
+    /**
+     * A column crosses the convex hull in a single run, bounded by the planes of the triangles. The bounds are widened
+     * by a block for rounding, then narrowed to the blocks {@link #contains(BlockVector3)} accepts.
+     */
+    @Override
+    public boolean getColumnSpans(int chunkX, int chunkZ, int[] spans) {
+        int bx = chunkX << 4;
+        int bz = chunkZ << 4;
+        boolean defined = isDefined();
+        BlockVector3 min = defined ? getMinimumPoint() : null;
+        BlockVector3 max = defined ? getMaximumPoint() : null;
+        for (int index = 0; index < 256; index++) {
+            int x = bx + (index & 15);
+            int z = bz + (index >> 4);
+            spans[index << 1] = Integer.MAX_VALUE;
+            spans[index << 1 | 1] = Integer.MIN_VALUE;
+            if (!defined || x < min.getX() || x > max.getX() || z < min.getZ() || z > max.getZ()) {
+                continue;
+            }
+            double low = Double.NEGATIVE_INFINITY;
+            double high = Double.POSITIVE_INFINITY;
+            for (Triangle triangle : triangles) {
+                Vector3 normal = triangle.getNormal();
+                // Contained while normal . (x, y, z) <= maxDotProduct
+                double bound = triangle.getMaxDotProduct() - normal.getX() * x - normal.getZ() * z;
+                if (normal.getY() > 0) {
+                    high = Math.min(high, bound / normal.getY());
+                } else if (normal.getY() < 0) {
+                    low = Math.max(low, bound / normal.getY());
+                } else if (bound < -1e-9) {
+                    high = Double.NEGATIVE_INFINITY;
+                }
+            }
+            int lowY = (int) Math.max(min.getY(), Math.floor(low) - 1);
+            int highY = (int) Math.min(max.getY(), Math.ceil(high) + 1);
+            while (lowY <= highY && !contains(BlockVector3.at(x, lowY, z))) {
+                lowY++;
+            }
+            while (highY >= lowY && !contains(BlockVector3.at(x, highY, z))) {
+                highY--;
+            }
+            if (lowY <= highY) {
+                spans[index << 1] = lowY;
+                spans[index << 1 | 1] = highY;
+            }
+        }
+        return true;
+    }
     //FAWE end
 }
@@ -332,6 +332,23 @@ public boolean contains(int x, int z) {
     public boolean contains(BlockVector3 position) {
         return contains(position.getX(), position.getY(), position.getZ());
     }
+
+    @Override
+    public boolean hasColumnSpans() {
+        return true;
+    }
+
+    @Override
+    public boolean getColumnSpans(int chunkX, int chunkZ, int[] spans) {
+        int bx = chunkX << 4;
+        int bz = chunkZ << 4;
+        for (int index = 0; index < 256; index++) {
+            boolean inside = contains(bx + (index & 15), bz + (index >> 4));
+            spans[index << 1] = inside ? minY : Integer.MAX_VALUE;
+            spans[index << 1 | 1] = inside ? maxY : Integer.MIN_VALUE;
+        }
+        return true;
+    }
     //FAWE end
 
     /**
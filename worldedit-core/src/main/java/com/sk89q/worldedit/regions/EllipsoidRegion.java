@@ -284,6 +284,52 @@ public boolean contains(int x, int z) {
         double czd = cz2 * inverseRadius.getZ();
         return cxd + czd <= 1;
     }
+
+    @Override
+    public boolean hasColumnSpans() {
+        return true;
+    }
+
+    /**
+     * Columns are symmetric around the center, and {@link #contains(int, int, int)} only gets further from passing
+     * away from it, so the half height of each column is found by a doubling then binary search.
+     */
+    @Override
+    public boolean getColumnSpans(int chunkX, int chunkZ, int[] spans) {
+        int bx = chunkX << 4;
+        int bz = chunkZ << 4;
+        int cy = center.getBlockY();
+        for (int index = 0; index < 256; index++) {
+            int x = bx + (index & 15);
+            int z = bz + (index >> 4);
+            if (!contains(x, cy, z)) {
+                spans[index << 1] = Integer.MAX_VALUE;
+                spans[index << 1 | 1] = Integer.MIN_VALUE;
+                continue;
+            }
+            // Contained at low, not at high
+            int low = 0;
+            int high = 1;
+            while (contains(x, cy + high, z)) {
+                low = high;
+                if (high >= 1 << 24) {
+                    break;
+                }
+                high <<= 1;
+            }
+            while (high - low > 1) {
+                int mid = (low + high) >>> 1;
+                if (contains(x, cy + mid, z)) {
+                    low = mid;
+                } else {
+                    high = mid;
+                }
+            }
+            spans[index << 1] = cy - low;
+            spans[index << 1 | 1] = cy + low;
+        }
+        return true;
+    }
     //FAWE end
 
     /**
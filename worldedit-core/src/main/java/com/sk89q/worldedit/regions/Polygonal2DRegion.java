@@ -528,5 +528,23 @@ public boolean containsEntireCuboid(int bx, int tx, int by, int ty, int bz, int
         }
         return true;
     }
+
+    @Override
+    public boolean hasColumnSpans() {
+        return true;
+    }
+
+    @Override
+    public boolean getColumnSpans(int chunkX, int chunkZ, int[] spans) {
+        int bx = chunkX << 4;
+        int bz = chunkZ << 4;
+        boolean polygon = points.size() >= 3;
+        for (int index = 0; index < 256; index++) {
+            boolean inside = polygon && contains(bx + (index & 15), bz + (index >> 4));
+            spans[index << 1] = inside ? minY : Integer.MAX_VALUE;
+            spans[index << 1 | 1] = inside ? maxY : Integer.MIN_VALUE;
+        }
+        return true;
+    }
     //FAWE end
 }
@@ -236,6 +236,29 @@ default int getMaximumY() {
         return getMaximumPoint().getY();
     }
 
+    /**
+     * Check if the region supports {@link #getColumnSpans(int, int, int[])}.
+     *
+     * @return true if the spans of the columns of a chunk can be computed
+     */
+    default boolean hasColumnSpans() {
+        return false;
+    }
+
+    /**
+     * Get the part of each column of a chunk within the region, for regions which contain a single run of blocks in
+     * every column (e.g. convex regions), so the chunk can be filtered without testing each block.
+     *
+     * @param chunkX the chunk x coordinate
+     * @param chunkZ the chunk z coordinate
+     * @param spans  receives the lowest and highest y of the column {@code x | z << 4} at {@code 2 * index} and
+     *               {@code 2 * index + 1}. The lowest is greater than the highest for columns outside the region
+     * @return true if the spans were computed, false if the region doesn't support it, see {@link #hasColumnSpans()}
+     */
+    default boolean getColumnSpans(int chunkX, int chunkZ, int[] spans) {
+        return false;
+    }
+
     default void filter(
             final IChunk chunk,
             final Filter filter,
@@ -246,13 +269,35 @@ default void filter(
     ) {
         int minSection = Math.max(0, getMinimumY() >> 4);
         int maxSection = Math.min(15, getMaximumY() >> 4);
+        int[] spans = hasColumnSpans() ? new int[512] : null;
+        boolean spanned = spans != null && getColumnSpans(chunk.getX(), chunk.getZ(), spans);
+        if (spanned) {
+            // Skip the sections no column reaches
+            int lowest = Integer.MAX_VALUE;
+            int highest = Integer.MIN_VALUE;
+            for (int i = 0; i < spans.length; i += 2) {
+                if (spans[i] <= spans[i + 1]) {
+                    lowest = Math.min(lowest, spans[i]);
+                    highest = Math.max(highest, spans[i + 1]);
+                }
+            }
+            if (lowest > highest) {
+                return;
+            }
+            minSection = Math.max(minSection, lowest >> 4);
+            maxSection = Math.min(maxSection, highest >> 4);
+        }
         block = block.initChunk(chunk.getX(), chunk.getZ());
         for (int layer = minSection; layer <= maxSection; layer++) {
             if ((!full && !get.hasSection(layer)) || !filter.appliesLayer(chunk, layer)) {
                 return;
             }
             block = block.initLayer(get, set, layer);
-            block.filter(filter, this);
+            if (spanned) {
+                block.filter(filter, spans);
+            } else {
+                block.filter(filter, this);
+            }
         }
     }
 
@@ -58,6 +58,27 @@ public Vector3 getVertex(int index) {
         return vertices[index];
     }
 
+    //FAWE start
+    /**
+     * Returns the unit normal of the triangle's plane, pointing out of the polyhedron.
+     *
+     * @return the normal
+     */
+    public Vector3 getNormal() {
+        return normal;
+    }
+
+    /**
+     * Returns the greatest dot product of the normal with a vertex. Points whose dot product with the normal is greater
+     * are above the triangle.
+     *
+     * @return the dot product
+     */
+    public double getMaxDotProduct() {
+        return maxDotProduct;
+    }
+    //FAWE end
+
     /**
      * Returns the triangle's edge with the given index, counter-clockwise.
      *
@@ -45,6 +45,19 @@ public WorldEditExpressionEnvironment(Extent extent, Vector3 unit, Vector3 zero)
         this.zero2 = zero.add(0.5, 0.5, 0.5);
     }
 
+    //FAWE start
+    private WorldEditExpressionEnvironment(WorldEditExpressionEnvironment other) {
+        this.extent = other.extent;
+        this.unit = other.unit;
+        this.zero2 = other.zero2;
+    }
+
+    @Override
+    public WorldEditExpressionEnvironment fork() {
+        return new WorldEditExpressionEnvironment(this);
+    }
+    //FAWE end
+
     public BlockVector3 toWorld(double x, double y, double z) {
         // unscale, unoffset, round-nearest
         return Vector3.at(x, y, z).multiply(unit).add(zero2).toBlockPoint();
@@ -19,6 +19,7 @@
 
 package com.sk89q.worldedit.session.request;
 
+import com.fastasyncworldedit.core.util.ParserProfile;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
@@ -29,7 +30,9 @@
 import com.sk89q.worldedit.world.World;
 
 import javax.annotation.Nullable;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 /**
  * Describes the current request
@@ -52,6 +55,7 @@ public final class Request {
     private Actor actor;
     @Nullable
     private Extent extent;
+    private final List<ParserProfile> profiles = new ArrayList<>();
     //FAWE end
 
     private Request() {
@@ -109,6 +113,24 @@ public Actor getActor() {
     public void setActor(@Nullable Actor actor) {
         this.actor = actor;
     }
+
+    /**
+     * Add the profile of a mask or pattern parsed for this request.
+     *
+     * @param profile the profile
+     */
+    public void addProfile(ParserProfile profile) {
+        this.profiles.add(profile);
+    }
+
+    /**
+     * Get the profiles of the masks and patterns parsed for this request, if the session is profiling.
+     *
+     * @return the profiles of the outermost inputs
+     */
+    public List<ParserProfile> getProfiles() {
+        return profiles;
+    }
     //FAWE end
 
     /**
@@ -20,6 +20,7 @@
 package com.sk89q.worldedit.world.block;
 
 import com.fastasyncworldedit.core.registry.state.PropertyKey;
+import com.fastasyncworldedit.core.util.OrdinalTables;
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.worldedit.WorldEdit;
 import com.sk89q.worldedit.WorldEditException;
@@ -256,6 +257,12 @@ public boolean apply(Extent extent, BlockVector3 get, BlockVector3 set) throws W
         return true;
     }
 
+    @Nullable
+    @Override
+    public char[] toOrdinalTable() {
+        return getNbtReference() == null ? OrdinalTables.fill(toImmutableState()) : null;
+    }
+
     @Override
     public void applyTileEntity(OutputExtent output, int x, int y, int z) {
         CompoundTag nbt = getNbtData();
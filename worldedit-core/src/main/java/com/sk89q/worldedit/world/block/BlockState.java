@@ -24,6 +24,7 @@
 import com.fastasyncworldedit.core.queue.ITileInput;
 import com.fastasyncworldedit.core.registry.state.PropertyKey;
 import com.fastasyncworldedit.core.util.MutableCharSequence;
+import com.fastasyncworldedit.core.util.OrdinalTables;
 import com.fastasyncworldedit.core.util.StringMan;
 import com.fastasyncworldedit.core.world.block.BlanketBaseBlock;
 import com.fastasyncworldedit.core.world.block.CompoundInput;
@@ -265,6 +266,11 @@ public BaseBlock applyBlock(BlockVector3 position) {
         return this.toBaseBlock();
     }
 
+    @Override
+    public char[] toOrdinalTable() {
+        return OrdinalTables.fill(this);
+    }
+
     public Mask toMask() {
         return new SingleBlockStateMask(new NullExtent(), this);
     }
@@ -0,0 +1,241 @@
+package com.fastasyncworldedit.core.database;
+
+import com.fastasyncworldedit.core.history.RollbackOptimizedHistory;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.World;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Checks that looking up edits through the rtree returns the same edits, in the same order, as scanning the table.
+ */
+class RollbackDatabaseTest {
+
+    private static final UUID[] PLAYERS = {new UUID(1, 2), new UUID(3, 4)};
+    private static final int EDITS = 300;
+
+    @TempDir
+    File folder;
+
+    @Test
+    void testRtreeMatchesScan() throws Exception {
+        TestDatabase database = new TestDatabase(new File(folder, "summary.db"));
+        try {
+            long now = System.currentTimeMillis() / 1000;
+            Random random = new Random(3);
+            for (int id = 0; id < EDITS; id++) {
+                insert(database.getConnection(), "INSERT OR REPLACE", id, now, random);
+            }
+            assertRtree(database.getConnection());
+            assertMatchesScan(database, now);
+
+            // Remove and replace edits, so a VACUUM has rows to renumber
+            for (int id = 0; id < EDITS; id += 3) {
+                assertEquals(1, database.delete(PLAYERS[id % 2], id).get());
+            }
+            for (int id = 1; id < EDITS; id += 5) {
+                insert(database.getConnection(), "INSERT OR REPLACE", id, now, random);
+            }
+            try (Statement stmt = database.getConnection().createStatement()) {
+                stmt.execute("VACUUM");
+            }
+            assertMatchesScan(database, now);
+        } finally {
+            database.close();
+        }
+    }
+
+    /**
+     * A database from before the explicit row id, with an rtree keyed on the implicit rowid which still holds edits that
+     * have since been removed and vacuumed.
+     */
+    @Test
+    void testMigration() throws Exception {
+        File file = new File(folder, "old.db");
+        long now = System.currentTimeMillis() / 1000;
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file);
+             Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE `edits` (`player` BLOB(16) NOT NULL,`id` INT NOT NULL, `time` INT NOT NULL,"
+                    + "`x1` INT NOT NULL,`x2` INT NOT NULL,`z1` INT NOT NULL,`z2` INT NOT NULL,`y1` INT NOT NULL, "
+                    + "`y2` INT NOT NULL, `size` INT NOT NULL, `command` VARCHAR, PRIMARY KEY (player, id))");
+            stmt.executeUpdate("CREATE VIRTUAL TABLE `edits_rtree` USING rtree_i32(`id`, `x1`, `x2`, `y1`, `y2`, `z1`, `z2`)");
+            Random random = new Random(5);
+            for (int id = 0; id < EDITS; id++) {
+                insert(connection, "INSERT", id, now, random);
+            }
+            stmt.executeUpdate("INSERT INTO `edits_rtree` SELECT rowid, `x1`, `x2`, `y1`, `y2`, `z1`, `z2` FROM `edits`");
+            stmt.executeUpdate("DELETE FROM `edits` WHERE `id` % 4 = 0");
+            stmt.executeUpdate("PRAGMA user_version = 1");
+            stmt.execute("VACUUM");
+        }
+
+        TestDatabase database = new TestDatabase(file);
+        try {
+            boolean rowId = false;
+            try (Statement stmt = database.getConnection().createStatement();
+                 ResultSet result = stmt.executeQuery("PRAGMA table_info(`edits`)")) {
+                while (result.next()) {
+                    rowId |= "row_id".equals(result.getString("name"));
+                }
+            }
+            assertTrue(rowId);
+            assertRtree(database.getConnection());
+            assertMatchesScan(database, now);
+        } finally {
+            database.close();
+        }
+    }
+
+    private static void insert(Connection connection, String insert, int id, long now, Random random) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(insert
+                + " INTO `edits` (`player`,`id`,`time`,`x1`,`x2`,`z1`,`z2`,`y1`,`y2`,`command`,`size`) "
+                + "VALUES(?,?,?,?,?,?,?,?,?,?,?)")) {
+            int x = random.nextInt(400) - 200;
+            int y = random.nextInt(256);
+            int z = random.nextInt(400) - 200;
+            stmt.setBytes(1, toBytes(PLAYERS[id % 2]));
+            stmt.setInt(2, id);
+            stmt.setInt(3, (int) (now - random.nextInt(1000)));
+            stmt.setInt(4, x);
+            stmt.setInt(5, x + random.nextInt(40));
+            stmt.setInt(6, z);
+            stmt.setInt(7, z + random.nextInt(40));
+            stmt.setByte(8, (byte) (y - 128));
+            stmt.setByte(9, (byte) (Math.min(255, y + random.nextInt(40)) - 128));
+            stmt.setString(10, "//set stone");
+            stmt.setInt(11, 1);
+            stmt.executeUpdate();
+        }
+    }
+
+    private static void assertRtree(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet result = stmt.executeQuery(
+                     "SELECT (SELECT count(*) FROM `edits`), (SELECT count(*) FROM `edits_rtree`)")) {
+            assertTrue(result.next());
+            assertEquals(result.getInt(1), result.getInt(2));
+        }
+    }
+
+    private static void assertMatchesScan(TestDatabase database, long now) throws SQLException {
+        Random random = new Random(7);
+        int found = 0;
+        for (int i = 0; i < 200; i++) {
+            int x = random.nextInt(440) - 220;
+            int y = random.nextInt(256);
+            int z = random.nextInt(440) - 220;
+            BlockVector3 pos1 = BlockVector3.at(x, y, z);
+            BlockVector3 pos2 = i % 4 == 0 ? pos1 : BlockVector3.at(
+                    x + random.nextInt(60),
+                    Math.min(255, y + random.nextInt(60)),
+                    z + random.nextInt(60)
+            );
+            UUID player = i % 3 == 0 ? null : PLAYERS[i % 2];
+            long minTime = i % 5 == 0 ? (now - 500) * 1000 : 0;
+            boolean ascending = i % 2 == 0;
+
+            List<String> expected = scan(database.getConnection(), player, minTime, pos1, pos2, ascending);
+            database.rows.clear();
+            int count = 0;
+            for (Supplier<RollbackOptimizedHistory> edit : database.getEdits(player, minTime, pos1, pos2, false, ascending)) {
+                count++;
+            }
+            assertEquals(expected.size(), count, "query " + i);
+            assertEquals(expected, database.rows, "query " + i);
+            found += expected.size();
+        }
+        assertTrue(found > 0);
+    }
+
+    /**
+     * The query used before the rtree was added.
+     */
+    private static List<String> scan(
+            Connection connection, UUID player, long minTime, BlockVector3 pos1, BlockVector3 pos2,
+            boolean ascending
+    ) throws SQLException {
+        String order = ascending ? "ASC" : "DESC";
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT * FROM `edits` WHERE `time`>? AND `x2`>=? "
+                + "AND `x1`<=? AND `z2`>=? AND `z1`<=? AND `y2`>=? AND `y1`<=?" + (player == null ? "" : " AND `player`=?")
+                + " ORDER BY `time` " + order + ", `id` " + order)) {
+            stmt.setInt(1, (int) (minTime / 1000));
+            stmt.setInt(2, pos1.getBlockX());
+            stmt.setInt(3, pos2.getBlockX());
+            stmt.setInt(4, pos1.getBlockZ());
+            stmt.setInt(5, pos2.getBlockZ());
+            stmt.setByte(6, (byte) (pos1.getBlockY() - 128));
+            stmt.setByte(7, (byte) (pos2.getBlockY() - 128));
+            if (player != null) {
+                stmt.setBytes(8, toBytes(player));
+            }
+            List<String> rows = new ArrayList<>();
+            try (ResultSet result = stmt.executeQuery()) {
+                while (result.next()) {
+                    rows.add(row(result));
+                }
+            }
+            return rows;
+        }
+    }
+
+    private static String row(ResultSet result) throws SQLException {
+        ByteBuffer player = ByteBuffer.wrap(result.getBytes("player"));
+        return new UUID(player.getLong(), player.getLong()) + ":" + result.getInt("id");
+    }
+
+    private static byte[] toBytes(UUID uuid) {
+        return ByteBuffer.allocate(16).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits()).array();
+    }
+
+    /**
+     * Runs its queries on the calling thread and records the edits found instead of loading their history.
+     */
+    private static final class TestDatabase extends RollbackDatabase {
+
+        private final List<String> rows = new ArrayList<>();
+
+        private TestDatabase(File file) throws SQLException, ClassNotFoundException {
+            super(mock(World.class), file);
+        }
+
+        @Override
+        public <T> Future<T> call(Callable<T> task) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            try {
+                future.complete(task.call());
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+            return future;
+        }
+
+        @Override
+        Supplier<RollbackOptimizedHistory> create(ResultSet result) throws SQLException {
+            rows.add(row(result));
+            return () -> null;
+        }
+
+    }
+
+}
@@ -0,0 +1,288 @@
+package com.fastasyncworldedit.core.extent.filter;
+
+import com.fastasyncworldedit.core.extent.filter.block.CharFilterBlock;
+import com.fastasyncworldedit.core.extent.filter.block.FilterBlock;
+import com.fastasyncworldedit.core.function.mask.MaskUnion;
+import com.fastasyncworldedit.core.math.random.SeededRandom;
+import com.fastasyncworldedit.core.queue.Filter;
+import com.fastasyncworldedit.core.queue.IChunkSet;
+import com.fastasyncworldedit.core.queue.implementation.blocks.CharGetBlocks;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.extent.NullExtent;
+import com.sk89q.worldedit.function.mask.BlockMask;
+import com.sk89q.worldedit.function.mask.BlockStateMask;
+import com.sk89q.worldedit.function.mask.BlockTypeMask;
+import com.sk89q.worldedit.function.mask.ExistingBlockMask;
+import com.sk89q.worldedit.function.mask.ExpressionMask;
+import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.function.mask.MaskIntersection;
+import com.sk89q.worldedit.function.pattern.BlockPattern;
+import com.sk89q.worldedit.function.pattern.Pattern;
+import com.sk89q.worldedit.function.pattern.RandomPattern;
+import com.sk89q.worldedit.function.pattern.StateApplyingPattern;
+import com.sk89q.worldedit.function.pattern.TypeApplyingPattern;
+import com.sk89q.worldedit.internal.expression.Expression;
+import com.sk89q.worldedit.internal.expression.ExpressionException;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.util.Countable;
+import com.sk89q.worldedit.util.test.MockedBlockPlatform;
+import com.sk89q.worldedit.util.test.ResourceLockKeys;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockTypes;
+import com.sk89q.worldedit.world.block.BlockTypesCache;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.ResourceLock;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks that filtering whole sections, through {@link Filter#applySection} and the lookup tables of masks and
+ * patterns, sets and counts the same blocks as filtering them block by block.
+ */
+@ResourceLock(ResourceLockKeys.WORLDEDIT_PLATFORM)
+class MaskFilterTest {
+
+    private static final int CHUNK_X = 3;
+    private static final int CHUNK_Z = -2;
+
+    @BeforeAll
+    static void setupFakePlatform() {
+        MockedBlockPlatform.register();
+    }
+
+    @AfterAll
+    static void tearDownFakePlatform() {
+        MockedBlockPlatform.unregister();
+    }
+
+    @Test
+    void testReplaceMatchesPerBlock() throws ExpressionException {
+        char[][] sections = sections(11, false);
+        Extent extent = new SectionExtent(sections);
+        BlockState stairs = BlockTypes.SANDSTONE_STAIRS.getDefaultState();
+        RandomPattern random = new RandomPattern(new SeededRandom(3));
+        random.add(BlockTypes.STONE.getDefaultState(), 1);
+        random.add(BlockTypes.GLOWSTONE.getDefaultState(), 2);
+        Pattern[] compiled = {
+                BlockTypes.DIRT.getDefaultState(),
+                BlockTypes.TORCH.getDefaultState().toBaseBlock(),
+                new BlockPattern(BlockTypes.GLOWSTONE.getDefaultState()),
+                new TypeApplyingPattern(extent, stairs),
+                new StateApplyingPattern(extent, Map.of("half", "top", "type", "double"))
+        };
+        int applied = 0;
+        for (Mask mask : compiledMasks(extent)) {
+            for (Pattern pattern : compiled) {
+                assertTrue(new MaskFilter<>(pattern, mask).applySection(
+                        sections[0], () -> new char[4096], 0, 0, 0, 0, 0, 0, 15, 15, 15));
+                applied += assertSameResult(sections, pattern, mask);
+            }
+            // A pattern depending on the position is applied block by block
+            assertFalse(new MaskFilter<>(random, mask).applySection(
+                    sections[0], () -> new char[4096], 0, 0, 0, 0, 0, 0, 15, 15, 15));
+            applied += assertSameResult(sections, random, mask);
+        }
+        // The expression has no table and the intersection can't test sections, so it is tested block by block
+        Mask uncompiled = new MaskIntersection(new BlockMask(extent).add(BlockTypes.AIR), expression("x - z > 0"));
+        assertFalse(new MaskFilter<>(stairs, uncompiled).applySection(
+                sections[0], () -> new char[4096], 0, 0, 0, 0, 0, 0, 15, 15, 15));
+        applied += assertSameResult(sections, stairs, uncompiled);
+        assertTrue(applied > 0);
+    }
+
+    @Test
+    void testCountMatchesPerBlock() throws ExpressionException {
+        char[][] sections = sections(12, false);
+        for (Mask mask : compiledMasks(new SectionExtent(sections))) {
+            CountFilter expected = new CountFilter();
+            CountFilter actual = new CountFilter();
+            MaskFilter<CountFilter> expectedFilter = new MaskFilter<>(expected, mask);
+            MaskFilter<CountFilter> actualFilter = new MaskFilter<>(actual, mask);
+            filter(sections, expectedFilter, true);
+            assertArrayEquals(new char[16][], filter(sections, actualFilter, false));
+            assertEquals(expected.getTotal(), actual.getTotal());
+            assertEquals(expectedFilter.getBlocksApplied(), actualFilter.getBlocksApplied());
+        }
+
+        CountFilter expected = new CountFilter();
+        CountFilter actual = new CountFilter();
+        filter(sections, expected, true);
+        filter(sections, actual, false);
+        assertEquals(expected.getTotal(), actual.getTotal());
+        assertTrue(actual.getTotal() > 0);
+    }
+
+    /**
+     * Unset blocks are counted as air.
+     */
+    @Test
+    void testDistributionMatchesPerBlock() {
+        char[][] sections = sections(13, true);
+        DistrFilter expected = new DistrFilter();
+        DistrFilter actual = new DistrFilter();
+        filter(sections, expected, true);
+        filter(sections, actual, false);
+        List<Countable<BlockState>> expectedDistribution = expected.getDistribution();
+        List<Countable<BlockState>> actualDistribution = actual.getDistribution();
+        assertEquals(expectedDistribution.size(), actualDistribution.size());
+        for (int i = 0; i < expectedDistribution.size(); i++) {
+            assertEquals(expectedDistribution.get(i).getID(), actualDistribution.get(i).getID());
+            assertEquals(expectedDistribution.get(i).getAmount(), actualDistribution.get(i).getAmount());
+        }
+        assertEquals(expected.getTotal(), actual.getTotal());
+        assertTrue(actual.getTotal() > 0);
+    }
+
+    /**
+     * The masks which either compile to a lookup table, or can test whole sections.
+     */
+    private static Mask[] compiledMasks(Extent extent) throws ExpressionException {
+        return new Mask[]{
+                new BlockMask(extent).add(BlockTypes.STONE.getDefaultState(), BlockTypes.TORCH.getDefaultState()),
+                new BlockTypeMask(extent, BlockTypes.SANDSTONE_STAIRS, BlockTypes.AIR),
+                new BlockStateMask(extent, Map.of("half", "bottom"), false),
+                new BlockStateMask(extent, Map.of("type", "top"), true),
+                new ExistingBlockMask(extent),
+                new ExistingBlockMask(extent).inverse(),
+                new MaskIntersection(
+                        new ExistingBlockMask(extent),
+                        new BlockStateMask(extent, Map.of("shape", "straight"), false)
+                ),
+                new MaskUnion(
+                        new BlockTypeMask(extent, BlockTypes.GLOWSTONE),
+                        new BlockStateMask(extent, Map.of("facing", "north"), true)
+                ),
+                expression("y % 8 + x % 3 - z % 5 > 2")
+        };
+    }
+
+    private static Mask expression(String expression) throws ExpressionException {
+        return new ExpressionMask(Expression.compile(expression, "x", "y", "z"), () -> 1000);
+    }
+
+    /**
+     * Replace the blocks in the mask with the pattern, block by block and by section.
+     *
+     * @return the number of blocks replaced
+     */
+    private static int assertSameResult(char[][] sections, Pattern pattern, Mask mask) {
+        MaskFilter<Pattern> expectedFilter = new MaskFilter<>(pattern, mask);
+        MaskFilter<Pattern> actualFilter = new MaskFilter<>(pattern, mask);
+        char[][] expected = filter(sections, expectedFilter, true);
+        char[][] actual = filter(sections, actualFilter, false);
+        for (int layer = 0; layer < 16; layer++) {
+            assertArrayEquals(expected[layer], actual[layer], "layer " + layer + " of " + pattern + " in " + mask);
+        }
+        assertEquals(expectedFilter.getBlocksApplied(), actualFilter.getBlocksApplied());
+        return actualFilter.getBlocksApplied();
+    }
+
+    /**
+     * Filter every section of a chunk, each with one of the cuboids {@link CharFilterBlock} filters.
+     *
+     * @param perBlock hide the section fast path of the filter, so it is applied block by block
+     * @return the blocks set in each section, or null where none were
+     */
+    private static char[][] filter(char[][] sections, Filter filter, boolean perBlock) {
+        Filter applied = !perBlock ? filter : new Filter() {
+            @Override
+            public void applyBlock(FilterBlock block) {
+                filter.applyBlock(block);
+            }
+        };
+        CharGetBlocks get = mock(CharGetBlocks.class);
+        IChunkSet set = mock(IChunkSet.class);
+        char[][] setSections = new char[16][];
+        for (int layer = 0; layer < 16; layer++) {
+            int setLayer = layer;
+            when(get.hasSection(layer)).thenReturn(true);
+            when(get.load(layer)).thenReturn(sections[layer]);
+            when(set.load(layer)).thenAnswer(invocation -> {
+                if (setSections[setLayer] == null) {
+                    setSections[setLayer] = new char[4096];
+                }
+                return setSections[setLayer];
+            });
+        }
+        CharFilterBlock block = new CharFilterBlock(new SectionExtent(sections));
+        block.initChunk(CHUNK_X, CHUNK_Z);
+        for (int layer = 0; layer < 16; layer++) {
+            block.initLayer(get, set, layer);
+            if (layer % 3 == 0) {
+                block.filter(applied);
+            } else if (layer % 3 == 1) {
+                block.filter(applied, 3, 12);
+            } else {
+                block.filter(applied, 2, 1, 5, 13, 14, 9);
+            }
+        }
+        return setSections;
+    }
+
+    /**
+     * Random blocks for the sections of a chunk, a third of them air.
+     *
+     * @param unset whether to include unset blocks (ordinal 0)
+     */
+    private static char[][] sections(long seed, boolean unset) {
+        Random random = new Random(seed);
+        int states = BlockTypesCache.states.length;
+        char[][] sections = new char[16][4096];
+        for (char[] section : sections) {
+            for (int index = 0; index < section.length; index++) {
+                if (random.nextInt(3) == 0) {
+                    section[index] = unset && random.nextBoolean() ? 0 : BlockTypes.AIR.getDefaultState().getOrdinalChar();
+                } else {
+                    section[index] = (char) (1 + random.nextInt(states - 1));
+                }
+            }
+        }
+        return sections;
+    }
+
+    /**
+     * Reads the blocks of the sections, for masks and patterns looking the block up through their extent.
+     */
+    private static final class SectionExtent extends NullExtent {
+
+        private final char[][] sections;
+
+        private SectionExtent(char[][] sections) {
+            this.sections = sections;
+        }
+
+        @Override
+        public BlockState getBlock(BlockVector3 position) {
+            return getBlock(position.getX(), position.getY(), position.getZ());
+        }
+
+        @Override
+        public BlockState getBlock(int x, int y, int z) {
+            return BlockTypesCache.states[sections[y >> 4][(y & 15) << 8 | (z & 15) << 4 | x & 15]];
+        }
+
+        @Override
+        public BaseBlock getFullBlock(BlockVector3 position) {
+            return getBlock(position).toBaseBlock();
+        }
+
+        @Override
+        public BaseBlock getFullBlock(int x, int y, int z) {
+            return getBlock(x, y, z).toBaseBlock();
+        }
+
+    }
+
+}
@@ -0,0 +1,98 @@
+package com.fastasyncworldedit.core.extent.filter.block;
+
+import com.fastasyncworldedit.core.queue.Filter;
+import com.fastasyncworldedit.core.queue.IChunkSet;
+import com.fastasyncworldedit.core.queue.implementation.blocks.CharGetBlocks;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.math.Vector2;
+import com.sk89q.worldedit.math.Vector3;
+import com.sk89q.worldedit.regions.CylinderRegion;
+import com.sk89q.worldedit.regions.EllipsoidRegion;
+import com.sk89q.worldedit.regions.Region;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks that filtering a section by column spans visits the same blocks as filtering it with
+ * {@link Region#contains(int, int, int)}.
+ */
+class CharFilterBlockTest {
+
+    @Test
+    void testEllipsoidSpans() {
+        assertSpansMatch(new EllipsoidRegion(BlockVector3.at(7, 70, -3), Vector3.at(21.5, 30, 12)));
+    }
+
+    @Test
+    void testCylinderSpans() {
+        // Starts and ends within a section, so the bottom and top sections are only partially covered
+        assertSpansMatch(new CylinderRegion(BlockVector3.at(-4, 0, 9), Vector2.at(18, 11), 37, 84));
+    }
+
+    private static void assertSpansMatch(Region region) {
+        CharGetBlocks get = mock(CharGetBlocks.class);
+        for (int layer = 0; layer < 16; layer++) {
+            char[] section = new char[4096];
+            for (int index = 0; index < section.length; index++) {
+                section[index] = (char) index;
+            }
+            when(get.hasSection(layer)).thenReturn(true);
+            when(get.load(layer)).thenReturn(section);
+        }
+        IChunkSet set = mock(IChunkSet.class);
+        CharFilterBlock block = new CharFilterBlock(mock(Extent.class));
+        int[] spans = new int[512];
+        int visited = 0;
+        BlockVector3 min = region.getMinimumPoint();
+        BlockVector3 max = region.getMaximumPoint();
+        // The chunks the region touches, and the chunks around them
+        for (int chunkX = (min.getX() >> 4) - 1; chunkX <= (max.getX() >> 4) + 1; chunkX++) {
+            for (int chunkZ = (min.getZ() >> 4) - 1; chunkZ <= (max.getZ() >> 4) + 1; chunkZ++) {
+                assertTrue(region.getColumnSpans(chunkX, chunkZ, spans));
+                block.initChunk(chunkX, chunkZ);
+                for (int layer = 0; layer < 16; layer++) {
+                    block.initLayer(get, set, layer);
+                    Recorder expected = new Recorder();
+                    block.filter(expected, region);
+                    block.initLayer(get, set, layer);
+                    Recorder actual = new Recorder();
+                    block.filter(actual, spans);
+                    actual.blocks.sort(Comparator.comparingInt((int[] b) -> b[3]));
+                    assertEquals(expected.blocks.size(), actual.blocks.size(), "chunk " + chunkX + ", " + chunkZ);
+                    for (int i = 0; i < expected.blocks.size(); i++) {
+                        assertArrayEquals(expected.blocks.get(i), actual.blocks.get(i));
+                    }
+                    visited += actual.blocks.size();
+                }
+            }
+        }
+        assertTrue(visited > 0);
+    }
+
+    /**
+     * Records the position of each block, and the block read there, which is its index in the section.
+     */
+    private static final class Recorder implements Filter {
+
+        private final List<int[]> blocks = new ArrayList<>();
+
+        @Override
+        public void applyBlock(FilterBlock block) {
+            int index = (block.getY() & 15) << 8 | (block.getZ() & 15) << 4 | block.getX() & 15;
+            assertEquals(index, block.getOrdinal());
+            blocks.add(new int[]{block.getX(), block.getY(), block.getZ(), index});
+        }
+
+    }
+
+}
@@ -0,0 +1,443 @@
+package com.fastasyncworldedit.core.extent.processor.lighting;
+
+import com.fastasyncworldedit.core.configuration.Settings;
+import com.fastasyncworldedit.core.queue.IQueueChunk;
+import com.fastasyncworldedit.core.queue.IQueueExtent;
+import com.fastasyncworldedit.core.queue.implementation.chunk.ChunkHolder;
+import com.fastasyncworldedit.core.util.MathMan;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.util.test.MockedBlockPlatform;
+import com.sk89q.worldedit.util.test.ResourceLockKeys;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockType;
+import com.sk89q.worldedit.world.block.BlockTypes;
+import com.sk89q.worldedit.world.registry.BlockMaterial;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.ResourceLock;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+@ResourceLock(ResourceLockKeys.WORLDEDIT_PLATFORM)
+class NMSRelighterTest {
+
+    /**
+     * Blocks are only placed between these heights, everything else is stone
+     */
+    private static final int MIN_Y = 60;
+    private static final int MAX_Y = 72;
+
+    @BeforeAll
+    static void setupFakePlatform() {
+        MockedBlockPlatform.register();
+    }
+
+    @AfterAll
+    static void tearDownFakePlatform() {
+        MockedBlockPlatform.unregister();
+    }
+
+    /**
+     * Relighting the chunks in tiles in parallel must give the same light as relighting them one after another.
+     */
+    @Test
+    void testTiledRelightMatchesSequential() {
+        int parallelThreads = Settings.IMP.QUEUE.PARALLEL_THREADS;
+        try {
+            Settings.IMP.QUEUE.PARALLEL_THREADS = 1;
+            TestWorld sequential = caves(24, 12);
+            sequential.relight();
+
+            Settings.IMP.QUEUE.PARALLEL_THREADS = 4;
+            TestWorld tiled = caves(24, 12);
+            tiled.relight();
+
+            assertEquals(sequential.light.keySet(), tiled.light.keySet());
+            int lit = 0;
+            for (Map.Entry<Long, byte[]> entry : sequential.light.entrySet()) {
+                byte[] light = entry.getValue();
+                assertArrayEquals(light, tiled.light.get(entry.getKey()), () -> "Chunk " + MathMan.unpairIntX(entry.getKey())
+                        + ", " + MathMan.unpairIntY(entry.getKey()));
+                for (byte level : light) {
+                    if (level > 1) {
+                        lit++;
+                    }
+                }
+            }
+            assertTrue(lit > 0);
+        } finally {
+            Settings.IMP.QUEUE.PARALLEL_THREADS = parallelThreads;
+        }
+    }
+
+    /**
+     * Clearing blocks queues their neighbours, which are still dark then. Light spreading into the cleared blocks
+     * afterwards must still reach all of them.
+     */
+    @Test
+    void testLightSpreadsIntoClearedBlocks() {
+        TestWorld world = new TestWorld();
+        world.setBlock(0, 64, 0, BlockTypes.TORCH.getDefaultState());
+        world.relighter.addLightUpdate(0, 64, 0);
+        for (int x = 1; x <= 12; x++) {
+            world.setBlock(x, 64, 0, BlockTypes.AIR.getDefaultState());
+            world.relighter.addLightUpdate(x, 64, 0);
+        }
+        world.relight();
+        assertEquals(14, world.getLight(0, 64, 0));
+        for (int x = 1; x <= 12; x++) {
+            assertEquals(14 - x, world.getLight(x, 64, 0), "x = " + x);
+        }
+        assertEquals(0, world.getLight(13, 64, 0));
+        assertEquals(0, world.getLight(1, 65, 0));
+    }
+
+    /**
+     * Light spread and removed through the primitive queues must match the light of the map based queues they
+     * replaced. The sources are 32 blocks apart, so no block is reached by more than one of them, which the map based
+     * queues didn't handle.
+     */
+    @Test
+    void testMatchesMapBasedQueues() {
+        List<BlockVector3> sources = new ArrayList<>();
+        TestWorld world = sparseCaves(sources);
+        TestWorld legacy = sparseCaves(new ArrayList<>());
+        world.relight();
+        new LegacyBlockLight(legacy).update(sources);
+        assertSameLight(legacy, world);
+
+        List<BlockVector3> removed = new ArrayList<>();
+        for (int i = 0; i < sources.size(); i += 2) {
+            BlockVector3 source = sources.get(i);
+            for (TestWorld relit : new TestWorld[]{world, legacy}) {
+                relit.setBlock(source.getX(), source.getY(), source.getZ(), BlockTypes.AIR.getDefaultState());
+            }
+            world.relighter.addLightUpdate(source.getX(), source.getY(), source.getZ());
+            removed.add(source);
+        }
+        world.relight();
+        new LegacyBlockLight(legacy).update(removed);
+        assertSameLight(legacy, world);
+    }
+
+    /**
+     * A tile which fails must fail the relight, but only once the other tiles stopped writing light.
+     */
+    @Test
+    void testFailingTileWaitsForOtherTiles() {
+        int parallelThreads = Settings.IMP.QUEUE.PARALLEL_THREADS;
+        try {
+            Settings.IMP.QUEUE.PARALLEL_THREADS = 4;
+            // Enough chunks for several tiles in each pass
+            TestWorld world = new TestWorld();
+            for (int cx = 0; cx < 32; cx++) {
+                for (int cz = 0; cz < 32; cz++) {
+                    world.setBlock((cx << 4) + 8, 64, (cz << 4) + 8, BlockTypes.GLOWSTONE.getDefaultState());
+                    world.relighter.addLightUpdate((cx << 4) + 8, 64, (cz << 4) + 8);
+                }
+            }
+            world.failingChunk = MathMan.pairInt(5, 5);
+            world.slowWrites = true;
+            assertThrows(RuntimeException.class, world::relight);
+            world.finished = true;
+            assertTrue(ForkJoinPool.commonPool().awaitQuiescence(10, TimeUnit.SECONDS));
+            assertEquals(0, world.lateWrites.get());
+        } finally {
+            Settings.IMP.QUEUE.PARALLEL_THREADS = parallelThreads;
+        }
+    }
+
+    /**
+     * A world of random caves between {@link #MIN_Y} and {@link #MAX_Y} with glowstone in every chunk, enough chunks to
+     * be relit in tiles.
+     */
+    private static TestWorld caves(long seed, int chunks) {
+        TestWorld world = new TestWorld();
+        Random random = new Random(seed);
+        BlockState air = BlockTypes.AIR.getDefaultState();
+        BlockState glowstone = BlockTypes.GLOWSTONE.getDefaultState();
+        for (int x = 0; x < chunks << 4; x++) {
+            for (int z = 0; z < chunks << 4; z++) {
+                for (int y = MIN_Y; y < MAX_Y; y++) {
+                    if (random.nextInt(4) != 0) {
+                        world.setBlock(x, y, z, air);
+                    }
+                }
+            }
+        }
+        for (int cx = 0; cx < chunks; cx++) {
+            for (int cz = 0; cz < chunks; cz++) {
+                int x = (cx << 4) + random.nextInt(16);
+                int y = MIN_Y + random.nextInt(MAX_Y - MIN_Y);
+                int z = (cz << 4) + random.nextInt(16);
+                world.setBlock(x, y, z, glowstone);
+                world.relighter.addLightUpdate(x, y, z);
+            }
+        }
+        return world;
+    }
+
+    /**
+     * Caves over 6x6 chunks, with a glowstone or torch in the middle of every 32x32 blocks.
+     */
+    private static TestWorld sparseCaves(List<BlockVector3> sources) {
+        TestWorld world = new TestWorld();
+        Random random = new Random(9);
+        BlockState air = BlockTypes.AIR.getDefaultState();
+        for (int x = 0; x < 96; x++) {
+            for (int z = 0; z < 96; z++) {
+                for (int y = MIN_Y; y < MAX_Y; y++) {
+                    if (random.nextInt(3) != 0) {
+                        world.setBlock(x, y, z, air);
+                    }
+                }
+            }
+        }
+        for (int x = 16; x < 96; x += 32) {
+            for (int z = 16; z < 96; z += 32) {
+                int y = MIN_Y + random.nextInt(MAX_Y - MIN_Y);
+                BlockType type = random.nextBoolean() ? BlockTypes.GLOWSTONE : BlockTypes.TORCH;
+                world.setBlock(x, y, z, type.getDefaultState());
+                world.relighter.addLightUpdate(x, y, z);
+                sources.add(BlockVector3.at(x, y, z));
+            }
+        }
+        return world;
+    }
+
+    private static void assertSameLight(TestWorld expected, TestWorld actual) {
+        Set<Long> chunks = new HashSet<>(expected.light.keySet());
+        chunks.addAll(actual.light.keySet());
+        int lit = 0;
+        for (long chunk : chunks) {
+            byte[] expectedLight = expected.light.getOrDefault(chunk, new byte[16 * 16 * 256]);
+            byte[] actualLight = actual.light.getOrDefault(chunk, new byte[16 * 16 * 256]);
+            assertArrayEquals(expectedLight, actualLight, () -> "Chunk " + MathMan.unpairIntX(chunk) + ", "
+                    + MathMan.unpairIntY(chunk));
+            for (byte level : expectedLight) {
+                if (level > 0) {
+                    lit++;
+                }
+            }
+        }
+        assertTrue(lit > 0);
+    }
+
+    /**
+     * The blocks and block light of a world, with the relighter reading and writing them through mocked chunks.
+     */
+    private static final class TestWorld {
+
+        private final Map<Long, BlockState> blocks = new HashMap<>();
+        private final Map<Long, byte[]> light = new ConcurrentHashMap<>();
+        private final Map<Long, ChunkHolder<?>> chunks = new ConcurrentHashMap<>();
+        private final IQueueExtent<IQueueChunk> queue;
+        private final NMSRelighter relighter;
+        private final AtomicInteger lateWrites = new AtomicInteger();
+        private volatile long failingChunk = Long.MIN_VALUE;
+        private volatile boolean slowWrites;
+        private volatile boolean finished;
+
+        @SuppressWarnings("unchecked")
+        private TestWorld() {
+            queue = mock(IQueueExtent.class, withSettings().stubOnly());
+            when(queue.getMaxY()).thenReturn(255);
+            when(queue.getBlock(anyInt(), anyInt(), anyInt()))
+                    .thenAnswer(invocation -> getBlock(invocation.getArgument(0), invocation.getArgument(1),
+                            invocation.getArgument(2)
+                    ));
+            when(queue.getOrCreateChunk(anyInt(), anyInt()))
+                    .thenAnswer(invocation -> getChunk(invocation.getArgument(0), invocation.getArgument(1)));
+            relighter = new NMSRelighter(queue, RelightMode.ALL);
+        }
+
+        private void setBlock(int x, int y, int z, BlockState block) {
+            blocks.put(MathMan.tripleWorldCoord(x, y, z), block);
+        }
+
+        private BlockState getBlock(int x, int y, int z) {
+            BlockState block = blocks.get(MathMan.tripleWorldCoord(x, y, z));
+            return block != null ? block : BlockTypes.STONE.getDefaultState();
+        }
+
+        private int getLight(int x, int y, int z) {
+            byte[] chunk = light.get(MathMan.pairInt(x >> 4, z >> 4));
+            return chunk == null ? 0 : chunk[index(x, y, z)];
+        }
+
+        private void setLight(int x, int y, int z, int level) {
+            light.computeIfAbsent(MathMan.pairInt(x >> 4, z >> 4), k -> new byte[16 * 16 * 256])[index(x, y, z)] = (byte) level;
+        }
+
+        private void relight() {
+            relighter.fixBlockLighting();
+        }
+
+        private static int index(int x, int y, int z) {
+            return y << 8 | (z & 15) << 4 | x & 15;
+        }
+
+        private ChunkHolder<?> getChunk(int chunkX, int chunkZ) {
+            return chunks.computeIfAbsent(MathMan.pairInt(chunkX, chunkZ), pair -> {
+                ChunkHolder<?> chunk = mock(ChunkHolder.class, withSettings().stubOnly());
+                when(chunk.isInit()).thenReturn(true);
+                // Coordinates are relative to the chunk, or absolute, as for the real chunks only the lowest bits count
+                when(chunk.getEmittedLight(anyInt(), anyInt(), anyInt())).thenAnswer(invocation -> {
+                    if (pair == failingChunk) {
+                        throw new IllegalStateException("Chunk " + chunkX + ", " + chunkZ + " failed");
+                    }
+                    byte[] levels = light.get(pair);
+                    return levels == null ? 0 : (int) levels[index(
+                            invocation.getArgument(0),
+                            invocation.getArgument(1),
+                            invocation.getArgument(2)
+                    )];
+                });
+                when(chunk.getBrightness(anyInt(), anyInt(), anyInt())).thenAnswer(invocation -> getBlock(
+                        chunkX << 4 | (int) invocation.getArgument(0) & 15,
+                        invocation.getArgument(1),
+                        chunkZ << 4 | (int) invocation.getArgument(2) & 15
+                ).getMaterial().getLightValue());
+                doAnswer(invocation -> {
+                    if (finished) {
+                        lateWrites.incrementAndGet();
+                    }
+                    if (slowWrites) {
+                        Thread.sleep(1);
+                    }
+                    light.computeIfAbsent(pair, k -> new byte[16 * 16 * 256])[index(
+                            invocation.getArgument(0),
+                            invocation.getArgument(1),
+                            invocation.getArgument(2)
+                    )] = (byte) (int) invocation.getArgument(3);
+                    return null;
+                }).when(chunk).setBlockLight(anyInt(), anyInt(), anyInt(), anyInt());
+                return chunk;
+            });
+        }
+
+    }
+
+    /**
+     * The block light propagation before the primitive queues, with boxed positions in map based queues, for worlds
+     * without slabs and stairs.
+     */
+    private static final class LegacyBlockLight {
+
+        private final TestWorld world;
+        private final Queue<BlockVector3> propagation = new ArrayDeque<>();
+        private final Queue<Object[]> removal = new ArrayDeque<>();
+        private final Map<BlockVector3, Object> visited = new HashMap<>();
+        private final Map<BlockVector3, Object> removalVisited = new HashMap<>();
+
+        private LegacyBlockLight(TestWorld world) {
+            this.world = world;
+        }
+
+        private void update(List<BlockVector3> changed) {
+            for (BlockVector3 node : changed) {
+                int oldLevel = world.getLight(node.getX(), node.getY(), node.getZ());
+                int newLevel = world.getBlock(node.getX(), node.getY(), node.getZ()).getMaterial().getLightValue();
+                if (oldLevel != newLevel) {
+                    world.setLight(node.getX(), node.getY(), node.getZ(), newLevel);
+                    if (newLevel < oldLevel) {
+                        removalVisited.put(node, node);
+                        removal.add(new Object[]{node, oldLevel});
+                    } else {
+                        visited.put(node, node);
+                        propagation.add(node);
+                    }
+                }
+            }
+            while (!removal.isEmpty()) {
+                Object[] entry = removal.poll();
+                BlockVector3 node = (BlockVector3) entry[0];
+                int level = (int) entry[1];
+                remove(node.getX() - 1, node.getY(), node.getZ(), level);
+                remove(node.getX() + 1, node.getY(), node.getZ(), level);
+                if (node.getY() > 0) {
+                    remove(node.getX(), node.getY() - 1, node.getZ(), level);
+                }
+                if (node.getY() < 255) {
+                    remove(node.getX(), node.getY() + 1, node.getZ(), level);
+                }
+                remove(node.getX(), node.getY(), node.getZ() - 1, level);
+                remove(node.getX(), node.getY(), node.getZ() + 1, level);
+            }
+            while (!propagation.isEmpty()) {
+                BlockVector3 node = propagation.poll();
+                int level = world.getLight(node.getX(), node.getY(), node.getZ());
+                if (level <= 1) {
+                    continue;
+                }
+                spread(node.getX() + 1, node.getY(), node.getZ(), level);
+                spread(node.getX() - 1, node.getY(), node.getZ(), level);
+                spread(node.getX(), node.getY(), node.getZ() + 1, level);
+                spread(node.getX(), node.getY(), node.getZ() - 1, level);
+                if (node.getY() > 0) {
+                    spread(node.getX(), node.getY() - 1, node.getZ(), level);
+                }
+                if (node.getY() < 255) {
+                    spread(node.getX(), node.getY() + 1, node.getZ(), level);
+                }
+            }
+        }
+
+        private void remove(int x, int y, int z, int level) {
+            int current = world.getLight(x, y, z);
+            BlockVector3 node = BlockVector3.at(x, y, z);
+            if (current != 0 && current < level) {
+                world.setLight(x, y, z, 0);
+                if (current > 1 && !removalVisited.containsKey(node)) {
+                    removalVisited.put(node, node);
+                    removal.add(new Object[]{node, current});
+                }
+            } else if (current >= level && !visited.containsKey(node)) {
+                visited.put(node, node);
+                propagation.add(node);
+            }
+        }
+
+        private void spread(int x, int y, int z, int level) {
+            BlockMaterial material = world.getBlock(x, y, z).getMaterial();
+            boolean solidNeedsLight = (!material.isSolid() || !material.isFullCube()) && material.getLightOpacity() > 0
+                    && material.getLightValue() == 0;
+            level = !solidNeedsLight ? level - Math.max(1, material.getLightOpacity()) : level - 1;
+            if (level > 0 && level > world.getLight(x, y, z)) {
+                world.setLight(x, y, z, level);
+                BlockVector3 node = BlockVector3.at(x, y, z);
+                if (!visited.containsKey(node)) {
+                    visited.put(node, node);
+                    if (level > 1) {
+                        propagation.add(node);
+                    }
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,170 @@
+package com.fastasyncworldedit.core.extent.processor.lighting;
+
+import com.fastasyncworldedit.core.configuration.Settings;
+import com.fastasyncworldedit.core.queue.IChunk;
+import com.fastasyncworldedit.core.queue.IChunkGet;
+import com.fastasyncworldedit.core.queue.IChunkSet;
+import com.sk89q.worldedit.util.test.MockedBlockPlatform;
+import com.sk89q.worldedit.util.test.ResourceLockKeys;
+import com.sk89q.worldedit.world.block.BlockTypes;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.ResourceLock;
+
+import java.util.Arrays;
+
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks which sections and chunks the changed light mode relights for an edit.
+ */
+@ResourceLock(ResourceLockKeys.WORLDEDIT_PLATFORM)
+class RelightProcessorTest {
+
+    private static final int CHUNK_X = 2;
+    private static final int CHUNK_Z = -3;
+
+    private static int mode;
+    private static char air;
+    private static char stone;
+    private static char torch;
+
+    @BeforeAll
+    static void setUp() {
+        MockedBlockPlatform.register();
+        mode = Settings.IMP.LIGHTING.MODE;
+        Settings.IMP.LIGHTING.MODE = 3;
+        air = BlockTypes.AIR.getDefaultState().getOrdinalChar();
+        stone = BlockTypes.STONE.getDefaultState().getOrdinalChar();
+        torch = BlockTypes.TORCH.getDefaultState().getOrdinalChar();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        Settings.IMP.LIGHTING.MODE = mode;
+        MockedBlockPlatform.unregister();
+    }
+
+    /**
+     * Opening a roof at y = 100 above ground at y = 64 lets sky light down to the ground, and at most 15 blocks further
+     * into the sections below, and sideways into the chunks next to it.
+     */
+    @Test
+    void testOpacityChange() {
+        Relighter relighter = mock(Relighter.class);
+        char[][] set = new char[16][];
+        set[6] = new char[4096];
+        set[6][index(8, 100, 8)] = air;
+        new RelightProcessor(relighter).processSet(chunk(), world(), set(set));
+
+        byte[] fix = new byte[16];
+        Arrays.fill(fix, 0, 3, Relighter.SkipReason.AIR);
+        Arrays.fill(fix, 7, 16, Relighter.SkipReason.AIR);
+        verify(relighter).addChunk(eq(CHUNK_X), eq(CHUNK_Z), aryEq(fix), eq(1 << 6));
+        // Sections 3 to 6 of the chunks within 15 blocks, the corners are 16 blocks away
+        int relit = 0b1111 << 3;
+        verify(relighter).addChunk(eq(CHUNK_X + 1), eq(CHUNK_Z), aryEq(fix), eq(relit));
+        verify(relighter).addChunk(eq(CHUNK_X - 1), eq(CHUNK_Z), aryEq(fix), eq(relit));
+        verify(relighter).addChunk(eq(CHUNK_X), eq(CHUNK_Z + 1), aryEq(fix), eq(relit));
+        verify(relighter).addChunk(eq(CHUNK_X), eq(CHUNK_Z - 1), aryEq(fix), eq(relit));
+        verify(relighter, times(5)).addChunk(anyInt(), anyInt(), any(), anyInt());
+        verify(relighter).addLightUpdate((CHUNK_X << 4) + 8, 100, (CHUNK_Z << 4) + 8);
+    }
+
+    /**
+     * A block next to the edge of the chunk reaches the diagonal neighbours as well, but not the chunks on the far side.
+     */
+    @Test
+    void testOpacityChangeAtEdge() {
+        Relighter relighter = mock(Relighter.class);
+        char[][] set = new char[16][];
+        set[6] = new char[4096];
+        set[6][index(14, 100, 1)] = air;
+        new RelightProcessor(relighter).processSet(chunk(), world(), set(set));
+
+        verify(relighter).addChunk(eq(CHUNK_X + 1), eq(CHUNK_Z - 1), any(), anyInt());
+        verify(relighter).addChunk(eq(CHUNK_X + 1), eq(CHUNK_Z), any(), anyInt());
+        verify(relighter).addChunk(eq(CHUNK_X), eq(CHUNK_Z - 1), any(), anyInt());
+        verify(relighter, never()).addChunk(eq(CHUNK_X - 1), anyInt(), any(), anyInt());
+        verify(relighter, never()).addChunk(anyInt(), eq(CHUNK_Z + 1), any(), anyInt());
+    }
+
+    /**
+     * A torch doesn't block light, so only block light is relit, in this chunk.
+     */
+    @Test
+    void testEmissionChange() {
+        Relighter relighter = mock(Relighter.class);
+        char[][] set = new char[16][];
+        set[5] = new char[4096];
+        set[5][index(3, 80, 3)] = torch;
+        new RelightProcessor(relighter).processSet(chunk(), world(), set(set));
+
+        byte[] fix = new byte[16];
+        Arrays.fill(fix, Relighter.SkipReason.AIR);
+        verify(relighter).addChunk(eq(CHUNK_X), eq(CHUNK_Z), aryEq(fix), anyInt());
+        verify(relighter, times(1)).addChunk(anyInt(), anyInt(), any(), anyInt());
+        verify(relighter).addLightUpdate((CHUNK_X << 4) + 3, 80, (CHUNK_Z << 4) + 3);
+    }
+
+    @Test
+    void testNoChange() {
+        Relighter relighter = mock(Relighter.class);
+        char[][] set = new char[16][];
+        set[4] = new char[4096];
+        // Stone where there is stone already
+        set[4][index(0, 64, 0)] = stone;
+        new RelightProcessor(relighter).processSet(chunk(), world(), set(set));
+
+        verify(relighter, never()).addChunk(anyInt(), anyInt(), any(), anyInt());
+        verify(relighter, never()).addLightUpdate(anyInt(), anyInt(), anyInt());
+    }
+
+    private static IChunk chunk() {
+        IChunk chunk = mock(IChunk.class);
+        when(chunk.getX()).thenReturn(CHUNK_X);
+        when(chunk.getZ()).thenReturn(CHUNK_Z);
+        when(chunk.getBitMask()).thenReturn(1 << 6);
+        return chunk;
+    }
+
+    /**
+     * Stone up to y = 64, and a stone roof at y = 100.
+     */
+    private static IChunkGet world() {
+        IChunkGet get = mock(IChunkGet.class);
+        for (int layer = 0; layer < 16; layer++) {
+            char[] section = new char[4096];
+            for (int index = 0; index < 4096; index++) {
+                int y = layer << 4 | index >> 8;
+                section[index] = y <= 64 || y == 100 ? stone : air;
+            }
+            when(get.hasSection(layer)).thenReturn(true);
+            when(get.load(layer)).thenReturn(section);
+        }
+        return get;
+    }
+
+    private static IChunkSet set(char[][] sections) {
+        IChunkSet set = mock(IChunkSet.class);
+        for (int layer = 0; layer < 16; layer++) {
+            when(set.hasSection(layer)).thenReturn(sections[layer] != null);
+            when(set.load(layer)).thenReturn(sections[layer]);
+        }
+        return set;
+    }
+
+    private static int index(int x, int y, int z) {
+        return (y & 15) << 8 | z << 4 | x;
+    }
+
+}
@@ -0,0 +1,163 @@
+package com.fastasyncworldedit.core.function.mask;
+
+import com.fastasyncworldedit.core.util.ParserProfile;
+import com.sk89q.worldedit.LocalSession;
+import com.sk89q.worldedit.extension.input.ParserContext;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.extent.NullExtent;
+import com.sk89q.worldedit.function.mask.AbstractExtentMask;
+import com.sk89q.worldedit.function.mask.AbstractMask;
+import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.math.BlockVector3;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ProfilingMaskTest {
+
+    @Test
+    void testRecordsTests() {
+        ParserProfile profile = profile("#modulo");
+        Mask mask = new ModuloMask();
+        Mask profiled = ProfilingMask.of(mask, profile);
+        assertTrue(profiled instanceof ProfilingMask);
+        List<BlockVector3> positions = positions();
+        int passes = 0;
+        for (BlockVector3 position : positions) {
+            boolean expected = mask.test(position);
+            assertEquals(expected, profiled.test(position));
+            if (expected) {
+                passes++;
+            }
+        }
+        assertEquals(positions.size(), profile.getCalls());
+        assertEquals(passes, profile.getPasses());
+        assertTrue(passes > 0 && passes < positions.size());
+        // Every test takes at least a nanosecond
+        assertTrue(profile.getNanos() >= positions.size());
+
+        Mask copy = profiled.copy();
+        assertNotSame(profiled, copy);
+        assertTrue(copy instanceof ProfilingMask);
+        copy.test(BlockVector3.ZERO);
+        assertEquals(positions.size() + 1, profile.getCalls());
+    }
+
+    /**
+     * Masks testing an extent stay extent masks, tested against the extent they are given.
+     */
+    @Test
+    void testRecordsExtentTests() {
+        ParserProfile profile = profile("#extent");
+        Extent extent = new NullExtent();
+        Extent filtered = new NullExtent();
+        ExtentMask mask = new ExtentMask(extent);
+        Mask profiled = ProfilingMask.of(mask, profile);
+        assertTrue(profiled instanceof ProfilingExtentMask);
+        AbstractExtentMask extentMask = (AbstractExtentMask) profiled;
+        List<BlockVector3> positions = positions();
+        for (BlockVector3 position : positions) {
+            boolean expected = mask.test(filtered, position);
+            assertEquals(expected, extentMask.test(filtered, position));
+            assertSame(filtered, mask.tested);
+            assertEquals(!expected, extentMask.test(position));
+            assertSame(extent, mask.tested);
+        }
+        assertEquals(positions.size() * 2, profile.getCalls());
+        // One of the two tests of each position passes
+        assertEquals(positions.size(), profile.getPasses());
+        assertTrue(profile.getNanos() >= positions.size() * 2L);
+
+        extentMask.setExtent(filtered);
+        assertSame(filtered, mask.getExtent());
+        assertTrue(profiled.copy() instanceof ProfilingExtentMask);
+    }
+
+    /**
+     * A profile recording the tests of a mask, as created when parsing it in a profiling session.
+     */
+    private static ParserProfile profile(String input) {
+        LocalSession session = mock(LocalSession.class);
+        when(session.isProfiling()).thenReturn(true);
+        ParserContext context = new ParserContext();
+        context.setSession(session);
+        ParserProfile profile = ParserProfile.begin(input, context, true);
+        profile.end();
+        return profile;
+    }
+
+    private static List<BlockVector3> positions() {
+        List<BlockVector3> positions = new ArrayList<>();
+        for (int x = -4; x < 4; x++) {
+            for (int y = 0; y < 8; y++) {
+                for (int z = -4; z < 4; z++) {
+                    positions.add(BlockVector3.at(x, y, z));
+                }
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Whether the sum of the coordinates is divisible by 3, taking at least a nanosecond.
+     */
+    private static boolean divisible(BlockVector3 position) {
+        long start = System.nanoTime();
+        while (System.nanoTime() == start) {
+            Thread.onSpinWait();
+        }
+        return Math.floorMod(position.getX() + position.getY() + position.getZ(), 3) == 0;
+    }
+
+    private static final class ModuloMask extends AbstractMask {
+
+        @Override
+        public boolean test(BlockVector3 vector) {
+            return divisible(vector);
+        }
+
+        @Override
+        public Mask copy() {
+            return new ModuloMask();
+        }
+
+    }
+
+    /**
+     * Passes the positions {@link #divisible(BlockVector3)} does in other extents than its own, and the others in its own.
+     */
+    private static final class ExtentMask extends AbstractExtentMask {
+
+        private Extent tested;
+
+        private ExtentMask(Extent extent) {
+            super(extent);
+        }
+
+        @Override
+        public boolean test(BlockVector3 vector) {
+            return test(getExtent(), vector);
+        }
+
+        @Override
+        public boolean test(Extent extent, BlockVector3 position) {
+            tested = extent;
+            return divisible(position) == (extent != getExtent());
+        }
+
+        @Override
+        public Mask copy() {
+            return new ExtentMask(getExtent());
+        }
+
+    }
+
+}
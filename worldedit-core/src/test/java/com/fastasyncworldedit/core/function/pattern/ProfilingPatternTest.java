@@ -0,0 +1,124 @@
+package com.fastasyncworldedit.core.function.pattern;
+
+import com.fastasyncworldedit.core.util.ParserProfile;
+import com.sk89q.worldedit.LocalSession;
+import com.sk89q.worldedit.extension.input.ParserContext;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.extent.NullExtent;
+import com.sk89q.worldedit.function.pattern.Pattern;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.util.test.MockedBlockPlatform;
+import com.sk89q.worldedit.util.test.ResourceLockKeys;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockTypes;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.ResourceLock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ResourceLock(ResourceLockKeys.WORLDEDIT_PLATFORM)
+class ProfilingPatternTest {
+
+    @BeforeAll
+    static void setupFakePlatform() {
+        MockedBlockPlatform.register();
+    }
+
+    @AfterAll
+    static void tearDownFakePlatform() {
+        MockedBlockPlatform.unregister();
+    }
+
+    @Test
+    void testRecordsApplications() throws Exception {
+        ParserProfile profile = profile("#checkerboard");
+        CheckerboardPattern pattern = new CheckerboardPattern();
+        ProfilingPattern profiled = new ProfilingPattern(pattern, profile);
+        Extent extent = new NullExtent();
+        int applications = 0;
+        for (int x = -4; x < 4; x++) {
+            for (int z = -4; z < 4; z++) {
+                BlockVector3 position = BlockVector3.at(x, 64, z);
+                assertSame(pattern.applyBlock(position), profiled.applyBlock(position));
+                BlockVector3 set = position.add(0, 1, 0);
+                assertEquals(pattern.apply(extent, position, set), profiled.apply(extent, position, set));
+                assertSame(set, pattern.set);
+                applications += 2;
+            }
+        }
+        assertEquals(applications, profile.getCalls());
+        // Every application takes at least a nanosecond
+        assertTrue(profile.getNanos() >= applications);
+        assertEquals(0, profile.getPasses());
+    }
+
+    /**
+     * Forks record to the same profile, and patterns which aren't forked aren't wrapped again.
+     */
+    @Test
+    void testForksRecordToSameProfile() {
+        ParserProfile profile = profile("#checkerboard");
+        ProfilingPattern profiled = new ProfilingPattern(new CheckerboardPattern(), profile);
+        Pattern fork = profiled.fork();
+        assertNotSame(profiled, fork);
+        assertTrue(fork instanceof ProfilingPattern);
+        assertSame(profile, ((ProfilingPattern) fork).getProfile());
+        fork.applyBlock(BlockVector3.ZERO);
+        assertEquals(1, profile.getCalls());
+
+        ProfilingPattern unforked = new ProfilingPattern(BlockTypes.STONE.getDefaultState(), profile);
+        assertSame(unforked, unforked.fork());
+    }
+
+    /**
+     * A profile recording the applications of a pattern, as created when parsing it in a profiling session.
+     */
+    private static ParserProfile profile(String input) {
+        LocalSession session = mock(LocalSession.class);
+        when(session.isProfiling()).thenReturn(true);
+        ParserContext context = new ParserContext();
+        context.setSession(session);
+        ParserProfile profile = ParserProfile.begin(input, context, false);
+        profile.end();
+        return profile;
+    }
+
+    /**
+     * Stone and dirt in a checkerboard, taking at least a nanosecond per block.
+     */
+    private static final class CheckerboardPattern implements Pattern {
+
+        private final BaseBlock stone = BlockTypes.STONE.getDefaultState().toBaseBlock();
+        private final BaseBlock dirt = BlockTypes.DIRT.getDefaultState().toBaseBlock();
+        private BlockVector3 set;
+
+        @Override
+        public BaseBlock applyBlock(BlockVector3 position) {
+            long start = System.nanoTime();
+            while (System.nanoTime() == start) {
+                Thread.onSpinWait();
+            }
+            return ((position.getX() + position.getZ()) & 1) == 0 ? stone : dirt;
+        }
+
+        @Override
+        public boolean apply(Extent extent, BlockVector3 get, BlockVector3 set) {
+            this.set = set;
+            return applyBlock(get) == stone;
+        }
+
+        @Override
+        public Pattern fork() {
+            return new CheckerboardPattern();
+        }
+
+    }
+
+}
@@ -0,0 +1,207 @@
+package com.fastasyncworldedit.core.history;
+
+import com.fastasyncworldedit.core.configuration.Settings;
+import com.fastasyncworldedit.core.history.change.MutableBlockChange;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.util.test.MockedBlockPlatform;
+import com.sk89q.worldedit.util.test.ResourceLockKeys;
+import com.sk89q.worldedit.world.World;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.api.parallel.ResourceLock;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Writes chunk indexed history with several parts and reads all or some of them back.
+ */
+@ResourceLock(ResourceLockKeys.WORLDEDIT_PLATFORM)
+class ChunkIndexTest {
+
+    private static boolean chunkIndex;
+    private static boolean storeRedo;
+    private static boolean smallEdits;
+
+    @TempDir
+    File folder;
+
+    @BeforeAll
+    static void setUp() {
+        MockedBlockPlatform.register();
+        chunkIndex = Settings.IMP.HISTORY.CHUNK_INDEX;
+        storeRedo = Settings.IMP.HISTORY.STORE_REDO;
+        smallEdits = Settings.IMP.HISTORY.SMALL_EDITS;
+        Settings.IMP.HISTORY.CHUNK_INDEX = true;
+        Settings.IMP.HISTORY.STORE_REDO = true;
+        Settings.IMP.HISTORY.SMALL_EDITS = false;
+    }
+
+    @AfterAll
+    static void tearDown() {
+        Settings.IMP.HISTORY.CHUNK_INDEX = chunkIndex;
+        Settings.IMP.HISTORY.STORE_REDO = storeRedo;
+        Settings.IMP.HISTORY.SMALL_EDITS = smallEdits;
+        MockedBlockPlatform.unregister();
+    }
+
+    @Test
+    void testReadAll() throws IOException {
+        List<int[]> changes = changes();
+        DiskStorageHistory history = write(changes);
+        assertTrue(history.isChunkIndexed());
+        assertChanges(changes, read(history.getBlockIterator(true)), true);
+        assertChanges(changes, read(history.getBlockIterator(false)), false);
+    }
+
+    @Test
+    void testReadSubset() throws IOException {
+        List<int[]> changes = changes();
+        DiskStorageHistory history = write(changes);
+        // Whole columns of chunk 1, 1 and 2, 3, which are both written to more than once
+        Region[] regions = {
+                new CuboidRegion(BlockVector3.at(16, 0, 16), BlockVector3.at(31, 255, 31)),
+                new CuboidRegion(BlockVector3.at(32, 0, 48), BlockVector3.at(47, 255, 63))
+        };
+        List<int[]> expected = new ArrayList<>();
+        for (int[] change : changes) {
+            int chunkX = change[0] >> 4;
+            int chunkZ = change[2] >> 4;
+            if (chunkX == 1 && chunkZ == 1 || chunkX == 2 && chunkZ == 3) {
+                expected.add(change);
+            }
+        }
+        assertFalse(expected.isEmpty());
+
+        ChunkIndex index = ChunkIndex.read(new File(folder, "0.bd"));
+        int selected = 0;
+        for (Iterator<ChunkIndex.Entry> iterator = index.select(regions); iterator.hasNext(); selected++) {
+            ChunkIndex.Entry entry = iterator.next();
+            assertTrue(entry.getChunkX() == 1 && entry.getChunkZ() == 1 || entry.getChunkX() == 2 && entry.getChunkZ() == 3);
+        }
+        assertEquals(4, selected);
+
+        history.setReadRegions(regions);
+        assertChanges(expected, read(history.getBlockIterator(true)), true);
+    }
+
+    /**
+     * Readers of the same history mustn't share their position delegates, as positions are delta encoded.
+     */
+    @Test
+    void testInterleavedReaders() throws IOException {
+        List<int[]> changes = changes();
+        DiskStorageHistory history = write(changes);
+        Iterator<MutableBlockChange> first = history.getBlockIterator(true);
+        Iterator<MutableBlockChange> second = history.getBlockIterator(false);
+        for (int[] change : changes) {
+            assertTrue(first.hasNext());
+            assertChange(change, first.next(), true);
+            assertTrue(second.hasNext());
+            assertChange(change, second.next(), false);
+        }
+        assertFalse(first.hasNext());
+        assertFalse(second.hasNext());
+    }
+
+    @Test
+    void testPartCodec() throws IOException {
+        Random random = new Random(5);
+        byte[] data = new byte[100_000];
+        for (int i = 0; i < data.length; i++) {
+            // Compressible, like history
+            data[i] = (byte) (random.nextInt(8) == 0 ? random.nextInt() : i / 100);
+        }
+        PartCodec reader = new PartCodec(0);
+        // zstd (levels 7-9) needs its native library, LZ4 falls back to Java
+        for (int level : new int[]{0, 1, 4}) {
+            try (PartCodec writer = new PartCodec(level)) {
+                for (int length : new int[]{0, 1, 5000, data.length}) {
+                    int size = writer.compress(data, length);
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    writer.writeTo(out);
+                    assertEquals(size, out.size());
+                    byte[] part = out.toByteArray();
+                    byte[] decompressed = new byte[length];
+                    reader.decompress(part, size).readFully(decompressed);
+                    assertArrayEquals(Arrays.copyOf(data, length), decompressed, "level " + level);
+                    // A part which wasn't written completely
+                    assertThrows(IOException.class, () -> reader.decompress(part, size - 1), "level " + level);
+                }
+            }
+        }
+    }
+
+    /**
+     * Changes in chunks 0, 0 to 3, 3, going back to some chunks, so those have several parts.
+     */
+    private static List<int[]> changes() {
+        Random random = new Random(11);
+        List<int[]> changes = new ArrayList<>();
+        int[][] chunks = {{0, 0}, {1, 1}, {2, 3}, {3, 0}, {1, 1}, {0, 2}, {2, 3}, {3, 3}};
+        for (int[] chunk : chunks) {
+            for (int i = 0; i < 500; i++) {
+                changes.add(new int[]{
+                        chunk[0] << 4 | random.nextInt(16),
+                        random.nextInt(256),
+                        chunk[1] << 4 | random.nextInt(16),
+                        random.nextInt(5000),
+                        random.nextInt(5000)
+                });
+            }
+        }
+        return changes;
+    }
+
+    private DiskStorageHistory write(List<int[]> changes) throws IOException {
+        DiskStorageHistory history = new DiskStorageHistory(folder, mock(World.class), UUID.randomUUID(), 0);
+        for (int[] change : changes) {
+            history.add(change[0], change[1], change[2], change[3], change[4]);
+        }
+        history.close();
+        return new DiskStorageHistory(folder, mock(World.class), UUID.randomUUID(), 0);
+    }
+
+    private static List<int[]> read(Iterator<MutableBlockChange> iterator) {
+        List<int[]> read = new ArrayList<>();
+        while (iterator.hasNext()) {
+            MutableBlockChange change = iterator.next();
+            read.add(new int[]{change.x, change.y, change.z, change.ordinal});
+        }
+        return read;
+    }
+
+    private static void assertChanges(List<int[]> expected, List<int[]> read, boolean dir) {
+        assertEquals(expected.size(), read.size());
+        for (int i = 0; i < expected.size(); i++) {
+            int[] change = expected.get(i);
+            assertArrayEquals(new int[]{change[0], change[1], change[2], change[dir ? 4 : 3]}, read.get(i), "change " + i);
+        }
+    }
+
+    private static void assertChange(int[] expected, MutableBlockChange change, boolean dir) {
+        assertArrayEquals(
+                new int[]{expected[0], expected[1], expected[2], expected[dir ? 4 : 3]},
+                new int[]{change.x, change.y, change.z, change.ordinal}
+        );
+    }
+
+}
@@ -0,0 +1,141 @@
+package com.fastasyncworldedit.core.queue.implementation;
+
+import com.fastasyncworldedit.core.util.MathMan;
+import com.sk89q.worldedit.math.BlockVector2;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChunkSchedulerTest {
+
+    @Test
+    void testEveryChunkOnce() {
+        List<BlockVector2> chunks = area(-50, -30, 100, 70);
+        ChunkScheduler scheduler = new ChunkScheduler(chunks, 8);
+        Set<BlockVector2> claimed = new HashSet<>();
+        int batch;
+        // Workers taking turns
+        for (int worker = 0; (batch = scheduler.next(worker % 8)) != -1; worker++) {
+            for (long pos : scheduler.getBatch(batch)) {
+                assertTrue(claimed.add(BlockVector2.at(MathMan.unpairIntX(pos), MathMan.unpairIntY(pos))));
+            }
+        }
+        assertEquals(new HashSet<>(chunks), claimed);
+        for (int worker = 0; worker < 8; worker++) {
+            assertEquals(-1, scheduler.next(worker));
+        }
+    }
+
+    @Test
+    void testBatchesWithinRegionFile() {
+        ChunkScheduler scheduler = new ChunkScheduler(area(-50, -30, 100, 70), 2);
+        for (int batch = 0; batch < scheduler.getBatchCount(); batch++) {
+            long[] positions = scheduler.getBatch(batch);
+            int regionX = MathMan.unpairIntX(positions[0]) >> 5;
+            int regionZ = MathMan.unpairIntY(positions[0]) >> 5;
+            for (long pos : positions) {
+                assertEquals(regionX, MathMan.unpairIntX(pos) >> 5);
+                assertEquals(regionZ, MathMan.unpairIntY(pos) >> 5);
+            }
+        }
+    }
+
+    /**
+     * 8x8 chunks would be a single region file, they are split up so each of the 4 workers has 4 batches.
+     */
+    @Test
+    void testSmallAreaSplit() {
+        ChunkScheduler scheduler = new ChunkScheduler(area(0, 0, 8, 8), 4);
+        assertEquals(16, scheduler.getBatchCount());
+        for (int batch = 0; batch < scheduler.getBatchCount(); batch++) {
+            assertEquals(4, scheduler.getBatch(batch).length);
+        }
+    }
+
+    /**
+     * A worker claims its own run of batches in order before stealing the batches of the others.
+     */
+    @Test
+    void testStealing() {
+        ChunkScheduler scheduler = new ChunkScheduler(area(0, 0, 64, 64), 4);
+        int batches = scheduler.getBatchCount();
+        int own = batches / 4;
+        for (int i = 0; i < own; i++) {
+            assertEquals(i, scheduler.next(0));
+        }
+        assertEquals(0, scheduler.getStolenCount());
+        Set<Integer> stolen = new HashSet<>();
+        int batch;
+        while ((batch = scheduler.next(0)) != -1) {
+            assertTrue(batch >= own);
+            assertTrue(stolen.add(batch));
+            assertEquals(0, scheduler.getBatchWorker(batch));
+        }
+        assertEquals(batches - own, stolen.size());
+        assertEquals(batches - own, scheduler.getStolenCount());
+    }
+
+    @Test
+    void testConcurrentWorkers() throws InterruptedException {
+        int workers = 8;
+        ChunkScheduler scheduler = new ChunkScheduler(area(-100, -100, 150, 120), workers);
+        ConcurrentLinkedQueue<Integer> claimed = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            int worker = i;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                int batch;
+                while ((batch = scheduler.next(worker)) != -1) {
+                    claimed.add(batch);
+                    scheduler.complete(batch, 1);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        List<Integer> sorted = new ArrayList<>(claimed);
+        Collections.sort(sorted);
+        assertEquals(scheduler.getBatchCount(), sorted.size());
+        for (int i = 0; i < sorted.size(); i++) {
+            assertEquals(i, (int) sorted.get(i));
+            assertEquals(1, scheduler.getBatchNanos(i));
+        }
+    }
+
+    @Test
+    void testNoChunks() {
+        ChunkScheduler scheduler = new ChunkScheduler(Collections.emptyList(), 4);
+        assertEquals(0, scheduler.getBatchCount());
+        assertEquals(-1, scheduler.next(2));
+    }
+
+    private static List<BlockVector2> area(int minX, int minZ, int width, int length) {
+        List<BlockVector2> chunks = new ArrayList<>();
+        for (int x = minX; x < minX + width; x++) {
+            for (int z = minZ; z < minZ + length; z++) {
+                chunks.add(BlockVector2.at(x, z));
+            }
+        }
+        return chunks;
+    }
+
+}
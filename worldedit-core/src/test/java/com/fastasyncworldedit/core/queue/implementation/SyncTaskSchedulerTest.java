@@ -0,0 +1,61 @@
+package com.fastasyncworldedit.core.queue.implementation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SyncTaskSchedulerTest {
+
+    @Test
+    void testRunsAllTasks() throws ExecutionException, InterruptedException {
+        SyncTaskScheduler scheduler = new SyncTaskScheduler();
+        SyncTaskScheduler.Task<Integer> first = new SyncTaskScheduler.Task<>(() -> 1, "first", 0);
+        SyncTaskScheduler.Task<Integer> second = new SyncTaskScheduler.Task<>(() -> 2, null, 0);
+        scheduler.add(first);
+        scheduler.add(second);
+        scheduler.operate(1000);
+        assertTrue(scheduler.isEmpty());
+        assertEquals(1, first.get());
+        assertEquals(2, second.get());
+
+        Map<String, SyncTaskScheduler.Usage> usage = scheduler.getUsage();
+        assertEquals(1, usage.get("first").getTasks());
+        assertEquals(1, usage.get(SyncTaskScheduler.UNOWNED).getTasks());
+    }
+
+    /**
+     * Trimming releases the queues of idle owners, but not what they have used so far.
+     */
+    @Test
+    void testTrimKeepsUsage() {
+        SyncTaskScheduler scheduler = new SyncTaskScheduler();
+        AtomicInteger ran = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            scheduler.add(new SyncTaskScheduler.Task<>(ran::incrementAndGet, null, "owner", 0));
+        }
+        scheduler.operate(1000);
+        assertEquals(3, ran.get());
+        long totalNanos = scheduler.getUsage().get("owner").getTotalNanos();
+
+        scheduler.trim();
+        SyncTaskScheduler.Usage usage = scheduler.getUsage().get("owner");
+        assertEquals(3, usage.getTasks());
+        assertEquals(totalNanos, usage.getTotalNanos());
+        assertEquals(0, usage.getQueued());
+
+        // Queuing again carries on from the kept usage
+        scheduler.add(new SyncTaskScheduler.Task<>(ran::incrementAndGet, null, "owner", 0));
+        assertEquals(1, scheduler.getUsage().get("owner").getQueued());
+        scheduler.operate(1000);
+        usage = scheduler.getUsage().get("owner");
+        assertEquals(4, usage.getTasks());
+        assertTrue(usage.getTotalNanos() >= totalNanos);
+        assertEquals(1, scheduler.getUsage().size());
+    }
+
+}
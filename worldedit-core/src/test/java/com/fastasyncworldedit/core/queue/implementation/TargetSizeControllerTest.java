@@ -0,0 +1,128 @@
+package com.fastasyncworldedit.core.queue.implementation;
+
+import com.fastasyncworldedit.core.configuration.Settings;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * With 4 threads, a configured target size of 64 and a maximum wait of 1000ms, the target size stays between 12 and
+ * 512 chunks.
+ */
+class TargetSizeControllerTest {
+
+    private static int parallelThreads;
+    private static int targetSize;
+    private static int maxWaitMs;
+    private static boolean adaptive;
+
+    @BeforeAll
+    static void setUp() {
+        parallelThreads = Settings.IMP.QUEUE.PARALLEL_THREADS;
+        targetSize = Settings.IMP.QUEUE.TARGET_SIZE;
+        maxWaitMs = Settings.IMP.QUEUE.MAX_WAIT_MS;
+        adaptive = Settings.IMP.QUEUE.ADAPTIVE_TARGET_SIZE;
+        Settings.IMP.QUEUE.PARALLEL_THREADS = 4;
+        Settings.IMP.QUEUE.TARGET_SIZE = 64;
+        Settings.IMP.QUEUE.MAX_WAIT_MS = 1000;
+        Settings.IMP.QUEUE.ADAPTIVE_TARGET_SIZE = false;
+    }
+
+    @AfterAll
+    static void tearDown() {
+        Settings.IMP.QUEUE.PARALLEL_THREADS = parallelThreads;
+        Settings.IMP.QUEUE.TARGET_SIZE = targetSize;
+        Settings.IMP.QUEUE.MAX_WAIT_MS = maxWaitMs;
+        Settings.IMP.QUEUE.ADAPTIVE_TARGET_SIZE = adaptive;
+    }
+
+    @Test
+    void testFixedWhenNotAdaptive() {
+        TargetSizeController controller = new TargetSizeController();
+        controller.recordApply(1_000_000_000L);
+        assertEquals(64, controller.getTargetSize(true));
+        assertEquals(64, controller.getTargetSize(false));
+    }
+
+    @Test
+    void testGrowsByAnEighth() {
+        TargetSizeController controller = new TargetSizeController();
+        controller.update(false, 0.6, false);
+        assertEquals(72, controller.getCurrentTargetSize());
+        controller.update(false, 0.6, false);
+        assertEquals(81, controller.getCurrentTargetSize());
+    }
+
+    @Test
+    void testGrowsUpToMaximum() {
+        TargetSizeController controller = new TargetSizeController();
+        for (int i = 0; i < 100; i++) {
+            controller.update(false, 0.9, false);
+        }
+        assertEquals(512, controller.getCurrentTargetSize());
+    }
+
+    @Test
+    void testKeepsSizeWhenBusyOrWithoutHeadroom() {
+        TargetSizeController controller = new TargetSizeController();
+        controller.update(true, 0.9, false);
+        assertEquals(64, controller.getCurrentTargetSize());
+        controller.update(false, 0.3, false);
+        assertEquals(64, controller.getCurrentTargetSize());
+    }
+
+    @Test
+    void testHalvesWhenMemoryIsLow() {
+        TargetSizeController controller = new TargetSizeController();
+        controller.update(false, 0.9, true);
+        assertEquals(32, controller.getCurrentTargetSize());
+        controller.update(false, 0.1, false);
+        assertEquals(16, controller.getCurrentTargetSize());
+        controller.update(false, 0.1, false);
+        assertEquals(12, controller.getCurrentTargetSize());
+    }
+
+    /**
+     * 100ms per chunk on 4 threads places 40 chunks per second: 64 -> 56 -> 49 -> 43 -> 38, and 38 + 4 would be too
+     * many.
+     */
+    @Test
+    void testShrinksToLatency() {
+        TargetSizeController controller = new TargetSizeController();
+        controller.recordApply(100_000_000L);
+        assertEquals(100_000_000d, controller.getAverageApplyNanos());
+        for (int i = 0; i < 20; i++) {
+            controller.update(false, 0.9, false);
+        }
+        assertEquals(38, controller.getCurrentTargetSize());
+    }
+
+    /**
+     * 10ms per chunk on 4 threads places 400 chunks per second. Growing stops at 365, as 365 + 45 would be too many,
+     * rather than overshooting and shrinking back.
+     */
+    @Test
+    void testGrowsOnlyWithinLatency() {
+        TargetSizeController controller = new TargetSizeController();
+        controller.recordApply(10_000_000L);
+        for (int i = 0; i < 50; i++) {
+            controller.update(false, 0.9, false);
+        }
+        assertEquals(365, controller.getCurrentTargetSize());
+        controller.update(false, 0.9, false);
+        assertEquals(365, controller.getCurrentTargetSize());
+    }
+
+    @Test
+    void testAverageApplyTime() {
+        TargetSizeController controller = new TargetSizeController();
+        controller.recordApply(1000);
+        controller.recordApply(2000);
+        // The first sample is taken as is, the next ones with a weight of 0.05
+        assertEquals(1050, controller.getAverageApplyNanos(), 1e-9);
+        assertEquals(2, controller.getAppliedChunks());
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.fastasyncworldedit.core.queue.implementation.blocks;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PaletteCharSetBlocksTest {
+
+    /**
+     * Numbers of written states around each width: the untouched state 0 takes a palette entry too, so a section holds
+     * 1, 3, 15 and 255 written states before it needs 2, 4, 8 bits or has to be inflated.
+     */
+    private static final int[] STATE_COUNTS = {1, 2, 3, 4, 5, 15, 16, 17, 255, 256, 300};
+
+    @Test
+    void testGrowth() {
+        for (int states : STATE_COUNTS) {
+            PaletteCharSetBlocks blocks = PaletteCharSetBlocks.newInstance();
+            blocks.reset();
+            char[] expected = new char[4096];
+            // Leave some blocks untouched, and write the new states spread over the section
+            for (int index = 0; index < 4096; index += 2) {
+                char value = (char) (1 + index * 7 % states);
+                blocks.set(5, index, value);
+                expected[index] = value;
+                // Blocks written before the section grew must keep their states
+                assertEquals(expected[index >> 1], blocks.get(5, index >> 1), "states " + states);
+            }
+            assertTrue(blocks.hasSection(5));
+            assertFalse(blocks.hasSection(4));
+            for (int index = 0; index < 4096; index++) {
+                assertEquals(expected[index], blocks.get(5, index), "states " + states);
+            }
+            assertArrayEquals(expected, blocks.load(5), "states " + states);
+        }
+    }
+
+    @Test
+    void testReset() {
+        PaletteCharSetBlocks blocks = PaletteCharSetBlocks.newInstance();
+        blocks.reset();
+        for (int index = 0; index < 4096; index++) {
+            blocks.set(0, index, (char) (1 + index % 20));
+        }
+        blocks.reset(0);
+        assertFalse(blocks.hasSection(0));
+        blocks.set(0, 7, (char) 3);
+        assertEquals(3, blocks.get(0, 7));
+        assertEquals(0, blocks.get(0, 8));
+    }
+
+    /**
+     * Blocks are read without a lock while the section grows, a reader must only ever see a block as untouched or with
+     * the state written to it.
+     */
+    @Test
+    void testReadWhileGrowing() throws InterruptedException {
+        PaletteCharSetBlocks blocks = PaletteCharSetBlocks.newInstance();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (writing.get() && failure.get() == null) {
+                int index = random.nextInt(4096);
+                try {
+                    char value = blocks.get(0, index);
+                    if (value != 0 && value != expected(index)) {
+                        failure.set("read " + (int) value + " at " + index);
+                    }
+                } catch (RuntimeException e) {
+                    failure.set(e.toString());
+                }
+            }
+        });
+        reader.start();
+        try {
+            for (int round = 0; round < 200 && failure.get() == null; round++) {
+                blocks.reset();
+                for (int index = 0; index < 4096; index++) {
+                    blocks.set(0, index, expected(index));
+                }
+            }
+        } finally {
+            writing.set(false);
+            reader.join();
+        }
+        assertNull(failure.get());
+    }
+
+    private static char expected(int index) {
+        return (char) (1 + index % 200);
+    }
+
+}
@@ -0,0 +1,114 @@
+package com.fastasyncworldedit.core.util.collection;
+
+import com.fastasyncworldedit.core.math.random.SeededRandom;
+import com.fastasyncworldedit.core.math.random.SimpleRandom;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AliasRandomCollectionTest {
+
+    private static final int SAMPLES = 1 << 20;
+
+    private static Map<String, Double> weights() {
+        Map<String, Double> weights = new LinkedHashMap<>();
+        weights.put("a", 1.0);
+        weights.put("b", 2.5);
+        weights.put("c", 0.125);
+        weights.put("d", 6.0);
+        weights.put("e", 1 / 3.0);
+        weights.put("none", 0.0);
+        weights.put("negative", -1.0);
+        return weights;
+    }
+
+    @Test
+    void testIndependentRandomsUseAliasTables() {
+        assertTrue(RandomCollection.of(weights(), new SeededRandom(1)) instanceof AliasRandomCollection);
+    }
+
+    @Test
+    void testRejectsEmptyWeights() {
+        Map<String, Double> weights = new LinkedHashMap<>();
+        assertThrows(IllegalArgumentException.class, () -> new AliasRandomCollection<>(weights, new SeededRandom(1)));
+        weights.put("none", 0.0);
+        weights.put("negative", -1.0);
+        assertThrows(IllegalArgumentException.class, () -> new AliasRandomCollection<>(weights, new SeededRandom(1)));
+    }
+
+    /**
+     * Evenly spaced random values must pick each value in proportion to its weight, up to one sample per column.
+     */
+    @Test
+    void testDistribution() {
+        SimpleRandom even = (x, y, z) -> (x + 0.5) / SAMPLES;
+        AliasRandomCollection<String> collection = new AliasRandomCollection<>(weights(), even);
+        assertEquals(5, collection.size());
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int x = 0; x < SAMPLES; x++) {
+            counts.merge(collection.next(x, 0, 0), 1, Integer::sum);
+        }
+        double total = weights().values().stream().filter(weight -> weight > 0).mapToDouble(Double::doubleValue).sum();
+        for (Map.Entry<String, Double> entry : weights().entrySet()) {
+            int count = counts.getOrDefault(entry.getKey(), 0);
+            if (entry.getValue() <= 0) {
+                assertEquals(0, count, entry.getKey());
+            } else {
+                assertEquals(entry.getValue() / total * SAMPLES, count, collection.size() + 1, entry.getKey());
+            }
+        }
+    }
+
+    @Test
+    void testSeededDistribution() {
+        AliasRandomCollection<String> collection = new AliasRandomCollection<>(weights(), new SeededRandom(42));
+        Map<String, Integer> counts = new HashMap<>();
+        for (int x = 0; x < 128; x++) {
+            for (int y = 0; y < 64; y++) {
+                for (int z = 0; z < 128; z++) {
+                    counts.merge(collection.next(x, y, z), 1, Integer::sum);
+                }
+            }
+        }
+        assertFalse(counts.containsKey("none"));
+        assertFalse(counts.containsKey("negative"));
+        double total = weights().values().stream().filter(weight -> weight > 0).mapToDouble(Double::doubleValue).sum();
+        for (Map.Entry<String, Double> entry : weights().entrySet()) {
+            if (entry.getValue() > 0) {
+                double expected = entry.getValue() / total * SAMPLES;
+                // Ten times the standard deviation, which is at most sqrt(SAMPLES) / 2
+                assertEquals(expected, counts.get(entry.getKey()), 5 * Math.sqrt(SAMPLES), entry.getKey());
+            }
+        }
+    }
+
+    @Test
+    void testSeededReproducibility() {
+        AliasRandomCollection<String> first = new AliasRandomCollection<>(weights(), new SeededRandom(1234));
+        AliasRandomCollection<String> second = new AliasRandomCollection<>(weights(), new SeededRandom(1234));
+        AliasRandomCollection<String> other = new AliasRandomCollection<>(weights(), new SeededRandom(4321));
+        String[] picked = new String[64 * 64];
+        for (int i = 0; i < picked.length; i++) {
+            picked[i] = first.next(i & 63, 5, i >> 6);
+        }
+        // The values only depend on the position, not on the order they are picked in
+        int different = 0;
+        for (int i = picked.length - 1; i >= 0; i--) {
+            assertEquals(picked[i], second.next(i & 63, 5, i >> 6));
+            if (!picked[i].equals(other.next(i & 63, 5, i >> 6))) {
+                different++;
+            }
+        }
+        assertNotEquals(0, different);
+    }
+
+}
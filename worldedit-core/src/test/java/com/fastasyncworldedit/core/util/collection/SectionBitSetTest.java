@@ -0,0 +1,122 @@
+package com.fastasyncworldedit.core.util.collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SectionBitSetTest {
+
+    private static final int[][] AXES = {{1, 0, 0}, {-1, 0, 0}, {0, 1, 0}, {0, -1, 0}, {0, 0, 1}, {0, 0, -1}};
+    private static final double[] DENSITIES = {0.001, 0.05, 0.5, 0.95, 1};
+
+    /**
+     * Shifting must move every bit exactly one block along the axis, into the same section or the next one.
+     */
+    @Test
+    void testShiftMatchesBitByBit() {
+        Random random = new Random(7);
+        long[] inside = new long[SectionBitSet.WORDS];
+        long[] across = new long[SectionBitSet.WORDS];
+        for (double density : DENSITIES) {
+            for (int sample = 0; sample < 8; sample++) {
+                long[] bits = new long[SectionBitSet.WORDS];
+                for (int i = 0; i < 4096; i++) {
+                    if (random.nextDouble() < density) {
+                        bits[i >> 6] |= 1L << i;
+                    }
+                }
+                for (int[] axis : AXES) {
+                    long[] expectedInside = new long[SectionBitSet.WORDS];
+                    long[] expectedAcross = new long[SectionBitSet.WORDS];
+                    shiftBitByBit(bits, axis[0], axis[1], axis[2], expectedInside, expectedAcross);
+                    boolean crossed = SectionBitSet.shift(bits, axis[0], axis[1], axis[2], inside, across);
+                    String message = "density " + density + " along " + axis[0] + ", " + axis[1] + ", " + axis[2];
+                    assertArrayEquals(expectedInside, inside, message);
+                    assertArrayEquals(expectedAcross, across, message);
+                    assertEquals(!isEmpty(expectedAcross), crossed, message);
+                }
+            }
+        }
+    }
+
+    /**
+     * Every bit on its own, so a bit moved into the wrong row or word shows.
+     */
+    @Test
+    void testShiftSingleBits() {
+        long[] inside = new long[SectionBitSet.WORDS];
+        long[] across = new long[SectionBitSet.WORDS];
+        for (int i = 0; i < 4096; i++) {
+            long[] bits = new long[SectionBitSet.WORDS];
+            bits[i >> 6] = 1L << i;
+            for (int[] axis : AXES) {
+                long[] expectedInside = new long[SectionBitSet.WORDS];
+                long[] expectedAcross = new long[SectionBitSet.WORDS];
+                shiftBitByBit(bits, axis[0], axis[1], axis[2], expectedInside, expectedAcross);
+                SectionBitSet.shift(bits, axis[0], axis[1], axis[2], inside, across);
+                assertArrayEquals(expectedInside, inside);
+                assertArrayEquals(expectedAcross, across);
+            }
+        }
+    }
+
+    @Test
+    void testPositions() {
+        Random random = new Random(3);
+        SectionBitSet set = new SectionBitSet();
+        Set<Long> expected = new HashSet<>();
+        for (int i = 0; i < 5000; i++) {
+            int x = random.nextInt(200) - 100;
+            int y = random.nextInt(256);
+            int z = random.nextInt(200) - 100;
+            assertEquals(expected.add(pack(x, y, z)), set.add(x, y, z));
+        }
+        assertEquals(expected.size(), set.size());
+        Set<Long> iterated = new HashSet<>();
+        set.forEach((x, y, z) -> {
+            assertTrue(set.contains(x, y, z));
+            assertTrue(iterated.add(pack(x, y, z)));
+        });
+        assertEquals(expected, iterated);
+        assertFalse(set.contains(-101, 0, 0));
+
+        set.clear();
+        assertTrue(set.isEmpty());
+        assertFalse(set.contains(0, 0, 0));
+    }
+
+    private static long pack(int x, int y, int z) {
+        return ((long) x & 0xFFFFFFL) << 32 | ((long) z & 0xFFFFFFL) << 8 | y;
+    }
+
+    private static void shiftBitByBit(long[] bits, int dx, int dy, int dz, long[] inside, long[] across) {
+        for (int i = 0; i < 4096; i++) {
+            if ((bits[i >> 6] & 1L << i) == 0) {
+                continue;
+            }
+            int x = (i & 15) + dx;
+            int z = (i >> 4 & 15) + dz;
+            int y = (i >> 8) + dy;
+            boolean crossed = x < 0 || x > 15 || y < 0 || y > 15 || z < 0 || z > 15;
+            int moved = (y & 15) << 8 | (z & 15) << 4 | x & 15;
+            (crossed ? across : inside)[moved >> 6] |= 1L << moved;
+        }
+    }
+
+    private static boolean isEmpty(long[] bits) {
+        for (long word : bits) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
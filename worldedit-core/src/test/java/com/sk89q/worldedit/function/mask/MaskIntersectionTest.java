@@ -0,0 +1,136 @@
+package com.sk89q.worldedit.function.mask;
+
+import com.sk89q.worldedit.math.BlockVector3;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MaskIntersectionTest {
+
+    // More than the sampled tests
+    private static final int TESTS = 10000;
+
+    private static BlockVector3 position(int i) {
+        return BlockVector3.at(i % 97, i / 97 % 256, i / (97 * 256));
+    }
+
+    @Test
+    void testSamplingKeepsResults() {
+        Predicate<BlockVector3> first = position -> position.getX() % 3 != 0;
+        Predicate<BlockVector3> second = position -> position.getY() % 5 != 0;
+        Predicate<BlockVector3> third = position -> (position.getX() + position.getY()) % 7 != 0;
+        MaskIntersection intersection = new MaskIntersection(
+                new TestMask(first, false), new TestMask(second, false), new TestMask(third, false)
+        );
+        for (int i = 0; i < TESTS; i++) {
+            BlockVector3 position = position(i);
+            boolean expected = first.test(position) && second.test(position) && third.test(position);
+            assertEquals(expected, intersection.test(position), position::toString);
+        }
+    }
+
+    @Test
+    void testSortsDecidingMaskFirst() {
+        TestMask passing = new TestMask(position -> true, false);
+        TestMask failing = new TestMask(position -> position.getX() % 10 != 0, false);
+        MaskIntersection intersection = new MaskIntersection(passing, failing);
+        for (int i = 0; i < TESTS; i++) {
+            intersection.test(position(i));
+        }
+        assertSame(failing, intersection.getMasksArray()[0]);
+    }
+
+    /**
+     * Masks with side effects must only be tested where the masks before them passed, so they aren't sampled.
+     */
+    @Test
+    void testOrderDependentMasksAreNotSampled() {
+        TestMask failing = new TestMask(position -> false, false);
+        TestMask recording = new TestMask(position -> true, true);
+        MaskIntersection intersection = new MaskIntersection(failing, recording);
+        for (int i = 0; i < TESTS; i++) {
+            assertFalse(intersection.test(position(i)));
+        }
+        assertEquals(0, recording.tests.get());
+        assertSame(failing, intersection.getMasksArray()[0]);
+    }
+
+    @Test
+    void testSharedMaskAcrossThreads() throws Exception {
+        Predicate<BlockVector3> first = position -> position.getX() % 2 == 0;
+        Predicate<BlockVector3> second = position -> position.getY() % 3 == 0;
+        TestMask[] masks = {new TestMask(first, false), new TestMask(second, false)};
+        MaskIntersection intersection = new MaskIntersection(masks);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < TESTS; i++) {
+                        BlockVector3 position = position(i);
+                        assertEquals(first.test(position) && second.test(position), intersection.test(position));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(new HashSet<>(Arrays.asList(masks)), new HashSet<>(Arrays.asList(intersection.getMasksArray())));
+    }
+
+    @Test
+    void testExpressionMaskSideEffects() throws Exception {
+        assertTrue(new ExpressionMask("megabuf(0, megabuf(0) + 1) > 0").isOrderDependent());
+        assertTrue(new ExpressionMask("a = x + 1; a > y").isOrderDependent());
+        assertTrue(new ExpressionMask("random() > 0.5").isOrderDependent());
+        assertTrue(new ExpressionMask("for (i = 0, 3) { y = y + i; } y > x").isOrderDependent());
+        assertFalse(new ExpressionMask("x * x + sqrt(y) > z").isOrderDependent());
+        assertFalse(new ExpressionMask("x = x + 1; x > y").isOrderDependent());
+    }
+
+    private static final class TestMask extends AbstractMask {
+
+        private final Predicate<BlockVector3> predicate;
+        private final boolean orderDependent;
+        private final AtomicInteger tests = new AtomicInteger();
+
+        private TestMask(Predicate<BlockVector3> predicate, boolean orderDependent) {
+            this.predicate = predicate;
+            this.orderDependent = orderDependent;
+        }
+
+        @Override
+        public boolean test(BlockVector3 vector) {
+            tests.incrementAndGet();
+            return predicate.test(vector);
+        }
+
+        @Override
+        public boolean isOrderDependent() {
+            return orderDependent;
+        }
+
+        @Override
+        public Mask copy() {
+            return new TestMask(predicate, orderDependent);
+        }
+
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.sk89q.worldedit.function.pattern;
+
+import com.fastasyncworldedit.core.math.random.SeededRandom;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+class RandomPatternTest {
+
+    private static RandomPattern create(long seed) {
+        RandomPattern pattern = new RandomPattern(new SeededRandom(seed));
+        for (int i = 0; i < 32; i++) {
+            pattern.add(new IdPattern(i), 1 + i % 3);
+        }
+        return pattern;
+    }
+
+    private static int pick(RandomPattern pattern, int x, int y, int z) {
+        return ((IdPattern) pattern.getCollection().next(x, y, z)).id;
+    }
+
+    /**
+     * The same input parsed twice must pick the same patterns, which needs the patterns to be kept in the order they
+     * were added.
+     */
+    @Test
+    void testSameSeedPicksSamePatterns() {
+        RandomPattern first = create(99);
+        RandomPattern second = create(99);
+        RandomPattern reseeded = new RandomPattern(new SeededRandom(99), create(5));
+        for (int x = -16; x < 16; x++) {
+            for (int y = -64; y < 320; y += 7) {
+                for (int z = -16; z < 16; z++) {
+                    int id = pick(first, x, y, z);
+                    assertEquals(id, pick(second, x, y, z));
+                    assertEquals(id, pick(reseeded, x, y, z));
+                }
+            }
+        }
+    }
+
+    @Test
+    void testForkPicksSamePatterns() {
+        RandomPattern pattern = create(1234);
+        RandomPattern fork = (RandomPattern) pattern.fork();
+        assertNotSame(pattern, fork);
+        for (int x = 0; x < 32; x++) {
+            for (int z = 0; z < 32; z++) {
+                assertEquals(pick(pattern, x, 10, z), pick(fork, x, 10, z));
+            }
+        }
+    }
+
+    private static final class IdPattern implements Pattern {
+
+        private final int id;
+
+        private IdPattern(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public BaseBlock applyBlock(BlockVector3 position) {
+            return null;
+        }
+
+        @Override
+        public Pattern fork() {
+            return new IdPattern(id);
+        }
+
+    }
+
+}
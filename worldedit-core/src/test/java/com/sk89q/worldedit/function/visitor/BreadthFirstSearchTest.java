@@ -0,0 +1,183 @@
+package com.sk89q.worldedit.function.visitor;
+
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.function.operation.RunContext;
+import com.sk89q.worldedit.math.BlockVector3;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the search visits the same positions as a plain position by position search, as it did before the
+ * frontier was kept in section bitmaps.
+ */
+class BreadthFirstSearchTest {
+
+    /**
+     * About 60% of the positions in a box reaching below the world, so the search spreads across many sections and has
+     * to stop at the bottom of the world.
+     */
+    private static final Predicate<BlockVector3> CAVES = position -> {
+        if (Math.abs(position.getX()) > 40 || Math.abs(position.getZ()) > 40 || position.getY() > 40) {
+            return false;
+        }
+        long hash = (position.getX() * 73856093L ^ position.getY() * 19349663L ^ position.getZ() * 83492791L)
+                * 0x9E3779B97F4A7C15L;
+        return (hash >>> 40) % 10 < 6;
+    };
+
+    private static final List<BlockVector3> STARTS = List.of(
+            BlockVector3.at(0, 2, 0),
+            BlockVector3.at(17, 30, -9),
+            BlockVector3.at(-33, 15, 31)
+    );
+
+    @Test
+    void testAxes() throws WorldEditException {
+        assertSameAsReference(BreadthFirstSearch.DEFAULT_DIRECTIONS, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        assertSameAsReference(BreadthFirstSearch.DEFAULT_DIRECTIONS, 12, Integer.MAX_VALUE);
+    }
+
+    @Test
+    void testDiagonal() throws WorldEditException {
+        assertSameAsReference(BreadthFirstSearch.DIAGONAL_DIRECTIONS, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        assertSameAsReference(BreadthFirstSearch.DIAGONAL_DIRECTIONS, 7, Integer.MAX_VALUE);
+    }
+
+    @Test
+    void testAddedDiagonals() throws WorldEditException {
+        SearchResult result = search(BreadthFirstSearch.DEFAULT_DIRECTIONS, Integer.MAX_VALUE, Integer.MAX_VALUE, CAVES,
+                STARTS, true
+        );
+        BlockVector3[] directions = {
+                BlockVector3.UNIT_MINUS_Y, BlockVector3.UNIT_Y, BlockVector3.UNIT_MINUS_X, BlockVector3.UNIT_X,
+                BlockVector3.UNIT_MINUS_Z, BlockVector3.UNIT_Z, BlockVector3.at(1, 0, -1), BlockVector3.at(1, 0, 1),
+                BlockVector3.at(-1, 0, 1), BlockVector3.at(-1, 0, -1)
+        };
+        SearchResult expected = reference(directions, Integer.MAX_VALUE, Integer.MAX_VALUE, CAVES, STARTS, false);
+        assertEquals(expected.visited, result.visited);
+        assertEquals(expected.applied, result.applied);
+    }
+
+    /**
+     * Which positions a position branches to depends on the order the frontier is expanded in, so the search is kept
+     * within a single section, which is expanded in the order of its bits.
+     */
+    @Test
+    void testMaxBranch() throws WorldEditException {
+        Predicate<BlockVector3> section = position -> position.getX() >= 0 && position.getX() < 16
+                && position.getY() >= 64 && position.getY() < 80
+                && position.getZ() >= 0 && position.getZ() < 16
+                && CAVES.test(position.subtract(0, 48, 0));
+        List<BlockVector3> starts = List.of(BlockVector3.at(8, 72, 8));
+        for (BlockVector3[] directions : List.of(BreadthFirstSearch.DEFAULT_DIRECTIONS,
+                BreadthFirstSearch.DIAGONAL_DIRECTIONS)) {
+            for (int maxBranch : new int[]{1, 2, 3}) {
+                SearchResult expected = reference(directions, Integer.MAX_VALUE, maxBranch, section, starts, true);
+                SearchResult result = search(directions, Integer.MAX_VALUE, maxBranch, section, starts, false);
+                assertEquals(expected.visited, result.visited, "max branch " + maxBranch);
+                assertEquals(expected.applied, result.applied, "max branch " + maxBranch);
+                assertTrue(result.applied.size() > 1);
+            }
+        }
+    }
+
+    private static void assertSameAsReference(BlockVector3[] directions, int maxDepth, int maxBranch)
+            throws WorldEditException {
+        SearchResult expected = reference(directions, maxDepth, maxBranch, CAVES, STARTS, false);
+        SearchResult result = search(directions, maxDepth, maxBranch, CAVES, STARTS, false);
+        assertEquals(expected.visited, result.visited);
+        assertEquals(expected.applied, result.applied);
+        assertTrue(result.applied.size() > 100);
+    }
+
+    private static SearchResult search(
+            BlockVector3[] directions, int maxDepth, int maxBranch, Predicate<BlockVector3> visitable,
+            List<BlockVector3> starts, boolean addDiagonal
+    ) throws WorldEditException {
+        SearchResult result = new SearchResult();
+        BreadthFirstSearch search = new BreadthFirstSearch(position -> {
+            assertTrue(result.applied.add(position.toImmutable()), position::toString);
+            return true;
+        }, maxDepth) {
+            @Override
+            protected boolean isVisitable(BlockVector3 from, BlockVector3 to) {
+                return visitable.test(to);
+            }
+        };
+        search.setDirections(directions);
+        if (addDiagonal) {
+            search.addDiagonal();
+        }
+        search.setMaxBranch(maxBranch);
+        for (BlockVector3 start : starts) {
+            search.visit(start);
+        }
+        search.resume(new RunContext());
+        for (BlockVector3 position : search.getVisited()) {
+            result.visited.add(position.toImmutable());
+        }
+        assertEquals(result.applied.size(), search.getAffected());
+        return result;
+    }
+
+    /**
+     * The search position by position, as it was done with sets of positions.
+     *
+     * @param ordered expand each level in the order of the bits of a section, rather than any order
+     */
+    private static SearchResult reference(
+            BlockVector3[] directions, int maxDepth, int maxBranch, Predicate<BlockVector3> visitable,
+            List<BlockVector3> starts, boolean ordered
+    ) {
+        SearchResult result = new SearchResult();
+        List<BlockVector3> queue = new ArrayList<>();
+        for (BlockVector3 start : starts) {
+            if (result.visited.add(start)) {
+                queue.add(start);
+            }
+        }
+        for (int depth = 0; !queue.isEmpty() && depth <= maxDepth; depth++) {
+            if (ordered) {
+                queue.sort(Comparator.comparingInt(position -> (position.getY() & 15) << 8 | (position.getZ() & 15) << 4
+                        | position.getX() & 15));
+            }
+            List<BlockVector3> next = new ArrayList<>();
+            for (BlockVector3 from : queue) {
+                result.applied.add(from);
+                for (int i = 0, j = 0; i < directions.length && j < maxBranch; i++) {
+                    BlockVector3 to = from.add(directions[i]);
+                    if (to.getY() < 0 || to.getY() >= 256) {
+                        continue;
+                    }
+                    if (!result.visited.contains(to) && visitable.test(to)) {
+                        j++;
+                        result.visited.add(to);
+                        next.add(to);
+                    }
+                }
+            }
+            if (depth == maxDepth) {
+                break;
+            }
+            queue = next;
+        }
+        return result;
+    }
+
+    private static final class SearchResult {
+
+        private final Set<BlockVector3> visited = new HashSet<>();
+        private final Set<BlockVector3> applied = new HashSet<>();
+
+    }
+
+}
@@ -0,0 +1,97 @@
+package com.sk89q.worldedit.internal.expression;
+
+import org.junit.jupiter.api.DynamicNode;
+import org.junit.jupiter.api.TestFactory;
+
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+/**
+ * Checks that the optimized backends (the class compiler and the optimized method handles) give the same results as
+ * the plain method handles.
+ */
+class ExpressionBackendTest extends BaseExpressionTest {
+
+    private static final double[] VALUES = {
+        0, -0.0, 1, -1, 2.5, -3.75, 1e10, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY
+    };
+    private static final double[] Z_VALUES = {0, 1, Double.NaN};
+
+    // Supported by the class compiler
+    private static final String[] PURE = {
+        "x + y * z", "x - y / z", "x / y", "x / 0", "1 / 0", "0 / 0", "x % y",
+        "x ^ y", "x ^ 0.5", "x ^ 1", "x ^ 2", "x ^ 3", "x ^ 4", "x ^ -1",
+        "-x", "+x", "~x", "!x", "x << 3", "x >> 1",
+        "x < y", "x <= y", "x > y", "x >= y", "x == y", "x != y", "x == x",
+        "x && y", "x || y", "x ? y : z", "x < 0 ? -x : x", "!(x < y) && (y || z)",
+        "sin(x) + cos(y)", "sqrt(x * x + y * y)", "abs(x) + floor(y) - ceil(z)", "cbrt(x) * tanh(y)",
+        "round(x)", "rint(x)", "ln(x)", "log10(x)", "exp(x)", "atan2(x, y)", "min(x, y, z)", "max(x, y)",
+        "pi * x + e", "true && x", "(x + 1) * (x + 1) + sqrt((x + 1) * (x + 1))"
+    };
+    // Not supported by the class compiler
+    private static final String[] IMPURE = {
+        "megabuf(0, x) + megabuf(0) * y", "megabuf(1, megabuf(1) + x)", "megabuf(x) + sqrt(megabuf(x) * 2)"
+    };
+
+    @TestFactory
+    Stream<DynamicNode> testClassCompiler() {
+        return Stream.concat(Stream.of(PURE), Stream.of(IMPURE)).map(expression -> dynamicTest(expression, () -> {
+            Expression reference = Expression.compile(expression, "x", "y", "z");
+            Expression compiled = compile(expression, "x", "y", "z");
+            if (Stream.of(PURE).anyMatch(expression::equals)) {
+                assertTrue(compiled.isCompiledToClass());
+            } else {
+                assertFalse(compiled.isCompiledToClass());
+            }
+            forEachValue((x, y, z) -> assertEquals(
+                reference.evaluate(x, y, z),
+                compiled.evaluate(x, y, z),
+                () -> expression + " for " + x + ", " + y + ", " + z
+            ));
+        }));
+    }
+
+    @TestFactory
+    Stream<DynamicNode> testOptimizedMethodHandles() {
+        return Stream.concat(Stream.of(PURE), Stream.of(IMPURE)).map(expression -> dynamicTest(expression, () -> {
+            // A program of more than one statement isn't compiled to a class
+            String program = "r = " + expression + "; r";
+            Expression reference = Expression.compile(program, "x", "y", "z");
+            Expression optimized = compile(program, "x", "y", "z");
+            assertFalse(optimized.isCompiledToClass());
+            forEachValue((x, y, z) -> {
+                double expected = reference.evaluate(x, y, z);
+                double actual = optimized.evaluate(x, y, z);
+                String message = expression + " for " + x + ", " + y + ", " + z;
+                if (Double.isFinite(expected) && expected != 0) {
+                    // Constant powers are reduced to multiplications, which may round differently
+                    assertEquals(expected, actual, Math.ulp(expected) * 2, message);
+                } else {
+                    assertEquals(expected, actual, message);
+                }
+            });
+        }));
+    }
+
+    private static void forEachValue(Values consumer) throws EvaluationException {
+        for (double x : VALUES) {
+            for (double y : VALUES) {
+                for (double z : Z_VALUES) {
+                    consumer.accept(x, y, z);
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Values {
+
+        void accept(double x, double y, double z) throws EvaluationException;
+
+    }
+
+}
@@ -406,6 +406,55 @@ public void testSwitch() throws ExpressionException {
         }
     }
 
+    @Test
+    public void testConstantFolding() {
+        checkTestCase("x=1; 2*3 + 4^2 + sin(0)", 22);
+        checkTestCase("x=2; x*(1+2) + pi*2", 6 + Math.PI * 2);
+        checkTestCase("x=1; x + 1/0", Double.POSITIVE_INFINITY);
+        checkTestCase("x=1; 0/0 == 0/0", 0);
+        // variables aren't constant, even if only constants are assigned to them
+        checkTestCase("x=1; for (i=0; i<3; ++i) { x *= 1+1; } x", 8);
+    }
+
+    @Test
+    public void testCommonSubexpressionsInLoops() {
+        checkTestCase("a=0; for (i=0; i<5; ++i) { a += sin(i)*sin(i) + cos(i)*cos(i) > 0.99; } a", 5);
+        // invariant of the loop
+        checkTestCase("b=2; a=0; for (i=0; i<4; ++i) { a += sqrt(b*b) + i; } a", 14);
+        checkTestCase("n=3; c=0; while (c < sqrt(n*n)) { ++c; } c", 3);
+        checkTestCase("n=3; c=0; do { ++c; } while (c < sqrt(n*n)); c", 3);
+        // assigned in the loop, so not invariant
+        checkTestCase("b=1; a=0; for (i=0; i<3; ++i) { a += sqrt(b*b); b += 1; } a", 6);
+        checkTestCase("b=1; a=0; for (i=1,3) { a += sqrt(i*i) + sqrt(b*b); } a", 9);
+        checkTestCase("a=1; b=2; c=0; for (i=0; i<2; ++i) { c += sqrt(a*a + b*b); query(0,0,0,a,b); } c",
+            Math.sqrt(5));
+        // invariant of the inner loop only, must be evaluated again on each run of it
+        checkTestCase("s=0; for (i=1,3) { for (j=1,2) { s += sqrt(i*i) * (j+0); } } s", 18);
+        checkTestCase("s=0; for (k=0; k<2; ++k) { b=k+1; j=0; while (j < 2) { s += sqrt(b*b); ++j; } } s", 6);
+    }
+
+    @Test
+    public void testCommonSubexpressionsWithMegabuf() {
+        checkTestCase("megabuf(0, 2); a = sqrt(megabuf(0)) * sqrt(megabuf(0)); megabuf(0, 3);"
+            + " a + sqrt(megabuf(0)) * sqrt(megabuf(0))", Math.sqrt(2) * Math.sqrt(2) + Math.sqrt(3) * Math.sqrt(3));
+        checkTestCase("s=0; for (i=1,3) { megabuf(0, i); s += sqrt(megabuf(0)*4) + sqrt(megabuf(0)*4); } s",
+            2 * Math.sqrt(4) + 2 * Math.sqrt(8) + 2 * Math.sqrt(12));
+        checkTestCase("s=0; for (i=0; i<3; ++i) { s += sqrt(megabuf(1)+4) + sqrt(megabuf(1, megabuf(1)+5)); } s",
+            (Math.sqrt(4) + Math.sqrt(5)) + (Math.sqrt(9) + Math.sqrt(10)) + (Math.sqrt(14) + Math.sqrt(15)));
+    }
+
+    @Test
+    public void testSquareRootPower() {
+        // x^0.5 is reduced to sqrt, which differs from Math.pow for -0 and -infinity
+        assertEquals(Math.pow(-0.0, 0.5), simpleEval("x=-0.0; x^0.5"));
+        assertEquals(Math.pow(Double.NEGATIVE_INFINITY, 0.5), simpleEval("x=-1/0; x^0.5"));
+        assertEquals(Math.pow(-0.0, 0.5), simpleEval("(-0.0)^0.5"));
+        assertEquals(Math.pow(Double.NEGATIVE_INFINITY, 0.5), simpleEval("(-1/0)^0.5"));
+        assertEquals(Math.pow(-4, 0.5), simpleEval("x=-4; x^0.5"));
+        assertEquals(Math.pow(2, 0.5), simpleEval("x=2; x^0.5"));
+        assertEquals(Math.pow(Double.POSITIVE_INFINITY, 0.5), simpleEval("x=1/0; x^0.5"));
+    }
+
     @Test
     public void testQuery() throws Exception {
         checkTestCase("a=1;b=2;query(3,4,5,a,b); a==3 && b==4", 1);
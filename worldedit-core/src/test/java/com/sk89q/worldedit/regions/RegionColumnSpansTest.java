@@ -0,0 +1,105 @@
+package com.sk89q.worldedit.regions;
+
+import com.sk89q.worldedit.math.BlockVector2;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.math.Vector2;
+import com.sk89q.worldedit.math.Vector3;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the column spans of a region contain exactly the blocks {@link Region#contains(BlockVector3)} accepts,
+ * on every chunk the region touches and the chunks around it.
+ */
+class RegionColumnSpansTest {
+
+    @Test
+    void testCylinder() {
+        assertSpansMatch(new CylinderRegion(BlockVector3.at(5, 0, -7), Vector2.at(20.5, 13), 10, 40));
+        assertSpansMatch(new CylinderRegion(BlockVector3.at(-16, 0, 16), Vector2.at(3, 3), 64, 64));
+    }
+
+    @Test
+    void testPolygonal2D() {
+        assertSpansMatch(new Polygonal2DRegion(null, List.of(
+                BlockVector2.at(-20, -5),
+                BlockVector2.at(7, -30),
+                BlockVector2.at(33, 2),
+                BlockVector2.at(10, 4),
+                BlockVector2.at(12, 27)
+        ), 5, 20));
+        assertSpansMatch(new Polygonal2DRegion(null, List.of(
+                BlockVector2.at(0, 0),
+                BlockVector2.at(15, 0),
+                BlockVector2.at(15, 15)
+        ), 0, 255));
+    }
+
+    @Test
+    void testEllipsoid() {
+        assertSpansMatch(new EllipsoidRegion(BlockVector3.at(3, 70, -9), Vector3.at(18.5, 7, 25)));
+        assertSpansMatch(new EllipsoidRegion(BlockVector3.at(-32, 10, 32), Vector3.at(1, 10, 1)));
+    }
+
+    @Test
+    void testConvexPolyhedral() {
+        ConvexPolyhedralRegion tetrahedron = new ConvexPolyhedralRegion(null);
+        assertTrue(tetrahedron.addVertex(BlockVector3.at(-10, 5, -12)));
+        assertTrue(tetrahedron.addVertex(BlockVector3.at(30, 12, 3)));
+        assertTrue(tetrahedron.addVertex(BlockVector3.at(4, 60, 20)));
+        assertTrue(tetrahedron.addVertex(BlockVector3.at(-3, 20, 35)));
+        assertSpansMatch(tetrahedron);
+
+        Random random = new Random(42);
+        for (int i = 0; i < 4; i++) {
+            ConvexPolyhedralRegion hull = new ConvexPolyhedralRegion(null);
+            for (int vertex = 0; vertex < 12; vertex++) {
+                hull.addVertex(BlockVector3.at(
+                        random.nextInt(48) - 24,
+                        random.nextInt(40) + 20,
+                        random.nextInt(48) - 24
+                ));
+            }
+            assertSpansMatch(hull);
+        }
+    }
+
+    @Test
+    void testUnsupportedRegions() {
+        assertFalse(new CuboidRegion(BlockVector3.ZERO, BlockVector3.at(20, 20, 20)).hasColumnSpans());
+    }
+
+    private static void assertSpansMatch(Region region) {
+        assertTrue(region.hasColumnSpans());
+        BlockVector3 min = region.getMinimumPoint();
+        BlockVector3 max = region.getMaximumPoint();
+        int[] spans = new int[512];
+        int contained = 0;
+        for (int chunkX = (min.getX() >> 4) - 1; chunkX <= (max.getX() >> 4) + 1; chunkX++) {
+            for (int chunkZ = (min.getZ() >> 4) - 1; chunkZ <= (max.getZ() >> 4) + 1; chunkZ++) {
+                assertTrue(region.getColumnSpans(chunkX, chunkZ, spans));
+                for (int index = 0; index < 256; index++) {
+                    int x = (chunkX << 4) + (index & 15);
+                    int z = (chunkZ << 4) + (index >> 4);
+                    for (int y = min.getY() - 2; y <= max.getY() + 2; y++) {
+                        BlockVector3 position = BlockVector3.at(x, y, z);
+                        boolean inSpan = spans[index << 1] <= y && y <= spans[index << 1 | 1];
+                        boolean inside = region.contains(position);
+                        assertEquals(inside, inSpan, () -> region + " at " + position);
+                        if (inside) {
+                            contained++;
+                        }
+                    }
+                }
+            }
+        }
+        assertTrue(contained > 0);
+    }
+
+}
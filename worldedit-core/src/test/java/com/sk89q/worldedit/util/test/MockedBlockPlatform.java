@@ -0,0 +1,129 @@
+package com.sk89q.worldedit.util.test;
+
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.event.platform.PlatformsRegisteredEvent;
+import com.sk89q.worldedit.extension.platform.Capability;
+import com.sk89q.worldedit.extension.platform.Platform;
+import com.sk89q.worldedit.extension.platform.Preference;
+import com.sk89q.worldedit.registry.state.DirectionalProperty;
+import com.sk89q.worldedit.registry.state.EnumProperty;
+import com.sk89q.worldedit.registry.state.Property;
+import com.sk89q.worldedit.util.Direction;
+import com.sk89q.worldedit.world.block.BlockType;
+import com.sk89q.worldedit.world.block.BlockTypes;
+import com.sk89q.worldedit.world.registry.BlockMaterial;
+import com.sk89q.worldedit.world.registry.BlockRegistry;
+import com.sk89q.worldedit.world.registry.BundledBlockRegistry;
+import com.sk89q.worldedit.world.registry.BundledRegistries;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.google.common.base.Preconditions.checkState;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * A mocked platform providing a handful of blocks, with their materials and properties, for tests which need block
+ * types.
+ * <p>
+ * Block types are only loaded once, from the platform registered when they are first used. Every test using them must
+ * register this platform (holding the {@link ResourceLockKeys#WORLDEDIT_PLATFORM} lock) instead of one of its own, so
+ * the same blocks are loaded whichever test runs first.
+ */
+public final class MockedBlockPlatform {
+
+    private static final Platform PLATFORM = mock(Platform.class);
+    private static final Map<String, BlockMaterial> MATERIALS = new LinkedHashMap<>();
+
+    static {
+        // The placeholder for unset blocks, tables indexed by ordinal look at it too
+        MATERIALS.put("minecraft:__reserved__", material(false, 0, 0));
+        MATERIALS.put("minecraft:air", material(false, 0, 0));
+        MATERIALS.put("minecraft:cave_air", material(false, 0, 0));
+        MATERIALS.put("minecraft:stone", material(true, 0, 15));
+        MATERIALS.put("minecraft:dirt", material(true, 0, 15));
+        MATERIALS.put("minecraft:oak_planks", material(true, 0, 15));
+        MATERIALS.put("minecraft:glowstone", material(true, 15, 15));
+        MATERIALS.put("minecraft:torch", material(false, 14, 0));
+        MATERIALS.put("minecraft:sandstone_slab", material(false, 0, 0));
+        MATERIALS.put("minecraft:sandstone_stairs", material(false, 0, 0));
+        BlockRegistry blockRegistry = new BundledBlockRegistry() {
+            @Override
+            public Collection<String> values() {
+                return MATERIALS.keySet();
+            }
+
+            @Override
+            public BlockMaterial getMaterial(BlockType blockType) {
+                return MATERIALS.get(blockType.getId());
+            }
+
+            @Override
+            public Map<String, ? extends Property<?>> getProperties(BlockType blockType) {
+                Map<String, Property<?>> properties = new HashMap<>();
+                if (blockType.getId().equals("minecraft:sandstone_slab")) {
+                    properties.put("type", new EnumProperty("type", List.of("top", "bottom", "double")));
+                } else if (blockType.getId().equals("minecraft:sandstone_stairs")) {
+                    properties.put("facing", new DirectionalProperty("facing", List.of(
+                            Direction.NORTH, Direction.SOUTH, Direction.WEST, Direction.EAST
+                    )));
+                    properties.put("half", new EnumProperty("half", List.of("top", "bottom")));
+                    properties.put("shape", new EnumProperty("shape", List.of(
+                            "straight", "inner_left", "inner_right", "outer_left", "outer_right"
+                    )));
+                }
+                return properties;
+            }
+        };
+        when(PLATFORM.getRegistries()).thenReturn(new BundledRegistries() {
+            @Override
+            public BlockRegistry getBlockRegistry() {
+                return blockRegistry;
+            }
+        });
+        when(PLATFORM.getCapabilities()).thenReturn(
+                Stream.of(Capability.values())
+                        .collect(Collectors.toMap(Function.identity(), __ -> Preference.NORMAL))
+        );
+    }
+
+    private MockedBlockPlatform() {
+    }
+
+    /**
+     * Register the platform, loading the block types from it if they aren't yet.
+     *
+     * @throws IllegalStateException if the block types were loaded from another platform
+     */
+    public static void register() {
+        WorldEdit.getInstance().getPlatformManager().register(PLATFORM);
+        WorldEdit.getInstance().getEventBus().post(new PlatformsRegisteredEvent());
+        checkState(
+                BlockTypes.GLOWSTONE != null && BlockTypes.SANDSTONE_STAIRS != null,
+                "Block types were loaded from another platform"
+        );
+    }
+
+    public static void unregister() {
+        WorldEdit.getInstance().getPlatformManager().unregister(PLATFORM);
+    }
+
+    private static BlockMaterial material(boolean solid, int lightValue, int lightOpacity) {
+        BlockMaterial material = mock(BlockMaterial.class);
+        when(material.isAir()).thenReturn(!solid && lightValue == 0);
+        when(material.isSolid()).thenReturn(solid);
+        when(material.isFullCube()).thenReturn(solid);
+        when(material.isOpaque()).thenReturn(solid);
+        when(material.getLightValue()).thenReturn(lightValue);
+        when(material.getLightOpacity()).thenReturn(lightOpacity);
+        return material;
+    }
+
+}